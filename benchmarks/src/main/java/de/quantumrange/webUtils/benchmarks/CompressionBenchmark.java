@@ -0,0 +1,65 @@
+package de.quantumrange.webUtils.benchmarks;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.metrics.MetricsSnapshot;
+import de.quantumrange.webUtils.metrics.WebMetrics;
+import de.quantumrange.webUtils.models.WebResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads large text bodies from the {@link LocalServer} with and without
+ * {@link de.quantumrange.webUtils.connections.WebConnection#compression(boolean)}. The latency is measured end to end
+ * including the decompression, the bytes on the wire per request are printed after each run.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+
+	@Param({"false", "true"})
+	public boolean compression;
+
+	/**
+	 * The size of the body before compression.
+	 */
+	@Param({"100000", "1000000"})
+	public int size;
+
+	private URL url;
+	private WebMetrics metrics;
+
+	@Setup
+	public void setup(ServerState server) {
+		url = server.url("/text?n=" + size);
+		metrics = new WebMetrics();
+	}
+
+	@TearDown
+	public void printWireSize() {
+		MetricsSnapshot.Counts counts = metrics.snapshot().total();
+		if (counts.completed() == 0) return;
+
+		System.out.printf("%ncompression %s, %d bytes: %d bytes on the wire per request%n", compression, size,
+				counts.bytesReceived() / counts.completed());
+	}
+
+	@Benchmark
+	public WebResult<String> get() {
+		return Web.url(url)
+				.compression(compression)
+				.instrument(metrics)
+				.request(Map.of())
+				.completion();
+	}
+
+}
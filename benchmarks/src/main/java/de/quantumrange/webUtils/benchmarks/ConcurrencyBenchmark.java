@@ -0,0 +1,89 @@
+package de.quantumrange.webUtils.benchmarks;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.connections.WebEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts 1k or 10k requests at the same time to a server that needs 50 ms per answer and waits until all are done.
+ * <ul>
+ *     <li><code>platform</code>: blocking requests on the platform threads of {@link Web#MANAGER}.</li>
+ *     <li><code>virtual</code>: {@link de.quantumrange.webUtils.connections.WebConnection#requestAsync(Object)} with an
+ *     engine that waits on virtual threads ({@link WebEngine.Builder#virtualThreads(boolean)}).</li>
+ * </ul>
+ * The peak count of platform threads and the used heap after each iteration are printed, run with
+ * <code>-prof gc</code> for the allocations.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = {"-Xmx2g", "-Djdk.httpclient.keepalive.timeout=30"})
+public class ConcurrencyBenchmark {
+
+	@Param({"platform", "virtual"})
+	public String mode;
+
+	@Param({"1000", "10000"})
+	public int requests;
+
+	private URL url;
+	private WebEngine virtualEngine;
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+	@Setup
+	public void setup(ServerState server) {
+		url = server.url("/slow?n=50");
+		virtualEngine = WebEngine.builder()
+				.virtualThreads(true)
+				.maxConnectionsPerHost(1024)
+				.build();
+	}
+
+	@TearDown
+	public void close() {
+		virtualEngine.getClient().close();
+	}
+
+	@Setup(Level.Iteration)
+	public void resetPeak() {
+		threads.resetPeakThreadCount();
+	}
+
+	@TearDown(Level.Iteration)
+	public void printFootprint() {
+		System.out.printf("%n%s %d: peak threads %d, used heap %d MB%n", mode, requests,
+				threads.getPeakThreadCount(), memory.getHeapMemoryUsage().getUsed() >> 20);
+	}
+
+	@Benchmark
+	public long requestAll() throws InterruptedException {
+		CountDownLatch done = new CountDownLatch(requests);
+
+		for (int i = 0; i < requests; i++) {
+			if (mode.equals("platform")) {
+				Web.url(url).request(Map.of()).queue(result -> done.countDown());
+			} else {
+				Web.url(url).engine(virtualEngine).requestAsync(Map.of())
+						.whenComplete((result, throwable) -> done.countDown());
+			}
+		}
+
+		done.await();
+		return done.getCount();
+	}
+
+}
@@ -0,0 +1,96 @@
+package de.quantumrange.webUtils.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.connections.DateTimeParser;
+import de.quantumrange.webUtils.connections.WebConnection;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the {@link LocalDateTime} and {@link LocalTime} values of JSON are parsed by the deserializers of
+ * {@link WebConnection#createObjectMapper()}, once directly and once with Jackson around it. The fast path of the
+ * {@link DateTimeParser} is compared with the formatters it falls back to and with the parser of the JDK.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateParsingBenchmark {
+
+	@Benchmark
+	public LocalDateTime parseDateTime(DateTimes input) {
+		return DateTimeParser.parseDateTime(input.value);
+	}
+
+	@Benchmark
+	public LocalDateTime parseDateTimeWithFormatter(DateTimes input) {
+		return ZonedDateTime.from(DateTimeParser.DATE_TIME_FORMATTER.parse(input.value)).toLocalDateTime();
+	}
+
+	@Benchmark
+	public LocalTime parseTime(Times input) {
+		return DateTimeParser.parseTime(input.value);
+	}
+
+	@Benchmark
+	public LocalTime parseTimeWithFormatter(Times input) {
+		return ZonedDateTime.from(DateTimeParser.TIME_FORMATTER.parse(input.value)).toOffsetDateTime().toLocalTime();
+	}
+
+	@Benchmark
+	public LocalDateTime readDateTimeJson(DateTimes input) throws IOException {
+		return input.reader.readValue(input.json);
+	}
+
+	/**
+	 * The parser of the JDK for ISO date times with offset, only as reference for the first format.
+	 */
+	@Benchmark
+	public LocalDateTime parseIsoWithJdk() {
+		return ZonedDateTime.parse("2021-06-10T12:34:56.789Z", DateTimeFormatter.ISO_DATE_TIME).toLocalDateTime();
+	}
+
+	/**
+	 * The formats the date time formatter of the connection accepts.
+	 */
+	@State(Scope.Benchmark)
+	public static class DateTimes {
+
+		@Param({"2021-06-10T12:34:56.789Z", "2021-06-10T12:34:56+02:00", "2021-06-10 12:34:56",
+				"2021-06-10 12:34:56.7+02"})
+		public String value;
+
+		private String json;
+		private ObjectReader reader;
+
+		@Setup
+		public void setup() {
+			json = '"' + value + '"';
+			reader = Web.CODECS.reader(LocalDateTime.class);
+		}
+
+	}
+
+	/**
+	 * The formats the time formatter of the connection accepts.
+	 */
+	@State(Scope.Benchmark)
+	public static class Times {
+
+		@Param({"12:34:56", "12:34:56.789+02:00", "12:34"})
+		public String value;
+
+	}
+
+}
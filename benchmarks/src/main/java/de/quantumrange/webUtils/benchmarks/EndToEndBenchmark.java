@@ -0,0 +1,88 @@
+package de.quantumrange.webUtils.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.connections.HTTPRequestType;
+import de.quantumrange.webUtils.connections.RequestTemplate;
+import de.quantumrange.webUtils.models.WebResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends requests through the whole library to the {@link LocalServer}: {@link Web#MANAGER}, the rate limiter, the
+ * shared engine and the body handlers. The throughput is measured with several threads, run with
+ * <code>-bm sample</code> for the latency percentiles.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class EndToEndBenchmark {
+
+	private static final TypeReference<List<LocalServer.Item>> ITEMS = new TypeReference<>() {};
+
+	/**
+	 * The count of items in the JSON responses.
+	 */
+	@Param({"10", "1000"})
+	public int items;
+
+	private URL plain;
+	private RequestTemplate<Map<String, ?>> template;
+	private URL json;
+	private URL echo;
+	private String body;
+
+	@Setup
+	public void setup(ServerState server) {
+		plain = server.url("/");
+		template = Web.url(plain).toTemplate();
+		json = server.url("/json?n=" + items);
+		echo = server.url("/echo");
+		body = new String(LocalServer.Payloads.json(items));
+	}
+
+	@Benchmark
+	public WebResult<String> get() {
+		return Web.url(plain).request(Map.of()).completion();
+	}
+
+	/**
+	 * Like {@link #get()}, but from a {@link RequestTemplate} instead of a new connection per request.
+	 */
+	@Benchmark
+	public WebResult<String> getWithTemplate() {
+		return template.request(Map.of()).completion();
+	}
+
+	@Benchmark
+	public WebResult<String> getAsync() {
+		return Web.url(plain).requestAsync(Map.of()).join();
+	}
+
+	@Benchmark
+	public WebResult<List<LocalServer.Item>> requestJson() {
+		return Web.url(json).requestJson(Map.of(), ITEMS).completion();
+	}
+
+	@Benchmark
+	public WebResult<List<LocalServer.Item>> requestJsonStreamed() {
+		return Web.url(json).requestJsonStreamed(Map.of(), ITEMS).completion();
+	}
+
+	@Benchmark
+	public WebResult<String> post() {
+		return Web.url(echo, HTTPRequestType.POST).request(body).completion();
+	}
+
+}
@@ -0,0 +1,53 @@
+package de.quantumrange.webUtils.benchmarks;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.connections.WebEngine;
+import de.quantumrange.webUtils.models.WebResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the shared {@link WebEngine} of {@link Web#ENGINE}, which keeps the connections alive, with a new client per
+ * request like before the engine existed. The sample mode reports the p50 and p99 latency.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class EngineBenchmark {
+
+	/**
+	 * <code>shared</code> sends with {@link Web#ENGINE}, <code>perRequest</code> with a new engine for every request.
+	 */
+	@Param({"shared", "perRequest"})
+	public String engine;
+
+	private URL url;
+
+	@Setup
+	public void setup(ServerState server) {
+		url = server.url("/");
+	}
+
+	@Benchmark
+	public WebResult<String> get() {
+		if (engine.equals("shared")) return Web.url(url).request(Map.of()).completion();
+
+		WebEngine own = WebEngine.builder().build();
+		try {
+			return Web.url(url).engine(own).request(Map.of()).completion();
+		} finally {
+			own.getClient().close();
+		}
+	}
+
+}
@@ -0,0 +1,123 @@
+package de.quantumrange.webUtils.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.connections.HTTPRequestType;
+import de.quantumrange.webUtils.connections.WebConnection;
+import de.quantumrange.webUtils.json.JsonCodecs;
+import de.quantumrange.webUtils.models.LazyBody;
+import de.quantumrange.webUtils.models.WebResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the JSON paths without network: creating a mapper with {@link WebConnection#createObjectMapper()} (what
+ * every JSON call did before {@link JsonCodecs}), reading with a new mapper against the cached readers, and
+ * {@link WebResult#map(java.util.function.Function)} and {@link WebResult#responseJson(TypeReference)}.
+ * The results keep their body as bytes until it is read (see {@link LazyBody}), so these benchmarks use a new result
+ * per call, except {@link #responseJsonAgain()} which reads the kept object.
+ * Run with <code>-prof gc</code> to see the allocations.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+	private static final TypeReference<List<LocalServer.Item>> ITEMS = new TypeReference<>() {};
+
+	/**
+	 * The count of items in the JSON.
+	 */
+	@Param({"1", "100"})
+	public int items;
+
+	private byte[] json;
+	private ObjectReader reader;
+	private URL url;
+	private WebResult<String> result;
+
+	@Setup
+	public void setup() throws MalformedURLException {
+		json = LocalServer.Payloads.json(items);
+		reader = Web.CODECS.reader(ITEMS);
+		url = new URL("http://127.0.0.1/json");
+		result = newResult();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public ObjectMapper createObjectMapper() {
+		return WebConnection.createObjectMapper();
+	}
+
+	/**
+	 * Reads the JSON like before the codecs were cached: a new mapper for every body.
+	 */
+	@Benchmark
+	public List<LocalServer.Item> readWithNewMapper() throws IOException {
+		return WebConnection.createObjectMapper().readValue(json, ITEMS);
+	}
+
+	@Benchmark
+	public List<LocalServer.Item> readWithCachedReader() throws IOException {
+		return reader.readValue(json);
+	}
+
+	@Benchmark
+	public List<LocalServer.Item> readWithCodecsLookup() throws IOException {
+		return Web.CODECS.reader(ITEMS).readValue(json);
+	}
+
+	/**
+	 * Parses the JSON directly from the bytes, the body is never decoded to a {@link String}.
+	 */
+	@Benchmark
+	public List<LocalServer.Item> responseJson() throws JsonProcessingException {
+		return newResult().responseJson(ITEMS);
+	}
+
+	@Benchmark
+	public List<LocalServer.Item> responseJsonAgain() throws JsonProcessingException {
+		return result.responseJson(ITEMS);
+	}
+
+	/**
+	 * Decodes the body to a {@link String} and parses the JSON from it.
+	 */
+	@Benchmark
+	public List<LocalServer.Item> map() {
+		return newResult().map(body -> {
+			try {
+				return reader.<List<LocalServer.Item>>readValue(body);
+			} catch (JsonProcessingException e) {
+				throw new UncheckedIOException(e);
+			}
+		}).response();
+	}
+
+	/**
+	 * Creates a result like a request with an undecoded body.
+	 */
+	private WebResult<String> newResult() {
+		return new WebResult<>(LocalDateTime.now(), LocalDateTime.now(), url, HTTPRequestType.GET, 200,
+				LazyBody.decode(json, StandardCharsets.UTF_8), null);
+	}
+
+}
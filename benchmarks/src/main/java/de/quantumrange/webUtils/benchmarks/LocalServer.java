@@ -0,0 +1,194 @@
+package de.quantumrange.webUtils.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.quantumrange.webUtils.compression.Compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A HTTP server on the loopback interface for the end-to-end benchmarks, so they measure the library and not the
+ * internet. The bodies are created once per size and then only written.
+ * <ul>
+ *     <li><code>/</code>: answers <code>ok</code>.</li>
+ *     <li><code>/json?n=10</code>: a JSON array with n objects (see {@link Payloads#json(int)}).</li>
+ *     <li><code>/text?n=1000</code>: n bytes of text, gzipped if the request accepts gzip.</li>
+ *     <li><code>/slow?n=50</code>: answers <code>ok</code> after n milliseconds, like a server that has to work.</li>
+ *     <li><code>/echo</code>: answers with the request body.</li>
+ * </ul>
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public final class LocalServer implements AutoCloseable {
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final Map<String, byte[]> bodies;
+
+	private LocalServer(HttpServer server, ExecutorService executor) {
+		this.server = server;
+		this.executor = executor;
+		this.bodies = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Starts a server on a free port.
+	 *
+	 * @return the running server.
+	 * @throws IOException if the server could not be started.
+	 */
+	public static LocalServer start() throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+		ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+		LocalServer local = new LocalServer(server, executor);
+
+		server.setExecutor(executor);
+		server.createContext("/", local::handle);
+		server.start();
+
+		return local;
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			byte[] request = exchange.getRequestBody().readAllBytes();
+			String path = exchange.getRequestURI().getPath();
+			int n = parameterOf(exchange.getRequestURI().getRawQuery());
+
+			byte[] body = switch (path) {
+				case "/json" -> bodies.computeIfAbsent("json" + n, key -> Payloads.json(n));
+				case "/text" -> text(exchange, n);
+				case "/slow" -> slow(n);
+				case "/echo" -> request;
+				default -> Payloads.OK;
+			};
+
+			exchange.sendResponseHeaders(200, body.length == 0 ? -1 : body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		}
+	}
+
+	private byte[] text(HttpExchange exchange, int size) {
+		String encoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+
+		if (encoding != null && encoding.contains("gzip")) {
+			exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+			return bodies.computeIfAbsent("gzip" + size, key -> Compression.gzip(Payloads.text(size)));
+		}
+
+		return bodies.computeIfAbsent("text" + size, key -> Payloads.text(size));
+	}
+
+	private static byte[] slow(int millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return Payloads.OK;
+	}
+
+	private static int parameterOf(String query) {
+		if (query == null || !query.startsWith("n=")) return 1;
+		return Integer.parseInt(query.substring(2));
+	}
+
+	/**
+	 * Returns the URL of a path on this server.
+	 *
+	 * @param pathAndQuery the path, for example <code>/json?n=10</code>.
+	 * @return the URL.
+	 */
+	public URL url(String pathAndQuery) {
+		try {
+			return new URL("http://127.0.0.1:" + server.getAddress().getPort() + pathAndQuery);
+		} catch (MalformedURLException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.close();
+	}
+
+	/**
+	 * The bodies the server answers with.
+	 */
+	public static final class Payloads {
+
+		static final byte[] OK = "ok".getBytes(StandardCharsets.UTF_8);
+
+		private static final String[] WORDS = {
+				"request", "response", "header", "body", "limit", "host", "query", "cache", "json", "value"
+		};
+
+		private Payloads() {
+		}
+
+		/**
+		 * Creates a JSON array of {@link Item}s.
+		 *
+		 * @param size the count of items.
+		 * @return the JSON as UTF-8.
+		 */
+		public static byte[] json(int size) {
+			StringBuilder builder = new StringBuilder(size * 96 + 2).append('[');
+
+			for (int i = 0; i < size; i++) {
+				if (i > 0) builder.append(',');
+				builder.append("{\"id\":").append(i)
+						.append(",\"name\":\"").append(WORDS[i % WORDS.length]).append(' ').append(i)
+						.append("\",\"created\":\"2021-06-").append(10 + i % 20).append("T12:34:56.789Z\"")
+						.append(",\"time\":\"08:").append(10 + i % 50).append(":00\"")
+						.append(",\"score\":").append(i * 0.5)
+						.append('}');
+			}
+
+			return builder.append(']').toString().getBytes(StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Creates text of words that compresses like usual API responses.
+		 *
+		 * @param size the length in bytes.
+		 * @return the text as UTF-8.
+		 */
+		public static byte[] text(int size) {
+			StringBuilder builder = new StringBuilder(size + 32);
+			Random random = new Random(size);
+
+			while (builder.length() < size) {
+				builder.append(WORDS[random.nextInt(WORDS.length)]).append('=').append(random.nextInt(100_000))
+						.append(random.nextInt(8) == 0 ? '\n' : ' ');
+			}
+			builder.setLength(size);
+
+			return builder.toString().getBytes(StandardCharsets.UTF_8);
+		}
+
+	}
+
+	/**
+	 * An item of the JSON payload.
+	 */
+	public record Item(long id, String name, LocalDateTime created, LocalTime time, double score) {
+	}
+
+}
@@ -0,0 +1,116 @@
+package de.quantumrange.webUtils.benchmarks;
+
+import de.quantumrange.webUtils.connections.QueryEncoder;
+import de.quantumrange.webUtils.connections.impl.GetWebConnection;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the query of a {@link GetWebConnection} is built, compared with {@link URLEncoder}.
+ * Run with <code>-prof gc</code> to see the allocations per URL.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+
+	/**
+	 * The count of parameters.
+	 */
+	@Param({"1", "8", "32"})
+	public int parameters;
+
+	/**
+	 * The kind of values: plain ASCII, ASCII that has to be escaped or non-ASCII text.
+	 */
+	@Param({"plain", "escaped", "unicode"})
+	public String values;
+
+	private Map<String, String> query;
+	private String value;
+	private Exposed connection;
+
+	@Setup
+	public void setup() throws MalformedURLException {
+		String sample = switch (values) {
+			case "plain" -> "GETrequesttestsite";
+			case "escaped" -> "GET request & test=site/?";
+			default -> "Grüße aus Köln – 東京 🚀";
+		};
+
+		query = new LinkedHashMap<>();
+		for (int i = 0; i < parameters; i++) query.put("key" + i, sample + i);
+
+		value = sample;
+		connection = new Exposed(new URL("https://example.com/search"));
+	}
+
+	@Benchmark
+	public String encode() {
+		return QueryEncoder.encode(value);
+	}
+
+	@Benchmark
+	public String encodeWithUrlEncoder() {
+		return URLEncoder.encode(value, StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public String buildUrl() {
+		return QueryEncoder.buildUrl("https://example.com/search", query);
+	}
+
+	@Benchmark
+	public String buildUrlWithUrlEncoder() {
+		StringBuilder builder = new StringBuilder("https://example.com/search");
+		char separator = '?';
+
+		for (Map.Entry<String, String> entry : query.entrySet()) {
+			builder.append(separator)
+					.append(URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8))
+					.append('=')
+					.append(URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8));
+			separator = '&';
+		}
+
+		return builder.toString();
+	}
+
+	/**
+	 * Builds the whole request like {@link GetWebConnection#request(Object)} does before it is sent.
+	 */
+	@Benchmark
+	public HttpRequest createRequest() {
+		return connection.create(query).build();
+	}
+
+	/**
+	 * Makes the request building of the connection callable.
+	 */
+	private static final class Exposed extends GetWebConnection {
+
+		private Exposed(URL url) {
+			super(url, 0);
+		}
+
+		private HttpRequest.Builder create(Map<String, ?> query) {
+			return withHeaders(createRequest(query));
+		}
+
+	}
+
+}
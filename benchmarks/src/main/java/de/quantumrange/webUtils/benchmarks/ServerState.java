@@ -0,0 +1,39 @@
+package de.quantumrange.webUtils.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Starts the {@link LocalServer} once per benchmark run.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+@State(Scope.Benchmark)
+public class ServerState {
+
+	private LocalServer server;
+
+	@Setup(Level.Trial)
+	public void start() throws IOException {
+		server = LocalServer.start();
+	}
+
+	@TearDown(Level.Trial)
+	public void stop() {
+		server.close();
+	}
+
+	/**
+	 * Returns the URL of a path on the server.
+	 *
+	 * @param pathAndQuery the path, for example <code>/json?n=10</code>.
+	 * @return the URL.
+	 */
+	public URL url(String pathAndQuery) {
+		return server.url(pathAndQuery);
+	}
+
+}
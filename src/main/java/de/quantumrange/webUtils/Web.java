@@ -4,13 +4,24 @@ import de.quantumrange.actionlib.Action;
 import de.quantumrange.actionlib.ActionManager;
 import de.quantumrange.actionlib.impl.actions.RateLimitedAction;
 import de.quantumrange.actionlib.impl.manager.RateLimitedThreadManager;
+import de.quantumrange.webUtils.batch.WebBatch;
+import de.quantumrange.webUtils.circuit.HostGuard;
 import de.quantumrange.webUtils.connections.HTTPRequestType;
 import de.quantumrange.webUtils.connections.WebConnection;
+import de.quantumrange.webUtils.connections.WebEngine;
 import de.quantumrange.webUtils.connections.impl.DataWebConnection;
 import de.quantumrange.webUtils.connections.impl.GetWebConnection;
+import de.quantumrange.webUtils.json.JsonCodecs;
+import de.quantumrange.webUtils.metrics.LatencyStats;
+import de.quantumrange.webUtils.metrics.WebInstrumentation;
+import de.quantumrange.webUtils.metrics.WebMetrics;
 import de.quantumrange.webUtils.models.WebResult;
+import de.quantumrange.webUtils.ratelimit.RateLimiter;
+import de.quantumrange.webUtils.websocket.WebSocketConnection;
+import de.quantumrange.webUtils.websocket.WebSocketListener;
 
 import java.io.IOException;
+import java.net.URI;
 import java.net.URL;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
@@ -45,6 +56,54 @@ public class Web {
 	 */
 	public static RateLimitedThreadManager MANAGER = new RateLimitedThreadManager(.4f);
 
+	/**
+	 * This is the shared {@link WebEngine} that every {@link WebConnection} uses unless another engine is set with
+	 * {@link WebConnection#engine(WebEngine)}.
+	 * Connections to the same server are kept alive and reused.
+	 * If you need other timeouts or limits you can simply overwrite the variable.
+	 */
+	public static WebEngine ENGINE = WebEngine.builder().build();
+
+	/**
+	 * This is the shared {@link JsonCodecs} that every {@link WebConnection} and {@link WebResult} uses to read and
+	 * write JSON unless other codecs are set with {@link WebConnection#codecs(JsonCodecs)}.
+	 * The {@link com.fasterxml.jackson.databind.ObjectMapper} is only created once.
+	 */
+	public static JsonCodecs CODECS = new JsonCodecs();
+
+	/**
+	 * This is the shared {@link RateLimiter} with the token buckets per host and RateID.
+	 * By default nothing is limited, but the limiter still pauses a host when it answers with
+	 * <code>Retry-After</code> or <code>X-RateLimit-*</code> headers.
+	 */
+	public static RateLimiter LIMITER = new RateLimiter();
+
+	/**
+	 * This is the shared {@link HostGuard} with the circuit breakers and bulkheads per host.
+	 * By default nothing is rejected until breakers or bulkheads are configured.
+	 */
+	public static HostGuard GUARD = new HostGuard();
+
+	/**
+	 * This is where the {@link de.quantumrange.webUtils.models.WebTimings} of every request are collected in
+	 * latency histograms per host and RateID.
+	 */
+	public static LatencyStats LATENCIES = new LatencyStats();
+
+	/**
+	 * This is where every request is counted per host, method and RateID (see {@link WebMetrics#snapshot()}, or
+	 * {@link de.quantumrange.webUtils.metrics.JmxExporter} to read the counters over JMX).
+	 */
+	public static WebMetrics METRICS = new WebMetrics();
+
+	/**
+	 * This is the {@link WebInstrumentation} that every {@link WebConnection} informs unless another one is set with
+	 * {@link WebConnection#instrument(WebInstrumentation)}. By default it is {@link #METRICS}, use
+	 * {@link WebInstrumentation#of(WebInstrumentation...)} to add your own or {@link WebInstrumentation#NONE} to count
+	 * nothing.
+	 */
+	public static WebInstrumentation INSTRUMENTATION = METRICS;
+
 	public static GetWebConnection url(URL url) {
 		return new GetWebConnection(url, 0);
 	}
@@ -55,6 +114,25 @@ public class Web {
 		return new DataWebConnection(url, 0, type);
 	}
 
+	/**
+	 * Creates a WebSocket connection (more on {@link WebSocketConnection}).
+	 *
+	 * @param uri the URI with the scheme <code>ws</code> or <code>wss</code>.
+	 * @return the connection, it is opened with {@link WebSocketConnection#connect(WebSocketListener)}.
+	 */
+	public static WebSocketConnection websocket(URI uri) {
+		return new WebSocketConnection(uri, 0);
+	}
+
+	/**
+	 * Creates a batch to send many requests with a limited count of requests in flight (more on {@link WebBatch}).
+	 *
+	 * @return the new batch.
+	 */
+	public static WebBatch batch() {
+		return new WebBatch();
+	}
+
 	public static GetWebConnection parseGETHeader(String data) {
 		return null;
 	}
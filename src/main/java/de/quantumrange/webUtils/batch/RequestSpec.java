@@ -0,0 +1,136 @@
+package de.quantumrange.webUtils.batch;
+
+import de.quantumrange.webUtils.connections.HTTPRequestType;
+import de.quantumrange.webUtils.connections.QueryEncoder;
+import de.quantumrange.webUtils.connections.WebConnection;
+import de.quantumrange.webUtils.connections.impl.DataWebConnection;
+import de.quantumrange.webUtils.connections.impl.GetWebConnection;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Describes one request of a {@link WebBatch}.
+ * The query parameters are added to the URL in their order, null values are allowed (more on
+ * {@link QueryEncoder#appendQuery(StringBuilder, Map)}). The body is only sent if the type is not
+ * {@link HTTPRequestType#GET}.
+ * <p>
+ * Example:
+ * <pre>RequestSpec.get(url, Map.of("page", 2)).withHeader("Accept", "application/json").withRateID(1)</pre>
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ * @param url the URL of the request.
+ * @param type the type of the request.
+ * @param body the body of the request, null is sent as empty body.
+ * @param query the query parameters.
+ * @param headers the headers.
+ * @param rateID the RateID (more on {@link WebConnection#rateID(int)}).
+ */
+public record RequestSpec(@Nonnull URL url, @Nonnull HTTPRequestType type, @Nullable String body,
+						  @Nonnull Map<String, ?> query, @Nonnull Map<String, String> headers, int rateID) {
+
+	public RequestSpec {
+		query = Collections.unmodifiableMap(new LinkedHashMap<>(query));
+		headers = Map.copyOf(headers);
+	}
+
+	/**
+	 * Creates a GET request.
+	 *
+	 * @param url the URL.
+	 * @return the request.
+	 */
+	public static RequestSpec get(URL url) {
+		return new RequestSpec(url, HTTPRequestType.GET, null, Map.of(), Map.of(), 0);
+	}
+
+	/**
+	 * Creates a GET request with query parameters.
+	 *
+	 * @param url the URL.
+	 * @param query the query parameters.
+	 * @return the request.
+	 */
+	public static RequestSpec get(URL url, Map<String, ?> query) {
+		return new RequestSpec(url, HTTPRequestType.GET, null, query, Map.of(), 0);
+	}
+
+	/**
+	 * Creates a request with a body.
+	 *
+	 * @param url the URL.
+	 * @param type the type, must not be {@link HTTPRequestType#GET}.
+	 * @param body the body.
+	 * @return the request.
+	 */
+	public static RequestSpec of(URL url, HTTPRequestType type, String body) {
+		if (type == HTTPRequestType.GET) throw new IllegalArgumentException("type cannot be HTTPRequestType.GET. " +
+				"Please use get(URL url) then.");
+		return new RequestSpec(url, type, body, Map.of(), Map.of(), 0);
+	}
+
+	/**
+	 * Returns a copy of this request with the header added.
+	 *
+	 * @param name the key of the header.
+	 * @param value the value of the header.
+	 * @return the new request.
+	 */
+	public RequestSpec withHeader(String name, String value) {
+		Map<String, String> headers = new HashMap<>(this.headers);
+		headers.put(name, value);
+		return new RequestSpec(url, type, body, query, headers, rateID);
+	}
+
+	/**
+	 * Returns a copy of this request with the query parameters.
+	 *
+	 * @param query the query parameters.
+	 * @return the new request.
+	 */
+	public RequestSpec withQuery(Map<String, ?> query) {
+		return new RequestSpec(url, type, body, query, headers, rateID);
+	}
+
+	/**
+	 * Returns a copy of this request with the RateID.
+	 *
+	 * @param rateID the RateID.
+	 * @return the new request.
+	 */
+	public RequestSpec withRateID(int rateID) {
+		return new RequestSpec(url, type, body, query, headers, rateID);
+	}
+
+	/**
+	 * Creates the {@link WebConnection} for this request with the headers and the RateID.
+	 * For a {@link DataWebConnection} the query is already part of the URL.
+	 *
+	 * @return the connection.
+	 * @throws MalformedURLException if the query makes the URL invalid.
+	 */
+	public WebConnection<?, ?> toConnection() throws MalformedURLException {
+		WebConnection<?, ?> connection;
+
+		if (type == HTTPRequestType.GET) {
+			connection = new GetWebConnection(url, rateID);
+		} else if (query.isEmpty()) {
+			connection = new DataWebConnection(url, rateID, type);
+		} else {
+			URL withQuery = URI.create(QueryEncoder.buildUrl(url.toString(), query)).toURL();
+			connection = new DataWebConnection(withQuery, rateID, type);
+		}
+
+		connection.getHeaderProperties().putAll(headers);
+		return connection;
+	}
+
+}
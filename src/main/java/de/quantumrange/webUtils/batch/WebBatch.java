@@ -0,0 +1,463 @@
+package de.quantumrange.webUtils.batch;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.connections.HTTPRequestType;
+import de.quantumrange.webUtils.connections.RequestTemplate;
+import de.quantumrange.webUtils.connections.WebConnection;
+import de.quantumrange.webUtils.models.WebResult;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Sends many {@link RequestSpec}s with at most {@link #concurrency(int)} requests in flight at the same time.
+ * Every request is sent with {@link WebConnection#requestAsync(Object)}, so the RateIDs of {@link Web#MANAGER} and
+ * {@link Web#LIMITER} are still respected, but no thread waits for a response.
+ * The requests are only taken from the collection or stream when there is room in the window, so even very long
+ * work lists are never held in memory at once.
+ * <p>
+ * The requests to the same endpoint (URL, type, RateID and headers) share one {@link RequestTemplate}, so its
+ * connection and headers are built only once per endpoint and not per request.
+ * <p>
+ * The results can be received
+ * <ul>
+ *     <li>in the order of the requests as list: {@link #requestAll(Stream)}</li>
+ *     <li>in the order they complete as {@link Stream}: {@link #stream(Stream)}</li>
+ *     <li>in the order they complete as {@link Flow.Publisher} with back-pressure: {@link #publisher(Stream)}</li>
+ * </ul>
+ * A request that failed is returned as {@link WebResult} with the responseCode -1 (like
+ * {@link WebConnection#request(Object)}), so one failure doesn't end the batch. The cause of the failure is passed to
+ * {@link #onFailure(BiConsumer)}.
+ * <p>
+ * Example:
+ * <pre>Web.batch().concurrency(32).stream(urls.stream().map(RequestSpec::get)).forEach(...);</pre>
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public class WebBatch {
+
+	/**
+	 * How many templates a batch keeps at most, the least recently used one is dropped first.
+	 */
+	private static final int MAX_TEMPLATES = 256;
+
+	private int concurrency;
+	private Consumer<WebConnection<?, ?>> configurer;
+	private BiConsumer<RequestSpec, Throwable> failureListener;
+
+	public WebBatch() {
+		this.concurrency = 64;
+		this.configurer = connection -> {};
+		this.failureListener = (spec, throwable) -> {};
+	}
+
+	/**
+	 * Sets how many requests can be in flight at the same time (default 64).
+	 *
+	 * @param concurrency the size of the window.
+	 * @return this batch.
+	 */
+	public WebBatch concurrency(int concurrency) {
+		if (concurrency < 1) throw new IllegalArgumentException("concurrency has to be at least 1.");
+		this.concurrency = concurrency;
+		return this;
+	}
+
+	/**
+	 * Sets a function that configures the connection of every endpoint before its {@link RequestTemplate} is
+	 * created, for example with {@link WebConnection#engine(de.quantumrange.webUtils.connections.WebEngine)}.
+	 * The requests to the same endpoint share the template, so the function runs once per endpoint.
+	 *
+	 * @param configurer the function.
+	 * @return this batch.
+	 */
+	public WebBatch configure(Consumer<WebConnection<?, ?>> configurer) {
+		this.configurer = Objects.requireNonNull(configurer);
+		return this;
+	}
+
+	/**
+	 * Sets a function that receives the cause of every request that failed without response, its result has the
+	 * responseCode -1. The function is called before the result is published.
+	 *
+	 * @param failureListener the function.
+	 * @return this batch.
+	 */
+	public WebBatch onFailure(BiConsumer<RequestSpec, Throwable> failureListener) {
+		this.failureListener = Objects.requireNonNull(failureListener);
+		return this;
+	}
+
+	/**
+	 * Sends all requests (more on {@link #requestAll(Stream)}).
+	 *
+	 * @param specs the requests.
+	 * @return the future with the results in the order of the requests.
+	 */
+	public CompletableFuture<List<WebResult<String>>> requestAll(Collection<RequestSpec> specs) {
+		return requestAll(specs.stream());
+	}
+
+	/**
+	 * Sends all requests and collects the results in the order of the requests.
+	 *
+	 * @param specs the requests.
+	 * @return the future with the results in the order of the requests.
+	 */
+	public CompletableFuture<List<WebResult<String>>> requestAll(Stream<RequestSpec> specs) {
+		CompletableFuture<List<WebResult<String>>> future = new CompletableFuture<>();
+		List<WebResult<String>> results = new ArrayList<>();
+
+		subscribe(specs, new Flow.Subscriber<Completed>() {
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				subscription.request(Long.MAX_VALUE);
+			}
+
+			@Override
+			public void onNext(Completed item) {
+				while (results.size() <= item.index()) results.add(null);
+				results.set(item.index(), item.result());
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				future.completeExceptionally(throwable);
+			}
+
+			@Override
+			public void onComplete() {
+				future.complete(results);
+			}
+		});
+
+		return future;
+	}
+
+	/**
+	 * Sends the requests and returns the results in the order they complete.
+	 * The requests are sent as soon as the stream is consumed, a consumer that is slower than the server blocks the
+	 * window, so no more than {@link #concurrency(int)} results are ever buffered.
+	 *
+	 * @param specs the requests.
+	 * @return the results in the order they complete.
+	 */
+	public Stream<WebResult<String>> stream(Stream<RequestSpec> specs) {
+		BlockingIterator iterator = new BlockingIterator(specs);
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.NONNULL), false)
+				.onClose(iterator::cancel);
+	}
+
+	/**
+	 * Returns a publisher that sends the requests when it is subscribed and publishes the results in the order they
+	 * complete.
+	 * A request is only sent when the subscriber requested a result for it, so the subscriber controls the speed.
+	 * The publisher can be subscribed only once.
+	 *
+	 * @param specs the requests.
+	 * @return the publisher of the results.
+	 */
+	public Flow.Publisher<WebResult<String>> publisher(Stream<RequestSpec> specs) {
+		AtomicBoolean subscribed = new AtomicBoolean(false);
+
+		return subscriber -> {
+			if (!subscribed.compareAndSet(false, true)) {
+				subscriber.onSubscribe(new Flow.Subscription() {
+					@Override
+					public void request(long n) {
+					}
+
+					@Override
+					public void cancel() {
+					}
+				});
+				subscriber.onError(new IllegalStateException("The publisher of a batch can be subscribed only once."));
+				return;
+			}
+
+			subscribe(specs, new Flow.Subscriber<Completed>() {
+				@Override
+				public void onSubscribe(Flow.Subscription subscription) {
+					subscriber.onSubscribe(subscription);
+				}
+
+				@Override
+				public void onNext(Completed item) {
+					subscriber.onNext(item.result());
+				}
+
+				@Override
+				public void onError(Throwable throwable) {
+					subscriber.onError(throwable);
+				}
+
+				@Override
+				public void onComplete() {
+					subscriber.onComplete();
+				}
+			});
+		};
+	}
+
+	private void subscribe(Stream<RequestSpec> specs, Flow.Subscriber<? super Completed> subscriber) {
+		Window window = new Window(specs.iterator(), subscriber);
+		subscriber.onSubscribe(window);
+	}
+
+	/**
+	 * Sends the request with the template of its endpoint, a failure is turned into a result with the responseCode -1.
+	 */
+	@SuppressWarnings("unchecked")
+	private CompletableFuture<WebResult<String>> send(RequestSpec spec, Map<Endpoint, RequestTemplate<?>> templates) {
+		CompletableFuture<WebResult<String>> future;
+		LocalDateTime sendTime = LocalDateTime.now();
+
+		try {
+			Endpoint endpoint = Endpoint.of(spec);
+			RequestTemplate<?> template = templates.get(endpoint);
+			if (template == null) {
+				WebConnection<?, ?> connection = spec.toConnection();
+				configurer.accept(connection);
+				template = connection.toTemplate();
+				templates.put(endpoint, template);
+			}
+
+			if (spec.type() == HTTPRequestType.GET) {
+				future = ((RequestTemplate<Map<String, ?>>) template).requestAsync(spec.query());
+			} else {
+				future = ((RequestTemplate<String>) template).requestAsync(spec.body() == null ? "" : spec.body());
+			}
+		} catch (Exception e) {
+			future = CompletableFuture.failedFuture(e);
+		}
+
+		return future.exceptionally(throwable -> {
+			failureListener.accept(spec, throwable instanceof CompletionException && throwable.getCause() != null
+					? throwable.getCause() : throwable);
+			return new WebResult<>(sendTime, null, spec.url(), spec.type(), WebResult.FAILED, null);
+		});
+	}
+
+	/**
+	 * The settings of a request that a {@link RequestTemplate} fixes. The query is part of the URL of a request with
+	 * body (see {@link RequestSpec#toConnection()}).
+	 */
+	private record Endpoint(String url, HTTPRequestType type, int rateID, Map<String, String> headers,
+							Map<String, ?> query) {
+
+		private static Endpoint of(RequestSpec spec) {
+			// The string of the URL, because URL#equals resolves the host.
+			return new Endpoint(spec.url().toString(), spec.type(), spec.rateID(), spec.headers(),
+					spec.type() == HTTPRequestType.GET ? Map.of() : spec.query());
+		}
+
+	}
+
+	private record Completed(int index, WebResult<String> result) {
+	}
+
+	/**
+	 * The subscription that takes the requests from the iterator as long as the window and the demand of the
+	 * subscriber allow it. Everything that touches the iterator, the templates or the subscriber is done in
+	 * {@link #drain()}, which only runs in one thread at a time.
+	 */
+	private final class Window implements Flow.Subscription {
+
+		private final Iterator<RequestSpec> specs;
+		private final Flow.Subscriber<? super Completed> subscriber;
+		private final ConcurrentLinkedQueue<Completed> completed;
+		private final AtomicInteger wip;
+		private final AtomicLong requested;
+		/**
+		 * The requests that were sent, but whose result was not yet emitted.
+		 */
+		private final AtomicInteger outstanding;
+		private final Map<Endpoint, RequestTemplate<?>> templates;
+		private long emitted;
+		private int index;
+		private boolean exhausted;
+		private volatile boolean done;
+
+		private Window(Iterator<RequestSpec> specs, Flow.Subscriber<? super Completed> subscriber) {
+			this.specs = specs;
+			this.subscriber = subscriber;
+			this.completed = new ConcurrentLinkedQueue<>();
+			this.wip = new AtomicInteger();
+			this.requested = new AtomicLong();
+			this.outstanding = new AtomicInteger();
+			this.templates = new LinkedHashMap<>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Endpoint, RequestTemplate<?>> eldest) {
+					return size() > MAX_TEMPLATES;
+				}
+			};
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				done = true;
+				subscriber.onError(new IllegalArgumentException("The requested count has to be positive."));
+				return;
+			}
+
+			requested.getAndAccumulate(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			done = true;
+		}
+
+		private void drain() {
+			if (wip.getAndIncrement() != 0) return;
+
+			do {
+				if (done) continue;
+
+				Completed next;
+				while (emitted < requested.get() && (next = completed.poll()) != null) {
+					subscriber.onNext(next);
+					emitted++;
+					outstanding.decrementAndGet();
+				}
+
+				while (!done && !exhausted && outstanding.get() < concurrency
+						&& emitted + outstanding.get() < requested.get()) {
+					RequestSpec spec;
+					try {
+						if (!specs.hasNext()) {
+							exhausted = true;
+							break;
+						}
+						spec = specs.next();
+					} catch (RuntimeException e) {
+						done = true;
+						subscriber.onError(e);
+						break;
+					}
+
+					int current = index++;
+					outstanding.incrementAndGet();
+					send(spec, templates).thenAccept(result -> {
+						completed.add(new Completed(current, result));
+						drain();
+					});
+				}
+
+				if (!done && exhausted && outstanding.get() == 0) {
+					done = true;
+					subscriber.onComplete();
+				}
+			} while (wip.decrementAndGet() != 0);
+		}
+
+	}
+
+	/**
+	 * Subscribes lazily on the first call and requests one result for every result that was taken.
+	 */
+	private final class BlockingIterator implements Iterator<WebResult<String>> {
+
+		private static final Object END = new Object();
+
+		private final Stream<RequestSpec> specs;
+		private final BlockingQueue<Object> queue;
+		private Flow.Subscription subscription;
+		private Object next;
+
+		private BlockingIterator(Stream<RequestSpec> specs) {
+			this.specs = specs;
+			this.queue = new LinkedBlockingQueue<>();
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next == null) {
+				if (subscription == null) start();
+
+				try {
+					next = queue.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					cancel();
+					throw new IllegalStateException("Interrupted while waiting for the next result.", e);
+				}
+			}
+
+			if (next instanceof Throwable throwable) {
+				next = END;
+				throw throwable instanceof RuntimeException e ? e : new IllegalStateException(throwable);
+			}
+
+			return next != END;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public WebResult<String> next() {
+			if (!hasNext()) throw new NoSuchElementException();
+
+			WebResult<String> result = (WebResult<String>) next;
+			next = null;
+			subscription.request(1);
+
+			return result;
+		}
+
+		private void start() {
+			subscribe(specs, new Flow.Subscriber<Completed>() {
+				@Override
+				public void onSubscribe(Flow.Subscription subscription) {
+					BlockingIterator.this.subscription = subscription;
+					subscription.request(concurrency);
+				}
+
+				@Override
+				public void onNext(Completed item) {
+					queue.add(item.result());
+				}
+
+				@Override
+				public void onError(Throwable throwable) {
+					queue.add(throwable);
+				}
+
+				@Override
+				public void onComplete() {
+					queue.add(END);
+				}
+			});
+		}
+
+		private void cancel() {
+			if (subscription != null) subscription.cancel();
+		}
+
+	}
+
+}
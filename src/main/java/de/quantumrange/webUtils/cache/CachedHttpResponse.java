@@ -0,0 +1,95 @@
+package de.quantumrange.webUtils.cache;
+
+import javax.net.ssl.SSLSession;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link HttpResponse} that was not received from the network but read from a {@link CachedResponse}.
+ *
+ * @param <B> the type of the body.
+ */
+record CachedHttpResponse<B>(HttpRequest request, int statusCode, HttpHeaders headers, B body)
+		implements HttpResponse<B> {
+
+	/**
+	 * Reads the body of the cached response with the handler, as if it was received from the network.
+	 *
+	 * @param response the cached response.
+	 * @param request the request that is answered with the cached response.
+	 * @param handler the handler that reads the body.
+	 * @param <B> the type of the body.
+	 * @return the response with the read body.
+	 */
+	static <B> CachedHttpResponse<B> replay(CachedResponse response, HttpRequest request,
+											HttpResponse.BodyHandler<B> handler) {
+		HttpResponse.ResponseInfo info = new HttpResponse.ResponseInfo() {
+			@Override
+			public int statusCode() {
+				return response.statusCode();
+			}
+
+			@Override
+			public HttpHeaders headers() {
+				return response.headers();
+			}
+
+			@Override
+			public HttpClient.Version version() {
+				return HttpClient.Version.HTTP_1_1;
+			}
+		};
+
+		HttpResponse.BodySubscriber<B> subscriber = handler.apply(info);
+		AtomicBoolean delivered = new AtomicBoolean(false);
+
+		subscriber.onSubscribe(new Flow.Subscription() {
+			@Override
+			public void request(long n) {
+				if (n <= 0 || !delivered.compareAndSet(false, true)) return;
+
+				if (response.body().length > 0) {
+					subscriber.onNext(List.of(ByteBuffer.wrap(response.body()).asReadOnlyBuffer()));
+				}
+				subscriber.onComplete();
+			}
+
+			@Override
+			public void cancel() {
+				delivered.set(true);
+			}
+		});
+
+		B body = subscriber.getBody().toCompletableFuture().join();
+		return new CachedHttpResponse<>(request, response.statusCode(), response.headers(), body);
+	}
+
+	@Override
+	public Optional<HttpResponse<B>> previousResponse() {
+		return Optional.empty();
+	}
+
+	@Override
+	public Optional<SSLSession> sslSession() {
+		return Optional.empty();
+	}
+
+	@Override
+	public URI uri() {
+		return request.uri();
+	}
+
+	@Override
+	public HttpClient.Version version() {
+		return HttpClient.Version.HTTP_1_1;
+	}
+
+}
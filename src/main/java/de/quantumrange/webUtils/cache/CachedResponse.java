@@ -0,0 +1,102 @@
+package de.quantumrange.webUtils.cache;
+
+import javax.annotation.Nonnull;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A response that is stored in the {@link ResponseCache}.
+ * The body is stored as raw bytes, so it can be read again with any {@link java.net.http.HttpResponse.BodyHandler}.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ * @param uri the URI of the request.
+ * @param statusCode the status code of the response.
+ * @param headers the headers of the response.
+ * @param body the body of the response.
+ * @param vary the values of the request headers named in the <code>Vary</code> header of the response.
+ * @param storedAt when the response was stored (in epoch milliseconds).
+ * @param expiresAt until when the response is fresh (in epoch milliseconds).
+ */
+public record CachedResponse(@Nonnull String uri, int statusCode, @Nonnull HttpHeaders headers, @Nonnull byte[] body,
+							 @Nonnull Map<String, String> vary, long storedAt, long expiresAt) {
+
+	/**
+	 * Returns whether the response can still be used without asking the server.
+	 *
+	 * @param now the current time in epoch milliseconds.
+	 * @return true if the response is fresh.
+	 */
+	public boolean isFresh(long now) {
+		return now < expiresAt;
+	}
+
+	/**
+	 * Returns whether the response was stored for a request with the same values in the headers named by
+	 * <code>Vary</code>.
+	 *
+	 * @param request the request.
+	 * @return true if the response fits the request.
+	 */
+	public boolean matches(HttpRequest request) {
+		for (Map.Entry<String, String> entry : vary.entrySet()) {
+			if (!Objects.equals(entry.getValue(), request.headers().firstValue(entry.getKey()).orElse(null))) return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the <code>ETag</code> of the response.
+	 * @return the ETag or null if there is none.
+	 */
+	public String etag() {
+		return headers.firstValue("ETag").orElse(null);
+	}
+
+	/**
+	 * Returns the <code>Last-Modified</code> date of the response.
+	 * @return the date or null if there is none.
+	 */
+	public String lastModified() {
+		return headers.firstValue("Last-Modified").orElse(null);
+	}
+
+	/**
+	 * Returns the size that is counted for the byte limit of the cache.
+	 * @return the size of the body.
+	 */
+	public long size() {
+		return body.length;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		CachedResponse that = (CachedResponse) o;
+		return statusCode == that.statusCode && storedAt == that.storedAt && expiresAt == that.expiresAt && uri.equals(that.uri) && headers.equals(that.headers) && Arrays.equals(body, that.body) && vary.equals(that.vary);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = Objects.hash(uri, statusCode, headers, vary, storedAt, expiresAt);
+		result = 31 * result + Arrays.hashCode(body);
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "CachedResponse{" +
+				"uri='" + uri + '\'' +
+				", statusCode=" + statusCode +
+				", body=" + body.length + " bytes" +
+				", storedAt=" + storedAt +
+				", expiresAt=" + expiresAt +
+				'}';
+	}
+
+}
@@ -0,0 +1,72 @@
+package de.quantumrange.webUtils.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * Passes the body to another {@link HttpResponse.BodySubscriber} and keeps a copy of the bytes.
+ * If the body gets bigger than the limit, the copy is dropped.
+ *
+ * @param <B> the type of the body.
+ */
+final class CapturingSubscriber<B> implements HttpResponse.BodySubscriber<B> {
+
+	private final HttpResponse.BodySubscriber<B> downstream;
+	private final long limit;
+	private final Consumer<byte[]> onComplete;
+	private ByteArrayOutputStream copy;
+
+	CapturingSubscriber(HttpResponse.BodySubscriber<B> downstream, long limit, Consumer<byte[]> onComplete) {
+		this.downstream = downstream;
+		this.limit = limit;
+		this.onComplete = onComplete;
+		this.copy = new ByteArrayOutputStream();
+	}
+
+	@Override
+	public CompletionStage<B> getBody() {
+		return downstream.getBody();
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		downstream.onSubscribe(subscription);
+	}
+
+	@Override
+	public void onNext(List<ByteBuffer> items) {
+		if (copy != null) {
+			for (ByteBuffer item : items) {
+				if (copy.size() + (long) item.remaining() > limit) {
+					copy = null;
+					break;
+				}
+
+				byte[] bytes = new byte[item.remaining()];
+				item.duplicate().get(bytes);
+				copy.writeBytes(bytes);
+			}
+		}
+
+		downstream.onNext(items);
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		copy = null;
+		downstream.onError(throwable);
+	}
+
+	@Override
+	public void onComplete() {
+		if (copy != null) onComplete.accept(copy.toByteArray());
+		copy = null;
+		downstream.onComplete();
+	}
+
+}
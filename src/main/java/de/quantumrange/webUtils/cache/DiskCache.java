@@ -0,0 +1,1042 @@
+package de.quantumrange.webUtils.cache;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpHeaders;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+
+/**
+ * A persistent store of {@link CachedResponse}s in a directory, the second tier of a {@link ResponseCache} (see
+ * {@link ResponseCache#ResponseCache(int, long, Duration, DiskCache)}), so the responses survive a restart.
+ * <p>
+ * The responses are appended to a data file (<code>responses.dat</code>), every record has a CRC32C checksum. A
+ * memory-mapped hash table (<code>responses.idx</code>) maps the URI to the position of its newest record, so a
+ * lookup is one read from the data file. Removing a response appends a tombstone.
+ * <p>
+ * If the data file would grow beyond the byte limit, it is compacted: the newest responses are copied to a new file
+ * until 3/4 of the limit are used, responses older than the time to live are dropped, and the new file replaces the
+ * old one atomically.
+ * <p>
+ * The index is only a shortcut, it can always be rebuilt from the data file. After a crash, the records that were
+ * appended after the last index update are read again, a record that was written only partly is cut off, and a
+ * record that doesn't match its checksum is never returned. Changes are in the file system as soon as a method
+ * returns, {@link #flush()} also writes them to the disk (against power loss).
+ * <p>
+ * All changes are written one after another by a single background thread of the store, so a compaction never runs
+ * on the thread that stored a response. {@link #putAsync(CachedResponse)} and {@link #removeAsync(String)} return at
+ * once, the other methods wait until their change (and every change before it) is written. {@link #close()} waits
+ * for the pending changes.
+ * <p>
+ * The store can be used by many threads at the same time, but only by one process.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public final class DiskCache implements AutoCloseable {
+
+	private static final int DATA_MAGIC = 0x57554443;
+	private static final int INDEX_MAGIC = 0x57554449;
+	private static final int RECORD_MAGIC = 0x52454344;
+	private static final int VERSION = 1;
+
+	/**
+	 * The data file starts with magic, version and generation. A compacted file gets a new generation, so an index
+	 * of the old file is not used for it.
+	 */
+	private static final int DATA_HEADER = 16;
+	/**
+	 * Every record starts with magic, the length of the payload and the CRC32C of the payload.
+	 */
+	private static final int RECORD_HEADER = 12;
+	/**
+	 * The index starts with magic, version, generation, the end of the indexed data and the capacity.
+	 */
+	private static final int INDEX_HEADER = 32;
+	/**
+	 * A slot of the index: the hash of the URI, the position of the record (0 if empty) and its length.
+	 */
+	private static final int SLOT = 24;
+	private static final long DELETED = -1L;
+	private static final int MIN_CAPACITY = 1024;
+
+	private static final byte PUT = 1;
+	private static final byte REMOVE = 0;
+
+	private final Path dataFile;
+	private final Path indexFile;
+	private final long maxBytes;
+	/**
+	 * How long a response may stay in the store at most, null means until it is compacted away.
+	 */
+	private final Duration timeToLive;
+	private final ReentrantReadWriteLock lock;
+	/**
+	 * Writes all changes in the order they were made.
+	 */
+	private final ExecutorService writer;
+
+	private FileChannel data;
+	private long generation;
+	private long dataEnd;
+	private MappedByteBuffer index;
+	private int capacity;
+	private int count;
+	private int deleted;
+	private long liveBytes;
+	private boolean closed;
+
+	private final LongAdder hits;
+	private final LongAdder misses;
+	private final LongAdder evictions;
+	private final LongAdder compactions;
+
+	private DiskCache(Path directory, long maxBytes, Duration timeToLive) {
+		this.dataFile = directory.resolve("responses.dat");
+		this.indexFile = directory.resolve("responses.idx");
+		this.maxBytes = maxBytes;
+		this.timeToLive = timeToLive;
+		this.lock = new ReentrantReadWriteLock();
+		this.writer = Executors.newSingleThreadExecutor(Thread.ofPlatform().daemon().name("web-utils-disk-cache")
+				.factory());
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.evictions = new LongAdder();
+		this.compactions = new LongAdder();
+	}
+
+	/**
+	 * Opens the store in the directory or creates it.
+	 *
+	 * @param directory the directory of the files, it is created if needed.
+	 * @param maxBytes how big the data file may get, at least 64 KiB. A single response may use a quarter of it.
+	 * @return the opened store.
+	 * @throws IOException if the files could not be read or created.
+	 */
+	public static DiskCache open(Path directory, long maxBytes) throws IOException {
+		return open(directory, maxBytes, null);
+	}
+
+	/**
+	 * Opens the store in the directory or creates it.
+	 *
+	 * @param directory the directory of the files, it is created if needed.
+	 * @param maxBytes how big the data file may get, at least 64 KiB. A single response may use a quarter of it.
+	 * @param timeToLive how long a response may stay in the store at most or null for no limit.
+	 * @return the opened store.
+	 * @throws IOException if the files could not be read or created.
+	 */
+	public static DiskCache open(Path directory, long maxBytes, @Nullable Duration timeToLive) throws IOException {
+		if (maxBytes < 65536) throw new IllegalArgumentException("The disk cache needs at least 64 KiB.");
+
+		Files.createDirectories(directory);
+		DiskCache cache = new DiskCache(directory, maxBytes, timeToLive);
+		try {
+			cache.load();
+		} catch (IOException | RuntimeException e) {
+			cache.writer.shutdown();
+			throw e;
+		}
+		return cache;
+	}
+
+	/**
+	 * Returns the stored response for the URI.
+	 *
+	 * @param uri the URI of the request.
+	 * @return the response or null if there is none, it is older than the time to live or its record is damaged (then
+	 * it is removed in the background).
+	 * @throws UncheckedIOException if the data file could not be read.
+	 */
+	public CachedResponse get(String uri) {
+		long hash = hash(uri);
+		long position;
+		ByteBuffer record;
+
+		lock.readLock().lock();
+		try {
+			checkOpen();
+			int slot = find(hash);
+			if (slot < 0) {
+				misses.increment();
+				return null;
+			}
+
+			position = slotPosition(slot);
+			record = read(data, position, slotLength(slot));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		ByteBuffer payload = verify(record);
+		CachedResponse response = payload == null ? null : decode(payload);
+
+		if (response == null || !response.uri().equals(uri) || isExpired(response.storedAt())) {
+			// A damaged or expired record is forgotten, another URI with the same hash is only a miss.
+			if (response == null || response.uri().equals(uri)) submit(() -> remove(uri, position));
+			misses.increment();
+			return null;
+		}
+
+		hits.increment();
+		return response;
+	}
+
+	/**
+	 * Appends the response, it replaces the stored response for its URI. If the data file would get too big it is
+	 * compacted first, a response that is bigger than a quarter of the limit is not stored.
+	 *
+	 * @param response the response.
+	 * @throws UncheckedIOException if the response could not be written.
+	 */
+	public void put(CachedResponse response) {
+		await(putAsync(response));
+	}
+
+	/**
+	 * Appends the response in the background (see {@link #put(CachedResponse)}).
+	 *
+	 * @param response the response.
+	 * @return completes when the response is written, or with an {@link UncheckedIOException} if it could not be
+	 * written.
+	 */
+	public CompletableFuture<Void> putAsync(CachedResponse response) {
+		return submit(() -> store(response));
+	}
+
+	private void store(CachedResponse response) {
+		byte[] record = encode(response);
+		if (record.length > maxBytes / 4) return;
+
+		lock.writeLock().lock();
+		try {
+			checkOpen();
+			long position = append(record);
+			putSlot(hash(response.uri()), position, record.length);
+			setDataEnd(position + record.length);
+		} catch (IOException e) {
+			throw failed(e);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes the stored response for the URI.
+	 *
+	 * @param uri the URI of the request.
+	 * @throws UncheckedIOException if the tombstone could not be written.
+	 */
+	public void remove(String uri) {
+		await(removeAsync(uri));
+	}
+
+	/**
+	 * Removes the stored response for the URI in the background (see {@link #remove(String)}).
+	 *
+	 * @param uri the URI of the request.
+	 * @return completes when the tombstone is written, or with an {@link UncheckedIOException} if it could not be
+	 * written.
+	 */
+	public CompletableFuture<Void> removeAsync(String uri) {
+		return submit(() -> remove(uri, -1L));
+	}
+
+	/**
+	 * Removes the response for the URI, only if its record is at the position (or at any position if it is -1).
+	 */
+	private void remove(String uri, long expectedPosition) {
+		long hash = hash(uri);
+
+		lock.writeLock().lock();
+		try {
+			checkOpen();
+			int slot = find(hash);
+			if (slot < 0 || (expectedPosition >= 0 && slotPosition(slot) != expectedPosition)) return;
+
+			byte[] record = tombstone(uri);
+			long position = append(record);
+			removeSlot(hash);
+			setDataEnd(position + record.length);
+		} catch (IOException e) {
+			throw failed(e);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes all stored responses.
+	 *
+	 * @throws UncheckedIOException if the files could not be written.
+	 */
+	public void clear() {
+		await(submit(this::truncate));
+	}
+
+	private void truncate() {
+		lock.writeLock().lock();
+		try {
+			checkOpen();
+			data.truncate(0L);
+			createData(data, generation = newGeneration());
+			installIndex(createIndex(MIN_CAPACITY, generation, DATA_HEADER, List.of()));
+		} catch (IOException e) {
+			throw failed(e);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Rewrites the data file without replaced, removed and expired responses.
+	 *
+	 * @throws UncheckedIOException if the files could not be written.
+	 */
+	public void compact() {
+		await(submit(this::compactAll));
+	}
+
+	private void compactAll() {
+		lock.writeLock().lock();
+		try {
+			checkOpen();
+			compact(Long.MAX_VALUE);
+		} catch (IOException e) {
+			throw failed(e);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Writes all changes to the disk.
+	 *
+	 * @throws UncheckedIOException if the files could not be written.
+	 */
+	public void flush() {
+		await(submit(this::force));
+	}
+
+	private void force() {
+		lock.readLock().lock();
+		try {
+			checkOpen();
+			data.force(false);
+			index.force();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Waits for the pending changes, writes all changes to the disk and closes the files. The store can't be used
+	 * afterwards.
+	 *
+	 * @throws IOException if the files could not be written.
+	 */
+	@Override
+	public void close() throws IOException {
+		writer.shutdown();
+		boolean interrupted = false;
+		while (true) {
+			try {
+				if (writer.awaitTermination(1, TimeUnit.MINUTES)) break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+
+		lock.writeLock().lock();
+		try {
+			if (closed) return;
+			closed = true;
+
+			index.force();
+			index = null;
+			data.force(false);
+			data.close();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns how many responses are stored.
+	 * @return the count of stored responses.
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return count;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the size of the data file, including replaced and removed responses.
+	 * @return the count of bytes.
+	 */
+	public long getBytes() {
+		lock.readLock().lock();
+		try {
+			return dataEnd;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns how many bytes of the data file belong to the stored responses.
+	 * @return the count of bytes.
+	 */
+	public long getLiveBytes() {
+		lock.readLock().lock();
+		try {
+			return liveBytes;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public Duration getTimeToLive() {
+		return timeToLive;
+	}
+
+	/**
+	 * Returns how many lookups found a response.
+	 * @return the count of hits.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns how many lookups found no response.
+	 * @return the count of misses.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns how many responses were dropped by a compaction because of the limit or the time to live.
+	 * @return the count of evictions.
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Returns how often the data file was compacted.
+	 * @return the count of compactions.
+	 */
+	public long getCompactions() {
+		return compactions.sum();
+	}
+
+	/**
+	 * Runs the change on the writer.
+	 */
+	private CompletableFuture<Void> submit(Runnable change) {
+		try {
+			return CompletableFuture.runAsync(change, writer);
+		} catch (RejectedExecutionException e) {
+			return CompletableFuture.failedFuture(new IllegalStateException("The disk cache is closed."));
+		}
+	}
+
+	/**
+	 * Waits for the change and throws its exception.
+	 */
+	private static void await(CompletableFuture<Void> change) {
+		try {
+			change.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause) throw cause;
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the files again after a change failed, so the memory matches the files whether the change reached them or
+	 * not. If that fails too, the store is closed.
+	 *
+	 * @return the exception to throw.
+	 */
+	private UncheckedIOException failed(IOException e) {
+		try {
+			data.close();
+			index = null;
+			load();
+		} catch (IOException | RuntimeException reload) {
+			e.addSuppressed(reload);
+			closed = true;
+			try {
+				data.close();
+			} catch (IOException ignored) {
+				// The exception of the change is thrown.
+			}
+		}
+
+		return new UncheckedIOException(e);
+	}
+
+	private void checkOpen() {
+		if (closed) throw new IllegalStateException("The disk cache is closed.");
+	}
+
+	private boolean isExpired(long storedAt) {
+		return timeToLive != null && System.currentTimeMillis() - storedAt > timeToLive.toMillis();
+	}
+
+	// Opening and recovery
+
+	private void load() throws IOException {
+		data = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		long size = data.size();
+		ByteBuffer header = size >= DATA_HEADER ? read(data, 0L, DATA_HEADER) : null;
+
+		if (header == null || header.getInt(0) != DATA_MAGIC || header.getInt(4) != VERSION) {
+			data.truncate(0L);
+			createData(data, generation = newGeneration());
+			installIndex(createIndex(MIN_CAPACITY, generation, DATA_HEADER, List.of()));
+			return;
+		}
+
+		generation = header.getLong(8);
+		if (!loadIndex(size)) installIndex(createIndex(MIN_CAPACITY, generation, DATA_HEADER, List.of()));
+
+		// The records after the end of the index were appended before a crash (or the index was rebuilt).
+		scan(dataEnd, size);
+	}
+
+	/**
+	 * Maps the index if it belongs to the data file.
+	 */
+	private boolean loadIndex(long dataSize) throws IOException {
+		if (!Files.isRegularFile(indexFile) || Files.size(indexFile) < INDEX_HEADER) return false;
+
+		MappedByteBuffer mapped = mapIndex();
+
+		int slots = mapped.getInt(24);
+		if (mapped.getInt(0) != INDEX_MAGIC || mapped.getInt(4) != VERSION || mapped.getLong(8) != generation
+				|| mapped.getLong(16) < DATA_HEADER || mapped.getLong(16) > dataSize
+				|| slots < MIN_CAPACITY || Integer.bitCount(slots) != 1
+				|| mapped.capacity() != INDEX_HEADER + (long) slots * SLOT) {
+			return false;
+		}
+
+		useIndex(mapped);
+		return true;
+	}
+
+	private MappedByteBuffer mapIndex() throws IOException {
+		try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0L, channel.size());
+		}
+	}
+
+	/**
+	 * Uses the mapped index and counts its slots.
+	 */
+	private void useIndex(MappedByteBuffer mapped) {
+		index = mapped;
+		capacity = mapped.getInt(24);
+		dataEnd = mapped.getLong(16);
+		count = 0;
+		deleted = 0;
+		liveBytes = 0L;
+
+		for (int slot = 0; slot < capacity; slot++) {
+			long position = slotPosition(slot);
+			if (position == DELETED) {
+				deleted++;
+			} else if (position != 0L) {
+				count++;
+				liveBytes += slotLength(slot);
+			}
+		}
+	}
+
+	/**
+	 * Adds the records from the position to the index and cuts off the data file at the first record that is
+	 * incomplete or has no valid header.
+	 */
+	private void scan(long from, long size) throws IOException {
+		long position = from;
+
+		while (position + RECORD_HEADER <= size) {
+			ByteBuffer header = read(data, position, RECORD_HEADER);
+			int length = header.getInt(4);
+			if (header.getInt(0) != RECORD_MAGIC || length < 1 || position + RECORD_HEADER + length > size) break;
+
+			// A complete record that doesn't match its checksum is skipped, the records after it are still valid.
+			ByteBuffer payload = verify(read(data, position, RECORD_HEADER + length));
+			if (payload != null) {
+				byte type = payload.get();
+				String uri = readString(payload);
+				if (type == PUT) {
+					payload.getInt();
+					if (isExpired(payload.getLong())) removeSlot(hash(uri));
+					else putSlot(hash(uri), position, RECORD_HEADER + length);
+				} else {
+					removeSlot(hash(uri));
+				}
+			}
+
+			position += RECORD_HEADER + length;
+			setDataEnd(position);
+		}
+
+		if (position < size) data.truncate(position);
+		setDataEnd(position);
+	}
+
+	// Data file
+
+	private static void createData(FileChannel channel, long generation) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(DATA_HEADER).putInt(DATA_MAGIC).putInt(VERSION).putLong(generation)
+				.flip();
+		write(channel, 0L, header);
+	}
+
+	/**
+	 * Appends the record to the data file and compacts it before if it would get too big.
+	 *
+	 * @return the position of the record.
+	 */
+	private long append(byte[] record) throws IOException {
+		if (dataEnd + record.length > maxBytes) compact(maxBytes / 4 * 3 - DATA_HEADER);
+
+		long position = dataEnd;
+		write(data, position, ByteBuffer.wrap(record));
+		return position;
+	}
+
+	/**
+	 * Copies the newest responses until the budget is used into a new data file, which then replaces the old one.
+	 */
+	private void compact(long budget) throws IOException {
+		List<long[]> live = new ArrayList<>(count);
+		for (int slot = 0; slot < capacity; slot++) {
+			long position = slotPosition(slot);
+			if (position != 0L && position != DELETED) live.add(new long[]{slotHash(slot), position, slotLength(slot)});
+		}
+		live.sort(Comparator.comparingLong((long[] entry) -> entry[1]).reversed());
+
+		List<long[]> kept = new ArrayList<>(live.size());
+		long used = 0L;
+		for (long[] entry : live) {
+			if (used + entry[2] > budget) break;
+
+			ByteBuffer payload = verify(read(data, entry[1], (int) entry[2]));
+			if (payload == null) continue;
+			payload.get();
+			readString(payload);
+			payload.getInt();
+			if (isExpired(payload.getLong())) continue;
+
+			kept.add(entry);
+			used += entry[2];
+		}
+
+		long newGeneration = newGeneration();
+		Path temporary = dataFile.resolveSibling(dataFile.getFileName() + ".compact");
+		Path newIndex = null;
+
+		try {
+			List<long[]> slots = new ArrayList<>(kept.size());
+			long position = DATA_HEADER;
+
+			try (FileChannel compacted = FileChannel.open(temporary, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				createData(compacted, newGeneration);
+
+				for (int i = kept.size() - 1; i >= 0; i--) {
+					long[] entry = kept.get(i);
+					write(compacted, position, read(data, entry[1], (int) entry[2]));
+					slots.add(new long[]{entry[0], position, entry[2]});
+					position += entry[2];
+				}
+
+				compacted.force(true);
+			}
+			newIndex = createIndex(capacityFor(slots.size()), newGeneration, position, slots);
+
+			// The old files are closed and unmapped before they are replaced. If the process stops between the moves,
+			// the generations differ and the index is rebuilt. If a step fails, the caller reads the files again.
+			data.close();
+			index = null;
+			move(temporary, dataFile);
+			data = FileChannel.open(dataFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			generation = newGeneration;
+			installIndex(newIndex);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(temporary);
+			if (newIndex != null) Files.deleteIfExists(newIndex);
+			throw e;
+		}
+
+		evictions.add(live.size() - kept.size());
+		compactions.increment();
+	}
+
+	// Index
+
+	/**
+	 * Writes a new index with the slots (hash, position, length) next to the index file.
+	 *
+	 * @return the path of the new index, see {@link #installIndex(Path)}.
+	 */
+	private Path createIndex(int slots, long generation, long end, List<long[]> entries) throws IOException {
+		Path temporary = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+		ByteBuffer buffer = ByteBuffer.allocate(INDEX_HEADER + slots * SLOT);
+		buffer.putInt(0, INDEX_MAGIC).putInt(4, VERSION).putLong(8, generation).putLong(16, end).putInt(24, slots);
+
+		// The hashes of the entries are distinct, so every entry gets the first free slot.
+		for (long[] entry : entries) {
+			int slot = home(entry[0], slots);
+			while (buffer.getLong(slotOffset(slot) + 8) != 0L) slot = (slot + 1) & (slots - 1);
+			buffer.putLong(slotOffset(slot), entry[0]).putLong(slotOffset(slot) + 8, entry[1])
+					.putInt(slotOffset(slot) + 16, (int) entry[2]);
+		}
+
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			write(channel, 0L, buffer);
+			channel.force(true);
+		}
+
+		return temporary;
+	}
+
+	/**
+	 * Replaces the index file with the new index and maps it. The old index is dropped before, so its file is not
+	 * replaced while it is in use (the mapping itself ends when it is collected).
+	 */
+	private void installIndex(Path temporary) throws IOException {
+		index = null;
+		move(temporary, indexFile);
+		useIndex(mapIndex());
+	}
+
+	private void setDataEnd(long end) {
+		dataEnd = end;
+		index.putLong(16, end);
+	}
+
+	private int find(long hash) {
+		int mask = capacity - 1;
+
+		for (int slot = home(hash, capacity), probes = 0; probes < capacity; slot = (slot + 1) & mask, probes++) {
+			long position = slotPosition(slot);
+			if (position == 0L) return -1;
+			if (position != DELETED && slotHash(slot) == hash) return slot;
+		}
+
+		return -1;
+	}
+
+	private void putSlot(long hash, long position, int length) throws IOException {
+		if ((long) (count + deleted + 1) * 10 > (long) capacity * 7) resize();
+
+		int mask = capacity - 1;
+		int free = -1;
+
+		for (int slot = home(hash, capacity); ; slot = (slot + 1) & mask) {
+			long current = slotPosition(slot);
+
+			if (current == 0L) {
+				if (free < 0) {
+					free = slot;
+				} else {
+					deleted--;
+				}
+				count++;
+				writeSlot(free, hash, position, length);
+				liveBytes += length;
+				return;
+			}
+			if (current == DELETED) {
+				if (free < 0) free = slot;
+			} else if (slotHash(slot) == hash) {
+				liveBytes += length - slotLength(slot);
+				writeSlot(slot, hash, position, length);
+				return;
+			}
+		}
+	}
+
+	private void removeSlot(long hash) {
+		int slot = find(hash);
+		if (slot < 0) return;
+
+		liveBytes -= slotLength(slot);
+		index.putLong(slotOffset(slot) + 8, DELETED);
+		count--;
+		deleted++;
+	}
+
+	private void resize() throws IOException {
+		List<long[]> entries = new ArrayList<>(count);
+		for (int slot = 0; slot < capacity; slot++) {
+			long position = slotPosition(slot);
+			if (position != 0L && position != DELETED) entries.add(new long[]{slotHash(slot), position, slotLength(slot)});
+		}
+
+		installIndex(createIndex(capacityFor(entries.size() + 1), generation, dataEnd, entries));
+	}
+
+	private void writeSlot(int slot, long hash, long position, int length) {
+		int offset = slotOffset(slot);
+		index.putLong(offset, hash).putInt(offset + 16, length);
+		// The position is written last, it marks the slot as used.
+		index.putLong(offset + 8, position);
+	}
+
+	private static int home(long hash, int capacity) {
+		return (int) (hash ^ (hash >>> 29)) & (capacity - 1);
+	}
+
+	private static int slotOffset(int slot) {
+		return INDEX_HEADER + slot * SLOT;
+	}
+
+	private long slotHash(int slot) {
+		return index.getLong(slotOffset(slot));
+	}
+
+	private long slotPosition(int slot) {
+		return index.getLong(slotOffset(slot) + 8);
+	}
+
+	private int slotLength(int slot) {
+		return index.getInt(slotOffset(slot) + 16);
+	}
+
+	private static int capacityFor(int entries) {
+		return Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, entries * 3) - 1) << 1);
+	}
+
+	/**
+	 * Returns the 64 bit FNV-1a hash of the URI.
+	 */
+	static long hash(String uri) {
+		long hash = 0xcbf29ce484222325L;
+
+		for (int i = 0; i < uri.length(); i++) {
+			hash ^= uri.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+
+		return hash;
+	}
+
+	// Records
+
+	private static byte[] encode(CachedResponse response) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(response.body().length + 512);
+
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.write(new byte[RECORD_HEADER]);
+			out.writeByte(PUT);
+			writeString(out, response.uri());
+			out.writeInt(response.statusCode());
+			out.writeLong(response.storedAt());
+			out.writeLong(response.expiresAt());
+
+			Map<String, List<String>> headers = response.headers().map();
+			out.writeInt(headers.size());
+			for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+				writeString(out, header.getKey());
+				out.writeInt(header.getValue().size());
+				for (String value : header.getValue()) writeString(out, value);
+			}
+
+			out.writeInt(response.vary().size());
+			for (Map.Entry<String, String> entry : response.vary().entrySet()) {
+				writeString(out, entry.getKey());
+				out.writeBoolean(entry.getValue() != null);
+				if (entry.getValue() != null) writeString(out, entry.getValue());
+			}
+
+			out.writeInt(response.body().length);
+			out.write(response.body());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return seal(bytes.toByteArray());
+	}
+
+	private static byte[] tombstone(String uri) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(uri.length() + 32);
+
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.write(new byte[RECORD_HEADER]);
+			out.writeByte(REMOVE);
+			writeString(out, uri);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return seal(bytes.toByteArray());
+	}
+
+	/**
+	 * Fills in the header of the record.
+	 */
+	private static byte[] seal(byte[] record) {
+		CRC32C crc = new CRC32C();
+		crc.update(record, RECORD_HEADER, record.length - RECORD_HEADER);
+
+		ByteBuffer.wrap(record).putInt(RECORD_MAGIC).putInt(record.length - RECORD_HEADER).putInt((int) crc.getValue());
+		return record;
+	}
+
+	/**
+	 * Checks the header and the checksum of the record.
+	 *
+	 * @return the payload or null if the record is damaged.
+	 */
+	private static ByteBuffer verify(ByteBuffer record) {
+		if (record.remaining() < RECORD_HEADER || record.getInt(0) != RECORD_MAGIC
+				|| record.getInt(4) != record.remaining() - RECORD_HEADER) {
+			return null;
+		}
+
+		ByteBuffer payload = record.slice(RECORD_HEADER, record.remaining() - RECORD_HEADER);
+		CRC32C crc = new CRC32C();
+		crc.update(payload.duplicate());
+
+		return (int) crc.getValue() == record.getInt(8) ? payload : null;
+	}
+
+	/**
+	 * Reads the payload of a verified record.
+	 *
+	 * @return the response or null if the record is a tombstone or can't be read.
+	 */
+	private static CachedResponse decode(ByteBuffer payload) {
+		try {
+			if (payload.get() != PUT) return null;
+
+			String uri = readString(payload);
+			int statusCode = payload.getInt();
+			long storedAt = payload.getLong();
+			long expiresAt = payload.getLong();
+
+			Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+			for (int i = payload.getInt(); i > 0; i--) {
+				String name = readString(payload);
+				List<String> values = new ArrayList<>();
+				for (int j = payload.getInt(); j > 0; j--) values.add(readString(payload));
+				headers.put(name, values);
+			}
+
+			Map<String, String> vary = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+			for (int i = payload.getInt(); i > 0; i--) {
+				String name = readString(payload);
+				vary.put(name, payload.get() != 0 ? readString(payload) : null);
+			}
+
+			byte[] body = new byte[payload.getInt()];
+			payload.get(body);
+
+			return new CachedResponse(uri, statusCode, HttpHeaders.of(headers, (name, value) -> true), body, vary,
+					storedAt, expiresAt);
+		} catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+			return null;
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining()) throw new BufferUnderflowException();
+
+		String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+				StandardCharsets.UTF_8);
+		buffer.position(buffer.position() + length);
+		return value;
+	}
+
+	// Files
+
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException();
+		}
+
+		return buffer.flip();
+	}
+
+	private static void write(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+		long offset = position - buffer.position();
+		while (buffer.hasRemaining()) channel.write(buffer, offset + buffer.position());
+	}
+
+	private static void move(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static long newGeneration() {
+		long generation;
+		do {
+			generation = ThreadLocalRandom.current().nextLong();
+		} while (generation == 0L);
+		return generation;
+	}
+
+}
@@ -0,0 +1,492 @@
+package de.quantumrange.webUtils.cache;
+
+import de.quantumrange.webUtils.connections.impl.GetWebConnection;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A HTTP response cache in memory for {@link GetWebConnection}s (see {@link GetWebConnection#cache(ResponseCache)}).
+ * <p>
+ * Responses with the status 200 are stored if <code>Cache-Control</code> or <code>Expires</code> allows it, or if
+ * they have an <code>ETag</code> or <code>Last-Modified</code> header.
+ * Because the cache can be shared, it follows the rules of a shared cache (RFC 9111): responses with
+ * <code>Cache-Control: private</code> are not stored, and responses to requests with <code>Authorization</code> only
+ * if they are marked with <code>public</code>, <code>s-maxage</code> or <code>must-revalidate</code>.
+ * As long as a response is fresh it is returned without asking the server, afterwards the server is asked with
+ * <code>If-None-Match</code>/<code>If-Modified-Since</code> and the stored response is returned if the server
+ * answers with 304 (Not Modified).
+ * <p>
+ * The cache is bounded by a count of entries and a count of bytes, if one is reached the least recently used
+ * entries are removed. Entries that are older than the optional time to live are also removed.
+ * The cache can be used by many threads and connections at the same time.
+ * <p>
+ * With a {@link DiskCache} as second tier every stored response is also written to the disk, and a response that is
+ * not in memory (for example after a restart) is read from the disk. The disk is written in the background (see
+ * {@link DiskCache#putAsync(CachedResponse)}), so storing a response never waits for the disk. If the disk fails, the
+ * responses are only kept in memory (see {@link #getDiskErrors()}).
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public class ResponseCache {
+
+	private final int maxEntries;
+	private final long maxBytes;
+	/**
+	 * How long an entry may stay in the cache at most, null means until it is evicted.
+	 */
+	private final Duration timeToLive;
+	/**
+	 * The second tier on the disk, null if the responses are only kept in memory.
+	 */
+	private final DiskCache disk;
+	/**
+	 * The entries in access order, the first entry is the least recently used one.
+	 */
+	private final LinkedHashMap<String, CachedResponse> entries;
+	private long bytes;
+
+	private final LongAdder hits;
+	private final LongAdder misses;
+	private final LongAdder revalidations;
+	private final LongAdder evictions;
+	private final LongAdder diskErrors;
+
+	/**
+	 * @param maxEntries how many responses may be stored.
+	 * @param maxBytes how many bytes of bodies may be stored.
+	 */
+	public ResponseCache(int maxEntries, long maxBytes) {
+		this(maxEntries, maxBytes, null);
+	}
+
+	/**
+	 * @param maxEntries how many responses may be stored.
+	 * @param maxBytes how many bytes of bodies may be stored.
+	 * @param timeToLive how long a response may stay in the cache at most or null for no limit.
+	 */
+	public ResponseCache(int maxEntries, long maxBytes, Duration timeToLive) {
+		this(maxEntries, maxBytes, timeToLive, null);
+	}
+
+	/**
+	 * @param maxEntries how many responses may be stored in memory.
+	 * @param maxBytes how many bytes of bodies may be stored in memory.
+	 * @param timeToLive how long a response may stay in the cache at most or null for no limit.
+	 * @param disk the second tier that keeps the responses on the disk or null.
+	 */
+	public ResponseCache(int maxEntries, long maxBytes, Duration timeToLive, DiskCache disk) {
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+		this.timeToLive = timeToLive;
+		this.disk = disk;
+		this.entries = new LinkedHashMap<>(16, .75f, true);
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.revalidations = new LongAdder();
+		this.evictions = new LongAdder();
+		this.diskErrors = new LongAdder();
+	}
+
+	/**
+	 * Answers the request from the cache if possible, otherwise it is sent with the sender and the response is
+	 * stored if allowed.
+	 *
+	 * @param builder the request.
+	 * @param handler the handler that reads the body.
+	 * @param sender sends the request to the server.
+	 * @param <B> the type of the body.
+	 * @return the response from the cache or the server.
+	 * @throws IOException if the request could not be sent or received.
+	 * @throws InterruptedException if the thread was interrupted while waiting.
+	 */
+	public <B> HttpResponse<B> send(HttpRequest.Builder builder, HttpResponse.BodyHandler<B> handler, Sender sender)
+			throws IOException, InterruptedException {
+		HttpRequest request = builder.build();
+		CachedResponse cached = get(request);
+
+		if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+			hits.increment();
+			return CachedHttpResponse.replay(cached, request, handler);
+		}
+
+		if (cached != null) addValidators(builder, cached);
+
+		return complete(request, cached, sender.send(builder, capture(request, cached, handler)), handler);
+	}
+
+	/**
+	 * Answers the request from the cache if possible (more on
+	 * {@link #send(HttpRequest.Builder, HttpResponse.BodyHandler, Sender)}) without blocking a thread.
+	 *
+	 * @param builder the request.
+	 * @param handler the handler that reads the body.
+	 * @param sender sends the request to the server.
+	 * @param <B> the type of the body.
+	 * @return the future with the response from the cache or the server.
+	 */
+	public <B> CompletableFuture<HttpResponse<B>> sendAsync(HttpRequest.Builder builder,
+															HttpResponse.BodyHandler<B> handler, AsyncSender sender) {
+		HttpRequest request = builder.build();
+		CachedResponse cached = get(request);
+
+		if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+			hits.increment();
+			return CompletableFuture.completedFuture(CachedHttpResponse.replay(cached, request, handler));
+		}
+
+		if (cached != null) addValidators(builder, cached);
+
+		return sender.send(builder, capture(request, cached, handler))
+				.thenApply(response -> complete(request, cached, response, handler));
+	}
+
+	private static void addValidators(HttpRequest.Builder builder, CachedResponse cached) {
+		if (cached.etag() != null) builder.setHeader("If-None-Match", cached.etag());
+		if (cached.lastModified() != null) builder.setHeader("If-Modified-Since", cached.lastModified());
+	}
+
+	private <B> HttpResponse.BodyHandler<B> capture(HttpRequest request, CachedResponse cached,
+													HttpResponse.BodyHandler<B> handler) {
+		return info -> {
+			// The body of a 304 is empty, the body of the cached response is read instead.
+			if (cached != null && info.statusCode() == 304) return HttpResponse.BodySubscribers.replacing(null);
+
+			HttpResponse.BodySubscriber<B> subscriber = handler.apply(info);
+			if (!isCacheable(request, info.statusCode(), info.headers())) return subscriber;
+
+			long now = System.currentTimeMillis();
+			return new CapturingSubscriber<>(subscriber, maxBytes,
+					body -> put(create(request, info.statusCode(), info.headers(), body, now)));
+		};
+	}
+
+	private <B> HttpResponse<B> complete(HttpRequest request, CachedResponse cached, HttpResponse<B> response,
+										 HttpResponse.BodyHandler<B> handler) {
+		if (cached == null || response.statusCode() != 304) {
+			misses.increment();
+			return response;
+		}
+
+		hits.increment();
+		revalidations.increment();
+
+		CachedResponse updated = create(request, cached.statusCode(), merge(cached.headers(), response.headers()),
+				cached.body(), System.currentTimeMillis());
+		if (isCacheable(request, updated.statusCode(), updated.headers())) {
+			put(updated);
+		} else {
+			remove(updated.uri());
+		}
+
+		return CachedHttpResponse.replay(updated, request, handler);
+	}
+
+	/**
+	 * Returns the stored response for the request, fresh or not. A response that is only on the disk is loaded into
+	 * memory.
+	 *
+	 * @param request the request.
+	 * @return the stored response or null if there is none.
+	 */
+	public CachedResponse get(HttpRequest request) {
+		String key = request.uri().toString();
+		CachedResponse cached;
+
+		synchronized (entries) {
+			cached = entries.get(key);
+		}
+
+		if (cached == null && disk != null) {
+			try {
+				cached = disk.get(key);
+			} catch (UncheckedIOException e) {
+				diskErrors.increment();
+			}
+			if (cached != null) putInMemory(cached);
+		}
+		if (cached == null) return null;
+
+		if (timeToLive != null && System.currentTimeMillis() - cached.storedAt() > timeToLive.toMillis()) {
+			remove(key);
+			evictions.increment();
+			return null;
+		}
+
+		return cached.matches(request) ? cached : null;
+	}
+
+	/**
+	 * Stores the response, if a limit is reached the least recently used responses are removed from memory.
+	 *
+	 * @param response the response.
+	 */
+	public void put(CachedResponse response) {
+		putInMemory(response);
+
+		if (disk != null) disk.putAsync(response).whenComplete(this::countDiskError);
+	}
+
+	private void putInMemory(CachedResponse response) {
+		if (response.size() > maxBytes) return;
+
+		synchronized (entries) {
+			CachedResponse old = entries.put(response.uri(), response);
+			if (old != null) bytes -= old.size();
+			bytes += response.size();
+
+			Iterator<CachedResponse> iterator = entries.values().iterator();
+			while ((entries.size() > maxEntries || bytes > maxBytes) && iterator.hasNext()) {
+				bytes -= iterator.next().size();
+				iterator.remove();
+				evictions.increment();
+			}
+		}
+	}
+
+	/**
+	 * Removes the stored response for the URI.
+	 *
+	 * @param uri the URI of the request.
+	 */
+	public void remove(String uri) {
+		synchronized (entries) {
+			CachedResponse old = entries.remove(uri);
+			if (old != null) bytes -= old.size();
+		}
+
+		if (disk != null) disk.removeAsync(uri).whenComplete(this::countDiskError);
+	}
+
+	private void countDiskError(Void ignored, Throwable error) {
+		if (error != null) diskErrors.increment();
+	}
+
+	/**
+	 * Removes all stored responses, also the ones on the disk.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+			bytes = 0;
+		}
+
+		if (disk != null) disk.clear();
+	}
+
+	/**
+	 * Returns the second tier on the disk.
+	 * @return the disk cache or null if the responses are only kept in memory.
+	 */
+	public DiskCache getDisk() {
+		return disk;
+	}
+
+	/**
+	 * Returns how many responses are stored in memory.
+	 * @return the count of stored responses.
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Returns how many bytes of bodies are stored in memory.
+	 * @return the count of stored bytes.
+	 */
+	public long getBytes() {
+		synchronized (entries) {
+			return bytes;
+		}
+	}
+
+	/**
+	 * Returns how many requests were answered from the cache (including {@link #getRevalidations()}).
+	 * @return the count of hits.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns how many requests had to be answered by the server.
+	 * @return the count of misses.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns how many requests were answered from the cache after the server answered with 304.
+	 * @return the count of revalidations.
+	 */
+	public long getRevalidations() {
+		return revalidations.sum();
+	}
+
+	/**
+	 * Returns how many responses were removed because of a limit or the time to live.
+	 * @return the count of evictions.
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Returns how often the {@link DiskCache} failed to read or write a response.
+	 * @return the count of failures.
+	 */
+	public long getDiskErrors() {
+		return diskErrors.sum();
+	}
+
+	private static boolean isCacheable(HttpRequest request, int statusCode, HttpHeaders headers) {
+		if (statusCode != 200) return false;
+
+		if (hasDirective(headers, "no-store") || hasDirective(headers, "private")) return false;
+		if (headers.allValues("Vary").stream().anyMatch(value -> value.trim().equals("*"))) return false;
+
+		// A shared cache must not give the response of one user to another (RFC 9111 section 3.5).
+		if (request.headers().firstValue("Authorization").isPresent() && !hasDirective(headers, "public")
+				&& !hasDirective(headers, "s-maxage") && !hasDirective(headers, "must-revalidate")) {
+			return false;
+		}
+
+		return getFreshness(headers, System.currentTimeMillis()) > 0
+				|| headers.firstValue("ETag").isPresent()
+				|| headers.firstValue("Last-Modified").isPresent();
+	}
+
+	private static CachedResponse create(HttpRequest request, int statusCode, HttpHeaders headers, byte[] body,
+										 long now) {
+		Map<String, String> vary = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+		for (String value : headers.allValues("Vary")) {
+			for (String name : value.split(",")) {
+				name = name.trim();
+				if (!name.isEmpty()) vary.put(name, request.headers().firstValue(name).orElse(null));
+			}
+		}
+
+		return new CachedResponse(request.uri().toString(), statusCode, headers, body, vary, now,
+				now + getFreshness(headers, now));
+	}
+
+	/**
+	 * Returns how long the response is fresh in milliseconds, from <code>Cache-Control: max-age</code> or
+	 * <code>Expires</code>.
+	 */
+	private static long getFreshness(HttpHeaders headers, long now) {
+		if (hasDirective(headers, "no-cache")) return 0L;
+
+		long maxAge = getMaxAge(headers);
+		if (maxAge >= 0) return maxAge * 1000L;
+
+		Optional<String> expires = headers.firstValue("Expires");
+		if (expires.isEmpty()) return 0L;
+
+		try {
+			return Math.max(0L, ZonedDateTime.parse(expires.get().trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+					.toInstant().toEpochMilli() - now);
+		} catch (DateTimeParseException e) {
+			// Invalid dates like "0" mean already expired.
+			return 0L;
+		}
+	}
+
+	/**
+	 * Returns the <code>s-maxage</code> (which is meant for shared caches) or the <code>max-age</code> in seconds,
+	 * -1 if there is none.
+	 */
+	private static long getMaxAge(HttpHeaders headers) {
+		List<String> directives = getDirectives(headers);
+		long maxAge = getSeconds(directives, "s-maxage=");
+		return maxAge >= 0 ? maxAge : getSeconds(directives, "max-age=");
+	}
+
+	private static long getSeconds(List<String> directives, String prefix) {
+		for (String directive : directives) {
+			if (!directive.startsWith(prefix)) continue;
+
+			try {
+				return Long.parseLong(directive.substring(prefix.length()).replace("\"", ""));
+			} catch (NumberFormatException e) {
+				return 0L;
+			}
+		}
+
+		return -1L;
+	}
+
+	private static boolean hasDirective(HttpHeaders headers, String name) {
+		for (String directive : getDirectives(headers)) {
+			if (directive.equals(name) || directive.startsWith(name + "=")) return true;
+		}
+
+		return false;
+	}
+
+	private static List<String> getDirectives(HttpHeaders headers) {
+		return headers.allValues("Cache-Control").stream()
+				.flatMap(value -> List.of(value.split(",")).stream())
+				.map(directive -> directive.trim().toLowerCase(Locale.ROOT))
+				.toList();
+	}
+
+	/**
+	 * Merges the headers of a 304 response into the stored headers.
+	 */
+	private static HttpHeaders merge(HttpHeaders stored, HttpHeaders update) {
+		Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		headers.putAll(stored.map());
+
+		update.map().forEach((name, values) -> {
+			if (!name.equalsIgnoreCase("Content-Length") && !name.equalsIgnoreCase("Transfer-Encoding")) {
+				headers.put(name, values);
+			}
+		});
+
+		return HttpHeaders.of(headers, (name, value) -> true);
+	}
+
+	/**
+	 * Sends a request to the server.
+	 */
+	@FunctionalInterface
+	public interface Sender {
+
+		<B> HttpResponse<B> send(HttpRequest.Builder builder, HttpResponse.BodyHandler<B> handler)
+				throws IOException, InterruptedException;
+
+	}
+
+	/**
+	 * Sends a request to the server without blocking a thread.
+	 */
+	@FunctionalInterface
+	public interface AsyncSender {
+
+		<B> CompletableFuture<HttpResponse<B>> send(HttpRequest.Builder builder, HttpResponse.BodyHandler<B> handler);
+
+	}
+
+}
@@ -0,0 +1,230 @@
+package de.quantumrange.webUtils.cache;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.connections.impl.GetWebConnection;
+import de.quantumrange.webUtils.models.WebResult;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical requests that are in flight at the same time (see {@link GetWebConnection#singleFlight(boolean)}).
+ * The first request is sent to the server, all requests with the same URI and headers that arrive before its
+ * response wait for it and receive the same response instead of sending their own.
+ * <p>
+ * The shared body is read completely into memory and then read by the handler of every request, so every request
+ * can still use its own {@link HttpResponse.BodyHandler}.
+ * <p>
+ * Asynchronous requests are coalesced with {@link #executeAsync(Supplier, HttpResponse.BodyHandler, Execution)}
+ * before they wait for their turn in {@link Web#MANAGER}, so only the first one takes a place in the queue.
+ * Blocking requests are coalesced with {@link #send(HttpRequest.Builder, HttpResponse.BodyHandler,
+ * ResponseCache.Sender)} when it is their turn.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public class SingleFlight {
+
+	/**
+	 * Reads the body of the first request of an execution, with the headers that the other requests need to read it.
+	 */
+	private static final HttpResponse.BodyHandler<Received> RECEIVED = info -> HttpResponse.BodySubscribers.mapping(
+			HttpResponse.BodySubscribers.ofByteArray(), body -> new Received(info.headers(), body));
+
+	private final Map<Key, CompletableFuture<HttpResponse<byte[]>>> flights;
+	private final Map<Key, CompletableFuture<WebResult<Received>>> executions;
+	private final LongAdder coalesced;
+
+	public SingleFlight() {
+		this.flights = new ConcurrentHashMap<>();
+		this.executions = new ConcurrentHashMap<>();
+		this.coalesced = new LongAdder();
+	}
+
+	/**
+	 * Sends the request with the sender, or waits for the identical request that is already in flight.
+	 *
+	 * @param builder the request.
+	 * @param handler the handler that reads the body.
+	 * @param sender sends the request to the server.
+	 * @param <B> the type of the body.
+	 * @return the response of the server.
+	 * @throws IOException if the request could not be sent or received.
+	 * @throws InterruptedException if the thread was interrupted while waiting.
+	 */
+	public <B> HttpResponse<B> send(HttpRequest.Builder builder, HttpResponse.BodyHandler<B> handler,
+									ResponseCache.Sender sender) throws IOException, InterruptedException {
+		HttpRequest request = builder.build();
+		Key key = new Key(request.uri(), request.headers());
+		CompletableFuture<HttpResponse<byte[]>> flight = new CompletableFuture<>();
+		CompletableFuture<HttpResponse<byte[]>> existing = flights.putIfAbsent(key, flight);
+
+		if (existing != null) {
+			coalesced.increment();
+
+			try {
+				return replay(existing.get(), request, handler);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException cause) throw cause;
+				if (e.getCause() instanceof RuntimeException cause) throw cause;
+				throw new IOException(e.getCause());
+			}
+		}
+
+		HttpResponse<byte[]> response;
+		try {
+			response = sender.send(builder, HttpResponse.BodyHandlers.ofByteArray());
+		} catch (IOException | InterruptedException | RuntimeException e) {
+			flights.remove(key, flight);
+			flight.completeExceptionally(e);
+			throw e;
+		}
+
+		flights.remove(key, flight);
+		flight.complete(response);
+
+		return replay(response, request, handler);
+	}
+
+	/**
+	 * Sends the request with the sender, or waits for the identical request that is already in flight (more on
+	 * {@link #send(HttpRequest.Builder, HttpResponse.BodyHandler, ResponseCache.Sender)}) without blocking a thread.
+	 *
+	 * @param builder the request.
+	 * @param handler the handler that reads the body.
+	 * @param sender sends the request to the server.
+	 * @param <B> the type of the body.
+	 * @return the future with the response of the server.
+	 */
+	public <B> CompletableFuture<HttpResponse<B>> sendAsync(HttpRequest.Builder builder,
+															HttpResponse.BodyHandler<B> handler,
+															ResponseCache.AsyncSender sender) {
+		HttpRequest request = builder.build();
+		Key key = new Key(request.uri(), request.headers());
+		CompletableFuture<HttpResponse<byte[]>> flight = new CompletableFuture<>();
+		CompletableFuture<HttpResponse<byte[]>> existing = flights.putIfAbsent(key, flight);
+
+		if (existing != null) {
+			coalesced.increment();
+		} else {
+			existing = flight;
+			sender.send(builder, HttpResponse.BodyHandlers.ofByteArray()).whenComplete((response, throwable) -> {
+				flights.remove(key, flight);
+
+				if (throwable != null) flight.completeExceptionally(throwable);
+				else flight.complete(response);
+			});
+		}
+
+		return existing.thenApply(response -> replay(response, request, handler));
+	}
+
+	/**
+	 * Executes the request with the execution, or waits for the result of the identical request that is already
+	 * executed. Unlike {@link #sendAsync(HttpRequest.Builder, HttpResponse.BodyHandler, ResponseCache.AsyncSender)}
+	 * this is used before the request is queued, so the requests that wait for another one don't queue at all and
+	 * get its result (with the same timings).
+	 *
+	 * @param request creates the request.
+	 * @param handler the handler that reads the body.
+	 * @param execution queues and sends the request.
+	 * @param <B> the type of the body.
+	 * @return the future with the result.
+	 */
+	public <B> CompletableFuture<WebResult<B>> executeAsync(Supplier<HttpRequest.Builder> request,
+															HttpResponse.BodyHandler<B> handler,
+															Execution execution) {
+		HttpRequest built = request.get().build();
+		Key key = new Key(built.uri(), built.headers());
+		CompletableFuture<WebResult<Received>> flight = new CompletableFuture<>();
+		CompletableFuture<WebResult<Received>> existing = executions.putIfAbsent(key, flight);
+
+		if (existing != null) {
+			coalesced.increment();
+		} else {
+			existing = flight;
+
+			CompletableFuture<WebResult<Received>> executed;
+			try {
+				executed = execution.execute(request, RECEIVED);
+			} catch (RuntimeException e) {
+				executed = CompletableFuture.failedFuture(e);
+			}
+
+			executed.whenComplete((result, throwable) -> {
+				executions.remove(key, flight);
+
+				if (throwable != null) flight.completeExceptionally(throwable);
+				else flight.complete(result);
+			});
+		}
+
+		return existing.thenApply(result -> replay(result, built, handler));
+	}
+
+	private static <B> WebResult<B> replay(WebResult<Received> result, HttpRequest request,
+										   HttpResponse.BodyHandler<B> handler) {
+		Received received = result.response();
+		B body = null;
+
+		if (received != null) {
+			CachedResponse shared = new CachedResponse(result.url().toString(), result.responseCode(),
+					received.headers(), received.body() == null ? new byte[0] : received.body(), Map.of(), 0L, 0L);
+			body = CachedHttpResponse.replay(shared, request, handler).body();
+		}
+
+		return new WebResult<>(result.requestSend(), result.receiveResponse(), result.url(), result.type(),
+				result.responseCode(), body, result.timings());
+	}
+
+	private static <B> HttpResponse<B> replay(HttpResponse<byte[]> response, HttpRequest request,
+											  HttpResponse.BodyHandler<B> handler) {
+		CachedResponse shared = new CachedResponse(response.uri().toString(), response.statusCode(),
+				response.headers(), response.body() == null ? new byte[0] : response.body(), Map.of(), 0L, 0L);
+
+		return CachedHttpResponse.replay(shared, request, handler);
+	}
+
+	/**
+	 * Returns how many requests are currently in flight.
+	 * @return the count of requests in flight.
+	 */
+	public int getInFlight() {
+		return flights.size() + executions.size();
+	}
+
+	/**
+	 * Returns how many requests did not need an own request because an identical one was in flight.
+	 * @return the count of coalesced requests.
+	 */
+	public long getCoalesced() {
+		return coalesced.sum();
+	}
+
+	/**
+	 * Queues and sends a request, for example {@link GetWebConnection} without single flight.
+	 */
+	@FunctionalInterface
+	public interface Execution {
+
+		<B> CompletableFuture<WebResult<B>> execute(Supplier<HttpRequest.Builder> request,
+													HttpResponse.BodyHandler<B> handler);
+
+	}
+
+	private record Key(URI uri, HttpHeaders headers) {
+	}
+
+	private record Received(HttpHeaders headers, byte[] body) {
+	}
+
+}
@@ -0,0 +1,88 @@
+package de.quantumrange.webUtils.circuit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits how many requests to a host can be in progress at the same time.
+ * A request that doesn't fit is rejected right away instead of waiting, so a slow host can never hold more than its
+ * share of the threads.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public class Bulkhead {
+
+	private final String host;
+	private final int maxConcurrent;
+	private final AtomicInteger active;
+	private final LongAdder rejected;
+
+	Bulkhead(String host, int maxConcurrent) {
+		this.host = host;
+		this.maxConcurrent = maxConcurrent;
+		this.active = new AtomicInteger();
+		this.rejected = new LongAdder();
+	}
+
+	/**
+	 * Takes a place if one is free. If true is returned, the place has to be given back with {@link #release()}.
+	 *
+	 * @return true if the request may be sent, false if it is rejected.
+	 */
+	public boolean tryAcquire() {
+		int current;
+
+		do {
+			current = active.get();
+			if (current >= maxConcurrent) {
+				rejected.increment();
+				return false;
+			}
+		} while (!active.compareAndSet(current, current + 1));
+
+		return true;
+	}
+
+	/**
+	 * Gives back a place.
+	 */
+	public void release() {
+		active.decrementAndGet();
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+	public int getMaxConcurrent() {
+		return maxConcurrent;
+	}
+
+	/**
+	 * Returns how many requests are in progress.
+	 * @return the count of requests.
+	 */
+	public int getActive() {
+		return active.get();
+	}
+
+	/**
+	 * Returns how many requests were rejected.
+	 * @return the count of rejected requests.
+	 */
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "Bulkhead{" +
+				"host='" + host + '\'' +
+				", active=" + getActive() +
+				", maxConcurrent=" + maxConcurrent +
+				", rejected=" + getRejected() +
+				'}';
+	}
+
+}
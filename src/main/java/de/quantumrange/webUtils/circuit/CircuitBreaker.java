@@ -0,0 +1,266 @@
+package de.quantumrange.webUtils.circuit;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stops requests to a host that fails or is too slow (more on {@link CircuitBreakerConfig}).
+ * <ul>
+ *     <li>{@link State#CLOSED}: every request is let through and its result is counted.</li>
+ *     <li>{@link State#OPEN}: every request is rejected right away, until the open duration is over.</li>
+ *     <li>{@link State#HALF_OPEN}: a few requests are let through to test the host. If they all succeed the breaker
+ *     closes, otherwise it opens again.</li>
+ * </ul>
+ * The breakers are created by the {@link HostGuard}, which also informs the {@link Listener}s about transitions.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public class CircuitBreaker {
+
+	public enum State { CLOSED, OPEN, HALF_OPEN }
+
+	/**
+	 * Is informed when a breaker changes its state.
+	 */
+	@FunctionalInterface
+	public interface Listener {
+
+		/**
+		 * Is called after the state changed, outside of the lock of the breaker.
+		 *
+		 * @param host the host of the breaker.
+		 * @param from the old state.
+		 * @param to the new state.
+		 */
+		void onTransition(String host, State from, State to);
+
+	}
+
+	private static final byte FAILURE = 1;
+	private static final byte SLOW = 2;
+
+	private final String host;
+	private final CircuitBreakerConfig config;
+	private final List<Listener> listeners;
+	private final long slowNanos;
+	private final long openNanos;
+
+	/**
+	 * The outcomes of the last requests as ring buffer.
+	 */
+	private final byte[] window;
+	private int position;
+	private int size;
+	private int failures;
+	private int slowCalls;
+
+	private State state;
+	private long openedAt;
+	private int halfOpenPermits;
+	private int halfOpenSuccesses;
+
+	private final LongAdder rejected;
+	private final LongAdder transitions;
+
+	CircuitBreaker(String host, CircuitBreakerConfig config, List<Listener> listeners) {
+		this.host = host;
+		this.config = config;
+		this.listeners = listeners;
+		this.slowNanos = config.getSlowCallDuration().toNanos();
+		this.openNanos = config.getOpenDuration().toNanos();
+		this.window = new byte[config.getWindowSize()];
+		this.state = State.CLOSED;
+		this.rejected = new LongAdder();
+		this.transitions = new LongAdder();
+	}
+
+	/**
+	 * Asks if a request may be sent.
+	 * If true is returned, the result has to be reported with {@link #onResult(boolean, long)} or the permission
+	 * given back with {@link #release()}.
+	 *
+	 * @return true if the request may be sent, false if it is rejected.
+	 */
+	public boolean tryAcquire() {
+		State from, to;
+		boolean permitted;
+
+		synchronized (this) {
+			from = state;
+
+			if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) transition(State.HALF_OPEN);
+
+			if (state == State.CLOSED) {
+				permitted = true;
+			} else if (state == State.HALF_OPEN && halfOpenPermits < config.getHalfOpenCalls()) {
+				halfOpenPermits++;
+				permitted = true;
+			} else {
+				permitted = false;
+			}
+			to = state;
+		}
+
+		if (!permitted) rejected.increment();
+		notify(from, to);
+		return permitted;
+	}
+
+	/**
+	 * Reports the result of a request that was permitted with {@link #tryAcquire()}.
+	 *
+	 * @param failure true if the request failed.
+	 * @param nanos how long the request took.
+	 */
+	public void onResult(boolean failure, long nanos) {
+		boolean slow = nanos >= slowNanos;
+		State from, to;
+
+		synchronized (this) {
+			from = state;
+
+			switch (state) {
+				case CLOSED -> {
+					record((byte) ((failure ? FAILURE : 0) | (slow ? SLOW : 0)));
+
+					if (size >= config.getMinimumCalls() && (failures >= size * config.getFailureRateThreshold()
+							|| slowCalls >= size * config.getSlowCallRateThreshold())) {
+						transition(State.OPEN);
+					}
+				}
+				case HALF_OPEN -> {
+					if (failure || slow) {
+						transition(State.OPEN);
+					} else if (++halfOpenSuccesses >= config.getHalfOpenCalls()) {
+						transition(State.CLOSED);
+					}
+				}
+				case OPEN -> {
+					// A request that was permitted before the breaker opened, its result doesn't change anything.
+				}
+			}
+			to = state;
+		}
+
+		notify(from, to);
+	}
+
+	/**
+	 * Gives back the permission of a request that was not sent.
+	 */
+	public synchronized void release() {
+		if (state == State.HALF_OPEN && halfOpenPermits > halfOpenSuccesses) halfOpenPermits--;
+	}
+
+	/**
+	 * Closes the breaker and forgets all results.
+	 */
+	public void reset() {
+		State from;
+
+		synchronized (this) {
+			from = state;
+			transition(State.CLOSED);
+		}
+
+		notify(from, State.CLOSED);
+	}
+
+	private void record(byte outcome) {
+		if (size == window.length) {
+			byte oldest = window[position];
+			if ((oldest & FAILURE) != 0) failures--;
+			if ((oldest & SLOW) != 0) slowCalls--;
+		} else {
+			size++;
+		}
+
+		window[position] = outcome;
+		position = (position + 1) % window.length;
+		if ((outcome & FAILURE) != 0) failures++;
+		if ((outcome & SLOW) != 0) slowCalls++;
+	}
+
+	/**
+	 * Changes the state, has to be called with the lock.
+	 */
+	private void transition(State to) {
+		if (state == to && to != State.CLOSED) return;
+
+		state = to;
+		halfOpenPermits = 0;
+		halfOpenSuccesses = 0;
+
+		if (to == State.OPEN) openedAt = System.nanoTime();
+		if (to == State.CLOSED) {
+			position = 0;
+			size = 0;
+			failures = 0;
+			slowCalls = 0;
+		}
+	}
+
+	private void notify(State from, State to) {
+		if (from == to) return;
+
+		transitions.increment();
+		for (Listener listener : listeners) listener.onTransition(host, from, to);
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+	public CircuitBreakerConfig getConfig() {
+		return config;
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * Returns the share of failed requests of the last requests.
+	 * @return the share between 0 and 1.
+	 */
+	public synchronized double getFailureRate() {
+		return size == 0 ? 0 : (double) failures / size;
+	}
+
+	/**
+	 * Returns the share of slow requests of the last requests.
+	 * @return the share between 0 and 1.
+	 */
+	public synchronized double getSlowCallRate() {
+		return size == 0 ? 0 : (double) slowCalls / size;
+	}
+
+	/**
+	 * Returns how many requests were rejected.
+	 * @return the count of rejected requests.
+	 */
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	/**
+	 * Returns how often the state changed.
+	 * @return the count of transitions.
+	 */
+	public long getTransitions() {
+		return transitions.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "CircuitBreaker{" +
+				"host='" + host + '\'' +
+				", state=" + getState() +
+				", failureRate=" + getFailureRate() +
+				", slowCallRate=" + getSlowCallRate() +
+				", rejected=" + getRejected() +
+				'}';
+	}
+
+}
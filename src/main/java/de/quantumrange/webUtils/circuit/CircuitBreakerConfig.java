@@ -0,0 +1,194 @@
+package de.quantumrange.webUtils.circuit;
+
+import java.time.Duration;
+import java.util.function.IntPredicate;
+
+/**
+ * The settings of a {@link CircuitBreaker}.
+ * <p>
+ * The breaker looks at the last <code>windowSize</code> requests of a host. As soon as at least
+ * <code>minimumCalls</code> requests were made and the share of failed requests reaches the
+ * <code>failureRateThreshold</code>, or the share of requests that took longer than <code>slowCallDuration</code>
+ * reaches the <code>slowCallRateThreshold</code>, the breaker opens for <code>openDuration</code>.
+ * After that <code>halfOpenCalls</code> requests are let through to test the host.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public final class CircuitBreakerConfig {
+
+	private final int windowSize;
+	private final int minimumCalls;
+	private final double failureRateThreshold;
+	private final double slowCallRateThreshold;
+	private final Duration slowCallDuration;
+	private final Duration openDuration;
+	private final int halfOpenCalls;
+	private final IntPredicate failureOnStatus;
+
+	private CircuitBreakerConfig(Builder builder) {
+		this.windowSize = builder.windowSize;
+		this.minimumCalls = builder.minimumCalls;
+		this.failureRateThreshold = builder.failureRateThreshold;
+		this.slowCallRateThreshold = builder.slowCallRateThreshold;
+		this.slowCallDuration = builder.slowCallDuration;
+		this.openDuration = builder.openDuration;
+		this.halfOpenCalls = builder.halfOpenCalls;
+		this.failureOnStatus = builder.failureOnStatus;
+	}
+
+	/**
+	 * Creates a config with the default values.
+	 * @return the config.
+	 */
+	public static CircuitBreakerConfig defaults() {
+		return builder().build();
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	public int getMinimumCalls() {
+		return minimumCalls;
+	}
+
+	public double getFailureRateThreshold() {
+		return failureRateThreshold;
+	}
+
+	public double getSlowCallRateThreshold() {
+		return slowCallRateThreshold;
+	}
+
+	public Duration getSlowCallDuration() {
+		return slowCallDuration;
+	}
+
+	public Duration getOpenDuration() {
+		return openDuration;
+	}
+
+	public int getHalfOpenCalls() {
+		return halfOpenCalls;
+	}
+
+	/**
+	 * Returns whether a response code counts as failure.
+	 *
+	 * @param statusCode the response code.
+	 * @return true if the request failed.
+	 */
+	public boolean isFailure(int statusCode) {
+		return failureOnStatus.test(statusCode);
+	}
+
+	public static class Builder {
+
+		private int windowSize = 20;
+		private int minimumCalls = 10;
+		private double failureRateThreshold = .5;
+		private double slowCallRateThreshold = .8;
+		private Duration slowCallDuration = Duration.ofSeconds(10);
+		private Duration openDuration = Duration.ofSeconds(30);
+		private int halfOpenCalls = 3;
+		private IntPredicate failureOnStatus = status -> status >= 500;
+
+		private Builder() {
+		}
+
+		/**
+		 * Sets how many of the last requests are looked at (default 20) and how many requests have to be made before
+		 * the breaker can open (default 10).
+		 *
+		 * @param windowSize the count of the last requests.
+		 * @param minimumCalls the count of requests before the breaker can open.
+		 * @return itself
+		 */
+		public Builder window(int windowSize, int minimumCalls) {
+			if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize) {
+				throw new IllegalArgumentException("windowSize and minimumCalls have to be at least 1 and " +
+						"minimumCalls can't be larger than windowSize.");
+			}
+			this.windowSize = windowSize;
+			this.minimumCalls = minimumCalls;
+			return this;
+		}
+
+		/**
+		 * Sets the share of failed requests that opens the breaker (default 0.5).
+		 *
+		 * @param failureRateThreshold the share between 0 (exclusive) and 1.
+		 * @return itself
+		 */
+		public Builder failureRateThreshold(double failureRateThreshold) {
+			if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+				throw new IllegalArgumentException("failureRateThreshold has to be between 0 (exclusive) and 1.");
+			}
+			this.failureRateThreshold = failureRateThreshold;
+			return this;
+		}
+
+		/**
+		 * Sets when a request is slow (default 10 s) and the share of slow requests that opens the breaker
+		 * (default 0.8).
+		 *
+		 * @param slowCallDuration the duration from which a request is slow.
+		 * @param slowCallRateThreshold the share between 0 (exclusive) and 1.
+		 * @return itself
+		 */
+		public Builder slowCalls(Duration slowCallDuration, double slowCallRateThreshold) {
+			if (slowCallRateThreshold <= 0 || slowCallRateThreshold > 1) {
+				throw new IllegalArgumentException("slowCallRateThreshold has to be between 0 (exclusive) and 1.");
+			}
+			this.slowCallDuration = slowCallDuration;
+			this.slowCallRateThreshold = slowCallRateThreshold;
+			return this;
+		}
+
+		/**
+		 * Sets how long the breaker stays open before it tests the host again (default 30 s).
+		 *
+		 * @param openDuration the duration.
+		 * @return itself
+		 */
+		public Builder openDuration(Duration openDuration) {
+			this.openDuration = openDuration;
+			return this;
+		}
+
+		/**
+		 * Sets how many requests are let through to test the host when the breaker is half-open (default 3).
+		 * If all of them succeed the breaker closes, if one fails it opens again.
+		 *
+		 * @param halfOpenCalls the count of requests.
+		 * @return itself
+		 */
+		public Builder halfOpenCalls(int halfOpenCalls) {
+			if (halfOpenCalls < 1) throw new IllegalArgumentException("halfOpenCalls has to be at least 1.");
+			this.halfOpenCalls = halfOpenCalls;
+			return this;
+		}
+
+		/**
+		 * Sets which response codes count as failure (default all from 500). Exceptions always count as failure.
+		 *
+		 * @param failureOnStatus true for the codes that count as failure.
+		 * @return itself
+		 */
+		public Builder failureOnStatus(IntPredicate failureOnStatus) {
+			this.failureOnStatus = failureOnStatus;
+			return this;
+		}
+
+		public CircuitBreakerConfig build() {
+			return new CircuitBreakerConfig(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,257 @@
+package de.quantumrange.webUtils.circuit;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.models.WebResult;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Isolates the hosts from each other with a {@link CircuitBreaker} and a {@link Bulkhead} per host, so one failing or
+ * slow host can't take the threads of the requests to healthy hosts.
+ * <p>
+ * Both are off until they are configured, either for every host ({@link #setDefaultBreaker(CircuitBreakerConfig)},
+ * {@link #setDefaultBulkhead(int)}) or for a single host. The breakers and bulkheads are created on the first request
+ * to a host.
+ * A rejected request is not sent, its {@link WebResult} has the response code {@link WebResult#CIRCUIT_OPEN} or
+ * {@link WebResult#BULKHEAD_FULL}.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ * @see Web#GUARD
+ */
+public class HostGuard {
+
+	private final Map<String, CircuitBreakerConfig> breakerConfigs;
+	private final Map<String, CircuitBreaker> breakers;
+	private final Map<String, Integer> bulkheadLimits;
+	private final Map<String, Bulkhead> bulkheads;
+	private final List<CircuitBreaker.Listener> listeners;
+	private volatile CircuitBreakerConfig defaultBreaker;
+	private volatile int defaultBulkhead;
+
+	public HostGuard() {
+		this.breakerConfigs = new ConcurrentHashMap<>();
+		this.breakers = new ConcurrentHashMap<>();
+		this.bulkheadLimits = new ConcurrentHashMap<>();
+		this.bulkheads = new ConcurrentHashMap<>();
+		this.listeners = new CopyOnWriteArrayList<>();
+	}
+
+	/**
+	 * Sets the circuit breaker for every host that has no own one.
+	 * Existing breakers of these hosts are replaced.
+	 *
+	 * @param config the config or null to have no breaker (default).
+	 */
+	public void setDefaultBreaker(CircuitBreakerConfig config) {
+		this.defaultBreaker = config;
+		breakers.keySet().removeIf(host -> !breakerConfigs.containsKey(host));
+	}
+
+	/**
+	 * Sets the circuit breaker of a host. An existing breaker of the host is replaced.
+	 *
+	 * @param host the host.
+	 * @param config the config.
+	 */
+	public void setBreaker(String host, CircuitBreakerConfig config) {
+		breakerConfigs.put(host, config);
+		breakers.put(host, new CircuitBreaker(host, config, listeners));
+	}
+
+	/**
+	 * Removes the own circuit breaker of a host, the default is used again.
+	 *
+	 * @param host the host.
+	 */
+	public void removeBreaker(String host) {
+		breakerConfigs.remove(host);
+		breakers.remove(host);
+	}
+
+	/**
+	 * Returns the circuit breaker of a host.
+	 *
+	 * @param host the host.
+	 * @return the breaker or null if the host has none (or had no request yet).
+	 */
+	public CircuitBreaker getBreaker(String host) {
+		return breakers.get(host);
+	}
+
+	/**
+	 * Returns all circuit breakers that were created.
+	 * @return an unmodifiable view of the breakers by host.
+	 */
+	public Map<String, CircuitBreaker> getBreakers() {
+		return Collections.unmodifiableMap(breakers);
+	}
+
+	/**
+	 * Sets how many requests can be in progress at the same time for every host that has no own limit.
+	 *
+	 * @param maxConcurrent the limit or 0 to not limit (default).
+	 */
+	public void setDefaultBulkhead(int maxConcurrent) {
+		if (maxConcurrent < 0) throw new IllegalArgumentException("maxConcurrent can't be negative.");
+		this.defaultBulkhead = maxConcurrent;
+		bulkheads.keySet().removeIf(host -> !bulkheadLimits.containsKey(host));
+	}
+
+	/**
+	 * Sets how many requests to the host can be in progress at the same time.
+	 *
+	 * @param host the host.
+	 * @param maxConcurrent the limit.
+	 */
+	public void setBulkhead(String host, int maxConcurrent) {
+		if (maxConcurrent < 1) throw new IllegalArgumentException("maxConcurrent has to be at least 1.");
+		bulkheadLimits.put(host, maxConcurrent);
+		bulkheads.put(host, new Bulkhead(host, maxConcurrent));
+	}
+
+	/**
+	 * Removes the own limit of a host, the default is used again.
+	 *
+	 * @param host the host.
+	 */
+	public void removeBulkhead(String host) {
+		bulkheadLimits.remove(host);
+		bulkheads.remove(host);
+	}
+
+	/**
+	 * Returns the bulkhead of a host.
+	 *
+	 * @param host the host.
+	 * @return the bulkhead or null if the host has none (or had no request yet).
+	 */
+	public Bulkhead getBulkhead(String host) {
+		return bulkheads.get(host);
+	}
+
+	/**
+	 * Adds a listener that is informed about the transitions of all breakers.
+	 *
+	 * @param listener the listener.
+	 */
+	public void addListener(CircuitBreaker.Listener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener.
+	 *
+	 * @param listener the listener.
+	 */
+	public void removeListener(CircuitBreaker.Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Asks the breaker and the bulkhead of the host if a request may be sent.
+	 *
+	 * @param host the host.
+	 * @return the permit that has to be completed when the request is done.
+	 * @throws RejectedRequestException if the request is rejected.
+	 */
+	public Permit acquire(String host) throws RejectedRequestException {
+		CircuitBreaker breaker = breakerOf(host);
+		if (breaker != null && !breaker.tryAcquire()) {
+			throw new RejectedRequestException(host, WebResult.CIRCUIT_OPEN);
+		}
+
+		Bulkhead bulkhead = bulkheadOf(host);
+		if (bulkhead != null && !bulkhead.tryAcquire()) {
+			if (breaker != null) breaker.release();
+			throw new RejectedRequestException(host, WebResult.BULKHEAD_FULL);
+		}
+
+		return new Permit(breaker, bulkhead);
+	}
+
+	private CircuitBreaker breakerOf(String host) {
+		CircuitBreaker breaker = breakers.get(host);
+		if (breaker != null) return breaker;
+
+		CircuitBreakerConfig config = defaultBreaker;
+		if (config == null) return null;
+
+		return breakers.computeIfAbsent(host, key -> new CircuitBreaker(key, config, listeners));
+	}
+
+	private Bulkhead bulkheadOf(String host) {
+		Bulkhead bulkhead = bulkheads.get(host);
+		if (bulkhead != null) return bulkhead;
+
+		int limit = defaultBulkhead;
+		if (limit == 0) return null;
+
+		return bulkheads.computeIfAbsent(host, key -> new Bulkhead(key, limit));
+	}
+
+	/**
+	 * The permission to send one request. Exactly one of {@link #complete(int)}, {@link #failure()} or
+	 * {@link #cancel()} has to be called, later calls are ignored.
+	 */
+	public static final class Permit {
+
+		private final CircuitBreaker breaker;
+		private final Bulkhead bulkhead;
+		private long startedAt;
+		private boolean done;
+
+		private Permit(CircuitBreaker breaker, Bulkhead bulkhead) {
+			this.breaker = breaker;
+			this.bulkhead = bulkhead;
+			this.startedAt = System.nanoTime();
+		}
+
+		/**
+		 * Marks the moment the request is sent, the duration for slow requests is measured from here.
+		 */
+		public void started() {
+			this.startedAt = System.nanoTime();
+		}
+
+		/**
+		 * Reports that the server answered.
+		 *
+		 * @param statusCode the response code.
+		 */
+		public void complete(int statusCode) {
+			finish(breaker != null && breaker.getConfig().isFailure(statusCode), true);
+		}
+
+		/**
+		 * Reports that the request failed without response.
+		 */
+		public void failure() {
+			finish(true, true);
+		}
+
+		/**
+		 * Gives the permit back without a result, for example if the request was not sent.
+		 */
+		public void cancel() {
+			finish(false, false);
+		}
+
+		private synchronized void finish(boolean failure, boolean report) {
+			if (done) return;
+			done = true;
+
+			if (bulkhead != null) bulkhead.release();
+			if (breaker == null) return;
+
+			if (report) breaker.onResult(failure, System.nanoTime() - startedAt);
+			else breaker.release();
+		}
+
+	}
+
+}
@@ -0,0 +1,44 @@
+package de.quantumrange.webUtils.circuit;
+
+import de.quantumrange.webUtils.models.WebResult;
+
+import java.io.IOException;
+
+/**
+ * Is thrown when the {@link HostGuard} doesn't let a request through, because the {@link CircuitBreaker} of the host
+ * is open or its {@link Bulkhead} is full. The request was not sent.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public class RejectedRequestException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String host;
+	private final int responseCode;
+
+	/**
+	 * @param host the host of the request.
+	 * @param responseCode {@link WebResult#CIRCUIT_OPEN} or {@link WebResult#BULKHEAD_FULL}.
+	 */
+	public RejectedRequestException(String host, int responseCode) {
+		super((responseCode == WebResult.CIRCUIT_OPEN ? "The circuit breaker is open for " :
+				"Too many concurrent requests to ") + host + ".");
+		this.host = host;
+		this.responseCode = responseCode;
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * Returns the response code of the {@link WebResult} of the rejected request.
+	 * @return {@link WebResult#CIRCUIT_OPEN} or {@link WebResult#BULKHEAD_FULL}.
+	 */
+	public int getResponseCode() {
+		return responseCode;
+	}
+
+}
@@ -0,0 +1,70 @@
+package de.quantumrange.webUtils.compression;
+
+import de.quantumrange.webUtils.connections.WebConnection;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpResponse;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses bodies that are sent and decompresses bodies that are received (see
+ * {@link WebConnection#compression(boolean)}).
+ * Responses are decompressed while they are received, before the {@link HttpResponse.BodyHandler} reads them, so a
+ * String or JSON handler never sees the compressed bytes.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public final class Compression {
+
+	/**
+	 * The value of the <code>Accept-Encoding</code> header for the encodings that can be decompressed.
+	 */
+	public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+	private Compression() {
+	}
+
+	/**
+	 * Wraps the handler so that a body with <code>Content-Encoding: gzip</code> (or <code>x-gzip</code>) or
+	 * <code>deflate</code> is decompressed before the handler reads it. Other bodies are passed as they are.
+	 *
+	 * @param handler the handler that reads the decompressed body.
+	 * @param <B> the type of the body.
+	 * @return the wrapped handler.
+	 */
+	public static <B> HttpResponse.BodyHandler<B> decoding(HttpResponse.BodyHandler<B> handler) {
+		return info -> {
+			String encoding = info.headers().firstValue("Content-Encoding").orElse("identity")
+					.trim().toLowerCase(Locale.ROOT);
+
+			return switch (encoding) {
+				case "gzip", "x-gzip" -> new InflatingSubscriber<>(handler.apply(info), true);
+				case "deflate" -> new InflatingSubscriber<>(handler.apply(info), false);
+				default -> handler.apply(info);
+			};
+		};
+	}
+
+	/**
+	 * Compresses the data with gzip.
+	 *
+	 * @param data the data.
+	 * @return the compressed data.
+	 */
+	public static byte[] gzip(byte[] data) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192)) {
+			gzip.write(data);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return out.toByteArray();
+	}
+
+}
@@ -0,0 +1,259 @@
+package de.quantumrange.webUtils.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses a gzip or deflate body while it is received and passes the decompressed bytes to the subscriber of
+ * the actual {@link HttpResponse.BodyHandler}.
+ * The gzip header and trailer are parsed here (the {@link Inflater} only reads the raw deflate data), so the body
+ * never has to be in memory as a whole. The CRC and size in the trailer are checked.
+ * <p>
+ * Every buffer list of the network is answered with one decompressed buffer list, if a list produced no output (for
+ * example because it only contained the header), another one is requested instead, so the demand of the subscriber
+ * stays correct.
+ *
+ * @param <B> the type of the body.
+ */
+class InflatingSubscriber<B> implements HttpResponse.BodySubscriber<B> {
+
+	private static final int CHUNK_SIZE = 16 * 1024;
+
+	private static final int FHCRC = 2;
+	private static final int FEXTRA = 4;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+
+	private enum State { HEADER, DATA, TRAILER, DONE }
+
+	private final HttpResponse.BodySubscriber<B> downstream;
+	private final boolean gzip;
+	private final ByteArrayOutputStream pending;
+	private final CRC32 crc;
+	private Inflater inflater;
+	private byte[] chunk;
+	private State state;
+	private Flow.Subscription subscription;
+	private boolean received;
+	private int members;
+	private boolean failed;
+
+	/**
+	 * @param downstream the subscriber that receives the decompressed body.
+	 * @param gzip true for <code>gzip</code>, false for <code>deflate</code> (with or without zlib wrapper).
+	 */
+	InflatingSubscriber(HttpResponse.BodySubscriber<B> downstream, boolean gzip) {
+		this.downstream = downstream;
+		this.gzip = gzip;
+		this.pending = new ByteArrayOutputStream();
+		this.crc = new CRC32();
+		this.chunk = new byte[CHUNK_SIZE];
+		this.state = State.HEADER;
+	}
+
+	@Override
+	public CompletionStage<B> getBody() {
+		return downstream.getBody();
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		this.subscription = subscription;
+		downstream.onSubscribe(subscription);
+	}
+
+	@Override
+	public void onNext(List<ByteBuffer> item) {
+		if (failed) return;
+
+		List<ByteBuffer> output = new ArrayList<>();
+
+		try {
+			for (ByteBuffer buffer : item) decode(buffer, output);
+		} catch (IOException | DataFormatException e) {
+			failed = true;
+			subscription.cancel();
+			end();
+			downstream.onError(e instanceof IOException ? e : new ZipException(e.getMessage()));
+			return;
+		}
+
+		if (output.isEmpty()) subscription.request(1);
+		else downstream.onNext(output);
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		end();
+		if (!failed) downstream.onError(throwable);
+	}
+
+	@Override
+	public void onComplete() {
+		if (failed) return;
+
+		end();
+		// An empty body (for example of HEAD) is allowed, otherwise at least one member has to be complete.
+		if (state == State.DONE || (state == State.HEADER && pending.size() == 0 && (members > 0 || !received))) {
+			downstream.onComplete();
+		} else {
+			downstream.onError(new ZipException("The compressed body ended unexpectedly."));
+		}
+	}
+
+	private void decode(ByteBuffer input, List<ByteBuffer> output) throws IOException, DataFormatException {
+		if (input.hasRemaining()) received = true;
+
+		while (input.hasRemaining()) {
+			switch (state) {
+				case HEADER -> readHeader(input, output);
+				case DATA -> inflate(input, output);
+				case TRAILER -> readTrailer(input);
+				case DONE -> input.position(input.limit());
+			}
+		}
+	}
+
+	private void readHeader(ByteBuffer input, List<ByteBuffer> output) throws IOException, DataFormatException {
+		if (!gzip) {
+			// A deflate body is usually wrapped in zlib (RFC 1950), but some servers send the raw data (RFC 1951).
+			pending.write(input.get());
+			if (pending.size() < 2) return;
+
+			byte[] header = pending.toByteArray();
+			int cmf = header[0] & 0xFF, flg = header[1] & 0xFF;
+			boolean zlib = (cmf & 0x0F) == 8 && ((cmf << 8) | flg) % 31 == 0;
+
+			inflater = new Inflater(!zlib);
+			pending.reset();
+			state = State.DATA;
+			inflate(ByteBuffer.wrap(header), output);
+			return;
+		}
+
+		while (input.hasRemaining()) {
+			pending.write(input.get());
+
+			int length;
+			try {
+				length = gzipHeaderLength(pending.toByteArray());
+			} catch (ZipException e) {
+				if (members == 0) throw e;
+
+				// Like the GZIPInputStream, bytes after a complete member that are no gzip header are ignored.
+				pending.reset();
+				state = State.DONE;
+				return;
+			}
+			if (length < 0) continue;
+
+			pending.reset();
+			crc.reset();
+			if (inflater == null) inflater = new Inflater(true);
+			else inflater.reset();
+			state = State.DATA;
+			return;
+		}
+	}
+
+	/**
+	 * Returns the length of the gzip header (RFC 1952) or -1 if more bytes are needed.
+	 */
+	private static int gzipHeaderLength(byte[] header) throws ZipException {
+		if (header.length >= 1 && (header[0] & 0xFF) != 0x1F) throw new ZipException("Not in gzip format.");
+		if (header.length >= 2 && (header[1] & 0xFF) != 0x8B) throw new ZipException("Not in gzip format.");
+		if (header.length >= 3 && header[2] != 8) throw new ZipException("Unsupported gzip compression method.");
+		if (header.length < 10) return -1;
+
+		int flags = header[3] & 0xFF;
+		int position = 10;
+
+		if ((flags & FEXTRA) != 0) {
+			if (header.length < position + 2) return -1;
+			position += 2 + ((header[position] & 0xFF) | ((header[position + 1] & 0xFF) << 8));
+		}
+		if ((flags & FNAME) != 0) {
+			position = skipZeroTerminated(header, position);
+			if (position < 0) return -1;
+		}
+		if ((flags & FCOMMENT) != 0) {
+			position = skipZeroTerminated(header, position);
+			if (position < 0) return -1;
+		}
+		if ((flags & FHCRC) != 0) position += 2;
+
+		return header.length >= position ? position : -1;
+	}
+
+	private static int skipZeroTerminated(byte[] header, int position) {
+		for (int i = position; i < header.length; i++) {
+			if (header[i] == 0) return i + 1;
+		}
+		return -1;
+	}
+
+	private void inflate(ByteBuffer input, List<ByteBuffer> output) throws DataFormatException {
+		// The inflater always used up the previous input, it advances the position of the buffer while it reads.
+		inflater.setInput(input);
+
+		while (!inflater.finished()) {
+			int count = inflater.inflate(chunk);
+
+			if (count > 0) {
+				if (gzip) crc.update(chunk, 0, count);
+				// The subscriber may keep the buffer, so the next output needs a new array.
+				output.add(ByteBuffer.wrap(chunk, 0, count));
+				chunk = new byte[CHUNK_SIZE];
+			} else if (inflater.needsInput()) {
+				break;
+			} else if (inflater.needsDictionary()) {
+				throw new DataFormatException("A preset dictionary is not supported.");
+			}
+		}
+
+		if (inflater.finished()) {
+			// The bytes after the deflate data belong to the trailer (or are ignored).
+			input.position(input.limit() - inflater.getRemaining());
+			state = gzip ? State.TRAILER : State.DONE;
+		}
+	}
+
+	private void readTrailer(ByteBuffer input) throws ZipException {
+		while (input.hasRemaining() && pending.size() < 8) pending.write(input.get());
+		if (pending.size() < 8) return;
+
+		byte[] trailer = pending.toByteArray();
+		long expectedCrc = readInt(trailer, 0);
+		long expectedSize = readInt(trailer, 4);
+
+		if (expectedCrc != crc.getValue()) throw new ZipException("The CRC of the gzip body is wrong.");
+		if (expectedSize != (inflater.getBytesWritten() & 0xFFFFFFFFL)) {
+			throw new ZipException("The size of the gzip body is wrong.");
+		}
+
+		pending.reset();
+		members++;
+		// Another member can follow (RFC 1952 2.2), otherwise the body is done.
+		state = State.HEADER;
+	}
+
+	private static long readInt(byte[] bytes, int offset) {
+		return (bytes[offset] & 0xFFL) | (bytes[offset + 1] & 0xFFL) << 8 | (bytes[offset + 2] & 0xFFL) << 16
+				| (bytes[offset + 3] & 0xFFL) << 24;
+	}
+
+	private void end() {
+		if (inflater != null) inflater.end();
+	}
+
+}
@@ -0,0 +1,291 @@
+package de.quantumrange.webUtils.connections;
+
+import java.nio.CharBuffer;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+
+/**
+ * Parses the {@link LocalDateTime} and {@link LocalTime} values of the JSON deserializers of
+ * {@link WebConnection#createObjectMapper()}.
+ * <p>
+ * The usual shapes are read directly from the characters without the {@link DateTimeFormatter}:
+ * <ul>
+ *     <li><code>yyyy-MM-ddTHH:mm[:ss[.S-SSSSSSSSS]][Z|+HH:MM]</code> (ISO)</li>
+ *     <li><code>yyyy-MM-dd HH:mm:ss[[.S]X]</code> with <code>X</code> as <code>Z</code>, <code>+HH</code> or
+ *     <code>+HHMM</code></li>
+ *     <li><code>HH:mm[:ss[.S-SSSSSSSSS]][Z|+HH:MM]</code> for times</li>
+ * </ul>
+ * Everything else (other cases, zone IDs, invalid values, ...) goes to {@link #DATE_TIME_FORMATTER} or
+ * {@link #TIME_FORMATTER}, so the results and errors are always the same as the ones of the formatters.
+ * Values with offset are converted to UTC.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public final class DateTimeParser {
+
+	/**
+	 * The standard for Json LocalDateTime.
+	 */
+	public static final DateTimeFormatter DATE_TIME_FORMATTER = new DateTimeFormatterBuilder()
+			.appendOptional(DateTimeFormatter.ISO_DATE_TIME)
+			.appendOptional(DateTimeFormatter.ISO_OFFSET_DATE_TIME)
+			.appendOptional(DateTimeFormatter.ISO_INSTANT)
+			.appendOptional(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SX"))
+			.appendOptional(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ssX"))
+			.appendOptional(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))
+			.appendOptional(DateTimeFormatter.ofPattern("yyyy-MM-dd"))
+			.toFormatter()
+			.withZone(ZoneOffset.UTC);
+
+	/**
+	 * The standard for Json LocalTime.
+	 */
+	public static final DateTimeFormatter TIME_FORMATTER = new DateTimeFormatterBuilder()
+			.appendOptional(DateTimeFormatter.ISO_TIME)
+			.appendOptional(DateTimeFormatter.ISO_OFFSET_TIME)
+			.parseDefaulting(ChronoField.YEAR, 2021)
+			.parseDefaulting(ChronoField.MONTH_OF_YEAR, 1)
+			.parseDefaulting(ChronoField.DAY_OF_MONTH, 1)
+			.toFormatter()
+			.withZone(ZoneOffset.UTC);
+
+	/**
+	 * Is returned by the parts of the fast path if the text has another shape.
+	 */
+	private static final int NONE = Integer.MIN_VALUE;
+
+	private static final int[] NANO_FACTORS = {0, 100_000_000, 10_000_000, 1_000_000, 100_000, 10_000, 1_000, 100,
+			10, 1};
+
+	private DateTimeParser() {
+	}
+
+	/**
+	 * Parses a date time, with offset it is converted to UTC.
+	 *
+	 * @param text the text, for example <code>2021-06-10T12:34:56.789Z</code>.
+	 * @return the date time in UTC.
+	 * @throws java.time.format.DateTimeParseException if the text can't be parsed.
+	 */
+	public static LocalDateTime parseDateTime(CharSequence text) {
+		LocalDateTime result = fastDateTime(text, 0, text.length());
+		return result != null ? result : ZonedDateTime.from(DATE_TIME_FORMATTER.parse(text)).toLocalDateTime();
+	}
+
+	/**
+	 * Parses a date time from a part of a char array without creating a string, for example the text buffer of a
+	 * Jackson parser.
+	 *
+	 * @param chars the characters.
+	 * @param offset the index of the first character.
+	 * @param length the count of characters.
+	 * @return the date time in UTC.
+	 * @throws java.time.format.DateTimeParseException if the text can't be parsed.
+	 */
+	public static LocalDateTime parseDateTime(char[] chars, int offset, int length) {
+		LocalDateTime result = fastDateTime(CharBuffer.wrap(chars, offset, length), 0, length);
+		return result != null ? result : parseDateTime(new String(chars, offset, length));
+	}
+
+	/**
+	 * Parses a time, with offset it is converted to UTC.
+	 *
+	 * @param text the text, for example <code>12:34:56</code>.
+	 * @return the time in UTC.
+	 * @throws java.time.format.DateTimeParseException if the text can't be parsed.
+	 */
+	public static LocalTime parseTime(CharSequence text) {
+		LocalTime result = fastTime(text, 0, text.length());
+		return result != null ? result : ZonedDateTime.from(TIME_FORMATTER.parse(text)).toOffsetDateTime().toLocalTime();
+	}
+
+	/**
+	 * Parses a time from a part of a char array without creating a string (more on
+	 * {@link #parseDateTime(char[], int, int)}).
+	 *
+	 * @param chars the characters.
+	 * @param offset the index of the first character.
+	 * @param length the count of characters.
+	 * @return the time in UTC.
+	 * @throws java.time.format.DateTimeParseException if the text can't be parsed.
+	 */
+	public static LocalTime parseTime(char[] chars, int offset, int length) {
+		LocalTime result = fastTime(CharBuffer.wrap(chars, offset, length), 0, length);
+		return result != null ? result : parseTime(new String(chars, offset, length));
+	}
+
+	private static LocalDateTime fastDateTime(CharSequence text, int start, int end) {
+		if (end - start < 16) return null;
+
+		int year = digits(text, start, 4);
+		int month = digits(text, start + 5, 2);
+		int day = digits(text, start + 8, 2);
+		if (year <= 0 || month < 1 || month > 12 || day < 1 || day > 28 && day > lengthOfMonth(year, month)) return null;
+		if (text.charAt(start + 4) != '-' || text.charAt(start + 7) != '-') return null;
+
+		char separator = text.charAt(start + 10);
+		int hour = digits(text, start + 11, 2);
+		int minute = digits(text, start + 14, 2);
+		if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || text.charAt(start + 13) != ':') return null;
+
+		int index = start + 16;
+		int second = 0;
+		int nano = 0;
+		int offsetSeconds;
+
+		if (separator == 'T') {
+			if (index < end && text.charAt(index) == ':') {
+				if (index + 3 > end || (second = seconds(text, index + 1)) < 0) return null;
+				index += 3;
+
+				if (index < end && text.charAt(index) == '.') {
+					int fractionEnd = fractionEnd(text, index + 1, end);
+					if (fractionEnd < 0) return null;
+					nano = fraction(text, index + 1, fractionEnd);
+					index = fractionEnd;
+				}
+			}
+			offsetSeconds = isoOffset(text, index, end);
+		} else if (separator == ' ') {
+			if (index + 3 > end || text.charAt(index) != ':' || (second = seconds(text, index + 1)) < 0) return null;
+			index += 3;
+
+			if (index == end) {
+				offsetSeconds = 0;
+			} else {
+				if (text.charAt(index) == '.') {
+					if (index + 2 > end) return null;
+					int digit = text.charAt(index + 1) - '0';
+					if (digit < 0 || digit > 9) return null;
+					nano = digit * NANO_FACTORS[1];
+					index += 2;
+					if (index == end) return null;
+				}
+				offsetSeconds = patternOffset(text, index, end);
+			}
+		} else {
+			return null;
+		}
+
+		if (offsetSeconds == NONE) return null;
+
+		LocalDateTime result = LocalDateTime.of(year, month, day, hour, minute, second, nano);
+		return offsetSeconds == 0 ? result : result.minusSeconds(offsetSeconds);
+	}
+
+	private static LocalTime fastTime(CharSequence text, int start, int end) {
+		if (end - start < 5) return null;
+
+		int hour = digits(text, start, 2);
+		int minute = digits(text, start + 3, 2);
+		if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || text.charAt(start + 2) != ':') return null;
+
+		int index = start + 5;
+		int second = 0;
+		int nano = 0;
+
+		if (index < end && text.charAt(index) == ':') {
+			if (index + 3 > end || (second = seconds(text, index + 1)) < 0) return null;
+			index += 3;
+
+			if (index < end && text.charAt(index) == '.') {
+				int fractionEnd = fractionEnd(text, index + 1, end);
+				if (fractionEnd < 0) return null;
+				nano = fraction(text, index + 1, fractionEnd);
+				index = fractionEnd;
+			}
+		}
+
+		int offsetSeconds = isoOffset(text, index, end);
+		if (offsetSeconds == NONE) return null;
+
+		LocalTime result = LocalTime.of(hour, minute, second, nano);
+		return offsetSeconds == 0 ? result : result.minusSeconds(offsetSeconds);
+	}
+
+	/**
+	 * Reads the end of an ISO value: nothing, <code>Z</code> or <code>+HH:MM</code>.
+	 */
+	private static int isoOffset(CharSequence text, int index, int end) {
+		if (index == end) return 0;
+		if (index + 1 == end && text.charAt(index) == 'Z') return 0;
+		if (index + 6 != end || text.charAt(index + 3) != ':') return NONE;
+
+		return offset(text.charAt(index), digits(text, index + 1, 2), digits(text, index + 4, 2));
+	}
+
+	/**
+	 * Reads the offset of the pattern letter <code>X</code>: <code>Z</code>, <code>+HH</code> or <code>+HHMM</code>.
+	 */
+	private static int patternOffset(CharSequence text, int index, int end) {
+		if (index + 1 == end && text.charAt(index) == 'Z') return 0;
+		if (index + 3 == end) return offset(text.charAt(index), digits(text, index + 1, 2), 0);
+		if (index + 5 == end) return offset(text.charAt(index), digits(text, index + 1, 2), digits(text, index + 3, 2));
+		return NONE;
+	}
+
+	private static int offset(char sign, int hours, int minutes) {
+		if (sign != '+' && sign != '-' || hours < 0 || hours > 17 || minutes < 0 || minutes > 59) return NONE;
+
+		int seconds = hours * 3600 + minutes * 60;
+		return sign == '+' ? seconds : -seconds;
+	}
+
+	private static int seconds(CharSequence text, int index) {
+		int second = digits(text, index, 2);
+		return second > 59 ? -1 : second;
+	}
+
+	/**
+	 * Returns the index after 1 to 9 digits or -1.
+	 */
+	private static int fractionEnd(CharSequence text, int index, int end) {
+		int last = Math.min(end, index + 9);
+		int position = index;
+
+		while (position < last && isDigit(text.charAt(position))) position++;
+
+		if (position == index || position < end && isDigit(text.charAt(position))) return -1;
+		return position;
+	}
+
+	private static int fraction(CharSequence text, int start, int end) {
+		int value = 0;
+		for (int i = start; i < end; i++) value = value * 10 + text.charAt(i) - '0';
+		return value * NANO_FACTORS[end - start];
+	}
+
+	/**
+	 * Reads a fixed count of digits or returns -1.
+	 */
+	private static int digits(CharSequence text, int index, int count) {
+		if (index + count > text.length()) return -1;
+
+		int value = 0;
+		for (int i = index; i < index + count; i++) {
+			char c = text.charAt(i);
+			if (!isDigit(c)) return -1;
+			value = value * 10 + c - '0';
+		}
+		return value;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static int lengthOfMonth(int year, int month) {
+		return switch (month) {
+			case 2 -> (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+			case 4, 6, 9, 11 -> 30;
+			default -> 31;
+		};
+	}
+
+}
@@ -14,24 +14,24 @@ public enum HTTPRequestType {
 	/**
 	 * The GET method requests a representation of the specified resource. Requests using GET should only retrieve data.
 	 */
-	GET(),
+	GET(true),
 	/**
 	 * The HEAD method asks for a response identical to that of a GET request, but without the response body.
 	 */
-	HEAD(),
+	HEAD(true),
 	/**
 	 * The POST method is used to submit an entity to the specified resource, often causing a change in state or side
 	 * effects on the server.
 	 */
-	POST(),
+	POST(false),
 	/**
 	 * The PUT method replaces all current representations of the target resource with the request payload.
 	 */
-	PUT(),
+	PUT(true),
 	/**
 	 * The DELETE method deletes the specified resource.
 	 */
-	DELETE(),
+	DELETE(true),
 //	CONNECT is not supported by Java.
 //
 //	/**
@@ -41,15 +41,34 @@ public enum HTTPRequestType {
 	/**
 	 * The OPTIONS method is used to describe the communication options for the target resource.
 	 */
-	OPTIONS(),
+	OPTIONS(true),
 	/**
 	 * The TRACE method performs a message loop-back test along the path to the target resource.
 	 */
-	TRACE(),
+	TRACE(true),
 	/**
 	 * The PATCH method is used to apply partial modifications to a resource.
 	 */
-	PATCH();
+	PATCH(false);
+
+	/**
+	 * If true, sending the request more than once has the same effect as sending it once.
+	 */
+	private final boolean idempotent;
+
+	HTTPRequestType(boolean idempotent) {
+		this.idempotent = idempotent;
+	}
+
+	/**
+	 * Returns whether the method is idempotent by
+	 * <a href="https://www.rfc-editor.org/rfc/rfc9110#section-9.2.2">RFC 9110</a>, so the request can safely be sent
+	 * again if it failed.
+	 * @return true for GET, HEAD, PUT, DELETE, OPTIONS and TRACE.
+	 */
+	public boolean isIdempotent() {
+		return idempotent;
+	}
 
 	public static HTTPRequestType getRequestByName(String name) {
 		return Arrays.stream(HTTPRequestType.values())
@@ -0,0 +1,214 @@
+package de.quantumrange.webUtils.connections;
+
+import de.quantumrange.webUtils.connections.impl.GetWebConnection;
+
+import java.util.Map;
+
+/**
+ * Encodes query parameters and path segments as UTF-8 by
+ * <a href="https://datatracker.ietf.org/doc/html/rfc3986#section-2">RFC 3986</a>.
+ * Only the unreserved characters (<code>A-Z a-z 0-9 - . _ ~</code>) are kept, everything else is percent-encoded
+ * (a space becomes <code>%20</code>, not <code>+</code>).
+ * <p>
+ * The encoder appends directly into one {@link StringBuilder} and looks the characters up in a table, so no
+ * intermediate strings are created.
+ * It is used by the {@link GetWebConnection} to build the URL.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public final class QueryEncoder {
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	/**
+	 * The characters that stay as they are in query keys and values.
+	 */
+	private static final boolean[] UNRESERVED = new boolean[128];
+	/**
+	 * The characters that stay as they are in a path segment (unreserved, sub-delims, ':' and '@').
+	 */
+	private static final boolean[] PATH_SEGMENT = new boolean[128];
+
+	static {
+		for (char c = 'a'; c <= 'z'; c++) UNRESERVED[c] = true;
+		for (char c = 'A'; c <= 'Z'; c++) UNRESERVED[c] = true;
+		for (char c = '0'; c <= '9'; c++) UNRESERVED[c] = true;
+		for (char c : "-._~".toCharArray()) UNRESERVED[c] = true;
+
+		System.arraycopy(UNRESERVED, 0, PATH_SEGMENT, 0, UNRESERVED.length);
+		for (char c : "!$&'()*+,;=:@".toCharArray()) PATH_SEGMENT[c] = true;
+	}
+
+	private QueryEncoder() {
+	}
+
+	/**
+	 * Encodes a query key or value.
+	 *
+	 * @param text the text.
+	 * @return the encoded text.
+	 */
+	public static String encode(CharSequence text) {
+		return appendEncoded(new StringBuilder(text.length() + 16), text).toString();
+	}
+
+	/**
+	 * Encodes a single path segment, a '/' in it is encoded too.
+	 *
+	 * @param segment the path segment.
+	 * @return the encoded segment.
+	 */
+	public static String encodePathSegment(CharSequence segment) {
+		return append(new StringBuilder(segment.length() + 16), segment, PATH_SEGMENT).toString();
+	}
+
+	/**
+	 * Appends the encoded query key or value to the builder.
+	 *
+	 * @param out the builder.
+	 * @param text the text.
+	 * @return the builder.
+	 */
+	public static StringBuilder appendEncoded(StringBuilder out, CharSequence text) {
+		return append(out, text, UNRESERVED);
+	}
+
+	/**
+	 * Builds the URL with the parameters as query.
+	 * If the URL already has a query, the parameters are added to it. A fragment (<code>#...</code>) stays at the
+	 * end.
+	 *
+	 * @param url the URL.
+	 * @param params the parameters (more on {@link #appendQuery(StringBuilder, Map)}).
+	 * @return the URL with the query.
+	 */
+	public static String buildUrl(String url, Map<String, ?> params) {
+		if (params.isEmpty()) return url;
+
+		int fragment = url.indexOf('#');
+		int end = fragment < 0 ? url.length() : fragment;
+		StringBuilder out = new StringBuilder(url.length() + estimate(params));
+
+		out.append(url, 0, end);
+
+		int query = url.indexOf('?');
+		if (query < 0 || query >= end) out.append('?');
+		else if (query != end - 1 && url.charAt(end - 1) != '&') out.append('&');
+
+		appendQuery(out, params);
+		if (fragment >= 0) out.append(url, fragment, url.length());
+
+		return out.toString();
+	}
+
+	/**
+	 * Builds the query (without '?') from the parameters.
+	 *
+	 * @param params the parameters (more on {@link #appendQuery(StringBuilder, Map)}).
+	 * @return the query.
+	 */
+	public static String buildQuery(Map<String, ?> params) {
+		return appendQuery(new StringBuilder(estimate(params)), params).toString();
+	}
+
+	/**
+	 * Appends the parameters in the order of the map as query (without '?') to the builder.
+	 * <ul>
+	 *     <li>If a value is an {@link Iterable} or an array, the key is repeated for every element:
+	 *     <code>a=1&amp;a=2</code></li>
+	 *     <li>If a value is null, only the key is added: <code>a</code></li>
+	 *     <li>Other values are added with {@link String#valueOf(Object)}.</li>
+	 * </ul>
+	 *
+	 * @param out the builder.
+	 * @param params the parameters.
+	 * @return the builder.
+	 */
+	public static StringBuilder appendQuery(StringBuilder out, Map<String, ?> params) {
+		boolean first = true;
+
+		for (Map.Entry<String, ?> entry : params.entrySet()) {
+			Object value = entry.getValue();
+
+			if (value instanceof Iterable<?> values) {
+				for (Object element : values) {
+					appendParameter(out, entry.getKey(), element, first);
+					first = false;
+				}
+			} else if (value instanceof Object[] values) {
+				for (Object element : values) {
+					appendParameter(out, entry.getKey(), element, first);
+					first = false;
+				}
+			} else {
+				appendParameter(out, entry.getKey(), value, first);
+				first = false;
+			}
+		}
+
+		return out;
+	}
+
+	private static void appendParameter(StringBuilder out, String key, Object value, boolean first) {
+		if (!first) out.append('&');
+
+		appendEncoded(out, key);
+		if (value == null) return;
+
+		out.append('=');
+		appendEncoded(out, value instanceof CharSequence text ? text : String.valueOf(value));
+	}
+
+	private static StringBuilder append(StringBuilder out, CharSequence text, boolean[] safe) {
+		int length = text.length();
+
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+
+			if (c < 0x80) {
+				if (safe[c]) out.append(c);
+				else appendByte(out, c);
+			} else if (c < 0x800) {
+				appendByte(out, 0xC0 | (c >> 6));
+				appendByte(out, 0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, text.charAt(++i));
+
+				appendByte(out, 0xF0 | (codePoint >> 18));
+				appendByte(out, 0x80 | ((codePoint >> 12) & 0x3F));
+				appendByte(out, 0x80 | ((codePoint >> 6) & 0x3F));
+				appendByte(out, 0x80 | (codePoint & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				// An unpaired surrogate can't be encoded, it is replaced with '?' (like the String encoder does).
+				appendByte(out, '?');
+			} else {
+				appendByte(out, 0xE0 | (c >> 12));
+				appendByte(out, 0x80 | ((c >> 6) & 0x3F));
+				appendByte(out, 0x80 | (c & 0x3F));
+			}
+		}
+
+		return out;
+	}
+
+	private static void appendByte(StringBuilder out, int b) {
+		out.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+	}
+
+	/**
+	 * Estimates the length of the query so the builder is created large enough in most cases.
+	 */
+	private static int estimate(Map<String, ?> params) {
+		int length = 0;
+
+		for (Map.Entry<String, ?> entry : params.entrySet()) {
+			length += entry.getKey().length() + 2;
+			if (entry.getValue() instanceof CharSequence value) length += value.length();
+			else length += 16;
+		}
+
+		return length + (length >> 2);
+	}
+
+}
@@ -0,0 +1,160 @@
+package de.quantumrange.webUtils.connections;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
+import de.quantumrange.actionlib.Action;
+import de.quantumrange.webUtils.models.WebResult;
+
+import java.net.URL;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An immutable request to a fixed endpoint that is prepared once and then sent many times, only the data (query
+ * parameters or body) changes per request.
+ * <p>
+ * A template is created with {@link WebConnection#toTemplate()} and copies all settings of the connection (URL,
+ * method, headers, RateID, engine, codecs, limiter, retry policy, ...). The URI is checked and the headers are
+ * built only once, so a request from a template skips creating a connection and its headers. A template can be
+ * shared by all threads and used at the same time, changes to the connection afterwards don't affect it.
+ * <p>
+ * Example:
+ * <pre>RequestTemplate&lt;Map&lt;String, ?&gt;&gt; search = Web.url(url).rateID(1).compression(true).toTemplate();
+ *
+ * search.requestJson(Map.of("q", "java"), Result.class).queue(...);</pre>
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ * @param <T> the type of the data of a request, like the one of the {@link WebConnection}.
+ */
+public final class RequestTemplate<T> {
+
+	/**
+	 * The private copy of the connection, it is never changed.
+	 */
+	private final WebConnection<T, ?> connection;
+	private final Map<String, String> headers;
+
+	RequestTemplate(WebConnection<T, ?> connection) {
+		this.connection = connection;
+		this.headers = Map.copyOf(connection.getHeaderProperties());
+	}
+
+	/**
+	 * Sends a request with the data (more on {@link WebConnection#request(Object)}).
+	 *
+	 * @param data The data that should be sent.
+	 * @return The action that sends the request.
+	 */
+	public Action<WebResult<String>> request(T data) {
+		return connection.request(data);
+	}
+
+	/**
+	 * Sends a request with the data and reads the body with the handler (more on
+	 * {@link WebConnection#request(Object, HttpResponse.BodyHandler)}).
+	 *
+	 * @param data The data that should be sent.
+	 * @param handler The handler that reads the body of the response.
+	 * @param <B> The type of the body.
+	 * @return The action that sends the request.
+	 */
+	public <B> Action<WebResult<B>> request(T data, HttpResponse.BodyHandler<B> handler) {
+		return connection.request(data, handler);
+	}
+
+	/**
+	 * Sends a request with the data without blocking a thread (more on {@link WebConnection#requestAsync(Object)}).
+	 *
+	 * @param data The data that should be sent.
+	 * @return The future that completes with the result.
+	 */
+	public CompletableFuture<WebResult<String>> requestAsync(T data) {
+		return connection.requestAsync(data);
+	}
+
+	/**
+	 * Sends a request with the data without blocking a thread and reads the body with the handler (more on
+	 * {@link WebConnection#requestAsync(Object, HttpResponse.BodyHandler)}).
+	 *
+	 * @param data The data that should be sent.
+	 * @param handler The handler that reads the body of the response.
+	 * @param <B> The type of the body.
+	 * @return The future that completes with the result.
+	 */
+	public <B> CompletableFuture<WebResult<B>> requestAsync(T data, HttpResponse.BodyHandler<B> handler) {
+		return connection.requestAsync(data, handler);
+	}
+
+	/**
+	 * Sends a request with the data and maps the JSON of the response (more on
+	 * {@link WebConnection#requestJson(Object, ObjectReader)}).
+	 *
+	 * @param data The data that should be sent.
+	 * @param reader The reader with the type of the result.
+	 * @param <O> The type of the result.
+	 * @return The action that sends the request.
+	 */
+	public <O> Action<WebResult<O>> requestJson(T data, ObjectReader reader) {
+		return connection.requestJson(data, reader);
+	}
+
+	/**
+	 * Sends a request with the data and maps the JSON of the response with the cached reader of the codecs (more on
+	 * {@link WebConnection#requestJson(Object, Class)}).
+	 *
+	 * @param data The data that should be sent.
+	 * @param type The class of the result.
+	 * @param <O> The type of the result.
+	 * @return The action that sends the request.
+	 */
+	public <O> Action<WebResult<O>> requestJson(T data, Class<O> type) {
+		return connection.requestJson(data, type);
+	}
+
+	/**
+	 * Sends a request with the data and maps the JSON of the response with the cached reader of the codecs (more on
+	 * {@link WebConnection#requestJson(Object, TypeReference)}).
+	 *
+	 * @param data The data that should be sent.
+	 * @param type The generic type of the result.
+	 * @param <O> The type of the result.
+	 * @return The action that sends the request.
+	 */
+	public <O> Action<WebResult<O>> requestJson(T data, TypeReference<O> type) {
+		return connection.requestJson(data, type);
+	}
+
+	public URL getUrl() {
+		return connection.getUrl();
+	}
+
+	public HTTPRequestType getType() {
+		return connection.getType();
+	}
+
+	public int getRateID() {
+		return connection.getRateID();
+	}
+
+	/**
+	 * Returns the headers that are sent with every request, without the <code>Accept-Encoding</code> that is added
+	 * for {@link WebConnection#compression(boolean)}.
+	 * @return the headers, they can't be changed.
+	 */
+	public Map<String, String> getHeaders() {
+		return headers;
+	}
+
+	@Override
+	public String toString() {
+		return "RequestTemplate{" +
+				"type=" + getType() +
+				", url=" + getUrl() +
+				", rateID=" + getRateID() +
+				", headers=" + headers.keySet() +
+				'}';
+	}
+
+}
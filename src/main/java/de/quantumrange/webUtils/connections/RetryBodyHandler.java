@@ -0,0 +1,63 @@
+package de.quantumrange.webUtils.connections;
+
+import de.quantumrange.webUtils.ratelimit.RateLimiter;
+import de.quantumrange.webUtils.retry.RetryPolicy;
+
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Decides with the {@link RetryPolicy} as soon as the status and headers of an attempt arrived whether it is retried.
+ * The body of an attempt that is retried is drained and dropped, so the handler of the caller never opens it (for
+ * example an {@link java.io.InputStream}, a JSON supplier or a publisher that nobody would close) and the connection
+ * goes back to the pool.
+ *
+ * @param <B> the type of the body.
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+final class RetryBodyHandler<B> implements HttpResponse.BodyHandler<B> {
+
+	private final HttpResponse.BodyHandler<B> handler;
+	private final RetryPolicy policy;
+	private final HTTPRequestType type;
+	private final int attempt;
+	/**
+	 * The longest <code>Retry-After</code> that is waited for in addition to the policy, null for no limit.
+	 */
+	private final Duration maxWait;
+	private volatile boolean retry;
+
+	RetryBodyHandler(HttpResponse.BodyHandler<B> handler, RetryPolicy policy, HTTPRequestType type, int attempt,
+					 Duration maxWait) {
+		this.handler = handler;
+		this.policy = policy;
+		this.type = type;
+		this.attempt = attempt;
+		this.maxWait = maxWait;
+	}
+
+	@Override
+	public HttpResponse.BodySubscriber<B> apply(HttpResponse.ResponseInfo info) {
+		if (!policy.isRetryable(type, attempt, info) || !withinMaxWait(info)) return handler.apply(info);
+
+		retry = true;
+		return HttpResponse.BodySubscribers.replacing(null);
+	}
+
+	private boolean withinMaxWait(HttpResponse.ResponseInfo info) {
+		if (maxWait == null) return true;
+
+		Duration retryAfter = RateLimiter.getRetryAfter(info.headers());
+		return retryAfter == null || retryAfter.compareTo(maxWait) <= 0;
+	}
+
+	/**
+	 * Returns whether the response was meant for a retry, its body is then null.
+	 * @return true if the attempt is retried.
+	 */
+	boolean isRetry() {
+		return retry;
+	}
+
+}
@@ -0,0 +1,146 @@
+package de.quantumrange.webUtils.connections;
+
+import de.quantumrange.webUtils.models.WebTimings;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+
+/**
+ * A {@link HttpRequest.Builder} that remembers the length of the body when it is set, so the length can be read
+ * without building the request (see {@link WebConnection#newRequest()}).
+ * It also carries the {@link WebTimings.Recorder} of the request through the layers in front of the network (the
+ * cache and single flight replace the handler, so the recorder can't travel with it).
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+final class SizedRequestBuilder implements HttpRequest.Builder {
+
+	private final HttpRequest.Builder builder;
+	private long contentLength;
+	private WebTimings.Recorder timings;
+
+	SizedRequestBuilder(HttpRequest.Builder builder, long contentLength) {
+		this.builder = builder;
+		this.contentLength = contentLength;
+	}
+
+	/**
+	 * Returns the length of the body.
+	 * @return the length in bytes, 0 without body and -1 if it is unknown (for example for a stream).
+	 */
+	long getContentLength() {
+		return contentLength;
+	}
+
+	/**
+	 * Returns the recorder of the request.
+	 * @return the recorder or null if the request is not timed.
+	 */
+	WebTimings.Recorder getTimings() {
+		return timings;
+	}
+
+	void setTimings(WebTimings.Recorder timings) {
+		this.timings = timings;
+	}
+
+	@Override
+	public HttpRequest.Builder uri(URI uri) {
+		builder.uri(uri);
+		return this;
+	}
+
+	@Override
+	public HttpRequest.Builder expectContinue(boolean enable) {
+		builder.expectContinue(enable);
+		return this;
+	}
+
+	@Override
+	public HttpRequest.Builder version(HttpClient.Version version) {
+		builder.version(version);
+		return this;
+	}
+
+	@Override
+	public HttpRequest.Builder header(String name, String value) {
+		builder.header(name, value);
+		return this;
+	}
+
+	@Override
+	public HttpRequest.Builder headers(String... headers) {
+		builder.headers(headers);
+		return this;
+	}
+
+	@Override
+	public HttpRequest.Builder timeout(Duration duration) {
+		builder.timeout(duration);
+		return this;
+	}
+
+	@Override
+	public HttpRequest.Builder setHeader(String name, String value) {
+		builder.setHeader(name, value);
+		return this;
+	}
+
+	@Override
+	public HttpRequest.Builder GET() {
+		builder.GET();
+		contentLength = 0L;
+		return this;
+	}
+
+	@Override
+	public HttpRequest.Builder POST(HttpRequest.BodyPublisher bodyPublisher) {
+		builder.POST(bodyPublisher);
+		contentLength = bodyPublisher.contentLength();
+		return this;
+	}
+
+	@Override
+	public HttpRequest.Builder PUT(HttpRequest.BodyPublisher bodyPublisher) {
+		builder.PUT(bodyPublisher);
+		contentLength = bodyPublisher.contentLength();
+		return this;
+	}
+
+	@Override
+	public HttpRequest.Builder DELETE() {
+		builder.DELETE();
+		contentLength = 0L;
+		return this;
+	}
+
+	@Override
+	public HttpRequest.Builder HEAD() {
+		builder.HEAD();
+		contentLength = 0L;
+		return this;
+	}
+
+	@Override
+	public HttpRequest.Builder method(String method, HttpRequest.BodyPublisher bodyPublisher) {
+		builder.method(method, bodyPublisher);
+		contentLength = bodyPublisher.contentLength();
+		return this;
+	}
+
+	@Override
+	public HttpRequest build() {
+		return builder.build();
+	}
+
+	@Override
+	public HttpRequest.Builder copy() {
+		SizedRequestBuilder copy = new SizedRequestBuilder(builder.copy(), contentLength);
+		copy.timings = timings;
+		return copy;
+	}
+
+}
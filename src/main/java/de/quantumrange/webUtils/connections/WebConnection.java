@@ -2,6 +2,8 @@ package de.quantumrange.webUtils.connections;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.*;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -9,29 +11,60 @@ import de.quantumrange.actionlib.Action;
 import de.quantumrange.actionlib.impl.actions.RateLimitedAction;
 import de.quantumrange.actionlib.impl.manager.RateLimitedThreadManager;
 import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.circuit.HostGuard;
+import de.quantumrange.webUtils.circuit.RejectedRequestException;
+import de.quantumrange.webUtils.compression.Compression;
 import de.quantumrange.webUtils.connections.impl.DataWebConnection;
 import de.quantumrange.webUtils.connections.impl.GetWebConnection;
+import de.quantumrange.webUtils.json.JsonBodyHandlers;
+import de.quantumrange.webUtils.json.JsonCodecs;
+import de.quantumrange.webUtils.metrics.CountingBodyHandler;
+import de.quantumrange.webUtils.metrics.RequestTag;
+import de.quantumrange.webUtils.metrics.WebInstrumentation;
+import de.quantumrange.webUtils.models.LazyBody;
 import de.quantumrange.webUtils.models.WebResult;
+import de.quantumrange.webUtils.models.WebTimings;
+import de.quantumrange.webUtils.pagination.Pagination;
+import de.quantumrange.webUtils.pagination.Paginator;
+import de.quantumrange.webUtils.ratelimit.RateLimiter;
+import de.quantumrange.webUtils.retry.RetryPolicy;
+import de.quantumrange.webUtils.stream.EventStream;
+import de.quantumrange.webUtils.stream.ServerSentEvent;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeFormatterBuilder;
-import java.time.temporal.ChronoField;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Is the base class for the {@link DataWebConnection} and the {@link GetWebConnection}.
- * These implementations implement how the request is sent.
+ * These implementations implement how the request is built (see {@link #createRequest(Object)}).
  * The {@link WebConnection} takes care of the rest by itself.
  *
  * @author QuantumRange
@@ -40,40 +73,61 @@ import java.util.function.Function;
 public abstract class WebConnection<T, J> {
 
 	/**
-	 * The standard for Json LocalDateTime.
+	 * The longest wait between two attempts of a blocking request (see {@link #retry(RetryPolicy)}), because it
+	 * blocks a thread of {@link Web#MANAGER}. A longer wait is only possible with the asynchronous requests.
 	 */
-	private static final DateTimeFormatter DATE_TIME_FORMATTER = new DateTimeFormatterBuilder()
-			.appendOptional(DateTimeFormatter.ISO_DATE_TIME)
-			.appendOptional(DateTimeFormatter.ISO_OFFSET_DATE_TIME)
-			.appendOptional(DateTimeFormatter.ISO_INSTANT)
-			.appendOptional(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SX"))
-			.appendOptional(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ssX"))
-			.appendOptional(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))
-			.appendOptional(DateTimeFormatter.ofPattern("yyyy-MM-dd"))
-			.toFormatter()
-			.withZone(ZoneOffset.UTC);
+	public static final Duration MAX_BLOCKING_RETRY_WAIT = Duration.ofSeconds(5);
 
 	/**
-	 * The standard for Json LocalTime.
+	 * The manager at which the default RateID 0 is registered, so it is registered only once and not per connection.
 	 */
-	private static final DateTimeFormatter TIME_FORMATTER = new DateTimeFormatterBuilder()
-			.appendOptional(DateTimeFormatter.ISO_TIME)
-			.appendOptional(DateTimeFormatter.ISO_OFFSET_TIME)
-			.parseDefaulting(ChronoField.YEAR, 2021)
-			.parseDefaulting(ChronoField.MONTH_OF_YEAR, 1)
-			.parseDefaulting(ChronoField.DAY_OF_MONTH, 1)
-			.toFormatter()
-			.withZone(ZoneOffset.UTC);
+	private static volatile RateLimitedThreadManager registeredManager;
 
 	/**
 	 * The URL to connect to.
 	 */
 	private final URL url;
+	/**
+	 * The URL as URI, null if the URL is not a valid URI.
+	 */
+	private final URI uri;
 	/**
 	 * Header attributes are cached here until the request is sent.
 	 */
 	private final HashMap<String, String> headerProperties;
+	/**
+	 * The headers as name and value pairs, only set in the copy of a {@link RequestTemplate} which can't change.
+	 */
+	private final String[] templateHeaders;
 	private int rateID;
+	/**
+	 * The engine that sends the request, if null {@link Web#ENGINE} is used.
+	 */
+	private WebEngine engine;
+	/**
+	 * The JSON codecs of this connection, if null {@link Web#CODECS} is used.
+	 */
+	private JsonCodecs codecs;
+	/**
+	 * The rate limiter of this connection, if null {@link Web#LIMITER} is used.
+	 */
+	private RateLimiter limiter;
+	/**
+	 * If true, compressed responses are requested and decompressed (see {@link Compression}).
+	 */
+	private boolean compression;
+	/**
+	 * The policy that decides if a failed request is sent again, if null nothing is retried.
+	 */
+	private RetryPolicy retryPolicy;
+	/**
+	 * The circuit breakers and bulkheads of this connection, if null {@link Web#GUARD} is used.
+	 */
+	private HostGuard guard;
+	/**
+	 * Is informed about every request of this connection, if null {@link Web#INSTRUMENTATION} is used.
+	 */
+	private WebInstrumentation instrumentation;
 
 	/**
 	 * @param url must be valid and is the URL to connect to at {@link #request(Object)} (or
@@ -83,9 +137,73 @@ public abstract class WebConnection<T, J> {
 	 */
 	public WebConnection(URL url, int rateID) {
 		this.url = url;
+		this.uri = toURI(url);
 		this.rateID = rateID;
 		this.headerProperties = new HashMap<>();
-		Web.MANAGER.registerRateLimit(0, 0L);
+		this.templateHeaders = null;
+
+		RateLimitedThreadManager manager = Web.MANAGER;
+		if (registeredManager != manager) {
+			manager.registerRateLimit(0, 0L);
+			registeredManager = manager;
+		}
+	}
+
+	/**
+	 * Copies all settings of the connection for a {@link RequestTemplate} (see {@link #toTemplate()}).
+	 * The headers of the copy are built once and checked, they are then added to every request as they are.
+	 *
+	 * @param source the connection to copy.
+	 * @throws IllegalArgumentException if a header is not allowed (see {@link HttpRequest.Builder#header(String, String)}).
+	 */
+	protected WebConnection(WebConnection<T, J> source) {
+		this.url = source.url;
+		this.uri = source.uri;
+		this.rateID = source.rateID;
+		this.headerProperties = new HashMap<>(source.headerProperties);
+		this.engine = source.engine;
+		this.codecs = source.codecs;
+		this.limiter = source.limiter;
+		this.compression = source.compression;
+		this.retryPolicy = source.retryPolicy;
+		this.guard = source.guard;
+		this.instrumentation = source.instrumentation;
+
+		List<String> headers = new ArrayList<>(headerProperties.size() * 2 + 2);
+		headerProperties.forEach((name, value) -> {
+			headers.add(name);
+			headers.add(value);
+		});
+		if (compression && headerProperties.keySet().stream().noneMatch("Accept-Encoding"::equalsIgnoreCase)) {
+			headers.add("Accept-Encoding");
+			headers.add(Compression.ACCEPT_ENCODING);
+		}
+		this.templateHeaders = headers.toArray(String[]::new);
+
+		if (templateHeaders.length > 0) HttpRequest.newBuilder().headers(templateHeaders);
+	}
+
+	/**
+	 * Creates an immutable {@link RequestTemplate} with the current settings of this connection.
+	 * Changing this connection afterwards doesn't change the template.
+	 *
+	 * @return the template.
+	 * @throws IllegalArgumentException if the URL is not a valid URI or a header is not allowed.
+	 * @throws UnsupportedOperationException if this kind of connection can't be copied (see {@link #copy()}).
+	 */
+	public RequestTemplate<T> toTemplate() {
+		if (uri == null) throw new IllegalArgumentException("The URL is not a valid URI: " + url);
+		return new RequestTemplate<>(copy());
+	}
+
+	/**
+	 * Creates a copy of this connection with {@link #WebConnection(WebConnection)} for {@link #toTemplate()}.
+	 * Implementations that support templates override this.
+	 *
+	 * @return the copy.
+	 */
+	protected WebConnection<T, J> copy() {
+		throw new UnsupportedOperationException(getClass().getName() + " doesn't support templates.");
 	}
 
 	/**
@@ -146,7 +264,641 @@ public abstract class WebConnection<T, J> {
 	 * {@link RateLimitedAction#queue(long, TimeUnit)}, {@link RateLimitedAction#queue(Consumer, Consumer)} or
 	 * {@link RateLimitedAction#completion()} is executed.
 	 */
-	public abstract Action<WebResult<String>> request(T data);
+	public Action<WebResult<String>> request(T data) {
+		return executeString(requests(data));
+	}
+
+	/**
+	 * Executes the request (more on {@link #request(Object)}) and reads the body with the given {@link HttpResponse.BodyHandler}.
+	 *
+	 * @param data The data that should be sent.
+	 * @param handler The handler that reads the body of the response.
+	 * @param <B> The type of the body.
+	 * @return The action that sends the request.
+	 */
+	public <B> Action<WebResult<B>> request(T data, HttpResponse.BodyHandler<B> handler) {
+		return execute(requests(data), handler);
+	}
+
+	/**
+	 * Executes the request (more on {@link #request(Object)}) and reads the whole body into a byte array, without
+	 * converting it to a String.
+	 *
+	 * @param data The data that should be sent.
+	 * @return The action that sends the request.
+	 */
+	public Action<WebResult<byte[]>> requestBytes(T data) {
+		return request(data, HttpResponse.BodyHandlers.ofByteArray());
+	}
+
+	/**
+	 * Executes the request (more on {@link #request(Object)}) and writes the body directly into the file, so the
+	 * body is never held in memory. An existing file is overwritten.
+	 *
+	 * @param data The data that should be sent.
+	 * @param file The file the body is written to.
+	 * @return The action that sends the request, the result contains the path of the file.
+	 */
+	public Action<WebResult<Path>> requestFile(T data, Path file) {
+		return request(data, HttpResponse.BodyHandlers.ofFile(file));
+	}
+
+	/**
+	 * Executes the request (more on {@link #request(Object)}) and returns as soon as the headers arrived.
+	 * The body can then be read from the {@link InputStream} while it is received, the stream has to be closed.
+	 *
+	 * @param data The data that should be sent.
+	 * @return The action that sends the request.
+	 */
+	public Action<WebResult<InputStream>> requestStream(T data) {
+		return request(data, HttpResponse.BodyHandlers.ofInputStream());
+	}
+
+	/**
+	 * Executes the request (more on {@link #request(Object)}) and returns as soon as the headers arrived.
+	 * The body is published as {@link ByteBuffer}s while it is received, the subscriber controls how fast it is read.
+	 *
+	 * @param data The data that should be sent.
+	 * @return The action that sends the request.
+	 */
+	public Action<WebResult<Flow.Publisher<List<ByteBuffer>>>> requestPublisher(T data) {
+		return request(data, HttpResponse.BodyHandlers.ofPublisher());
+	}
+
+	/**
+	 * Opens a long-lived request to a <code>text/event-stream</code> (Server-Sent Events) and publishes its events
+	 * (more on {@link EventStream}). The request is sent when the stream is subscribed and again on every reconnect,
+	 * each time through the {@link HostGuard} and the {@link RateLimiter}. A {@link de.quantumrange.webUtils.cache.ResponseCache} is not used.
+	 *
+	 * @param data The data that should be sent.
+	 * @return The stream of the events.
+	 */
+	public EventStream<ServerSentEvent> requestEvents(T data) {
+		return EventStream.ofEvents(connector(data, "text/event-stream"), Function.identity());
+	}
+
+	/**
+	 * Opens a long-lived request to a <code>text/event-stream</code> (more on {@link #requestEvents(Object)}) and maps
+	 * the data of every event via JSON.
+	 *
+	 * @param data The data that should be sent.
+	 * @param reader The Jackson JSON ObjectReader with the type of the events.
+	 * @param <O> The type of the events.
+	 * @return The stream of the mapped events.
+	 */
+	public <O> EventStream<O> requestEvents(T data, ObjectReader reader) {
+		return EventStream.ofEvents(connector(data, "text/event-stream"), event -> readJson(reader, event.data()));
+	}
+
+	/**
+	 * Opens a long-lived request to a <code>text/event-stream</code> (more on {@link #requestEvents(Object)}) and maps
+	 * the data of every event via JSON with the cached reader of the codecs.
+	 *
+	 * @param data The data that should be sent.
+	 * @param type The class of the events.
+	 * @param <O> The type of the events.
+	 * @return The stream of the mapped events.
+	 */
+	public <O> EventStream<O> requestEvents(T data, Class<O> type) {
+		return requestEvents(data, getCodecs().reader(type));
+	}
+
+	/**
+	 * Opens a long-lived request and publishes every line of the body that is not blank while it arrives, for example
+	 * a chunked response (more on {@link EventStream}). Unlike {@link #requestEvents(Object)} the stream ends with
+	 * the body unless {@link EventStream#maxReconnects(int)} is set.
+	 *
+	 * @param data The data that should be sent.
+	 * @return The stream of the lines.
+	 */
+	public EventStream<String> requestLines(T data) {
+		return EventStream.ofLines(connector(data, null), Function.identity());
+	}
+
+	/**
+	 * Opens a long-lived request to NDJSON (one JSON value per line) and maps every line via JSON
+	 * (more on {@link #requestLines(Object)}).
+	 *
+	 * @param data The data that should be sent.
+	 * @param reader The Jackson JSON ObjectReader with the type of the values.
+	 * @param <O> The type of the values.
+	 * @return The stream of the mapped values.
+	 */
+	public <O> EventStream<O> requestLines(T data, ObjectReader reader) {
+		return EventStream.ofLines(connector(data, "application/x-ndjson"), line -> readJson(reader, line));
+	}
+
+	/**
+	 * Opens a long-lived request to NDJSON and maps every line via JSON with the cached reader of the codecs
+	 * (more on {@link #requestLines(Object, ObjectReader)}).
+	 *
+	 * @param data The data that should be sent.
+	 * @param type The class of the values.
+	 * @param <O> The type of the values.
+	 * @return The stream of the mapped values.
+	 */
+	public <O> EventStream<O> requestLines(T data, Class<O> type) {
+		return requestLines(data, getCodecs().reader(type));
+	}
+
+	/**
+	 * Reads all pages of a paginated API and returns their items as lazy {@link java.util.Iterator} or {@link Stream}
+	 * (more on {@link Paginator}). Every page is requested like with {@link #requestAsync(Object)}, so the RateID is
+	 * respected while the next pages are prefetched.
+	 *
+	 * @param data The data of the first page.
+	 * @param pagination How the items are found and the next pages are requested.
+	 * @param reader The Jackson JSON ObjectReader with the type of the items.
+	 * @param <O> The type of the items.
+	 * @return The paginator, nothing is sent until it is iterated.
+	 */
+	public <O> Paginator<O> paginate(T data, Pagination<T> pagination, ObjectReader reader) {
+		return Paginator.of(data, pagination, reader, (pageData, uri) -> {
+			Supplier<HttpRequest.Builder> requests = requests(pageData);
+
+			return executeAsync(() -> {
+				HttpRequest.Builder builder = requests.get();
+				return uri == null ? builder : builder.uri(uri);
+			}, Paginator.bodyHandler());
+		});
+	}
+
+	/**
+	 * Reads all pages of a paginated API with the cached reader of the codecs
+	 * (more on {@link #paginate(Object, Pagination, ObjectReader)}).
+	 *
+	 * @param data The data of the first page.
+	 * @param pagination How the items are found and the next pages are requested.
+	 * @param type The class of the items.
+	 * @param <O> The type of the items.
+	 * @return The paginator, nothing is sent until it is iterated.
+	 */
+	public <O> Paginator<O> paginate(T data, Pagination<T> pagination, Class<O> type) {
+		return paginate(data, pagination, getCodecs().reader(type));
+	}
+
+	/**
+	 * Creates the connector of an {@link EventStream} that sends the request straight to the network.
+	 *
+	 * @param accept The <code>Accept</code> header if the connection has none, or null.
+	 */
+	private EventStream.Connector connector(T data, String accept) {
+		Supplier<HttpRequest.Builder> requests = requests(data);
+
+		return lastEventId -> {
+			HttpRequest.Builder builder = requests.get();
+
+			if (accept != null && getHeaderProperties().keySet().stream().noneMatch("Accept"::equalsIgnoreCase)) {
+				builder.header("Accept", accept);
+			}
+			if (lastEventId != null) builder.header("Last-Event-ID", lastEventId);
+
+			return sendToNetwork(builder, decoding(HttpResponse.BodyHandlers.ofInputStream()));
+		};
+	}
+
+	private static <O> O readJson(ObjectReader reader, String json) {
+		try {
+			return reader.readValue(json);
+		} catch (JsonProcessingException e) {
+			throw new IllegalArgumentException("The receiving data is not JSON or the ObjectReader/Mapper is configured incorrectly.",
+					e);
+		}
+	}
+
+	/**
+	 * Executes the request that is created by the supplier (more on {@link #request(Object)}).
+	 * Implementations use this to offer other kinds of bodies than <code>T</code>.
+	 *
+	 * @param request Creates the request with all headers (see {@link #withHeaders(HttpRequest.Builder)}).
+	 * @param handler The handler that reads the body of the response.
+	 * @param <B> The type of the body.
+	 * @return The action that sends the request.
+	 */
+	protected <B> Action<WebResult<B>> execute(Supplier<HttpRequest.Builder> request,
+											   HttpResponse.BodyHandler<B> handler) {
+		AtomicReference<LocalDateTime> sendTime = new AtomicReference<>(null);
+		WebTimings.Recorder timings = new WebTimings.Recorder();
+
+		return new RateLimitedAction<>(Web.MANAGER, getRateID(), throwable -> {
+			timings.started();
+			try {
+				HttpResponse<B> response = sendWithRetries(request, decoding(handler), timings);
+				timings.completed();
+
+				return toResult(sendTime.get(), response, timings);
+			} catch (RejectedRequestException e) {
+				return new WebResult<>(sendTime.get(), null, getUrl(), getType(), e.getResponseCode(), (B) null,
+						timings.toTimings());
+			} catch (IOException | InterruptedException e) {
+				throwable.accept(e);
+				return new WebResult<>(sendTime.get(), null, getUrl(), getType(), WebResult.FAILED, (B) null,
+						timings.toTimings());
+			}
+		}).setCheck(() -> {
+			sendTime.set(LocalDateTime.now());
+			timings.queued();
+			return true;
+		});
+	}
+
+	/**
+	 * Executes the request (more on {@link #execute(Supplier, HttpResponse.BodyHandler)}) and keeps the body as bytes
+	 * until {@link WebResult#response()} is called (see {@link LazyBody#ofString()}).
+	 *
+	 * @param request Creates the request with all headers (see {@link #withHeaders(HttpRequest.Builder)}).
+	 * @return The action that sends the request.
+	 */
+	protected Action<WebResult<String>> executeString(Supplier<HttpRequest.Builder> request) {
+		return execute(request, LazyBody.ofString()).map(WebResult::ofLazy);
+	}
+
+	/**
+	 * Executes the request without blocking a thread while waiting for the response (more on {@link #request(Object)}).
+	 * The request still waits for its turn in {@link Web#MANAGER} and in the {@link RateLimiter} (so the RateID is
+	 * respected), but the thread of the manager only sends the request and is then free again.
+	 * This way many thousand requests can be in flight at the same time.
+	 *
+	 * @param data The data that should be sent.
+	 * @return The future that completes with the result, or exceptionally if the request failed.
+	 */
+	public CompletableFuture<WebResult<String>> requestAsync(T data) {
+		return executeAsync(requests(data), LazyBody.ofString()).thenApply(WebResult::ofLazy);
+	}
+
+	/**
+	 * Executes the request without blocking a thread (more on {@link #requestAsync(Object)}) and reads the body with
+	 * the given {@link HttpResponse.BodyHandler}.
+	 *
+	 * @param data The data that should be sent.
+	 * @param handler The handler that reads the body of the response.
+	 * @param <B> The type of the body.
+	 * @return The future that completes with the result, or exceptionally if the request failed.
+	 */
+	public <B> CompletableFuture<WebResult<B>> requestAsync(T data, HttpResponse.BodyHandler<B> handler) {
+		return executeAsync(requests(data), handler);
+	}
+
+	/**
+	 * Executes the request that is created by the supplier without blocking a thread (more on
+	 * {@link #requestAsync(Object)} and {@link #execute(Supplier, HttpResponse.BodyHandler)}).
+	 *
+	 * @param request Creates the request with all headers (see {@link #withHeaders(HttpRequest.Builder)}).
+	 * @param handler The handler that reads the body of the response.
+	 * @param <B> The type of the body.
+	 * @return The future that completes with the result, or exceptionally if the request failed.
+	 */
+	protected <B> CompletableFuture<WebResult<B>> executeAsync(Supplier<HttpRequest.Builder> request,
+															   HttpResponse.BodyHandler<B> handler) {
+		AtomicReference<LocalDateTime> sendTime = new AtomicReference<>(null);
+		WebTimings.Recorder timings = new WebTimings.Recorder();
+		CompletableFuture<WebResult<B>> result = new CompletableFuture<>();
+
+		new RateLimitedAction<>(Web.MANAGER, getRateID(), throwable -> {
+			timings.started();
+			return sendAsyncWithRetries(request, decoding(handler), timings, 1);
+		})
+				.setCheck(() -> {
+					sendTime.set(LocalDateTime.now());
+					timings.queued();
+					return true;
+				})
+				.queue(future -> future.whenComplete((response, throwable) -> {
+					Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+
+					try {
+						if (cause instanceof RejectedRequestException rejected) {
+							result.complete(new WebResult<>(sendTime.get(), null, getUrl(), getType(),
+									rejected.getResponseCode(), (B) null, timings.toTimings()));
+							return;
+						}
+						if (throwable != null) {
+							result.completeExceptionally(throwable);
+							return;
+						}
+
+						timings.completed();
+						result.complete(toResult(sendTime.get(), response, timings));
+					} catch (MalformedURLException | RuntimeException e) {
+						result.completeExceptionally(e);
+					}
+				}), result::completeExceptionally);
+
+		return result;
+	}
+
+	/**
+	 * Sends the request with the {@link WebEngine} as soon as the {@link HostGuard} and the {@link RateLimiter} allow
+	 * it and lets both adapt to the response. Every step is reported to the {@link WebInstrumentation}.
+	 * Implementations can override this to put a layer in front of the network.
+	 *
+	 * @param builder The request with all headers.
+	 * @param handler The handler that reads the body of the response.
+	 * @param <B> The type of the body.
+	 * @return The response of the server.
+	 * @throws IOException if the request could not be sent or received.
+	 * @throws RejectedRequestException if the {@link HostGuard} rejected the request, it was not sent.
+	 * @throws InterruptedException if the thread was interrupted while waiting.
+	 */
+	protected <B> HttpResponse<B> send(HttpRequest.Builder builder, HttpResponse.BodyHandler<B> handler)
+			throws IOException, InterruptedException {
+		return sendToNetwork(builder, handler);
+	}
+
+	/**
+	 * Is {@link #send(HttpRequest.Builder, HttpResponse.BodyHandler)} without the layers of the implementations, for
+	 * the requests of an {@link EventStream} whose bodies never end.
+	 */
+	private <B> HttpResponse<B> sendToNetwork(HttpRequest.Builder builder, HttpResponse.BodyHandler<B> handler)
+			throws IOException, InterruptedException {
+		String host = getUrl().getHost();
+		WebInstrumentation instrumentation = getInstrumentation();
+		RequestTag tag = new RequestTag(host, getType(), getRateID());
+
+		instrumentation.onQueued(tag);
+		long queuedAt = System.nanoTime();
+		try {
+			getLimiter().acquire(host, getRateID());
+		} catch (InterruptedException e) {
+			instrumentation.onCancelled(tag);
+			throw e;
+		}
+
+		// The permit is taken after the token, so a request that waits in the rate limiter has no place in the bulkhead.
+		HostGuard.Permit permit;
+		try {
+			permit = getGuard().acquire(host);
+		} catch (RejectedRequestException e) {
+			instrumentation.onRejected(tag, e.getResponseCode());
+			throw e;
+		}
+
+		try {
+			long startedAt = System.nanoTime();
+			instrumentation.onStarted(tag, startedAt - queuedAt, contentLength(builder));
+
+			HttpResponse<B> response;
+			try {
+				response = getEngine().send(builder, counting(timed(builder, handler), instrumentation, tag));
+			} catch (IOException | RuntimeException e) {
+				permit.failure();
+				instrumentation.onFailed(tag, e, System.nanoTime() - startedAt);
+				throw e;
+			} catch (InterruptedException e) {
+				permit.cancel();
+				instrumentation.onFailed(tag, e, System.nanoTime() - startedAt);
+				throw e;
+			}
+			permit.complete(response.statusCode());
+			instrumentation.onCompleted(tag, response.statusCode(), System.nanoTime() - startedAt);
+			getLimiter().update(host, response);
+
+			return response;
+		} finally {
+			// Gives the permit back if anything above threw before the result was reported, else this does nothing.
+			permit.failure();
+		}
+	}
+
+	/**
+	 * Sends the request without blocking a thread (more on {@link #send(HttpRequest.Builder, HttpResponse.BodyHandler)}).
+	 *
+	 * @param builder The request with all headers.
+	 * @param handler The handler that reads the body of the response.
+	 * @param <B> The type of the body.
+	 * @return The future that completes with the response of the server.
+	 */
+	protected <B> CompletableFuture<HttpResponse<B>> sendAsync(HttpRequest.Builder builder,
+															   HttpResponse.BodyHandler<B> handler) {
+		String host = getUrl().getHost();
+		WebInstrumentation instrumentation = getInstrumentation();
+		RequestTag tag = new RequestTag(host, getType(), getRateID());
+
+		instrumentation.onQueued(tag);
+		long queuedAt = System.nanoTime();
+
+		return getLimiter().acquireAsync(host, getRateID())
+				.whenComplete((ignored, throwable) -> {
+					if (throwable != null) instrumentation.onCancelled(tag);
+				})
+				.thenCompose(ignored -> {
+					// The permit is taken after the token, like in sendToNetwork.
+					HostGuard.Permit permit;
+					try {
+						permit = getGuard().acquire(host);
+					} catch (RejectedRequestException e) {
+						instrumentation.onRejected(tag, e.getResponseCode());
+						return CompletableFuture.<HttpResponse<B>>failedFuture(e);
+					}
+
+					try {
+						long startedAt = System.nanoTime();
+						instrumentation.onStarted(tag, startedAt - queuedAt, contentLength(builder));
+
+						return getEngine().sendAsync(builder, counting(timed(builder, handler), instrumentation, tag))
+								.whenComplete((response, throwable) -> {
+									long nanos = System.nanoTime() - startedAt;
+
+									if (throwable != null) {
+										permit.failure();
+										instrumentation.onFailed(tag, throwable, nanos);
+									} else {
+										permit.complete(response.statusCode());
+										instrumentation.onCompleted(tag, response.statusCode(), nanos);
+									}
+								});
+					} catch (RuntimeException e) {
+						permit.failure();
+						return CompletableFuture.<HttpResponse<B>>failedFuture(e);
+					}
+				})
+				.thenApply(response -> {
+					getLimiter().update(host, response);
+					return response;
+				});
+	}
+
+	/**
+	 * Wraps the handler so the received bytes are reported, unless nothing is instrumented.
+	 */
+	private static <B> HttpResponse.BodyHandler<B> counting(HttpResponse.BodyHandler<B> handler,
+															WebInstrumentation instrumentation, RequestTag tag) {
+		if (instrumentation == WebInstrumentation.NONE) return handler;
+		return new CountingBodyHandler<>(handler, instrumentation, tag);
+	}
+
+	/**
+	 * Marks the dispatch on the recorder of the request (see {@link #withTimings(HttpRequest.Builder,
+	 * WebTimings.Recorder)}) and wraps the handler so the arrival of the headers is marked, unless it is not timed.
+	 */
+	private static <B> HttpResponse.BodyHandler<B> timed(HttpRequest.Builder builder,
+														 HttpResponse.BodyHandler<B> handler) {
+		WebTimings.Recorder timings = builder instanceof SizedRequestBuilder sized ? sized.getTimings() : null;
+		if (timings == null) return handler;
+
+		timings.dispatched();
+		return timings.wrap(handler);
+	}
+
+	/**
+	 * Attaches the recorder to the request, so it reaches {@link #sendToNetwork(HttpRequest.Builder,
+	 * HttpResponse.BodyHandler)} through the cache and single flight.
+	 */
+	private static HttpRequest.Builder withTimings(HttpRequest.Builder builder, WebTimings.Recorder timings) {
+		if (builder instanceof SizedRequestBuilder sized) sized.setTimings(timings);
+		return builder;
+	}
+
+	/**
+	 * Returns the length of the body that was captured by {@link #newRequest()} or -1 if it is unknown.
+	 */
+	private static long contentLength(HttpRequest.Builder builder) {
+		return builder instanceof SizedRequestBuilder sized ? sized.getContentLength() : -1L;
+	}
+
+	/**
+	 * Sends the request (see {@link #send(HttpRequest.Builder, HttpResponse.BodyHandler)}) until it succeeded or the
+	 * {@link RetryPolicy} gives up. Every attempt waits in the {@link RateLimiter} again.
+	 * The body of an attempt that is retried is dropped before the handler reads it (see {@link RetryBodyHandler}).
+	 * <p>
+	 * This runs on a thread of {@link Web#MANAGER}, which is blocked during the waits, so every wait is at most
+	 * {@link #MAX_BLOCKING_RETRY_WAIT} and a longer <code>Retry-After</code> is not retried.
+	 */
+	private <B> HttpResponse<B> sendWithRetries(Supplier<HttpRequest.Builder> request,
+												HttpResponse.BodyHandler<B> handler, WebTimings.Recorder timings)
+			throws IOException, InterruptedException {
+		RetryPolicy policy = getRetryPolicy();
+
+		for (int attempt = 1; ; attempt++) {
+			RetryBodyHandler<B> attemptHandler = new RetryBodyHandler<>(handler, policy, getType(), attempt,
+					MAX_BLOCKING_RETRY_WAIT);
+			HttpResponse<B> response;
+
+			try {
+				response = send(withTimings(request.get(), timings), attemptHandler);
+			} catch (IOException e) {
+				if (!policy.isRetryable(getType(), attempt, null, e)) throw e;
+
+				timings.retry();
+				sleep(policy.getDelay(attempt, null));
+				continue;
+			}
+
+			if (!attemptHandler.isRetry()) return response;
+
+			timings.retry();
+			sleep(policy.getDelay(attempt, response));
+		}
+	}
+
+	private static void sleep(Duration delay) throws InterruptedException {
+		Thread.sleep(delay.compareTo(MAX_BLOCKING_RETRY_WAIT) > 0 ? MAX_BLOCKING_RETRY_WAIT : delay);
+	}
+
+	/**
+	 * Sends the request without blocking a thread (see {@link #sendWithRetries(Supplier, HttpResponse.BodyHandler,
+	 * WebTimings.Recorder)}), the waits between the attempts are scheduled, so they are as long as the
+	 * {@link RetryPolicy} asks for.
+	 */
+	private <B> CompletableFuture<HttpResponse<B>> sendAsyncWithRetries(Supplier<HttpRequest.Builder> request,
+																		HttpResponse.BodyHandler<B> handler,
+																		WebTimings.Recorder timings, int attempt) {
+		RetryPolicy policy = getRetryPolicy();
+		RetryBodyHandler<B> attemptHandler = new RetryBodyHandler<>(handler, policy, getType(), attempt, null);
+
+		return sendAsync(withTimings(request.get(), timings), attemptHandler)
+				.handle((response, throwable) -> {
+					boolean retry = throwable == null ? attemptHandler.isRetry()
+							: policy.isRetryable(getType(), attempt, null, throwable);
+					if (!retry) {
+						return throwable == null ? CompletableFuture.completedFuture(response)
+								: CompletableFuture.<HttpResponse<B>>failedFuture(throwable);
+					}
+
+					timings.retry();
+
+					Executor delayed = CompletableFuture.delayedExecutor(
+							policy.getDelay(attempt, response).toNanos(), TimeUnit.NANOSECONDS);
+					return CompletableFuture.supplyAsync(() -> null, delayed)
+							.thenCompose(ignored -> sendAsyncWithRetries(request, handler, timings, attempt + 1));
+				})
+				.thenCompose(Function.identity());
+	}
+
+	/**
+	 * Creates the requests for the data (see {@link #createRequest(Object)}) with the headers of this connection.
+	 * The supplier is called for every attempt, so implementations that encode the body (for example compress it)
+	 * should do it once here instead of in {@link #createRequest(Object)}.
+	 *
+	 * @param data The data that should be sent.
+	 * @return Creates a new request for every attempt.
+	 */
+	protected Supplier<HttpRequest.Builder> requests(T data) {
+		return () -> withHeaders(createRequest(data));
+	}
+
+	/**
+	 * Adds the headers of this connection to the request.
+	 *
+	 * @param builder The request.
+	 * @return The same builder.
+	 */
+	protected HttpRequest.Builder withHeaders(HttpRequest.Builder builder) {
+		if (templateHeaders != null) return templateHeaders.length == 0 ? builder : builder.headers(templateHeaders);
+
+		boolean acceptEncoding = false;
+
+		for (String key : getHeaderProperties().keySet()) {
+			builder.header(key, getHeaderProperties().get(key));
+			if (key.equalsIgnoreCase("Accept-Encoding")) acceptEncoding = true;
+		}
+
+		if (compression && !acceptEncoding) builder.header("Accept-Encoding", Compression.ACCEPT_ENCODING);
+
+		return builder;
+	}
+
+	private <B> HttpResponse.BodyHandler<B> decoding(HttpResponse.BodyHandler<B> handler) {
+		return compression ? Compression.decoding(handler) : handler;
+	}
+
+	/**
+	 * Creates the result and records the timings in {@link Web#LATENCIES}.
+	 */
+	private <B> WebResult<B> toResult(LocalDateTime sendTime, HttpResponse<B> response, WebTimings.Recorder recorder)
+			throws MalformedURLException {
+		WebTimings timings = recorder.toTimings();
+		Web.LATENCIES.record(getUrl().getHost(), getRateID(), timings);
+
+		return new WebResult<>(sendTime, LocalDateTime.now(), response.uri().toURL(), getType(),
+				response.statusCode(), response.body(), timings);
+	}
+
+	/**
+	 * Creates the request for the data.
+	 * The URI, method and body are set here, the headers are added by the {@link WebConnection}.
+	 * Implementations should start with {@link #newRequest()}.
+	 *
+	 * @param data The data that should be sent.
+	 * @return the request builder.
+	 */
+	protected abstract HttpRequest.Builder createRequest(T data);
+
+	/**
+	 * Creates an empty request, which remembers the length of its body as soon as it is set. The length is reported
+	 * to the {@link WebInstrumentation} without building the request again; for other builders it is unknown.
+	 *
+	 * @return the request builder.
+	 */
+	protected static HttpRequest.Builder newRequest() {
+		return new SizedRequestBuilder(HttpRequest.newBuilder(), 0L);
+	}
+
+	/**
+	 * Returns the type of the request.
+	 * @return the type of the request.
+	 */
+	public abstract HTTPRequestType getType();
 
 	/**
 	 * Executes the request (more on {@link #request(Object)}) and maps the result to the requested result O using the function.
@@ -201,10 +953,184 @@ public abstract class WebConnection<T, J> {
 	 * @return  The result of the request mapped to the requested object.
 	 */
 	public <O> Action<WebResult<O>> requestJson(T data) {
-		return requestJson(data, createObjectMapper().reader());
+		return requestJson(data, getCodecs().reader());
+	}
+
+	/**
+	 * Sends the request and converts the data type to the requested type via JSON
+	 * (more on {@link #requestJson(Object, ObjectReader)}).
+	 * The reader for the type is cached in the {@link JsonCodecs} of this connection.
+	 *
+	 * @param data The data that should be sent.
+	 * @param type The class to which the result is to be mapped via JSON.
+	 * @param <O> The object to which the result is to be mapped via JSON.
+	 * @return The result of the request mapped to the requested object.
+	 */
+	public <O> Action<WebResult<O>> requestJson(T data, Class<O> type) {
+		return requestJson(data, getCodecs().reader(type));
+	}
+
+	/**
+	 * Sends the request and converts the data type to the requested generic type via JSON
+	 * (more on {@link #requestJson(Object, ObjectReader)}).
+	 * The reader for the type is cached in the {@link JsonCodecs} of this connection.
+	 *
+	 * @param data The data that should be sent.
+	 * @param type The type to which the result is to be mapped via JSON.
+	 * @param <O> The object to which the result is to be mapped via JSON.
+	 * @return The result of the request mapped to the requested object.
+	 */
+	public <O> Action<WebResult<O>> requestJson(T data, TypeReference<O> type) {
+		return requestJson(data, getCodecs().reader(type));
+	}
+
+	/**
+	 * Sends the request and parses the JSON directly from the body of the response while it arrives
+	 * (more on {@link JsonBodyHandlers#ofJson(ObjectReader)}).
+	 * Unlike {@link #requestJson(Object, ObjectReader)} the body is never held as a whole {@link String}, which is
+	 * better for large responses.
+	 *
+	 * @param data The data that should be sent.
+	 * @param reader The Jackson JSON ObjectReader with the type that should be read.
+	 * @param <O> The object to which the result is to be mapped via JSON.
+	 * @return The result of the request mapped to the requested object.
+	 */
+	public <O> Action<WebResult<O>> requestJsonStreamed(T data, ObjectReader reader) {
+		return request(data, JsonBodyHandlers.<O>ofJson(reader)).map(res -> res.mapEagerly(WebConnection::parse));
+	}
+
+	/**
+	 * Sends the request and parses the JSON directly from the body of the response
+	 * (more on {@link #requestJsonStreamed(Object, ObjectReader)}).
+	 *
+	 * @param data The data that should be sent.
+	 * @param type The class to which the result is to be mapped via JSON.
+	 * @param <O> The object to which the result is to be mapped via JSON.
+	 * @return The result of the request mapped to the requested object.
+	 */
+	public <O> Action<WebResult<O>> requestJsonStreamed(T data, Class<O> type) {
+		return requestJsonStreamed(data, getCodecs().reader(type));
+	}
+
+	/**
+	 * Sends the request and parses the JSON directly from the body of the response
+	 * (more on {@link #requestJsonStreamed(Object, ObjectReader)}).
+	 *
+	 * @param data The data that should be sent.
+	 * @param type The type to which the result is to be mapped via JSON.
+	 * @param <O> The object to which the result is to be mapped via JSON.
+	 * @return The result of the request mapped to the requested object.
+	 */
+	public <O> Action<WebResult<O>> requestJsonStreamed(T data, TypeReference<O> type) {
+		return requestJsonStreamed(data, getCodecs().reader(type));
+	}
+
+	/**
+	 * Sends the request and passes the elements of the top-level JSON array in the response to the consumer one
+	 * after another while the body arrives (more on {@link JsonBodyHandlers#ofJsonValues(ObjectReader)}).
+	 * Only the current element is held in memory, so large lists can be processed with constant memory.
+	 *
+	 * @param data The data that should be sent.
+	 * @param reader The Jackson JSON ObjectReader with the type of the elements.
+	 * @param consumer The consumer that receives the elements.
+	 * @param <O> The type of the elements.
+	 * @return The result of the request with the count of the elements.
+	 */
+	public <O> Action<WebResult<Long>> requestJsonArray(T data, ObjectReader reader, Consumer<O> consumer) {
+		return request(data, JsonBodyHandlers.<O>ofJsonValues(reader)).map(res -> res.mapEagerly(supplier -> {
+			if (supplier == null) return null;
+
+			try (MappingIterator<O> iterator = parse(supplier)) {
+				long count = 0;
+
+				while (iterator.hasNextValue()) {
+					consumer.accept(iterator.nextValue());
+					count++;
+				}
+
+				return count;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}));
 	}
 
+	/**
+	 * Sends the request and passes the elements of the top-level JSON array to the consumer
+	 * (more on {@link #requestJsonArray(Object, ObjectReader, Consumer)}).
+	 *
+	 * @param data The data that should be sent.
+	 * @param type The class of the elements.
+	 * @param consumer The consumer that receives the elements.
+	 * @param <O> The type of the elements.
+	 * @return The result of the request with the count of the elements.
+	 */
+	public <O> Action<WebResult<Long>> requestJsonArray(T data, Class<O> type, Consumer<O> consumer) {
+		return requestJsonArray(data, getCodecs().reader(type), consumer);
+	}
+
+	/**
+	 * Sends the request and returns the elements of the top-level JSON array as lazy {@link Stream}.
+	 * The elements are parsed while the stream is consumed, the stream must be closed after use, this also closes
+	 * the body of the response.
+	 *
+	 * @param data The data that should be sent.
+	 * @param reader The Jackson JSON ObjectReader with the type of the elements.
+	 * @param <O> The type of the elements.
+	 * @return The result of the request with the stream of the elements.
+	 */
+	public <O> Action<WebResult<Stream<O>>> requestJsonArray(T data, ObjectReader reader) {
+		return request(data, JsonBodyHandlers.<O>ofJsonValues(reader)).map(res -> res.mapEagerly(supplier -> {
+			if (supplier == null) return null;
+
+			MappingIterator<O> iterator = parse(supplier);
+			return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+					.onClose(() -> {
+						try {
+							iterator.close();
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					});
+		}));
+	}
+
+	/**
+	 * Sends the request and returns the elements of the top-level JSON array as lazy {@link Stream}
+	 * (more on {@link #requestJsonArray(Object, ObjectReader)}).
+	 *
+	 * @param data The data that should be sent.
+	 * @param type The class of the elements.
+	 * @param <O> The type of the elements.
+	 * @return The result of the request with the stream of the elements.
+	 */
+	public <O> Action<WebResult<Stream<O>>> requestJsonArray(T data, Class<O> type) {
+		return requestJsonArray(data, getCodecs().reader(type));
+	}
+
+	private static <O> O parse(Supplier<O> supplier) {
+		if (supplier == null) return null;
+
+		try {
+			return supplier.get();
+		} catch (UncheckedIOException e) {
+			if (e.getCause() instanceof JsonProcessingException) {
+				throw new IllegalArgumentException("The receiving data is not JSON or the ObjectReader/Mapper is configured incorrectly.",
+						e.getCause());
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the URL as URI, it is converted once when the connection is created.
+	 * @return the URI or null if the URL is not a valid URI.
+	 */
 	protected URI getURI() {
+		return uri;
+	}
+
+	private static URI toURI(URL url) {
 		try {
 			return url.toURI();
 		} catch (URISyntaxException e) {
@@ -215,6 +1141,9 @@ public abstract class WebConnection<T, J> {
 	/**
 	 * Creates {@link ObjectMapper} with {@link LocalTime} and {@link LocalDateTime} deserializer.
 	 * All modules are registered.
+	 * <p>
+	 * Note: Creating a mapper is expensive, the mapper in {@link Web#CODECS} is created once with this method and
+	 * should be used instead.
 	 *
 	 * @return a fully configured {@link ObjectMapper} for all cases.
 	 */
@@ -229,12 +1158,20 @@ public abstract class WebConnection<T, J> {
 		module.addDeserializer(LocalDateTime.class, new JsonDeserializer<>() {
 			@Override
 			public LocalDateTime deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+				if (jsonParser.hasToken(JsonToken.VALUE_STRING)) {
+					return DateTimeParser.parseDateTime(jsonParser.getTextCharacters(), jsonParser.getTextOffset(),
+							jsonParser.getTextLength());
+				}
 				return parseDateTimeString(jsonParser.getText());
 			}
 		});
 		module.addDeserializer(LocalTime.class, new JsonDeserializer<>() {
 			@Override
 			public LocalTime deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+				if (jsonParser.hasToken(JsonToken.VALUE_STRING)) {
+					return DateTimeParser.parseTime(jsonParser.getTextCharacters(), jsonParser.getTextOffset(),
+							jsonParser.getTextLength());
+				}
 				return parseTimeString(jsonParser.getText());
 			}
 		});
@@ -253,11 +1190,11 @@ public abstract class WebConnection<T, J> {
 	}
 
 	private static LocalDateTime parseDateTimeString(String str) {
-		return ZonedDateTime.from(DATE_TIME_FORMATTER.parse(str)).toLocalDateTime();
+		return DateTimeParser.parseDateTime(str);
 	}
 
 	private static LocalTime parseTimeString(String str) {
-		return ZonedDateTime.from(TIME_FORMATTER.parse(str)).toOffsetDateTime().toLocalTime();
+		return DateTimeParser.parseTime(str);
 	}
 
 	/**
@@ -278,4 +1215,151 @@ public abstract class WebConnection<T, J> {
 	public int getRateID() {
 		return rateID;
 	}
+
+	/**
+	 * Sets the {@link WebEngine} that sends the requests of this connection.
+	 *
+	 * @param engine the engine or null to use {@link Web#ENGINE}.
+	 * @return itself
+	 */
+	public J engine(WebEngine engine) {
+		this.engine = engine;
+		return (J) this;
+	}
+
+	/**
+	 * Returns the {@link WebEngine} that sends the requests of this connection.
+	 * @return the set engine or {@link Web#ENGINE} if none is set.
+	 */
+	public WebEngine getEngine() {
+		return engine == null ? Web.ENGINE : engine;
+	}
+
+	/**
+	 * Sets the {@link RateLimiter} that limits the requests of this connection per host and RateID.
+	 *
+	 * @param limiter the limiter or null to use {@link Web#LIMITER}.
+	 * @return itself
+	 */
+	public J limiter(RateLimiter limiter) {
+		this.limiter = limiter;
+		return (J) this;
+	}
+
+	/**
+	 * Returns the {@link RateLimiter} that limits the requests of this connection.
+	 * @return the set limiter or {@link Web#LIMITER} if none is set.
+	 */
+	public RateLimiter getLimiter() {
+		return limiter == null ? Web.LIMITER : limiter;
+	}
+
+	/**
+	 * Sets the {@link JsonCodecs} that read and write the JSON of this connection.
+	 *
+	 * @param codecs the codecs or null to use {@link Web#CODECS}.
+	 * @return itself
+	 */
+	public J codecs(JsonCodecs codecs) {
+		this.codecs = codecs;
+		return (J) this;
+	}
+
+	/**
+	 * Returns the {@link JsonCodecs} that read and write the JSON of this connection.
+	 * @return the set codecs or {@link Web#CODECS} if none are set.
+	 */
+	public JsonCodecs getCodecs() {
+		return codecs == null ? Web.CODECS : codecs;
+	}
+
+	/**
+	 * Sets whether the server may compress the response.
+	 * If enabled, <code>Accept-Encoding: gzip, deflate</code> is sent (unless the header is already set) and a
+	 * compressed response is decompressed while it is received, before the {@link HttpResponse.BodyHandler} reads it.
+	 *
+	 * @param compression true to request compressed responses, default is false.
+	 * @return itself
+	 */
+	public J compression(boolean compression) {
+		this.compression = compression;
+		return (J) this;
+	}
+
+	/**
+	 * Returns whether compressed responses are requested.
+	 * @return true if compressed responses are requested.
+	 */
+	public boolean isCompression() {
+		return compression;
+	}
+
+	/**
+	 * Sets the {@link RetryPolicy} that decides if a failed request is sent again.
+	 * Every attempt waits in the {@link RateLimiter} again, so retries never exceed the limits. How often a request
+	 * was retried and how long it took can be read from the {@link WebResult#timings()}.
+	 * The body of an attempt that is retried is dropped before it is read.
+	 * <p>
+	 * The blocking requests wait on a thread of {@link Web#MANAGER}, so they wait at most
+	 * {@link #MAX_BLOCKING_RETRY_WAIT} and don't retry if the server asks for a longer <code>Retry-After</code>.
+	 * The asynchronous requests (e.g. {@link #requestAsync(Object)}) schedule the retry and wait as long as the policy
+	 * asks for.
+	 *
+	 * @param retryPolicy the policy or null to never retry (default).
+	 * @return itself
+	 */
+	public J retry(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+		return (J) this;
+	}
+
+	/**
+	 * Returns the {@link RetryPolicy} of this connection.
+	 * @return the set policy or {@link RetryPolicy#NONE} if none is set.
+	 */
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy == null ? RetryPolicy.NONE : retryPolicy;
+	}
+
+	/**
+	 * Sets the {@link HostGuard} that can reject the request before it is sent, if the circuit breaker of the host is
+	 * open or its bulkhead is full. The result of a rejected request has the response code
+	 * {@link WebResult#CIRCUIT_OPEN} or {@link WebResult#BULKHEAD_FULL}.
+	 *
+	 * @param guard the guard or null to use {@link Web#GUARD}.
+	 * @return itself
+	 */
+	public J guard(HostGuard guard) {
+		this.guard = guard;
+		return (J) this;
+	}
+
+	/**
+	 * Returns the {@link HostGuard} of this connection.
+	 * @return the set guard or {@link Web#GUARD} if none is set.
+	 */
+	public HostGuard getGuard() {
+		return guard == null ? Web.GUARD : guard;
+	}
+
+	/**
+	 * Sets the {@link WebInstrumentation} that is informed about every request of this connection, for example a
+	 * {@link de.quantumrange.webUtils.metrics.WebMetrics} of its own or {@link WebInstrumentation#NONE} to not count
+	 * the requests at all.
+	 *
+	 * @param instrumentation the instrumentation or null to use {@link Web#INSTRUMENTATION}.
+	 * @return itself
+	 */
+	public J instrument(WebInstrumentation instrumentation) {
+		this.instrumentation = instrumentation;
+		return (J) this;
+	}
+
+	/**
+	 * Returns the {@link WebInstrumentation} of this connection.
+	 * @return the set instrumentation or {@link Web#INSTRUMENTATION} if none is set.
+	 */
+	public WebInstrumentation getInstrumentation() {
+		return instrumentation == null ? Web.INSTRUMENTATION : instrumentation;
+	}
 }
@@ -0,0 +1,384 @@
+package de.quantumrange.webUtils.connections;
+
+import de.quantumrange.webUtils.Web;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The {@link WebEngine} owns the {@link HttpClient} that all {@link WebConnection}s send their requests with.
+ * Sharing one client means the connections to a server are kept alive and reused (and multiplexed over HTTP/2 if the
+ * server supports it), instead of paying for a new TCP connection and TLS handshake on every request.
+ * <p>
+ * The default engine is stored in {@link Web#ENGINE}, a different engine can be set per connection with
+ * {@link WebConnection#engine(WebEngine)}. An engine that is not needed anymore should be closed (see
+ * {@link #close()}).
+ * <p>
+ * Example:
+ * <pre>WebEngine engine = WebEngine.builder()
+ *         .connectTimeout(Duration.ofSeconds(5))
+ *         .requestTimeout(Duration.ofSeconds(30))
+ *         .maxConnectionsPerHost(8)
+ *         .build();</pre>
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public class WebEngine implements AutoCloseable {
+
+	private final HttpClient client;
+	private final Duration requestTimeout;
+	/**
+	 * How many requests may be sent to the same host at the same time, values below 1 mean unlimited.
+	 */
+	private final int maxConnectionsPerHost;
+	private final Map<String, HostPermits> hostPermits;
+	/**
+	 * Runs every asynchronous request on its own virtual thread, null if {@link Builder#virtualThreads(boolean)} is off.
+	 */
+	private final ExecutorService virtualThreads;
+
+	private WebEngine(Builder builder) {
+		HttpClient.Builder clientBuilder = HttpClient.newBuilder()
+				.version(builder.version)
+				.followRedirects(builder.redirect);
+
+		this.virtualThreads = builder.virtualThreads ? Executors.newVirtualThreadPerTaskExecutor() : null;
+
+		if (builder.connectTimeout != null) clientBuilder.connectTimeout(builder.connectTimeout);
+		if (builder.executor != null) clientBuilder.executor(builder.executor);
+		// The client gets its own threads, so it can finish its work while the requests are closed (see close()).
+		else if (virtualThreads != null) clientBuilder.executor(Thread::startVirtualThread);
+
+		this.client = clientBuilder.build();
+		this.requestTimeout = builder.requestTimeout;
+		this.maxConnectionsPerHost = builder.maxConnectionsPerHost;
+		this.hostPermits = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Creates a new {@link Builder} with the same defaults as {@link HttpClient#newHttpClient()}.
+	 *
+	 * @return a new builder.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Sends the request with the shared client and waits for the response.
+	 * If a request timeout is configured, it is applied to the request.
+	 * If {@link Builder#maxConnectionsPerHost(int)} is reached, this method waits until a request to the host is done.
+	 *
+	 * @param builder the request that should be sent.
+	 * @param handler the handler for the response body.
+	 * @param <B> the response body type.
+	 * @return the response of the server.
+	 * @throws IOException if the request could not be sent or received.
+	 * @throws InterruptedException if the thread was interrupted while waiting.
+	 */
+	public <B> HttpResponse<B> send(HttpRequest.Builder builder, HttpResponse.BodyHandler<B> handler)
+			throws IOException, InterruptedException {
+		HttpRequest request = build(builder);
+		HostPermits permits = getPermits(request.uri());
+
+		if (permits != null) permits.acquire();
+		try {
+			return client.send(request, handler);
+		} finally {
+			if (permits != null) permits.release();
+		}
+	}
+
+	/**
+	 * Sends the request with the shared client without blocking the calling thread (more on
+	 * {@link #send(HttpRequest.Builder, HttpResponse.BodyHandler)}).
+	 * If {@link Builder#maxConnectionsPerHost(int)} is reached, the request is sent as soon as a request to the host
+	 * is done, no thread waits for this.
+	 * <p>
+	 * If {@link Builder#virtualThreads(boolean)} is on, the request is sent blocking on its own virtual thread instead.
+	 * The future then completes on that virtual thread, so following stages may also block (for example to read a
+	 * streamed body).
+	 *
+	 * @param builder the request that should be sent.
+	 * @param handler the handler for the response body.
+	 * @param <B> the response body type.
+	 * @return the future that completes with the response of the server.
+	 */
+	public <B> CompletableFuture<HttpResponse<B>> sendAsync(HttpRequest.Builder builder,
+															HttpResponse.BodyHandler<B> handler) {
+		if (virtualThreads != null) {
+			CompletableFuture<HttpResponse<B>> future = new CompletableFuture<>();
+
+			try {
+				virtualThreads.execute(() -> {
+					try {
+						future.complete(send(builder, handler));
+					} catch (IOException | InterruptedException | RuntimeException e) {
+						future.completeExceptionally(e);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				future.completeExceptionally(e);
+			}
+
+			return future;
+		}
+
+		HttpRequest request = build(builder);
+		HostPermits permits = getPermits(request.uri());
+
+		if (permits == null) return client.sendAsync(request, handler);
+
+		return permits.acquireAsync()
+				.thenCompose(ignored -> client.sendAsync(request, handler))
+				.whenComplete((response, throwable) -> permits.release());
+	}
+
+	/**
+	 * Waits until the requests that were sent are done and shuts down the client and the virtual threads of
+	 * {@link Builder#virtualThreads(boolean)}. An executor set with {@link Builder#executor(Executor)} is not owned
+	 * by the engine and stays open.
+	 * No requests can be sent with the engine afterwards.
+	 */
+	@Override
+	public void close() {
+		if (virtualThreads != null) virtualThreads.close();
+		client.close();
+	}
+
+	private HttpRequest build(HttpRequest.Builder builder) {
+		if (requestTimeout != null) builder.timeout(requestTimeout);
+		return builder.build();
+	}
+
+	private HostPermits getPermits(URI uri) {
+		if (maxConnectionsPerHost < 1) return null;
+
+		String host = uri.getScheme() + "://" + uri.getHost() + ':' + uri.getPort();
+		return hostPermits.computeIfAbsent(host, key -> new HostPermits(maxConnectionsPerHost));
+	}
+
+	/**
+	 * Returns the shared client.
+	 * @return the shared client.
+	 */
+	public HttpClient getClient() {
+		return client;
+	}
+
+	/**
+	 * Returns the timeout that is applied to every request or null if there is none.
+	 * @return the request timeout.
+	 */
+	public Duration getRequestTimeout() {
+		return requestTimeout;
+	}
+
+	/**
+	 * Returns how many requests may be sent to one host at the same time.
+	 * @return the connection limit per host, values below 1 mean unlimited.
+	 */
+	public int getMaxConnectionsPerHost() {
+		return maxConnectionsPerHost;
+	}
+
+	/**
+	 * Returns whether the asynchronous requests run on virtual threads.
+	 * @return true if {@link Builder#virtualThreads(boolean)} is on.
+	 */
+	public boolean isVirtualThreads() {
+		return virtualThreads != null;
+	}
+
+	/**
+	 * The permits for the requests to one host.
+	 * Waiting requests are queued as futures (in order), so asynchronous requests don't block a thread while waiting.
+	 */
+	private static final class HostPermits {
+
+		private static final CompletableFuture<Void> ACQUIRED = CompletableFuture.completedFuture(null);
+
+		private final Queue<CompletableFuture<Void>> waiting;
+		private int available;
+
+		private HostPermits(int permits) {
+			this.waiting = new ArrayDeque<>();
+			this.available = permits;
+		}
+
+		private CompletableFuture<Void> acquireAsync() {
+			synchronized (this) {
+				if (available > 0) {
+					available--;
+					return ACQUIRED;
+				}
+
+				CompletableFuture<Void> future = new CompletableFuture<>();
+				waiting.add(future);
+				return future;
+			}
+		}
+
+		private void acquire() throws InterruptedException {
+			CompletableFuture<Void> future = acquireAsync();
+
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				// If the permit was handed over in the meantime, it has to be given back.
+				if (!future.cancel(false)) release();
+				throw e;
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		private void release() {
+			while (true) {
+				CompletableFuture<Void> next;
+
+				synchronized (this) {
+					next = waiting.poll();
+
+					if (next == null) {
+						available++;
+						return;
+					}
+				}
+
+				// A cancelled waiter does not take the permit, so it goes to the next one.
+				if (next.complete(null)) return;
+			}
+		}
+
+	}
+
+	/**
+	 * Configures a {@link WebEngine}.
+	 * All setters return the builder itself.
+	 */
+	public static class Builder {
+
+		private HttpClient.Version version = HttpClient.Version.HTTP_2;
+		private HttpClient.Redirect redirect = HttpClient.Redirect.NEVER;
+		private Duration connectTimeout;
+		private Duration requestTimeout;
+		private Executor executor;
+		private int maxConnectionsPerHost;
+		private boolean virtualThreads;
+
+		private Builder() {
+		}
+
+		/**
+		 * Sets the preferred HTTP version.
+		 * With {@link HttpClient.Version#HTTP_2} (the default) the client falls back to HTTP/1.1 if the server does
+		 * not support HTTP/2.
+		 *
+		 * @param version the preferred HTTP version.
+		 * @return itself
+		 */
+		public Builder version(HttpClient.Version version) {
+			this.version = version;
+			return this;
+		}
+
+		/**
+		 * Sets whether redirects are followed, the default is {@link HttpClient.Redirect#NEVER}.
+		 *
+		 * @param redirect the redirect policy.
+		 * @return itself
+		 */
+		public Builder redirect(HttpClient.Redirect redirect) {
+			this.redirect = redirect;
+			return this;
+		}
+
+		/**
+		 * Sets how long to wait for a connection to be established.
+		 *
+		 * @param connectTimeout the connect timeout or null for none.
+		 * @return itself
+		 */
+		public Builder connectTimeout(Duration connectTimeout) {
+			this.connectTimeout = connectTimeout;
+			return this;
+		}
+
+		/**
+		 * Sets how long to wait for the response of a request.
+		 *
+		 * @param requestTimeout the request timeout or null for none.
+		 * @return itself
+		 */
+		public Builder requestTimeout(Duration requestTimeout) {
+			this.requestTimeout = requestTimeout;
+			return this;
+		}
+
+		/**
+		 * Sets the executor the client uses for its asynchronous tasks.
+		 * If none is set the client creates its own.
+		 *
+		 * @param executor the executor.
+		 * @return itself
+		 */
+		public Builder executor(Executor executor) {
+			this.executor = executor;
+			return this;
+		}
+
+		/**
+		 * Sets how many requests may be sent to the same host (and port) at the same time.
+		 * Further requests wait until one is done.
+		 *
+		 * @param maxConnectionsPerHost the limit, values below 1 mean unlimited (the default).
+		 * @return itself
+		 */
+		public Builder maxConnectionsPerHost(int maxConnectionsPerHost) {
+			this.maxConnectionsPerHost = maxConnectionsPerHost;
+			return this;
+		}
+
+		/**
+		 * Sets whether every asynchronous request (see {@link WebConnection#requestAsync(Object)}) runs blocking on its
+		 * own virtual thread.
+		 * The threads of {@link Web#MANAGER} still decide when a request may be sent (so the RateIDs are respected),
+		 * but they only hand the request over, so tens of thousands of requests can wait for their response at the
+		 * same time without a thread pool running out of threads.
+		 * If no {@link #executor(Executor)} is set, the client also uses virtual threads.
+		 *
+		 * @param virtualThreads true to use virtual threads.
+		 * @return itself
+		 */
+		public Builder virtualThreads(boolean virtualThreads) {
+			this.virtualThreads = virtualThreads;
+			return this;
+		}
+
+		/**
+		 * Creates the {@link WebEngine}.
+		 * @return the new engine.
+		 */
+		public WebEngine build() {
+			return new WebEngine(this);
+		}
+
+	}
+
+}
@@ -1,31 +1,34 @@
 package de.quantumrange.webUtils.connections.impl;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import de.quantumrange.actionlib.Action;
-import de.quantumrange.actionlib.impl.actions.RateLimitedAction;
-import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.compression.Compression;
 import de.quantumrange.webUtils.connections.HTTPRequestType;
 import de.quantumrange.webUtils.connections.WebConnection;
+import de.quantumrange.webUtils.json.JsonCodecs;
 import de.quantumrange.webUtils.models.WebResult;
 
-import java.io.IOException;
-import java.net.URI;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
 import java.net.URL;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.LocalDateTime;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.Consumer;
-import java.util.function.Function;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 /**
  * Is responsible for handling {@link HTTPRequestType#HEAD}, {@link HTTPRequestType#POST}, {@link HTTPRequestType#PUT},
  * {@link HTTPRequestType#DELETE}, {@link HTTPRequestType#OPTIONS}, {@link HTTPRequestType#TRACE} and
  * {@link HTTPRequestType#PATCH} requests.
+ * <p>
+ * Besides a String, the body can be sent from a <code>byte[]</code>, a {@link ByteBuffer}, a file or an
+ * {@link InputStream} without converting it to a String first.
  *
  * @author QuantumRange
  * @since 1.0.1
@@ -33,6 +36,10 @@ import java.util.function.Function;
 public class DataWebConnection extends WebConnection<String, DataWebConnection> {
 
 	private final HTTPRequestType type;
+	/**
+	 * The size from which String and byte[] bodies are sent compressed, -1 if they are never compressed.
+	 */
+	private int gzipThreshold;
 
 	/**
 	 * @param url must be valid and is the URL to connect to at {@link WebConnection#request(Object)} (more on
@@ -41,6 +48,18 @@ public class DataWebConnection extends WebConnection<String, DataWebConnection>
 	public DataWebConnection(URL url, int id, HTTPRequestType type) {
 		super(url, id);
 		this.type = type;
+		this.gzipThreshold = -1;
+	}
+
+	private DataWebConnection(DataWebConnection source) {
+		super(source);
+		this.type = source.type;
+		this.gzipThreshold = source.gzipThreshold;
+	}
+
+	@Override
+	protected DataWebConnection copy() {
+		return new DataWebConnection(this);
 	}
 
 	public void setBearToken(String bearToken) {
@@ -51,53 +70,210 @@ public class DataWebConnection extends WebConnection<String, DataWebConnection>
 	 * Sends data to the server using JSON formatting.
 	 *
 	 * @param data The sent data optionally as JSON.
-	 * @return The result of the server.
+	 * @return The request with the data as body.
+	 */
+	@Override
+	protected HttpRequest.Builder createRequest(String data) {
+		return createRequest(encode(data.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Encodes the String once, so a request that is retried is not encoded and compressed again.
 	 */
 	@Override
-	public Action<WebResult<String>> request(String data) {
-		AtomicReference<LocalDateTime> sendTime = new AtomicReference<>(null);
+	protected Supplier<HttpRequest.Builder> requests(String data) {
+		return requests(data.getBytes(StandardCharsets.UTF_8));
+	}
 
-		return new RateLimitedAction<>(Web.MANAGER, getRateID(), throwable -> {
-			HttpClient client = HttpClient.newHttpClient();
-			HttpRequest.Builder builder = HttpRequest.newBuilder()
-					.uri(getURI())
-					.method(type.name(), HttpRequest.BodyPublishers.ofString(data));
+	private Supplier<HttpRequest.Builder> requests(byte[] data) {
+		Body body = encode(data);
+		return () -> withHeaders(createRequest(body));
+	}
 
-			for (String key : getHeaderProperties().keySet()) builder.header(key, getHeaderProperties().get(key));
+	/**
+	 * Compresses the bytes if they are at least as large as the {@link #gzipThreshold(int)}.
+	 */
+	private Body encode(byte[] data) {
+		if (gzipThreshold < 0 || data.length < gzipThreshold) {
+			return new Body(HttpRequest.BodyPublishers.ofByteArray(data), false);
+		}
 
-			HttpRequest request = builder
-					.build();
+		return new Body(HttpRequest.BodyPublishers.ofByteArray(Compression.gzip(data)), true);
+	}
 
-			try {
-				HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+	private HttpRequest.Builder createRequest(Body body) {
+		HttpRequest.Builder builder = createRequest(body.publisher());
+		return body.gzip() ? builder.header("Content-Encoding", "gzip") : builder;
+	}
 
-				return new WebResult<>(sendTime.get(), LocalDateTime.now(), getUrl(), type, response.statusCode(),
-						response.body());
-			} catch (IOException | InterruptedException e) {
-				throwable.accept(e);
-				return new WebResult<>(sendTime.get(), null, getUrl(), type, -1, (String) null);
-			}
-		}).setCheck(() -> {
-			sendTime.set(LocalDateTime.now());
-			return true;
-		});
+	private HttpRequest.Builder createRequest(HttpRequest.BodyPublisher body) {
+		return newRequest()
+				.uri(getURI())
+				.method(type.name(), body);
 	}
 
 	/**
-	 * Maps the object via {@link ObjectWriter} and puts the result into {@link #request(String)}.
+	 * Sends the bytes as body (more on {@link #request(HttpRequest.BodyPublisher, HttpResponse.BodyHandler)}).
+	 * The body is compressed if it is larger than the {@link #gzipThreshold(int)}.
+	 *
+	 * @param data The bytes, they are not copied and must not be changed until the request is sent.
+	 * @return The action that sends the request.
+	 */
+	public Action<WebResult<String>> request(byte[] data) {
+		return executeString(requests(data));
+	}
+
+	/**
+	 * Sends the remaining bytes of the buffer as body (more on {@link #ofByteBuffer(ByteBuffer)}).
+	 *
+	 * @param data The buffer.
+	 * @return The action that sends the request.
+	 */
+	public Action<WebResult<String>> request(ByteBuffer data) {
+		return request(ofByteBuffer(data));
+	}
+
+	/**
+	 * Sends the file as body. The file is streamed from the disk while it is sent, so it is never held in memory.
+	 *
+	 * @param file The file.
+	 * @return The action that sends the request.
+	 * @throws FileNotFoundException if the file doesn't exist.
+	 */
+	public Action<WebResult<String>> request(Path file) throws FileNotFoundException {
+		return request(HttpRequest.BodyPublishers.ofFile(file));
+	}
+
+	/**
+	 * Sends the content of the stream as body. The stream is read while the body is sent and closed afterwards.
+	 * The supplier is called for every attempt to send the request, so it should create a new stream each time.
+	 *
+	 * @param data Creates the stream.
+	 * @return The action that sends the request.
+	 */
+	public Action<WebResult<String>> request(Supplier<? extends InputStream> data) {
+		return request(HttpRequest.BodyPublishers.ofInputStream(data));
+	}
+
+	/**
+	 * Sends the body of the publisher, the body of the response is decoded when it is read (more on
+	 * {@link WebConnection#request(Object)}).
+	 *
+	 * @param body The body.
+	 * @return The action that sends the request.
+	 */
+	public Action<WebResult<String>> request(HttpRequest.BodyPublisher body) {
+		return executeString(() -> withHeaders(createRequest(body)));
+	}
+
+	/**
+	 * Sends the body of the publisher and reads the response with the handler (more on
+	 * {@link WebConnection#request(Object, HttpResponse.BodyHandler)}).
+	 *
+	 * @param body The body.
+	 * @param handler The handler that reads the body of the response.
+	 * @param <B> The type of the body of the response.
+	 * @return The action that sends the request.
+	 */
+	public <B> Action<WebResult<B>> request(HttpRequest.BodyPublisher body, HttpResponse.BodyHandler<B> handler) {
+		return execute(() -> withHeaders(createRequest(body)), handler);
+	}
+
+	/**
+	 * Sends the body of the publisher without blocking a thread (more on
+	 * {@link WebConnection#requestAsync(Object, HttpResponse.BodyHandler)}).
+	 *
+	 * @param body The body.
+	 * @param handler The handler that reads the body of the response.
+	 * @param <B> The type of the body of the response.
+	 * @return The future that completes with the result, or exceptionally if the request failed.
+	 */
+	public <B> CompletableFuture<WebResult<B>> requestAsync(HttpRequest.BodyPublisher body,
+														   HttpResponse.BodyHandler<B> handler) {
+		return executeAsync(() -> withHeaders(createRequest(body)), handler);
+	}
+
+	/**
+	 * Creates a body from the remaining bytes of the buffer without copying them.
+	 * A heap buffer is sent from its array, a direct buffer (for example a memory-mapped file) is handed to the
+	 * client as it is. The position of the buffer is not changed.
+	 *
+	 * @param data The buffer.
+	 * @return The body.
+	 */
+	public static HttpRequest.BodyPublisher ofByteBuffer(ByteBuffer data) {
+		if (data.hasArray()) {
+			return HttpRequest.BodyPublishers.ofByteArray(data.array(), data.arrayOffset() + data.position(),
+					data.remaining());
+		}
+
+		ByteBuffer buffer = data.asReadOnlyBuffer();
+		Flow.Publisher<ByteBuffer> publisher = subscriber -> {
+			AtomicBoolean delivered = new AtomicBoolean(false);
+
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(long n) {
+					if (n <= 0 || !delivered.compareAndSet(false, true)) return;
+
+					if (buffer.hasRemaining()) subscriber.onNext(buffer.duplicate());
+					subscriber.onComplete();
+				}
+
+				@Override
+				public void cancel() {
+					delivered.set(true);
+				}
+			});
+		};
+
+		return HttpRequest.BodyPublishers.fromPublisher(publisher, buffer.remaining());
+	}
+
+	@Override
+	public HTTPRequestType getType() {
+		return type;
+	}
+
+	/**
+	 * Sets the size from which String and <code>byte[]</code> bodies are compressed with gzip and sent with
+	 * <code>Content-Encoding: gzip</code>. The server has to support compressed requests.
+	 * A body is encoded and compressed once when the request is created, not again for every retry.
+	 * Bodies from files, streams or publishers are never compressed.
+	 *
+	 * @param gzipThreshold the size in bytes (for a String of its UTF-8 encoding), or -1 to never compress (default).
+	 * @return itself
+	 */
+	public DataWebConnection gzipThreshold(int gzipThreshold) {
+		this.gzipThreshold = gzipThreshold;
+		return this;
+	}
+
+	/**
+	 * Returns the size from which bodies are compressed.
+	 * @return the size or -1 if bodies are never compressed.
+	 */
+	public int getGzipThreshold() {
+		return gzipThreshold;
+	}
+
+	/**
+	 * Maps the object via {@link ObjectWriter} and sends the JSON as bytes (see {@link #request(byte[])}), so no
+	 * String is created in between.
 	 *
 	 * @param data The object what will be sent.
 	 * @param writer The writer to turn the object into JSON.
 	 * @param <T> The Object typ.
 	 * @throws JsonProcessingException If the ObjectWriter is set incorrectly or the object is null.
-	 * @return the result of the method: {@link #request(String)} (Object)}.
+	 * @return the result of the method: {@link #request(byte[])}.
 	 */
 	public <T> Action<WebResult<String>> requestWithObject(T data, ObjectWriter writer) throws JsonProcessingException {
-		return request(writer.writeValueAsString(data));
+		return request(writer.writeValueAsBytes(data));
 	}
 
 	/**
-	 * Automatically creates an object mapper using the protected method in WebConnection (createObjectMapper).
+	 * Uses the cached writer for the type of the object from the {@link JsonCodecs} of this connection
+	 * (see {@link #getCodecs()}).
 	 * Returns the result of {@link #requestWithObject(Object, ObjectWriter)} (Object, ObjectWriter)}.
 	 *
 	 * @param data The object what  will be sent.
@@ -106,7 +282,10 @@ public class DataWebConnection extends WebConnection<String, DataWebConnection>
 	 * @return the result of {@link #requestWithObject(Object, ObjectWriter)} (Object, ObjectWriter)}.
 	 */
 	public <T> Action<WebResult<String>> requestWithObject(T data) throws JsonProcessingException {
-		return requestWithObject(data, createObjectMapper().writer());
+		return requestWithObject(data, data == null ? getCodecs().writer() : getCodecs().writer(data.getClass()));
+	}
+
+	private record Body(HttpRequest.BodyPublisher publisher, boolean gzip) {
 	}
 
 }
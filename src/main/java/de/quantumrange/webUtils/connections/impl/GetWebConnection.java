@@ -2,35 +2,46 @@ package de.quantumrange.webUtils.connections.impl;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
-import de.quantumrange.actionlib.Action;
 import de.quantumrange.actionlib.impl.actions.RateLimitedAction;
 import de.quantumrange.actionlib.impl.manager.RateLimitedThreadManager;
-import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.cache.ResponseCache;
+import de.quantumrange.webUtils.cache.SingleFlight;
 import de.quantumrange.webUtils.connections.HTTPRequestType;
+import de.quantumrange.webUtils.connections.QueryEncoder;
 import de.quantumrange.webUtils.connections.WebConnection;
 import de.quantumrange.webUtils.models.WebResult;
 
 import java.io.IOException;
 import java.net.URI;
 import java.net.URL;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
-import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
-
-import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.function.Supplier;
 
 /**
  * Is responsible for handling {@link HTTPRequestType#GET} request.
+ * The data of the request are the query parameters, they are encoded with the {@link QueryEncoder} (so a value can
+ * also be a list for repeated keys, and the order of the map is kept).
  *
  * @author QuantumRange
  * @since 1.0.1
  */
-public class GetWebConnection extends WebConnection<HashMap<String, String>, GetWebConnection> {
+public class GetWebConnection extends WebConnection<Map<String, ?>, GetWebConnection> {
+
+	/**
+	 * The requests in flight of all connections with {@link #singleFlight(boolean)}.
+	 */
+	private static final SingleFlight FLIGHTS = new SingleFlight();
+
+	/**
+	 * The URL as String, the query is appended to it.
+	 */
+	private final String base;
+	private ResponseCache cache;
+	private boolean singleFlight;
 
 	/**
 	 * @param url    must be valid and is the URL to connect to at {@link WebConnection#request(Object)} (or
@@ -42,56 +53,116 @@ public class GetWebConnection extends WebConnection<HashMap<String, String>, Get
 	 */
 	public GetWebConnection(URL url, int rateID) {
 		super(url, rateID);
+		this.base = url.toString();
+	}
+
+	private GetWebConnection(GetWebConnection source) {
+		super(source);
+		this.base = source.base;
+		this.cache = source.cache;
+		this.singleFlight = source.singleFlight;
 	}
 
 	@Override
-	public Action<WebResult<String>> request(HashMap<String, String> data) {
-		AtomicReference<LocalDateTime> sendTime = new AtomicReference<>(null);
+	protected GetWebConnection copy() {
+		return new GetWebConnection(this);
+	}
 
-		return new RateLimitedAction<>(Web.MANAGER, getRateID(), throwable -> {
-			StringBuilder urlBuilder = new StringBuilder();
+	/**
+	 * Sets the {@link ResponseCache} that answers the requests of this connection if possible.
+	 * A cache can be shared by many connections.
+	 *
+	 * @param cache the cache or null to not use a cache (the default).
+	 * @return itself
+	 */
+	public GetWebConnection cache(ResponseCache cache) {
+		this.cache = cache;
+		return this;
+	}
 
-			urlBuilder.append(getUrl().toString());
+	/**
+	 * Returns the {@link ResponseCache} of this connection.
+	 * @return the cache or null if none is set.
+	 */
+	public ResponseCache getCache() {
+		return cache;
+	}
 
-			if (!data.isEmpty() && !urlBuilder.toString().contains("?")) urlBuilder.append("?");
+	/**
+	 * Sets whether identical requests (same URL, parameters and headers) that are in flight at the same time share
+	 * one request to the server (more on {@link SingleFlight}).
+	 * This is shared between all {@link GetWebConnection}s.
+	 *
+	 * @param singleFlight true to share identical requests.
+	 * @return itself
+	 */
+	public GetWebConnection singleFlight(boolean singleFlight) {
+		this.singleFlight = singleFlight;
+		return this;
+	}
 
-			for (String key : data.keySet()) urlBuilder.append(secure(key)).append('=').append(secure(data.get(key)));
+	/**
+	 * Returns whether identical requests share one request to the server.
+	 * @return true if {@link #singleFlight(boolean)} is on.
+	 */
+	public boolean isSingleFlight() {
+		return singleFlight;
+	}
 
-			HttpClient client = HttpClient.newHttpClient();
-			HttpRequest request = HttpRequest.newBuilder()
-					.uri(URI.create(urlBuilder.toString()))
-					.GET()
-					.build();
+	/**
+	 * Returns the {@link SingleFlight} that is shared between all {@link GetWebConnection}s.
+	 * @return the shared single flight.
+	 */
+	public static SingleFlight getFlights() {
+		return FLIGHTS;
+	}
 
-			try {
-				HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+	/**
+	 * With {@link #singleFlight(boolean)} identical requests are coalesced here, before they are queued.
+	 */
+	@Override
+	protected <B> CompletableFuture<WebResult<B>> executeAsync(Supplier<HttpRequest.Builder> request,
+															   HttpResponse.BodyHandler<B> handler) {
+		if (!singleFlight) return super.executeAsync(request, handler);
+		return FLIGHTS.executeAsync(request, handler, super::executeAsync);
+	}
 
-				return new WebResult<>(sendTime.get(), LocalDateTime.now(), new URL(urlBuilder.toString()), HTTPRequestType.GET,
-						response.statusCode(), response.body());
-			} catch (IOException | InterruptedException e) {
-				throwable.accept(e);
-				return new WebResult<>(sendTime.get(), null, getUrl(), HTTPRequestType.GET, -1, (String) null);
-			}
-		}).setCheck(() -> {
-			sendTime.set(LocalDateTime.now());
-			return true;
-		});
+	@Override
+	protected <B> HttpResponse<B> send(HttpRequest.Builder builder, HttpResponse.BodyHandler<B> handler)
+			throws IOException, InterruptedException {
+		if (cache == null) return sendToServer(builder, handler);
+		return cache.send(builder, handler, this::sendToServer);
 	}
 
-	private static String secure(String text) {
-		StringBuilder builder = new StringBuilder();
+	@Override
+	protected <B> CompletableFuture<HttpResponse<B>> sendAsync(HttpRequest.Builder builder,
+															   HttpResponse.BodyHandler<B> handler) {
+		if (cache == null) return sendToServerAsync(builder, handler);
+		return cache.sendAsync(builder, handler, this::sendToServerAsync);
+	}
 
-		for (char c : text.toCharArray()) {
-			if ((c >= 48 && c <= 57) ||
-				(c >= 65 && c <= 90) ||
-				(c >= 97 && c <= 122)) {
-				builder.append(c);
-			} else {
-				builder.append("%c%x".formatted('%', (int) c).toUpperCase());
-			}
-		}
+	private <B> HttpResponse<B> sendToServer(HttpRequest.Builder builder, HttpResponse.BodyHandler<B> handler)
+			throws IOException, InterruptedException {
+		if (!singleFlight) return super.send(builder, handler);
+		return FLIGHTS.send(builder, handler, super::send);
+	}
+
+	private <B> CompletableFuture<HttpResponse<B>> sendToServerAsync(HttpRequest.Builder builder,
+																	 HttpResponse.BodyHandler<B> handler) {
+		if (!singleFlight) return super.sendAsync(builder, handler);
+		return FLIGHTS.sendAsync(builder, handler, super::sendAsync);
+	}
 
-		return builder.toString().replaceAll(" ", "+");
+	@Override
+	protected HttpRequest.Builder createRequest(Map<String, ?> data) {
+		return newRequest()
+				.uri(URI.create(QueryEncoder.buildUrl(base, data)))
+				.GET();
+	}
+
+	@Override
+	public HTTPRequestType getType() {
+		return HTTPRequestType.GET;
 	}
 
 }
@@ -0,0 +1,73 @@
+package de.quantumrange.webUtils.json;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpResponse;
+import java.util.function.Supplier;
+
+/**
+ * {@link HttpResponse.BodyHandler}s that parse the JSON directly from the body of the response while it arrives,
+ * so the body never exists as a whole {@link String}.
+ * <p>
+ * The handlers return a {@link Supplier}, the parsing only starts when {@link Supplier#get()} is called.
+ * This way the parsing is not done on a thread of the {@link java.net.http.HttpClient}, which must not block.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public final class JsonBodyHandlers {
+
+	private JsonBodyHandlers() {
+	}
+
+	/**
+	 * Parses the whole body with the reader.
+	 *
+	 * @param reader the reader with the type that should be read.
+	 * @param <O> the type that is read.
+	 * @return the handler that supplies the parsed object.
+	 */
+	public static <O> HttpResponse.BodyHandler<Supplier<O>> ofJson(ObjectReader reader) {
+		return info -> HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofInputStream(),
+				in -> () -> read(reader, in));
+	}
+
+	/**
+	 * Parses the elements of a top-level JSON array (or a sequence of root-level values) one after another.
+	 * Only the current element is held in memory.
+	 * The {@link MappingIterator} must be closed after use, this also closes the body of the response.
+	 *
+	 * @param reader the reader with the type of the elements.
+	 * @param <O> the type of the elements.
+	 * @return the handler that supplies the iterator over the elements.
+	 */
+	public static <O> HttpResponse.BodyHandler<Supplier<MappingIterator<O>>> ofJsonValues(ObjectReader reader) {
+		return info -> HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofInputStream(),
+				in -> () -> readValues(reader, in));
+	}
+
+	private static <O> O read(ObjectReader reader, InputStream in) {
+		try (in) {
+			return reader.readValue(in);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static <O> MappingIterator<O> readValues(ObjectReader reader, InputStream in) {
+		try {
+			return reader.readValues(in);
+		} catch (IOException e) {
+			try {
+				in.close();
+			} catch (IOException ignored) {
+			}
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
@@ -0,0 +1,160 @@
+package de.quantumrange.webUtils.json;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.connections.WebConnection;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the {@link ObjectMapper} that is used for all JSON requests and results and caches the {@link ObjectReader}s
+ * and {@link ObjectWriter}s created from it per type.
+ * Building an {@link ObjectMapper} is expensive, so it is built once and then shared, Jackson mappers, readers and
+ * writers are thread-safe once they are configured.
+ * <p>
+ * Own mappers can be registered for single types with {@link #register(Class, ObjectMapper)}, all other types use
+ * the default mapper.
+ * The default registry is stored in {@link Web#CODECS}.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public class JsonCodecs {
+
+	private final ObjectMapper mapper;
+	private final ObjectReader reader;
+	private final ObjectWriter writer;
+	/**
+	 * The mappers registered with {@link #register(Class, ObjectMapper)}.
+	 */
+	private final Map<Class<?>, ObjectMapper> mappers;
+	private final Map<Type, ObjectReader> readers;
+	private final Map<Type, ObjectWriter> writers;
+
+	/**
+	 * Creates the registry with the mapper of {@link WebConnection#createObjectMapper()}.
+	 */
+	public JsonCodecs() {
+		this(WebConnection.createObjectMapper());
+	}
+
+	/**
+	 * @param mapper the fully configured default mapper. It should not be configured any further after this.
+	 */
+	public JsonCodecs(ObjectMapper mapper) {
+		this.mapper = mapper;
+		this.reader = mapper.reader();
+		this.writer = mapper.writer();
+		this.mappers = new ConcurrentHashMap<>();
+		this.readers = new ConcurrentHashMap<>();
+		this.writers = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Registers a mapper that is used instead of the default mapper to read and write the given type.
+	 * The mapper is chosen by the raw class of the requested type, so it is not used for a generic type that only
+	 * contains the type (for example <code>List&lt;type&gt;</code> uses the mapper of <code>List</code>).
+	 *
+	 * @param type the type the mapper is used for.
+	 * @param mapper the fully configured mapper.
+	 */
+	public void register(Class<?> type, ObjectMapper mapper) {
+		mappers.put(type, mapper);
+		// Readers and writers that were already cached for the type came from the old mapper.
+		readers.clear();
+		writers.clear();
+	}
+
+	/**
+	 * Returns the default mapper.
+	 * @return the default mapper.
+	 */
+	public ObjectMapper getMapper() {
+		return mapper;
+	}
+
+	/**
+	 * Returns the mapper for the given type.
+	 *
+	 * @param type the type that should be read or written.
+	 * @return the registered mapper for the type or the default mapper if none is registered.
+	 */
+	public ObjectMapper getMapper(Type type) {
+		if (mappers.isEmpty()) return mapper;
+		return mappers.getOrDefault(TypeFactory.rawClass(type), mapper);
+	}
+
+	/**
+	 * Returns the reader of the default mapper without a value type.
+	 * @return the reader of the default mapper.
+	 */
+	public ObjectReader reader() {
+		return reader;
+	}
+
+	/**
+	 * Returns the cached reader for the type.
+	 *
+	 * @param type the type that should be read.
+	 * @return the reader for the type.
+	 */
+	public ObjectReader reader(Class<?> type) {
+		return readers.computeIfAbsent(type, key -> getMapper(key).readerFor(type));
+	}
+
+	/**
+	 * Returns the cached reader for the generic type.
+	 *
+	 * @param type the type that should be read, for example: <code>new TypeReference&lt;List&lt;Item&gt;&gt;() {}</code>
+	 * @return the reader for the type.
+	 */
+	public ObjectReader reader(TypeReference<?> type) {
+		return readers.computeIfAbsent(type.getType(), key -> getMapper(key).readerFor(type));
+	}
+
+	/**
+	 * Returns the cached reader for the type.
+	 *
+	 * @param type the type that should be read.
+	 * @return the reader for the type.
+	 */
+	public ObjectReader reader(JavaType type) {
+		return readers.computeIfAbsent(type, key -> getMapper(key).readerFor(type));
+	}
+
+	/**
+	 * Returns the writer of the default mapper without a value type.
+	 * @return the writer of the default mapper.
+	 */
+	public ObjectWriter writer() {
+		return writer;
+	}
+
+	/**
+	 * Returns the cached writer for the type.
+	 *
+	 * @param type the type that should be written.
+	 * @return the writer for the type.
+	 */
+	public ObjectWriter writer(Class<?> type) {
+		return writers.computeIfAbsent(type, key -> getMapper(key).writerFor(type));
+	}
+
+	/**
+	 * Returns the cached writer for the generic type.
+	 *
+	 * @param type the type that should be written.
+	 * @return the writer for the type.
+	 */
+	public ObjectWriter writer(TypeReference<?> type) {
+		return writers.computeIfAbsent(type.getType(), key -> getMapper(key).writerFor(type));
+	}
+
+}
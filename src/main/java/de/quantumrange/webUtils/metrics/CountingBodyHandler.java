@@ -0,0 +1,73 @@
+package de.quantumrange.webUtils.metrics;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Passes the body to another {@link HttpResponse.BodyHandler} and reports its length to the
+ * {@link WebInstrumentation} when it was read.
+ *
+ * @param handler the handler that reads the body.
+ * @param instrumentation the instrumentation to report to.
+ * @param tag the tag of the request.
+ * @param <B> the type of the body.
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public record CountingBodyHandler<B>(HttpResponse.BodyHandler<B> handler,
+									 WebInstrumentation instrumentation,
+									 RequestTag tag) implements HttpResponse.BodyHandler<B> {
+
+	@Override
+	public HttpResponse.BodySubscriber<B> apply(HttpResponse.ResponseInfo responseInfo) {
+		return new Counting<>(handler.apply(responseInfo), instrumentation, tag);
+	}
+
+	private static final class Counting<B> implements HttpResponse.BodySubscriber<B> {
+
+		private final HttpResponse.BodySubscriber<B> downstream;
+		private final WebInstrumentation instrumentation;
+		private final RequestTag tag;
+		private long bytes;
+
+		private Counting(HttpResponse.BodySubscriber<B> downstream, WebInstrumentation instrumentation,
+						 RequestTag tag) {
+			this.downstream = downstream;
+			this.instrumentation = instrumentation;
+			this.tag = tag;
+		}
+
+		@Override
+		public CompletionStage<B> getBody() {
+			return downstream.getBody();
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			downstream.onSubscribe(subscription);
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> items) {
+			for (ByteBuffer item : items) bytes += item.remaining();
+			downstream.onNext(items);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			instrumentation.onBytesReceived(tag, bytes);
+			downstream.onError(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			instrumentation.onBytesReceived(tag, bytes);
+			downstream.onComplete();
+		}
+
+	}
+
+}
@@ -0,0 +1,227 @@
+package de.quantumrange.webUtils.metrics;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Publishes the counters of a {@link WebMetrics} as MBeans, so they can be read with JConsole, VisualVM or any JMX
+ * collector.
+ * <p>
+ * There is one MBean with the sum of all requests (<code>&lt;domain&gt;:type=WebMetrics,name=total</code>) and one
+ * per {@link RequestTag} (<code>&lt;domain&gt;:type=WebMetrics,host=...,method=...,rateID=...</code>). The MBeans of
+ * new tags are registered shortly after their first request was counted, on a thread of the exporter, so the request
+ * doesn't wait for the MBean server. The attributes are read live from the counters.
+ * <p>
+ * Example:
+ * <pre>JmxExporter exporter = new JmxExporter(Web.METRICS);
+ * exporter.register();</pre>
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public class JmxExporter {
+
+	public static final String DEFAULT_DOMAIN = "de.quantumrange.webUtils";
+
+	private static final Map<String, ToLongFunction<MetricsSnapshot.Counts>> ATTRIBUTES = new LinkedHashMap<>();
+
+	static {
+		ATTRIBUTES.put("Started", MetricsSnapshot.Counts::started);
+		ATTRIBUTES.put("Completed", MetricsSnapshot.Counts::completed);
+		ATTRIBUTES.put("Failed", MetricsSnapshot.Counts::failed);
+		ATTRIBUTES.put("Rejected", MetricsSnapshot.Counts::rejected);
+		ATTRIBUTES.put("Cancelled", MetricsSnapshot.Counts::cancelled);
+		ATTRIBUTES.put("Waiting", MetricsSnapshot.Counts::waiting);
+		ATTRIBUTES.put("InFlight", MetricsSnapshot.Counts::inFlight);
+		ATTRIBUTES.put("Status1xx", MetricsSnapshot.Counts::status1xx);
+		ATTRIBUTES.put("Status2xx", MetricsSnapshot.Counts::status2xx);
+		ATTRIBUTES.put("Status3xx", MetricsSnapshot.Counts::status3xx);
+		ATTRIBUTES.put("Status4xx", MetricsSnapshot.Counts::status4xx);
+		ATTRIBUTES.put("Status5xx", MetricsSnapshot.Counts::status5xx);
+		ATTRIBUTES.put("BytesSent", MetricsSnapshot.Counts::bytesSent);
+		ATTRIBUTES.put("BytesReceived", MetricsSnapshot.Counts::bytesReceived);
+		ATTRIBUTES.put("WaitNanos", MetricsSnapshot.Counts::waitNanos);
+	}
+
+	private final WebMetrics metrics;
+	private final String domain;
+	private final List<ObjectName> registered;
+	private final Consumer<RequestTag> tagListener;
+	/**
+	 * The new tags whose MBeans are not registered yet.
+	 */
+	private final Queue<RequestTag> pending;
+	private final AtomicBoolean registering;
+	private MBeanServer server;
+
+	/**
+	 * @param metrics the metrics to publish.
+	 */
+	public JmxExporter(WebMetrics metrics) {
+		this(metrics, DEFAULT_DOMAIN);
+	}
+
+	/**
+	 * @param metrics the metrics to publish.
+	 * @param domain the domain of the MBeans, has to be different for every exporter of a server.
+	 */
+	public JmxExporter(WebMetrics metrics, String domain) {
+		this.metrics = metrics;
+		this.domain = domain;
+		this.registered = new ArrayList<>();
+		this.tagListener = this::onNewTag;
+		this.pending = new ConcurrentLinkedQueue<>();
+		this.registering = new AtomicBoolean();
+	}
+
+	/**
+	 * Registers the MBeans at the platform MBean server.
+	 *
+	 * @throws JMException if an MBean could not be registered.
+	 */
+	public void register() throws JMException {
+		register(ManagementFactory.getPlatformMBeanServer());
+	}
+
+	/**
+	 * Registers the MBeans at the server.
+	 *
+	 * @param server the server.
+	 * @throws JMException if an MBean could not be registered.
+	 */
+	public synchronized void register(MBeanServer server) throws JMException {
+		if (this.server != null) throw new IllegalStateException("The exporter is already registered.");
+		this.server = server;
+
+		register(new ObjectName(domain + ":type=WebMetrics,name=total"), () -> metrics.snapshot().total());
+		metrics.addTagListener(tagListener);
+		for (RequestTag tag : metrics.snapshot().tags().keySet()) registerQuietly(tag);
+	}
+
+	/**
+	 * Removes all MBeans of this exporter from the server.
+	 *
+	 * @throws JMException if an MBean could not be removed.
+	 */
+	public synchronized void unregister() throws JMException {
+		if (server == null) return;
+
+		metrics.removeTagListener(tagListener);
+		for (ObjectName name : registered) {
+			if (server.isRegistered(name)) server.unregisterMBean(name);
+		}
+		registered.clear();
+		server = null;
+	}
+
+	/**
+	 * Returns the names of the registered MBeans.
+	 * @return a copy of the names.
+	 */
+	public synchronized List<ObjectName> getRegistered() {
+		return List.copyOf(registered);
+	}
+
+	/**
+	 * Is called on the request path, so it only queues the tag and starts a thread that registers it, if none runs.
+	 */
+	private void onNewTag(RequestTag tag) {
+		pending.add(tag);
+		if (registering.compareAndSet(false, true)) {
+			Thread.ofPlatform().daemon().name("JmxExporter-" + domain).start(this::registerPending);
+		}
+	}
+
+	private void registerPending() {
+		do {
+			RequestTag tag;
+			while ((tag = pending.poll()) != null) registerQuietly(tag);
+
+			registering.set(false);
+			// A tag that was queued after the last poll but before the flag was reset has no thread yet.
+		} while (!pending.isEmpty() && registering.compareAndSet(false, true));
+	}
+
+	private synchronized void registerQuietly(RequestTag tag) {
+		if (server == null) return;
+
+		try {
+			ObjectName name = new ObjectName(domain + ":type=WebMetrics" +
+					",host=" + ObjectName.quote(tag.host()) +
+					",method=" + tag.type() +
+					",rateID=" + tag.rateID());
+			if (!server.isRegistered(name)) register(name, () -> metrics.getCounts(tag));
+		} catch (JMException ignored) {
+			// The tag is still counted and part of the total, only its own MBean is missing.
+		}
+	}
+
+	private void register(ObjectName name, Supplier<MetricsSnapshot.Counts> counts) throws JMException {
+		server.registerMBean(new CountsMBean(counts), name);
+		registered.add(name);
+	}
+
+	/**
+	 * An MBean with the counters as read-only attributes.
+	 */
+	private record CountsMBean(Supplier<MetricsSnapshot.Counts> counts) implements DynamicMBean {
+
+		@Override
+		public Object getAttribute(String attribute) throws AttributeNotFoundException {
+			ToLongFunction<MetricsSnapshot.Counts> getter = ATTRIBUTES.get(attribute);
+			if (getter == null) throw new AttributeNotFoundException(attribute);
+
+			return getter.applyAsLong(counts.get());
+		}
+
+		@Override
+		public AttributeList getAttributes(String[] attributes) {
+			MetricsSnapshot.Counts current = counts.get();
+			AttributeList list = new AttributeList();
+
+			for (String attribute : attributes) {
+				ToLongFunction<MetricsSnapshot.Counts> getter = ATTRIBUTES.get(attribute);
+				if (getter != null) list.add(new Attribute(attribute, getter.applyAsLong(current)));
+			}
+
+			return list;
+		}
+
+		@Override
+		public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+			throw new AttributeNotFoundException("The attributes are read-only.");
+		}
+
+		@Override
+		public AttributeList setAttributes(AttributeList attributes) {
+			return new AttributeList();
+		}
+
+		@Override
+		public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+			throw new ReflectionException(new NoSuchMethodException(actionName));
+		}
+
+		@Override
+		public MBeanInfo getMBeanInfo() {
+			MBeanAttributeInfo[] attributes = ATTRIBUTES.keySet().stream()
+					.map(name -> new MBeanAttributeInfo(name, "long", name, true, false, false))
+					.toArray(MBeanAttributeInfo[]::new);
+
+			return new MBeanInfo(WebMetrics.class.getName(), "The counters of the requests.", attributes,
+					null, null, null);
+		}
+
+	}
+
+}
@@ -0,0 +1,143 @@
+package de.quantumrange.webUtils.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram in the style of an HDR histogram: the values are counted in buckets whose width grows with the
+ * value, so every recorded value is kept with a relative error of at most 1/32 (about 3%) over the whole range of
+ * <code>long</code>, with a fixed memory of about 15 KB.
+ * <p>
+ * Values below 64 have their own bucket. Above that every power of two is split into 32 buckets of the same width.
+ * Recording is lock-free and can be done from many threads at the same time.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int LINEAR = SUB_BUCKETS << 1;
+	private static final int BUCKETS = LINEAR + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts;
+	private final LongAdder count;
+	private final LongAdder sum;
+	private final AtomicLong max;
+
+	public LatencyHistogram() {
+		this.counts = new AtomicLongArray(BUCKETS);
+		this.count = new LongAdder();
+		this.sum = new LongAdder();
+		this.max = new AtomicLong(0L);
+	}
+
+	/**
+	 * Records a value. Negative values are ignored.
+	 *
+	 * @param value the value, usually in nanoseconds.
+	 */
+	public void record(long value) {
+		if (value < 0) return;
+
+		counts.incrementAndGet(indexOf(value));
+		count.increment();
+		sum.add(value);
+
+		long current;
+		while (value > (current = max.get()) && !max.compareAndSet(current, value)) Thread.onSpinWait();
+	}
+
+	/**
+	 * Returns how many values were recorded.
+	 * @return the count of values.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Returns the mean of all recorded values.
+	 * @return the mean or 0 if nothing was recorded.
+	 */
+	public double getMean() {
+		long count = getCount();
+		return count == 0 ? 0 : (double) sum.sum() / count;
+	}
+
+	/**
+	 * Returns the largest recorded value (exact, not rounded to a bucket).
+	 * @return the largest value or 0 if nothing was recorded.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Returns the value below or at which the given percentage of the recorded values are.
+	 * The value is the upper end of the bucket, but never more than {@link #getMax()}.
+	 *
+	 * @param percentile the percentile between 0 and 100, e.g. 99.9.
+	 * @return the value at the percentile or 0 if nothing was recorded.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100) throw new IllegalArgumentException("percentile has to be between 0 and 100.");
+
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) total += snapshot[i] = counts.get(i);
+		if (total == 0) return 0L;
+
+		long target = Math.max(1L, (long) Math.ceil(total * (percentile / 100d)));
+		long seen = 0;
+
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= target) return Math.min(highestValueOf(i), getMax());
+		}
+
+		return getMax();
+	}
+
+	/**
+	 * Removes all recorded values.
+	 * Values that are recorded at the same time may be partly kept.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) counts.set(i, 0L);
+		count.reset();
+		sum.reset();
+		max.set(0L);
+	}
+
+	static int indexOf(long value) {
+		if (value < LINEAR) return (int) value;
+
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return LINEAR + (shift - 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+	}
+
+	static long highestValueOf(int index) {
+		if (index < LINEAR) return index;
+
+		int shift = (index - LINEAR) / SUB_BUCKETS + 1;
+		long sub = (index - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+		long highest = ((sub + 1) << shift) - 1;
+
+		return highest < 0 ? Long.MAX_VALUE : highest;
+	}
+
+	@Override
+	public String toString() {
+		return "LatencyHistogram{" +
+				"count=" + getCount() +
+				", mean=" + getMean() +
+				", p50=" + getValueAtPercentile(50) +
+				", p99=" + getValueAtPercentile(99) +
+				", max=" + getMax() +
+				'}';
+	}
+
+}
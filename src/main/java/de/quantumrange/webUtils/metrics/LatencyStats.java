@@ -0,0 +1,104 @@
+package de.quantumrange.webUtils.metrics;
+
+import de.quantumrange.webUtils.models.WebTimings;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects the {@link WebTimings} of all requests in {@link LatencyHistogram}s per host and per RateID.
+ * <ul>
+ *     <li>{@link #getHost(String)} and {@link #getRateID(int)}: the time on the network (time to first byte and body
+ *     read).</li>
+ *     <li>{@link #getQueued(int)}: the time the requests of a RateID waited before they were sent.</li>
+ * </ul>
+ * The histograms are created on the first request and record in nanoseconds.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public class LatencyStats {
+
+	private final Map<String, LatencyHistogram> hosts;
+	private final Map<Integer, LatencyHistogram> rateIDs;
+	private final Map<Integer, LatencyHistogram> queued;
+
+	public LatencyStats() {
+		this.hosts = new ConcurrentHashMap<>();
+		this.rateIDs = new ConcurrentHashMap<>();
+		this.queued = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Records the timings of a request.
+	 *
+	 * @param host the host of the request.
+	 * @param rateID the RateID of the request.
+	 * @param timings the timings of the request.
+	 */
+	public void record(String host, int rateID, WebTimings timings) {
+		long network = timings.networkNanos();
+
+		if (network != WebTimings.UNKNOWN) {
+			hosts.computeIfAbsent(host, key -> new LatencyHistogram()).record(network);
+			rateIDs.computeIfAbsent(rateID, key -> new LatencyHistogram()).record(network);
+		}
+		if (timings.queuedNanos() != WebTimings.UNKNOWN) {
+			queued.computeIfAbsent(rateID, key -> new LatencyHistogram()).record(timings.queuedNanos());
+		}
+	}
+
+	/**
+	 * Returns the histogram of the network time of a host.
+	 * @param host the host.
+	 * @return the histogram or null if no request to the host was recorded.
+	 */
+	public LatencyHistogram getHost(String host) {
+		return hosts.get(host);
+	}
+
+	/**
+	 * Returns the histogram of the network time of a RateID.
+	 * @param rateID the RateID.
+	 * @return the histogram or null if no request with the RateID was recorded.
+	 */
+	public LatencyHistogram getRateID(int rateID) {
+		return rateIDs.get(rateID);
+	}
+
+	/**
+	 * Returns the histogram of the time the requests of a RateID were queued.
+	 * @param rateID the RateID.
+	 * @return the histogram or null if no request with the RateID was recorded.
+	 */
+	public LatencyHistogram getQueued(int rateID) {
+		return queued.get(rateID);
+	}
+
+	/**
+	 * Returns the histograms of all hosts.
+	 * @return an unmodifiable view of the histograms by host.
+	 */
+	public Map<String, LatencyHistogram> getHosts() {
+		return Collections.unmodifiableMap(hosts);
+	}
+
+	/**
+	 * Returns the histograms of all RateIDs.
+	 * @return an unmodifiable view of the histograms by RateID.
+	 */
+	public Map<Integer, LatencyHistogram> getRateIDs() {
+		return Collections.unmodifiableMap(rateIDs);
+	}
+
+	/**
+	 * Removes all histograms.
+	 */
+	public void clear() {
+		hosts.clear();
+		rateIDs.clear();
+		queued.clear();
+	}
+
+}
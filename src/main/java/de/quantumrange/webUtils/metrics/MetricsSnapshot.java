@@ -0,0 +1,136 @@
+package de.quantumrange.webUtils.metrics;
+
+import de.quantumrange.webUtils.connections.HTTPRequestType;
+
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * The counters of a {@link WebMetrics} at one moment.
+ *
+ * @param tags the counters per tag.
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public record MetricsSnapshot(Map<RequestTag, Counts> tags) {
+
+	public MetricsSnapshot {
+		tags = Map.copyOf(tags);
+	}
+
+	/**
+	 * Returns the sum of all counters.
+	 * @return the counts of all requests.
+	 */
+	public Counts total() {
+		return sum(tag -> true);
+	}
+
+	/**
+	 * Returns the sum of the counters of a host.
+	 * @param host the host.
+	 * @return the counts of the requests to the host.
+	 */
+	public Counts getHost(String host) {
+		return sum(tag -> tag.host().equals(host));
+	}
+
+	/**
+	 * Returns the sum of the counters of a method.
+	 * @param type the method.
+	 * @return the counts of the requests with the method.
+	 */
+	public Counts getType(HTTPRequestType type) {
+		return sum(tag -> tag.type() == type);
+	}
+
+	/**
+	 * Returns the sum of the counters of a RateID.
+	 * @param rateID the RateID.
+	 * @return the counts of the requests with the RateID.
+	 */
+	public Counts getRateID(int rateID) {
+		return sum(tag -> tag.rateID() == rateID);
+	}
+
+	private Counts sum(Predicate<RequestTag> filter) {
+		Counts sum = Counts.EMPTY;
+
+		for (Map.Entry<RequestTag, Counts> entry : tags.entrySet()) {
+			if (filter.test(entry.getKey())) sum = sum.plus(entry.getValue());
+		}
+
+		return sum;
+	}
+
+	/**
+	 * The counters of some requests.
+	 *
+	 * @param started the requests that were sent.
+	 * @param completed the requests that got a response.
+	 * @param failed the requests that got no response.
+	 * @param rejected the requests that were rejected by the host guard.
+	 * @param cancelled the requests that were interrupted while waiting in the rate limiter.
+	 * @param waiting the requests that wait in the rate limiter at the moment.
+	 * @param inFlight the requests that were sent but have no response yet.
+	 * @param status1xx the responses with a 1xx code.
+	 * @param status2xx the responses with a 2xx code.
+	 * @param status3xx the responses with a 3xx code.
+	 * @param status4xx the responses with a 4xx code.
+	 * @param status5xx the responses with a 5xx code.
+	 * @param bytesSent the bytes of the request bodies with known length.
+	 * @param bytesReceived the bytes of the response bodies.
+	 * @param waitNanos the time all requests waited in the rate limiter.
+	 */
+	public record Counts(long started,
+						 long completed,
+						 long failed,
+						 long rejected,
+						 long cancelled,
+						 long waiting,
+						 long inFlight,
+						 long status1xx,
+						 long status2xx,
+						 long status3xx,
+						 long status4xx,
+						 long status5xx,
+						 long bytesSent,
+						 long bytesReceived,
+						 long waitNanos) {
+
+		public static final Counts EMPTY = new Counts(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+		/**
+		 * Adds the counters of both.
+		 * @param other the other counts.
+		 * @return the sum.
+		 */
+		public Counts plus(Counts other) {
+			return new Counts(started + other.started,
+					completed + other.completed,
+					failed + other.failed,
+					rejected + other.rejected,
+					cancelled + other.cancelled,
+					waiting + other.waiting,
+					inFlight + other.inFlight,
+					status1xx + other.status1xx,
+					status2xx + other.status2xx,
+					status3xx + other.status3xx,
+					status4xx + other.status4xx,
+					status5xx + other.status5xx,
+					bytesSent + other.bytesSent,
+					bytesReceived + other.bytesReceived,
+					waitNanos + other.waitNanos);
+		}
+
+		/**
+		 * Returns the mean time a request waited in the rate limiter.
+		 * @return the mean in nanoseconds or 0 if no request was sent.
+		 */
+		public double getMeanWaitNanos() {
+			return started == 0 ? 0 : (double) waitNanos / started;
+		}
+
+	}
+
+}
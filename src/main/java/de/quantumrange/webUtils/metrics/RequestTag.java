@@ -0,0 +1,15 @@
+package de.quantumrange.webUtils.metrics;
+
+import de.quantumrange.webUtils.connections.HTTPRequestType;
+
+/**
+ * Identifies the requests that are counted together by the {@link WebInstrumentation}.
+ *
+ * @param host the host of the request.
+ * @param type the method of the request.
+ * @param rateID the RateID of the request.
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public record RequestTag(String host, HTTPRequestType type, int rateID) {
+}
@@ -0,0 +1,148 @@
+package de.quantumrange.webUtils.metrics;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.connections.WebConnection;
+
+import java.util.List;
+
+/**
+ * Is informed about every request a {@link WebConnection} sends to the network.
+ * Every attempt of a retried request is a request of its own, responses from a cache are not sent and not reported.
+ * <p>
+ * A request goes through these calls:
+ * <ol>
+ *     <li>{@link #onQueued(RequestTag)} when it waits in the {@link de.quantumrange.webUtils.ratelimit.RateLimiter}.</li>
+ *     <li>{@link #onStarted(RequestTag, long, long)} when it is sent, {@link #onCancelled(RequestTag)} if it was
+ *     interrupted while waiting, or {@link #onRejected(RequestTag, int)} if the
+ *     {@link de.quantumrange.webUtils.circuit.HostGuard} rejects it after the wait, nothing else is called then.</li>
+ *     <li>{@link #onCompleted(RequestTag, int, long)} when the headers of the response arrived or
+ *     {@link #onFailed(RequestTag, Throwable, long)} if there is no response.</li>
+ *     <li>{@link #onBytesReceived(RequestTag, long)} when the body was read.</li>
+ * </ol>
+ * The methods are called on the request path and must be fast and must not throw. All methods do nothing by default.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ * @see WebMetrics
+ * @see Web#INSTRUMENTATION
+ */
+public interface WebInstrumentation {
+
+	/**
+	 * Does nothing. Requests of connections with this instrumentation are not counted at all.
+	 */
+	WebInstrumentation NONE = new WebInstrumentation() {};
+
+	/**
+	 * Creates an instrumentation that informs all given ones.
+	 *
+	 * @param instrumentations the instrumentations.
+	 * @return the instrumentation.
+	 */
+	static WebInstrumentation of(WebInstrumentation... instrumentations) {
+		List<WebInstrumentation> all = List.of(instrumentations);
+
+		return new WebInstrumentation() {
+			@Override
+			public void onRejected(RequestTag tag, int responseCode) {
+				for (WebInstrumentation instrumentation : all) instrumentation.onRejected(tag, responseCode);
+			}
+
+			@Override
+			public void onQueued(RequestTag tag) {
+				for (WebInstrumentation instrumentation : all) instrumentation.onQueued(tag);
+			}
+
+			@Override
+			public void onCancelled(RequestTag tag) {
+				for (WebInstrumentation instrumentation : all) instrumentation.onCancelled(tag);
+			}
+
+			@Override
+			public void onStarted(RequestTag tag, long waitNanos, long bytesSent) {
+				for (WebInstrumentation instrumentation : all) instrumentation.onStarted(tag, waitNanos, bytesSent);
+			}
+
+			@Override
+			public void onCompleted(RequestTag tag, int statusCode, long nanos) {
+				for (WebInstrumentation instrumentation : all) instrumentation.onCompleted(tag, statusCode, nanos);
+			}
+
+			@Override
+			public void onFailed(RequestTag tag, Throwable error, long nanos) {
+				for (WebInstrumentation instrumentation : all) instrumentation.onFailed(tag, error, nanos);
+			}
+
+			@Override
+			public void onBytesReceived(RequestTag tag, long bytes) {
+				for (WebInstrumentation instrumentation : all) instrumentation.onBytesReceived(tag, bytes);
+			}
+		};
+	}
+
+	/**
+	 * The request was not sent because the circuit breaker of the host is open or its bulkhead is full, it waited in
+	 * the rate limiter before (see {@link #onQueued(RequestTag)}).
+	 *
+	 * @param tag the tag of the request.
+	 * @param responseCode the response code of the result.
+	 */
+	default void onRejected(RequestTag tag, int responseCode) {
+	}
+
+	/**
+	 * The request waits in the rate limiter.
+	 *
+	 * @param tag the tag of the request.
+	 */
+	default void onQueued(RequestTag tag) {
+	}
+
+	/**
+	 * The request was interrupted while waiting in the rate limiter and is not sent.
+	 *
+	 * @param tag the tag of the request.
+	 */
+	default void onCancelled(RequestTag tag) {
+	}
+
+	/**
+	 * The request is sent.
+	 *
+	 * @param tag the tag of the request.
+	 * @param waitNanos how long the request waited in the rate limiter.
+	 * @param bytesSent the length of the body or -1 if it is unknown.
+	 */
+	default void onStarted(RequestTag tag, long waitNanos, long bytesSent) {
+	}
+
+	/**
+	 * The headers of the response arrived.
+	 *
+	 * @param tag the tag of the request.
+	 * @param statusCode the response code.
+	 * @param nanos the time since {@link #onStarted(RequestTag, long, long)}.
+	 */
+	default void onCompleted(RequestTag tag, int statusCode, long nanos) {
+	}
+
+	/**
+	 * The request failed without response.
+	 *
+	 * @param tag the tag of the request.
+	 * @param error the reason.
+	 * @param nanos the time since {@link #onStarted(RequestTag, long, long)}.
+	 */
+	default void onFailed(RequestTag tag, Throwable error, long nanos) {
+	}
+
+	/**
+	 * The body of the response was read, or reading it stopped.
+	 *
+	 * @param tag the tag of the request.
+	 * @param bytes the count of bytes as they came over the network (compressed bodies are counted compressed).
+	 */
+	default void onBytesReceived(RequestTag tag, long bytes) {
+	}
+
+}
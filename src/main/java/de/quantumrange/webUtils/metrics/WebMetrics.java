@@ -0,0 +1,173 @@
+package de.quantumrange.webUtils.metrics;
+
+import de.quantumrange.webUtils.Web;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Counts the requests per {@link RequestTag} with {@link LongAdder}s, so many threads can count at the same time
+ * without waiting for each other.
+ * The counters can be read with {@link #snapshot()} or over JMX with the {@link JmxExporter}.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ * @see Web#METRICS
+ */
+public class WebMetrics implements WebInstrumentation {
+
+	private final Map<RequestTag, Counters> counters;
+	private final List<Consumer<RequestTag>> tagListeners;
+
+	public WebMetrics() {
+		this.counters = new ConcurrentHashMap<>();
+		this.tagListeners = new CopyOnWriteArrayList<>();
+	}
+
+	@Override
+	public void onRejected(RequestTag tag, int responseCode) {
+		Counters counters = counters(tag);
+		counters.waiting.decrement();
+		counters.rejected.increment();
+	}
+
+	@Override
+	public void onQueued(RequestTag tag) {
+		counters(tag).waiting.increment();
+	}
+
+	@Override
+	public void onCancelled(RequestTag tag) {
+		Counters counters = counters(tag);
+		counters.waiting.decrement();
+		counters.cancelled.increment();
+	}
+
+	@Override
+	public void onStarted(RequestTag tag, long waitNanos, long bytesSent) {
+		Counters counters = counters(tag);
+		counters.waiting.decrement();
+		counters.inFlight.increment();
+		counters.started.increment();
+		counters.waitNanos.add(waitNanos);
+		if (bytesSent > 0) counters.bytesSent.add(bytesSent);
+	}
+
+	@Override
+	public void onCompleted(RequestTag tag, int statusCode, long nanos) {
+		Counters counters = counters(tag);
+		counters.inFlight.decrement();
+		counters.completed.increment();
+
+		int statusClass = statusCode / 100 - 1;
+		if (statusClass >= 0 && statusClass < counters.statusClasses.length) counters.statusClasses[statusClass].increment();
+	}
+
+	@Override
+	public void onFailed(RequestTag tag, Throwable error, long nanos) {
+		Counters counters = counters(tag);
+		counters.inFlight.decrement();
+		counters.failed.increment();
+	}
+
+	@Override
+	public void onBytesReceived(RequestTag tag, long bytes) {
+		counters(tag).bytesReceived.add(bytes);
+	}
+
+	private Counters counters(RequestTag tag) {
+		Counters current = counters.get(tag);
+		if (current != null) return current;
+
+		Counters created = new Counters();
+		current = counters.putIfAbsent(tag, created);
+		if (current != null) return current;
+
+		for (Consumer<RequestTag> listener : tagListeners) listener.accept(tag);
+		return created;
+	}
+
+	/**
+	 * Reads all counters. The counters are read one after another while requests may still be counted, so the
+	 * snapshot is not atomic.
+	 *
+	 * @return the counters per tag.
+	 */
+	public MetricsSnapshot snapshot() {
+		Map<RequestTag, MetricsSnapshot.Counts> tags = new HashMap<>();
+		counters.forEach((tag, counters) -> tags.put(tag, counters.toCounts()));
+		return new MetricsSnapshot(tags);
+	}
+
+	/**
+	 * Reads the counters of a tag.
+	 *
+	 * @param tag the tag.
+	 * @return the counters or {@link MetricsSnapshot.Counts#EMPTY} if no request with the tag was counted.
+	 */
+	public MetricsSnapshot.Counts getCounts(RequestTag tag) {
+		Counters current = counters.get(tag);
+		return current == null ? MetricsSnapshot.Counts.EMPTY : current.toCounts();
+	}
+
+	/**
+	 * Removes all counters. Requests that are in flight at the moment are counted with negative in-flight counts
+	 * when they complete.
+	 */
+	public void reset() {
+		counters.clear();
+	}
+
+	/**
+	 * Informs the listener about every tag that is counted for the first time.
+	 */
+	void addTagListener(Consumer<RequestTag> listener) {
+		tagListeners.add(listener);
+	}
+
+	void removeTagListener(Consumer<RequestTag> listener) {
+		tagListeners.remove(listener);
+	}
+
+	private static final class Counters {
+
+		private final LongAdder started = new LongAdder();
+		private final LongAdder completed = new LongAdder();
+		private final LongAdder failed = new LongAdder();
+		private final LongAdder rejected = new LongAdder();
+		private final LongAdder cancelled = new LongAdder();
+		private final LongAdder waiting = new LongAdder();
+		private final LongAdder inFlight = new LongAdder();
+		private final LongAdder[] statusClasses = {
+				new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder()
+		};
+		private final LongAdder bytesSent = new LongAdder();
+		private final LongAdder bytesReceived = new LongAdder();
+		private final LongAdder waitNanos = new LongAdder();
+
+		private MetricsSnapshot.Counts toCounts() {
+			return new MetricsSnapshot.Counts(started.sum(),
+					completed.sum(),
+					failed.sum(),
+					rejected.sum(),
+					cancelled.sum(),
+					waiting.sum(),
+					inFlight.sum(),
+					statusClasses[0].sum(),
+					statusClasses[1].sum(),
+					statusClasses[2].sum(),
+					statusClasses[3].sum(),
+					statusClasses[4].sum(),
+					bytesSent.sum(),
+					bytesReceived.sum(),
+					waitNanos.sum());
+		}
+
+	}
+
+}
@@ -0,0 +1,275 @@
+package de.quantumrange.webUtils.models;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The body of a {@link WebResult} that is decoded on the first access and then kept.
+ * <p>
+ * A body read with {@link #ofString()} keeps the raw bytes and the charset of the response, the {@link String} is
+ * only created when {@link #get()} is called. A result that is only checked for its response code never decodes its
+ * body. The JSON of the body is parsed once per {@link ObjectReader}, to an object or to a {@link JsonNode}, directly
+ * from the bytes if they are UTF-8.
+ * <p>
+ * All methods are thread-safe, the value is computed only once even if several threads access it at the same time.
+ * If the computation fails, the exception is thrown and the next access tries again.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ * @param <T> the type of the body.
+ */
+public final class LazyBody<T> implements Supplier<T> {
+
+	private final LazyBody<?> parent;
+	private final byte[] bytes;
+	private final Charset charset;
+
+	private Supplier<? extends T> source;
+	private T value;
+	private long nanos;
+	private volatile boolean decoded;
+
+	private volatile Map<ObjectReader, Parsed> parsed;
+	private volatile Map<ObjectReader, Parsed> trees;
+
+	private LazyBody(LazyBody<?> parent, byte[] bytes, Charset charset, Supplier<? extends T> source) {
+		this.parent = parent;
+		this.bytes = bytes;
+		this.charset = charset;
+		this.source = source;
+	}
+
+	/**
+	 * Creates a body that is already decoded.
+	 *
+	 * @param value the value, can be null.
+	 * @param <T> the type of the body.
+	 * @return the body.
+	 */
+	public static <T> LazyBody<T> of(T value) {
+		LazyBody<T> body = new LazyBody<>(null, null, null, null);
+		body.value = value;
+		body.decoded = true;
+		return body;
+	}
+
+	/**
+	 * Creates a body that is computed by the supplier on the first access.
+	 *
+	 * @param source computes the value.
+	 * @param <T> the type of the body.
+	 * @return the body.
+	 */
+	public static <T> LazyBody<T> lazy(Supplier<? extends T> source) {
+		return new LazyBody<>(null, null, null, source);
+	}
+
+	/**
+	 * Creates a text body that is decoded from the bytes on the first access.
+	 *
+	 * @param bytes the bytes, they are not copied.
+	 * @param charset the charset of the bytes.
+	 * @return the body.
+	 */
+	public static LazyBody<String> decode(byte[] bytes, Charset charset) {
+		return new LazyBody<>(null, bytes, charset, () -> new String(bytes, charset));
+	}
+
+	/**
+	 * Reads the body as bytes and decodes it with the charset of the <code>Content-Type</code> (UTF-8 if there is
+	 * none) when it is accessed the first time.
+	 *
+	 * @return the handler.
+	 */
+	public static HttpResponse.BodyHandler<LazyBody<String>> ofString() {
+		return info -> HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(),
+				bytes -> decode(bytes, charsetOf(info.headers())));
+	}
+
+	/**
+	 * Returns the value and computes it if this is the first access.
+	 *
+	 * @return the value, can be null.
+	 */
+	@Override
+	public T get() {
+		if (!decoded) {
+			synchronized (this) {
+				if (!decoded) {
+					// The parent is computed first, so its time is not counted twice.
+					if (parent != null) parent.get();
+
+					long start = System.nanoTime();
+					value = source.get();
+					nanos = System.nanoTime() - start;
+					source = null;
+					decoded = true;
+				}
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Returns a body that applies the function to this value on its first access.
+	 *
+	 * @param map the function.
+	 * @param <O> the new type.
+	 * @return the new body.
+	 */
+	public <O> LazyBody<O> map(Function<? super T, ? extends O> map) {
+		return new LazyBody<>(this, null, null, () -> map.apply(get()));
+	}
+
+	/**
+	 * Parses the body as JSON with the reader. The result is kept per reader, so the same instance is returned for
+	 * the same reader (the readers of {@link de.quantumrange.webUtils.json.JsonCodecs} are cached).
+	 *
+	 * @param reader the reader.
+	 * @param <O> the type the reader reads.
+	 * @return the parsed object. If the body is null, the result is also null.
+	 * @throws JsonProcessingException if the JSON is invalid.
+	 */
+	@SuppressWarnings("unchecked")
+	public <O> O json(ObjectReader reader) throws JsonProcessingException {
+		return (O) parsed(false, reader).get(isUtf8() ? () -> reader.readValue(bytes) : () -> {
+			T text = get();
+			return text == null ? null : reader.readValue(text.toString());
+		});
+	}
+
+	/**
+	 * Parses the body to a {@link JsonNode}. The tree is kept per reader, so the same node is returned for the same
+	 * reader.
+	 *
+	 * @param reader the reader.
+	 * @return the tree. If the body is null, the result is also null.
+	 * @throws JsonProcessingException if the JSON is invalid.
+	 */
+	public JsonNode tree(ObjectReader reader) throws JsonProcessingException {
+		return (JsonNode) parsed(true, reader).get(isUtf8() ? () -> reader.readTree(bytes) : () -> {
+			T text = get();
+			return text == null ? null : reader.readTree(text.toString());
+		});
+	}
+
+	/**
+	 * Returns true if the value was already computed.
+	 * @return true if the value was computed.
+	 */
+	public boolean isDecoded() {
+		return decoded;
+	}
+
+	/**
+	 * Returns how long the value and the values it was mapped from took to compute.
+	 * @return the time in nanoseconds, 0 if nothing was computed yet.
+	 */
+	public long getDecodeNanos() {
+		long own = decoded ? nanos : 0L;
+		return parent == null ? own : own + parent.getDecodeNanos();
+	}
+
+	private boolean isUtf8() {
+		return bytes != null && (charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Returns the holder of the object or the tree that the reader parses.
+	 */
+	private Parsed parsed(boolean tree, ObjectReader reader) {
+		Map<ObjectReader, Parsed> cache = tree ? trees : parsed;
+
+		if (cache == null) {
+			synchronized (this) {
+				cache = tree ? trees : parsed;
+				if (cache == null) {
+					cache = new ConcurrentHashMap<>(4);
+					if (tree) trees = cache;
+					else parsed = cache;
+				}
+			}
+		}
+
+		return cache.computeIfAbsent(reader, key -> new Parsed());
+	}
+
+	private static <O> O read(JsonRead<O> read) throws JsonProcessingException {
+		try {
+			return read.read();
+		} catch (JsonProcessingException e) {
+			throw e;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns the charset of the <code>Content-Type</code> like the handlers of the JDK do.
+	 */
+	private static Charset charsetOf(HttpHeaders headers) {
+		String type = headers.firstValue("Content-Type").orElse(null);
+		if (type == null) return StandardCharsets.UTF_8;
+
+		for (String parameter : type.split(";")) {
+			int equals = parameter.indexOf('=');
+			if (equals < 0 || !parameter.substring(0, equals).trim().equalsIgnoreCase("charset")) continue;
+
+			String name = parameter.substring(equals + 1).trim();
+			if (name.length() > 1 && name.startsWith("\"") && name.endsWith("\"")) {
+				name = name.substring(1, name.length() - 1);
+			}
+
+			try {
+				return Charset.forName(name);
+			} catch (IllegalArgumentException e) {
+				return StandardCharsets.UTF_8;
+			}
+		}
+
+		return StandardCharsets.UTF_8;
+	}
+
+	@Override
+	public String toString() {
+		if (decoded) return String.valueOf(value);
+		return bytes == null ? "<not decoded>" : "<" + bytes.length + " bytes, " + charset + ">";
+	}
+
+	private interface JsonRead<O> {
+
+		O read() throws IOException;
+
+	}
+
+	/**
+	 * The result of one reader, it is parsed under the lock of the holder, so it is parsed only once.
+	 */
+	private static final class Parsed {
+
+		private Object value;
+		private boolean done;
+
+		synchronized Object get(JsonRead<?> read) throws JsonProcessingException {
+			if (!done) {
+				value = read(read);
+				done = true;
+			}
+			return value;
+		}
+
+	}
+
+}
@@ -1,10 +1,14 @@
 package de.quantumrange.webUtils.models;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectReader;
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.circuit.HostGuard;
 import de.quantumrange.webUtils.connections.HTTPRequestType;
 import de.quantumrange.webUtils.connections.WebConnection;
+import de.quantumrange.webUtils.retry.RetryPolicy;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -22,6 +26,16 @@ import java.util.function.Function;
  * The response code and the body (mapped as the specified type T) of the server is also stored.
  *
  * If the request is failed the responseCode is set to -1 and the receiveResponse Time is set to null.
+ * If the request was not sent because the {@link HostGuard} rejected it, the responseCode is {@link #CIRCUIT_OPEN}
+ * or {@link #BULKHEAD_FULL}.
+ *
+ * The phases of the request are measured more precisely in the {@link WebTimings}, they are null if the result was
+ * not created by a WebConnection.
+ *
+ * The body is held as {@link LazyBody}: it is only decoded when {@link #response()} is called the first time, and
+ * {@link #map(Function)} only runs its function then. The parsed JSON is kept, so calling
+ * {@link #responseJson(Class)} or {@link #responseJsonNode()} again doesn't parse the body again. A null body is
+ * stored as <code>LazyBody.of(null)</code>, so {@link #body()} is never null.
  *
  * @author QuantumRange
  * @since 1.0.1
@@ -29,17 +43,100 @@ import java.util.function.Function;
  */
 public record WebResult<T>(@Nonnull LocalDateTime requestSend, @Nullable LocalDateTime receiveResponse,
 						   @Nonnull URL url, @Nonnull HTTPRequestType type,
-						   int responseCode, @Nullable T response) {
+						   int responseCode, @Nonnull LazyBody<T> body, @Nullable WebTimings timings) {
+
+	/**
+	 * The responseCode of a request that failed without response.
+	 */
+	public static final int FAILED = -1;
+	/**
+	 * The responseCode of a request that was not sent because the circuit breaker of the host is open.
+	 */
+	public static final int CIRCUIT_OPEN = -2;
+	/**
+	 * The responseCode of a request that was not sent because too many requests to the host are in progress.
+	 */
+	public static final int BULKHEAD_FULL = -3;
+
+	public WebResult {
+		if (body == null) body = LazyBody.of(null);
+	}
+
+	public WebResult(@Nonnull LocalDateTime requestSend, @Nullable LocalDateTime receiveResponse, @Nonnull URL url,
+					 @Nonnull HTTPRequestType type, int responseCode, @Nullable T response,
+					 @Nullable WebTimings timings) {
+		this(requestSend, receiveResponse, url, type, responseCode, LazyBody.<T>of(response), timings);
+	}
+
+	public WebResult(@Nonnull LocalDateTime requestSend, @Nullable LocalDateTime receiveResponse, @Nonnull URL url,
+					 @Nonnull HTTPRequestType type, int responseCode, @Nullable T response) {
+		this(requestSend, receiveResponse, url, type, responseCode, response, null);
+	}
+
+	/**
+	 * Returns the result with the body that was read by {@link LazyBody#ofString()} or a similar handler, so the
+	 * body stays lazy.
+	 *
+	 * @param result the result with the {@link LazyBody} as response.
+	 * @param <O> the type of the body.
+	 * @return the result with the body.
+	 */
+	public static <O> WebResult<O> ofLazy(WebResult<LazyBody<O>> result) {
+		LazyBody<O> body = result.response();
+		if (body == null) body = LazyBody.of(null);
+
+		return new WebResult<O>(result.requestSend, result.receiveResponse, result.url, result.type,
+				result.responseCode, body, result.timings);
+	}
+
+	/**
+	 * Returns the body and decodes it if this is the first access.
+	 *
+	 * @return the body or null if there is none.
+	 */
+	@Nullable
+	public T response() {
+		return body.get();
+	}
+
+	/**
+	 * Returns the timings, the deserialization includes the time the body took to decode and map so far.
+	 *
+	 * @return the timings or null if the result was not created by a WebConnection.
+	 */
+	@Nullable
+	@Override
+	public WebTimings timings() {
+		long nanos = body.getDecodeNanos();
+		return timings == null || nanos == 0L ? timings : timings.withDeserialization(nanos);
+	}
 
 	/**
 	 * Maps from data type T to O.
+	 * The function is applied when {@link #response()} of the new result is called the first time, not right away.
+	 * The time the function takes is then added to the deserialization time of the {@link #timings()}.
+	 * Use {@link #mapEagerly(Function)} if the function has to run now, for example because it consumes a stream.
 	 *
 	 * @param map The function that maps the type from T to O.
 	 * @param <O> the requested data type.
 	 * @return the new WebResult with the new data type as result.
 	 */
 	public <O> WebResult<O> map(Function<T, O> map) {
-		return new WebResult<>(requestSend, receiveResponse, url, type, responseCode, map.apply(response));
+		return new WebResult<O>(requestSend, receiveResponse, url, type, responseCode, body.map(map), timings);
+	}
+
+	/**
+	 * Maps from data type T to O right away (more on {@link #map(Function)}).
+	 *
+	 * @param map The function that maps the type from T to O.
+	 * @param <O> the requested data type.
+	 * @return the new WebResult with the new data type as result.
+	 */
+	public <O> WebResult<O> mapEagerly(Function<T, O> map) {
+		LazyBody<O> mapped = body.map(map);
+		mapped.get();
+
+		return new WebResult<O>(requestSend, receiveResponse, url, type, responseCode, mapped, timings);
 	}
 
 	/**
@@ -50,22 +147,46 @@ public record WebResult<T>(@Nonnull LocalDateTime requestSend, @Nullable LocalDa
 	 * @throws JsonProcessingException if the JSON is invalid.
 	 */
 	public <O> O responseJson() throws JsonProcessingException {
-		return responseJson(WebConnection.createObjectMapper().reader());
+		return responseJson(Web.CODECS.reader());
 	}
 
 	/**
-	 * Parses the JSON to a JsonNode.
+	 * Parses the JSON to the object of the given class with the cached reader of {@link Web#CODECS}.
+	 *
+	 * @param type the class to which the JSON should be parsed.
+	 * @param <O> to which type the JSON should be parsed.
+	 * @return the object parsed from the JSON. If the response is null, the result is also null.
+	 * @throws JsonProcessingException if the JSON is invalid.
+	 */
+	public <O> O responseJson(Class<O> type) throws JsonProcessingException {
+		return responseJson(Web.CODECS.reader(type));
+	}
+
+	/**
+	 * Parses the JSON to the object of the given generic type with the cached reader of {@link Web#CODECS}.
+	 *
+	 * @param type the type to which the JSON should be parsed.
+	 * @param <O> to which type the JSON should be parsed.
+	 * @return the object parsed from the JSON. If the response is null, the result is also null.
+	 * @throws JsonProcessingException if the JSON is invalid.
+	 */
+	public <O> O responseJson(TypeReference<O> type) throws JsonProcessingException {
+		return responseJson(Web.CODECS.reader(type));
+	}
+
+	/**
+	 * Parses the JSON to a JsonNode. The node is kept, so the same instance is returned when it is called again.
 	 *
 	 * @return the object parsed from the JSON. If the response is null, the result is also null.
 	 * @throws JsonProcessingException if the JSON is invalid.
 	 */
 	public JsonNode responseJsonNode() throws JsonProcessingException {
-		if (response == null) return null;
-		return WebConnection.createObjectMapper().readTree(response.toString());
+		return body.tree(Web.CODECS.reader());
 	}
 
 	/**
-	 * Parses the JSON to the object
+	 * Parses the JSON to the object. The object is kept per reader, so the same instance is returned when it is
+	 * called again with the same reader.
 	 *
 	 * @param reader the ObjectReader with which this is to be parsed.
 	 * @param <O> to which type the JSON should be parsed.
@@ -73,12 +194,13 @@ public record WebResult<T>(@Nonnull LocalDateTime requestSend, @Nullable LocalDa
 	 * @throws JsonProcessingException if the JSON is invalid.
 	 */
 	public <O> O responseJson(ObjectReader reader) throws JsonProcessingException {
-		if (response == null) return null;
-		return reader.readValue(response.toString());
+		return body.json(reader);
 	}
 
 	/**
 	 * Calculates the time it took to receive the response from server.
+	 * This is measured with the clock of the system and includes the time the request was queued, the
+	 * {@link #timings()} are more precise.
 	 * @return how long it took in milliseconds from program to server to program. If there was no response from
 	 * server, -1 is returned.
 	 */
@@ -87,17 +209,25 @@ public record WebResult<T>(@Nonnull LocalDateTime requestSend, @Nullable LocalDa
 		return requestSend.until(receiveResponse, ChronoUnit.MILLIS);
 	}
 
+	/**
+	 * Returns how often the request was sent again (see {@link WebConnection#retry(RetryPolicy)}).
+	 * @return the count of retries.
+	 */
+	public int getRetries() {
+		return timings == null ? 0 : timings.retries();
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
 		if (o == null || getClass() != o.getClass()) return false;
 		WebResult<?> webResult = (WebResult<?>) o;
-		return responseCode == webResult.responseCode && Objects.equals(requestSend, webResult.requestSend) && Objects.equals(receiveResponse, webResult.receiveResponse) && Objects.equals(url, webResult.url) && type == webResult.type && Objects.equals(response, webResult.response);
+		return responseCode == webResult.responseCode && Objects.equals(requestSend, webResult.requestSend) && Objects.equals(receiveResponse, webResult.receiveResponse) && Objects.equals(url, webResult.url) && type == webResult.type && Objects.equals(response(), webResult.response());
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(requestSend, receiveResponse, url, type, responseCode, response);
+		return Objects.hash(requestSend, receiveResponse, url, type, responseCode, response());
 	}
 
 	@Override
@@ -108,7 +238,8 @@ public record WebResult<T>(@Nonnull LocalDateTime requestSend, @Nullable LocalDa
 				", url=" + url +
 				", type=" + type +
 				", responseCode=" + responseCode +
-				", response=" + response +
+				", response=" + body +
+				", timings=" + timings +
 				'}';
 	}
 
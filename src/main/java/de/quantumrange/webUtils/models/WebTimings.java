@@ -0,0 +1,185 @@
+package de.quantumrange.webUtils.models;
+
+import de.quantumrange.webUtils.ratelimit.RateLimiter;
+
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * The phases of a request measured with {@link System#nanoTime()}, so they have nanosecond resolution and are not
+ * affected when the clock of the system is changed.
+ * <ul>
+ *     <li><b>queued</b>: from the moment the request is queued until it is sent, which includes the wait for its turn
+ *     in {@link de.quantumrange.webUtils.Web#MANAGER} and in the {@link RateLimiter}.</li>
+ *     <li><b>time to first byte</b>: from sending the request until the status and headers of the response arrived.</li>
+ *     <li><b>body read</b>: from the headers until the body was read by the {@link HttpResponse.BodyHandler}.
+ *     Streaming handlers return before the body is read, the reading is then part of the deserialization.</li>
+ *     <li><b>deserialization</b>: the time spent decoding the body and in
+ *     {@link WebResult#map(java.util.function.Function)}, for example to parse the JSON. Both happen when the body is
+ *     read the first time, so this grows after the result was created.</li>
+ *     <li><b>retry</b>: if the request was retried (see {@link de.quantumrange.webUtils.retry.RetryPolicy}), the time
+ *     from the first attempt until the last attempt was sent, including the waits. The other phases are then the
+ *     ones of the last attempt.</li>
+ * </ul>
+ * A phase that was not measured (for example when the request failed) is {@link #UNKNOWN}.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public record WebTimings(long queuedNanos, long timeToFirstByteNanos, long bodyReadNanos, long deserializationNanos,
+						 int retries, long retryNanos) {
+
+	public static final long UNKNOWN = -1L;
+
+	/**
+	 * Returns the time the request spent on the network (time to first byte and body read).
+	 * @return the time in nanoseconds or {@link #UNKNOWN}.
+	 */
+	public long networkNanos() {
+		if (timeToFirstByteNanos == UNKNOWN) return UNKNOWN;
+		return timeToFirstByteNanos + Math.max(bodyReadNanos, 0L);
+	}
+
+	/**
+	 * Returns the sum of all measured phases.
+	 * @return the time in nanoseconds.
+	 */
+	public long totalNanos() {
+		return Math.max(queuedNanos, 0L) + Math.max(retryNanos, 0L) + Math.max(timeToFirstByteNanos, 0L)
+				+ Math.max(bodyReadNanos, 0L) + Math.max(deserializationNanos, 0L);
+	}
+
+	/**
+	 * Returns the sum of all measured phases as {@link Duration}.
+	 * @return the duration.
+	 */
+	public Duration getTotal() {
+		return Duration.ofNanos(totalNanos());
+	}
+
+	/**
+	 * Adds the time of another deserialization step.
+	 *
+	 * @param nanos the time in nanoseconds.
+	 * @return the new timings.
+	 */
+	public WebTimings withDeserialization(long nanos) {
+		long deserialization = deserializationNanos == UNKNOWN ? nanos : deserializationNanos + nanos;
+		return new WebTimings(queuedNanos, timeToFirstByteNanos, bodyReadNanos, deserialization, retries, retryNanos);
+	}
+
+	/**
+	 * Takes the timestamps of one request while it passes through the phases.
+	 * The marks can be set from different threads, a mark that is set twice keeps the first value.
+	 */
+	public static final class Recorder {
+
+		private static final long UNSET = Long.MIN_VALUE;
+
+		private volatile long queuedAt = UNSET;
+		private volatile long startedAt = UNSET;
+		private volatile long dispatchedAt = UNSET;
+		private volatile long headersAt = UNSET;
+		private volatile long completedAt = UNSET;
+		private volatile long firstDispatchedAt = UNSET;
+		private volatile int retries;
+
+		/**
+		 * Marks the moment the request is queued.
+		 */
+		public void queued() {
+			if (queuedAt == UNSET) queuedAt = System.nanoTime();
+		}
+
+		/**
+		 * Marks the moment a thread starts to process the request.
+		 */
+		public void started() {
+			if (startedAt == UNSET) startedAt = System.nanoTime();
+		}
+
+		/**
+		 * Marks the moment the request is handed to the network, after the {@link RateLimiter} allowed it.
+		 */
+		public void dispatched() {
+			if (dispatchedAt == UNSET) dispatchedAt = System.nanoTime();
+		}
+
+		/**
+		 * Marks the moment the status and headers of the response arrived.
+		 */
+		public void headers() {
+			if (headersAt == UNSET) headersAt = System.nanoTime();
+		}
+
+		/**
+		 * Marks the moment the body handler completed.
+		 */
+		public void completed() {
+			if (completedAt == UNSET) completedAt = System.nanoTime();
+		}
+
+		/**
+		 * Marks that the last attempt failed and the request is sent again.
+		 * The marks of the network phases are cleared, so they are measured again for the next attempt.
+		 */
+		public void retry() {
+			if (firstDispatchedAt == UNSET) firstDispatchedAt = dispatchedAt == UNSET ? startedAt : dispatchedAt;
+
+			retries++;
+			dispatchedAt = UNSET;
+			headersAt = UNSET;
+			completedAt = UNSET;
+		}
+
+		/**
+		 * Wraps the handler so that {@link #headers()} is marked when the response arrives.
+		 *
+		 * @param handler the handler that reads the body.
+		 * @param <B> the type of the body.
+		 * @return the wrapped handler.
+		 */
+		public <B> HttpResponse.BodyHandler<B> wrap(HttpResponse.BodyHandler<B> handler) {
+			return new Timed<>(this, handler);
+		}
+
+		/**
+		 * Creates the timings from the marks.
+		 * If the request was never dispatched (for example because it was answered by a cache), the phases start
+		 * when a thread started to process the request.
+		 *
+		 * @return the timings.
+		 */
+		public WebTimings toTimings() {
+			long queued = queuedAt, started = startedAt, dispatched = dispatchedAt, headers = headersAt,
+					completed = completedAt, firstDispatched = firstDispatchedAt;
+
+			if (dispatched == UNSET) dispatched = started;
+			if (firstDispatched == UNSET) firstDispatched = dispatched;
+			if (queued == UNSET) queued = firstDispatched;
+
+			long retry = retries == 0 ? 0L : between(firstDispatched, dispatched);
+
+			return new WebTimings(between(queued, firstDispatched), between(dispatched, headers),
+					between(headers, completed), UNKNOWN, retries, retry);
+		}
+
+		private static long between(long from, long to) {
+			if (from == UNSET || to == UNSET) return UNKNOWN;
+			return Math.max(to - from, 0L);
+		}
+
+	}
+
+	private record Timed<B>(Recorder recorder, HttpResponse.BodyHandler<B> handler)
+			implements HttpResponse.BodyHandler<B> {
+
+		@Override
+		public HttpResponse.BodySubscriber<B> apply(HttpResponse.ResponseInfo info) {
+			recorder.headers();
+			return handler.apply(info);
+		}
+
+	}
+
+}
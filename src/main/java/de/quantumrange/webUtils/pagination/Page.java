@@ -0,0 +1,21 @@
+package de.quantumrange.webUtils.pagination;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.net.URI;
+import java.net.http.HttpHeaders;
+
+/**
+ * A page of a {@link Paginator} as the server answered it. A {@link Pagination} reads the link to the next page from
+ * it.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ * @param index the index of the page, the first page has 0.
+ * @param uri the URI of the response.
+ * @param headers the headers of the response.
+ * @param json the parsed body.
+ * @param itemCount how many items the page has.
+ */
+public record Page(int index, URI uri, HttpHeaders headers, JsonNode json, int itemCount) {
+}
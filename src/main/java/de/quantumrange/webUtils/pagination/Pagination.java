@@ -0,0 +1,231 @@
+package de.quantumrange.webUtils.pagination;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * Describes how a paginated API is read: where the items are in the JSON of a page and how the request of the next
+ * page is built. The common styles are offered as factories:
+ * <ul>
+ *     <li>{@link #cursor(String, String, String)}: the page contains a cursor that is sent as query parameter</li>
+ *     <li>{@link #offset(String, String, int)} and {@link #pageNumber(String, String, int, int)}: a query parameter
+ *     counts up, so the following pages are known in advance and can be requested at the same time</li>
+ *     <li>{@link #link(String)}: the URI of the next page is in the <code>Link</code> header with
+ *     <code>rel="next"</code> (like GitHub)</li>
+ *     <li>{@link #of(String, BiFunction)}: the next request is computed by a function</li>
+ * </ul>
+ * The items are found with a JSON pointer, for example <code>/data</code>, or <code>""</code> if the page is the
+ * array itself.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ * @param <T> the type of the data of a request, like the one of the connection.
+ */
+public final class Pagination<T> {
+
+	private final JsonPointer items;
+	/**
+	 * Computes the data of the page with the index, null if the next page depends on the previous one.
+	 */
+	private final BiFunction<T, Integer, T> indexed;
+	/**
+	 * With {@link #indexed}: a page with less items is the last, 0 if only an empty page is the last.
+	 */
+	private final int pageSize;
+	/**
+	 * Without {@link #indexed}: computes the request of the next page from the page, null if it was the last.
+	 */
+	private final BiFunction<Request<T>, Page, Request<T>> next;
+
+	private Pagination(String itemsPointer, BiFunction<T, Integer, T> indexed, int pageSize,
+					   BiFunction<Request<T>, Page, Request<T>> next) {
+		this.items = JsonPointer.compile(itemsPointer);
+		this.indexed = indexed;
+		this.pageSize = pageSize;
+		this.next = next;
+	}
+
+	/**
+	 * The pages contain a cursor to the next page, it is sent as query parameter. A missing, null or empty cursor
+	 * ends the pagination.
+	 *
+	 * @param itemsPointer the JSON pointer to the array of the items.
+	 * @param cursorPointer the JSON pointer to the cursor, for example <code>/meta/next_cursor</code>.
+	 * @param parameter the name of the query parameter of the cursor.
+	 * @return the pagination.
+	 */
+	public static Pagination<Map<String, ?>> cursor(String itemsPointer, String cursorPointer, String parameter) {
+		JsonPointer cursor = JsonPointer.compile(cursorPointer);
+
+		return new Pagination<>(itemsPointer, null, 0, (request, page) -> {
+			JsonNode value = page.json().at(cursor);
+			if (value.isMissingNode() || value.isNull() || value.asText().isEmpty()) return null;
+
+			return new Request<>(with(request.data(), parameter, value.asText()), null);
+		});
+	}
+
+	/**
+	 * The query parameter is the index of the first item of the page. The pagination starts at the value of the
+	 * parameter in the data (0 if there is none) and ends with a page that has less than <code>pageSize</code> items.
+	 *
+	 * @param itemsPointer the JSON pointer to the array of the items.
+	 * @param parameter the name of the query parameter, for example <code>offset</code>.
+	 * @param pageSize the count of items per page, the parameter for it has to be in the data.
+	 * @return the pagination.
+	 */
+	public static Pagination<Map<String, ?>> offset(String itemsPointer, String parameter, int pageSize) {
+		if (pageSize < 1) throw new IllegalArgumentException("The page size has to be at least 1.");
+
+		return new Pagination<>(itemsPointer, (data, index) ->
+				with(data, parameter, start(data, parameter, 0) + (long) index * pageSize), pageSize, null);
+	}
+
+	/**
+	 * The query parameter is the number of the page. The pagination starts at the value of the parameter in the data
+	 * (<code>firstPage</code> if there is none) and ends with an empty page or a page with less than
+	 * <code>pageSize</code> items.
+	 *
+	 * @param itemsPointer the JSON pointer to the array of the items.
+	 * @param parameter the name of the query parameter, for example <code>page</code>.
+	 * @param firstPage the number of the first page, usually 0 or 1.
+	 * @param pageSize the count of items per page, 0 if it is unknown.
+	 * @return the pagination.
+	 */
+	public static Pagination<Map<String, ?>> pageNumber(String itemsPointer, String parameter, int firstPage,
+														int pageSize) {
+		if (pageSize < 0) throw new IllegalArgumentException("The page size can't be negative.");
+
+		return new Pagination<>(itemsPointer, (data, index) ->
+				with(data, parameter, start(data, parameter, firstPage) + index), pageSize, null);
+	}
+
+	/**
+	 * The URI of the next page is in the <code>Link</code> header with <code>rel="next"</code>. The next page is
+	 * requested with the same data, only the URI (with its query) is replaced. The pagination ends with a page
+	 * without next link.
+	 *
+	 * @param itemsPointer the JSON pointer to the array of the items.
+	 * @param <T> the type of the data of a request.
+	 * @return the pagination.
+	 */
+	public static <T> Pagination<T> link(String itemsPointer) {
+		return new Pagination<>(itemsPointer, null, 0, (request, page) -> {
+			String link = nextLink(page.headers().allValues("Link"));
+			return link == null ? null : new Request<>(request.data(), page.uri().resolve(link));
+		});
+	}
+
+	/**
+	 * The data of the next page is computed by the function from the data and the response of the previous page.
+	 *
+	 * @param itemsPointer the JSON pointer to the array of the items.
+	 * @param next returns the data of the next page or null if the page was the last.
+	 * @param <T> the type of the data of a request.
+	 * @return the pagination.
+	 */
+	public static <T> Pagination<T> of(String itemsPointer, BiFunction<? super T, ? super Page, ? extends T> next) {
+		return new Pagination<>(itemsPointer, null, 0, (request, page) -> {
+			T data = next.apply(request.data(), page);
+			return data == null ? null : new Request<>(data, null);
+		});
+	}
+
+	/**
+	 * Returns true if the requests of the following pages are known in advance.
+	 */
+	boolean isIndexed() {
+		return indexed != null;
+	}
+
+	/**
+	 * Returns the request of the page with the index (only if {@link #isIndexed()}).
+	 */
+	Request<T> request(T data, int index) {
+		return new Request<>(indexed.apply(data, index), null);
+	}
+
+	/**
+	 * Returns true if the page is the last one (only if {@link #isIndexed()}).
+	 */
+	boolean isLast(Page page) {
+		return pageSize == 0 ? page.itemCount() == 0 : page.itemCount() < pageSize;
+	}
+
+	/**
+	 * Returns the request after the page or null if it is the last page (only if not {@link #isIndexed()}).
+	 */
+	Request<T> next(Request<T> request, Page page) {
+		return next.apply(request, page);
+	}
+
+	/**
+	 * Returns the array of the items of the page or a missing node if there is none.
+	 */
+	JsonNode items(JsonNode json) {
+		return json.at(items);
+	}
+
+	/**
+	 * Returns the URI with <code>rel="next"</code> of <code>Link</code> headers (RFC 8288) or null if there is none.
+	 */
+	static String nextLink(List<String> headers) {
+		for (String header : headers) {
+			int index = 0;
+
+			while ((index = header.indexOf('<', index)) >= 0) {
+				int end = header.indexOf('>', index);
+				if (end < 0) break;
+
+				String uri = header.substring(index + 1, end).trim();
+				int next = header.indexOf('<', end);
+				String parameters = header.substring(end + 1, next < 0 ? header.length() : next);
+
+				for (String parameter : parameters.split(";")) {
+					int equals = parameter.indexOf('=');
+					if (equals < 0 || !parameter.substring(0, equals).trim().equalsIgnoreCase("rel")) continue;
+
+					String rel = parameter.substring(equals + 1).replace(",", "").replace("\"", "").trim();
+					for (String type : rel.split("\\s+")) {
+						if (type.toLowerCase(Locale.ROOT).equals("next")) return uri;
+					}
+				}
+
+				index = end;
+			}
+		}
+
+		return null;
+	}
+
+	private static Map<String, ?> with(Map<String, ?> data, String parameter, Object value) {
+		Map<String, Object> copy = new LinkedHashMap<>(data);
+		copy.put(parameter, value);
+		return copy;
+	}
+
+	private static long start(Map<String, ?> data, String parameter, long fallback) {
+		Object value = data.get(parameter);
+		if (value == null) return fallback;
+
+		try {
+			return Long.parseLong(value.toString());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("The parameter " + parameter + " is not a number: " + value);
+		}
+	}
+
+	/**
+	 * The request of a page: the data and the URI if it is not the one of the connection.
+	 */
+	record Request<T>(T data, URI uri) {
+	}
+
+}
@@ -0,0 +1,379 @@
+package de.quantumrange.webUtils.pagination;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import de.quantumrange.webUtils.models.WebResult;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The items of all pages of a paginated API as lazy {@link Iterator} or {@link Stream} (see {@link Pagination} for
+ * the supported styles).
+ * <p>
+ * While the items of a page are consumed, the next {@link #prefetch(int)} pages are already requested and parsed in
+ * the background, so the network and the consumer work at the same time. The requests are sent like every other
+ * request of the connection, they wait for the RateID and the rate limiter and are retried by the retry policy.
+ * If the next page depends on the previous one (cursor, link), the pages are requested one after another ahead of the
+ * consumer; if the pages are numbered (offset, page number), up to {@link #prefetch(int)} pages are requested at the
+ * same time. After the last page, up to that many requests may have been sent for nothing.
+ * <p>
+ * Nothing is sent until the iteration starts, every {@link #iterator()} or {@link #stream()} starts at the first
+ * page again. An iterator that is not read to the end should be closed.
+ * <p>
+ * Example:
+ * <pre>try (Stream&lt;User&gt; users = Web.url(url).rateID(1)
+ *         .paginate(Map.of("limit", 100), Pagination.cursor("/data", "/next", "cursor"), User.class)
+ *         .prefetch(2)
+ *         .stream()) {
+ *     users.forEach(...);
+ * }</pre>
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ * @param <O> the type of the items.
+ */
+public final class Paginator<O> implements Iterable<O> {
+
+	private final Object data;
+	private final Pagination<Object> pagination;
+	private final ObjectReader reader;
+	private final Fetcher<Object> fetcher;
+
+	private int prefetch = 1;
+	private int maxPages = Integer.MAX_VALUE;
+
+	private Paginator(Object data, Pagination<Object> pagination, ObjectReader reader, Fetcher<Object> fetcher) {
+		this.data = data;
+		this.pagination = pagination;
+		this.reader = reader;
+		this.fetcher = fetcher;
+	}
+
+	/**
+	 * Creates the paginator.
+	 *
+	 * @param data the data of the first request.
+	 * @param pagination how the next pages are requested.
+	 * @param reader the Jackson JSON ObjectReader with the type of the items.
+	 * @param fetcher sends the requests.
+	 * @param <T> the type of the data of a request.
+	 * @param <O> the type of the items.
+	 * @return the paginator.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T, O> Paginator<O> of(T data, Pagination<T> pagination, ObjectReader reader, Fetcher<T> fetcher) {
+		return new Paginator<>(data, (Pagination<Object>) pagination, reader, (Fetcher<Object>) fetcher);
+	}
+
+	/**
+	 * Reads the body of a page as bytes and keeps the headers (for {@link Pagination#link(String)}).
+	 *
+	 * @return the handler.
+	 */
+	public static HttpResponse.BodyHandler<Body> bodyHandler() {
+		return info -> HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(),
+				bytes -> new Body(info.headers(), bytes));
+	}
+
+	/**
+	 * Sets how many pages are requested ahead of the page that is consumed (default 1).
+	 *
+	 * @param prefetch the count of pages, 0 to request a page only when it is needed.
+	 * @return itself
+	 */
+	public Paginator<O> prefetch(int prefetch) {
+		if (prefetch < 0) throw new IllegalArgumentException("The prefetch can't be negative.");
+		this.prefetch = prefetch;
+		return this;
+	}
+
+	/**
+	 * Sets after how many pages the iteration ends even if there are more.
+	 *
+	 * @param maxPages the count of pages.
+	 * @return itself
+	 */
+	public Paginator<O> maxPages(int maxPages) {
+		if (maxPages < 1) throw new IllegalArgumentException("At least one page has to be read.");
+		this.maxPages = maxPages;
+		return this;
+	}
+
+	public int getPrefetch() {
+		return prefetch;
+	}
+
+	public int getMaxPages() {
+		return maxPages;
+	}
+
+	/**
+	 * Starts a new iteration over the items of all pages.
+	 *
+	 * @return the iterator. It throws an {@link UncheckedIOException} if a page failed or was answered with a response
+	 * code other than 2xx, and an {@link IllegalArgumentException} if a page is not the expected JSON.
+	 */
+	@Override
+	public PageIterator<O> iterator() {
+		return new PageIterator<>(this);
+	}
+
+	/**
+	 * Starts a new iteration over the items of all pages (more on {@link #iterator()}).
+	 *
+	 * @return the stream, closing it stops the iteration.
+	 */
+	public Stream<O> stream() {
+		PageIterator<O> iterator = iterator();
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+				.onClose(iterator::close);
+	}
+
+	/**
+	 * Sends the request of a page.
+	 *
+	 * @param <T> the type of the data of a request.
+	 */
+	@FunctionalInterface
+	public interface Fetcher<T> {
+
+		/**
+		 * Sends the request of a page.
+		 *
+		 * @param data the data of the request.
+		 * @param uri the URI of the request or null for the one of the connection.
+		 * @return the future with the result, the body is read with {@link #bodyHandler()}.
+		 */
+		CompletableFuture<WebResult<Body>> fetch(T data, @Nullable URI uri);
+
+	}
+
+	/**
+	 * The raw body of a page with the headers of the response.
+	 *
+	 * @param headers the headers.
+	 * @param bytes the body.
+	 */
+	public record Body(HttpHeaders headers, byte[] bytes) {
+	}
+
+	/**
+	 * An iteration over the items of all pages of a {@link Paginator}. It is not thread-safe.
+	 *
+	 * @param <O> the type of the items.
+	 */
+	public static final class PageIterator<O> implements Iterator<O>, AutoCloseable {
+
+		private final Paginator<O> paginator;
+		private final int prefetch;
+
+		/**
+		 * The pages that are requested or received and not consumed yet, in order.
+		 */
+		private final ArrayDeque<CompletableFuture<Fetched<O>>> pending = new ArrayDeque<>();
+		private CompletableFuture<Fetched<O>> lastStarted;
+		private CompletableFuture<Fetched<O>> watched;
+		private int started;
+		private boolean ended;
+
+		private Iterator<O> current = Collections.emptyIterator();
+		private int pages;
+
+		private PageIterator(Paginator<O> paginator) {
+			this.paginator = paginator;
+			this.prefetch = paginator.prefetch;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (!current.hasNext()) {
+				Fetched<O> page = takePage();
+				if (page == null) return false;
+				current = page.items().iterator();
+			}
+			return true;
+		}
+
+		@Override
+		public O next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			return current.next();
+		}
+
+		/**
+		 * Returns how many pages were consumed.
+		 * @return the count of pages.
+		 */
+		public int getPages() {
+			return pages;
+		}
+
+		/**
+		 * Stops the iteration, the pages that are requested ahead are dropped.
+		 */
+		@Override
+		public void close() {
+			synchronized (this) {
+				ended = true;
+				pending.forEach(future -> future.cancel(false));
+				pending.clear();
+			}
+			current = Collections.emptyIterator();
+		}
+
+		private Fetched<O> takePage() {
+			CompletableFuture<Fetched<O>> future;
+
+			synchronized (this) {
+				fill(Math.max(1, prefetch));
+				future = pending.poll();
+			}
+			if (future == null) return null;
+
+			Fetched<O> page;
+			try {
+				page = future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				close();
+				throw new UncheckedIOException(new IOException("Interrupted while waiting for a page.", e));
+			} catch (ExecutionException e) {
+				close();
+				Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null ?
+						e.getCause().getCause() : e.getCause();
+				if (cause instanceof RuntimeException runtime) throw runtime;
+				if (cause instanceof IOException io) throw new UncheckedIOException(io);
+				throw new IllegalStateException(cause);
+			}
+			pages++;
+
+			synchronized (this) {
+				if (paginator.pagination.isIndexed() && paginator.pagination.isLast(page.page())) {
+					ended = true;
+					pending.forEach(later -> later.cancel(false));
+					pending.clear();
+				}
+				fill(prefetch);
+			}
+
+			return page;
+		}
+
+		/**
+		 * Requests pages until <code>limit</code> are pending. If the next request depends on a page that is not
+		 * there yet, it continues when the page arrived.
+		 */
+		private synchronized void fill(int limit) {
+			Pagination<Object> pagination = paginator.pagination;
+
+			while (!ended && pending.size() < limit) {
+				if (started >= paginator.maxPages) {
+					ended = true;
+					return;
+				}
+
+				Pagination.Request<Object> request;
+				if (pagination.isIndexed()) {
+					request = pagination.request(paginator.data, started);
+				} else if (lastStarted == null) {
+					request = new Pagination.Request<>(paginator.data, null);
+				} else if (!lastStarted.isDone()) {
+					if (watched != lastStarted) {
+						watched = lastStarted;
+						lastStarted.whenComplete((page, throwable) -> fill(prefetch));
+					}
+					return;
+				} else if (lastStarted.isCompletedExceptionally()) {
+					return;
+				} else {
+					request = lastStarted.join().next();
+					if (request == null) {
+						ended = true;
+						return;
+					}
+				}
+
+				start(request);
+			}
+		}
+
+		private void start(Pagination.Request<Object> request) {
+			int index = started++;
+			Pagination<Object> pagination = paginator.pagination;
+			ObjectReader reader = paginator.reader;
+
+			CompletableFuture<Fetched<O>> future = paginator.fetcher.fetch(request.data(), request.uri())
+					.thenApply(result -> {
+						Fetched<O> page = parse(index, result, pagination, reader);
+						if (pagination.isIndexed()) return page;
+
+						return new Fetched<>(page.page(), page.items(), pagination.next(request, page.page()));
+					});
+
+			pending.add(future);
+			lastStarted = future;
+		}
+
+		private static <O> Fetched<O> parse(int index, WebResult<Body> result, Pagination<Object> pagination,
+											ObjectReader reader) {
+			Body body = result.response();
+			if (result.responseCode() < 200 || result.responseCode() >= 300 || body == null) {
+				throw new UncheckedIOException(new IOException("The page " + index + " (" + result.url() +
+						") was answered with the response code " + result.responseCode() + "."));
+			}
+
+			try {
+				JsonNode json = body.bytes().length == 0 ? MissingNode.getInstance() : reader.readTree(body.bytes());
+				if (json == null) json = MissingNode.getInstance();
+
+				JsonNode array = pagination.items(json);
+				List<O> items;
+				if (array.isArray()) {
+					items = new ArrayList<>(array.size());
+					for (JsonNode item : array) items.add(reader.readValue(item));
+				} else if (array.isMissingNode() || array.isNull()) {
+					items = List.of();
+				} else {
+					throw new IllegalArgumentException("The items of page " + index + " are not a JSON array.");
+				}
+
+				return new Fetched<>(new Page(index, result.url().toURI(), body.headers(), json, items.size()), items,
+						null);
+			} catch (IOException e) {
+				throw new IllegalArgumentException("The receiving data is not JSON or the ObjectReader/Mapper is configured incorrectly.",
+						e);
+			} catch (URISyntaxException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+
+	}
+
+	/**
+	 * A parsed page with its items and the request of the next page (null if there is none or the pages are
+	 * numbered).
+	 */
+	private record Fetched<O>(Page page, List<O> items, Pagination.Request<Object> next) {
+	}
+
+}
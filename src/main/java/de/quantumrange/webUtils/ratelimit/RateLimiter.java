@@ -0,0 +1,237 @@
+package de.quantumrange.webUtils.ratelimit;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.connections.WebConnection;
+
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the requests per host and per RateID with {@link TokenBucket}s.
+ * A request has to get a token from the bucket of its host and from the bucket of its RateID (if they exist), so the
+ * allowed budget of every server can be used in parallel.
+ * <p>
+ * The limiter also adapts to the server: If a response has the status 429 or 503 with a <code>Retry-After</code>
+ * header, or says with <code>X-RateLimit-Remaining: 0</code> that the budget is used up, no more requests are sent
+ * to the host until the given time (<code>Retry-After</code> or <code>X-RateLimit-Reset</code>).
+ * <p>
+ * The default limiter is stored in {@link Web#LIMITER}, a different one can be set with
+ * {@link WebConnection#limiter(RateLimiter)}.
+ * Example:
+ * <pre>Web.LIMITER.setHostLimit("api.example.com", 10, 20); // 10 requests per second, bursts of up to 20</pre>
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public class RateLimiter {
+
+	/**
+	 * Values of <code>X-RateLimit-Reset</code> above this are epoch seconds, below they are seconds from now.
+	 */
+	private static final long EPOCH_SECONDS_THRESHOLD = 1_000_000_000L;
+	/**
+	 * Values of <code>X-RateLimit-Reset</code> above this are epoch milliseconds (the year 5138 in epoch seconds).
+	 */
+	private static final long EPOCH_MILLIS_THRESHOLD = 100_000_000_000L;
+
+	private final Map<String, TokenBucket> hosts;
+	private final Map<Integer, TokenBucket> rateIDs;
+
+	public RateLimiter() {
+		this.hosts = new ConcurrentHashMap<>();
+		this.rateIDs = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Limits the requests to a host.
+	 *
+	 * @param host the host, for example: api.example.com
+	 * @param permitsPerSecond how many requests are allowed per second.
+	 * @param burst how many requests are allowed at once.
+	 */
+	public void setHostLimit(String host, double permitsPerSecond, int burst) {
+		hosts.put(normalize(host), new TokenBucket(permitsPerSecond, burst));
+	}
+
+	/**
+	 * Removes the limit of a host.
+	 *
+	 * @param host the host.
+	 */
+	public void removeHostLimit(String host) {
+		hosts.remove(normalize(host));
+	}
+
+	/**
+	 * Limits the requests with a RateID (see {@link WebConnection#rateID(int)}).
+	 *
+	 * @param rateID the RateID.
+	 * @param permitsPerSecond how many requests are allowed per second.
+	 * @param burst how many requests are allowed at once.
+	 */
+	public void setRateLimit(int rateID, double permitsPerSecond, int burst) {
+		rateIDs.put(rateID, new TokenBucket(permitsPerSecond, burst));
+	}
+
+	/**
+	 * Removes the limit of a RateID.
+	 *
+	 * @param rateID the RateID.
+	 */
+	public void removeRateLimit(int rateID) {
+		rateIDs.remove(rateID);
+	}
+
+	/**
+	 * Returns the bucket of the host.
+	 *
+	 * @param host the host.
+	 * @return the bucket or null if the host is not limited.
+	 */
+	public TokenBucket getHostBucket(String host) {
+		return hosts.get(normalize(host));
+	}
+
+	/**
+	 * Returns the bucket of the RateID.
+	 *
+	 * @param rateID the RateID.
+	 * @return the bucket or null if the RateID is not limited.
+	 */
+	public TokenBucket getRateBucket(int rateID) {
+		return rateIDs.get(rateID);
+	}
+
+	/**
+	 * Takes a token from the bucket of the host and of the RateID.
+	 *
+	 * @param host the host of the request.
+	 * @param rateID the RateID of the request.
+	 * @return how long the caller has to wait before sending the request in nanoseconds.
+	 */
+	public long reserve(String host, int rateID) {
+		if (hosts.isEmpty() && rateIDs.isEmpty()) return 0L;
+
+		TokenBucket hostBucket = host == null ? null : hosts.get(normalize(host));
+		TokenBucket rateBucket = rateIDs.get(rateID);
+
+		long wait = hostBucket == null ? 0L : hostBucket.reserve();
+		if (rateBucket != null) wait = Math.max(wait, rateBucket.reserve());
+
+		return wait;
+	}
+
+	/**
+	 * Takes a token (see {@link #reserve(String, int)}) and waits until it may be used.
+	 *
+	 * @param host the host of the request.
+	 * @param rateID the RateID of the request.
+	 * @throws InterruptedException if the thread was interrupted while waiting.
+	 */
+	public void acquire(String host, int rateID) throws InterruptedException {
+		long wait = reserve(host, rateID);
+
+		if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+	}
+
+	/**
+	 * Takes a token (see {@link #reserve(String, int)}) without blocking a thread while waiting.
+	 *
+	 * @param host the host of the request.
+	 * @param rateID the RateID of the request.
+	 * @return the future that completes when the token may be used.
+	 */
+	public CompletableFuture<Void> acquireAsync(String host, int rateID) {
+		long wait = reserve(host, rateID);
+
+		if (wait <= 0) return CompletableFuture.completedFuture(null);
+		return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS));
+	}
+
+	/**
+	 * Adapts the limit of the host to the response (more on {@link RateLimiter}).
+	 *
+	 * @param host the host of the request.
+	 * @param response the response of the server.
+	 */
+	public void update(String host, HttpResponse<?> response) {
+		if (host == null) return;
+
+		Duration pause = getPause(response.statusCode(), response.headers());
+		if (pause == null || pause.isNegative() || pause.isZero()) return;
+
+		hosts.computeIfAbsent(normalize(host), key -> TokenBucket.unlimited())
+				.pauseUntil(System.nanoTime() + pause.toNanos());
+	}
+
+	private static Duration getPause(int status, HttpHeaders headers) {
+		if (status == 429 || status == 503) {
+			Duration retryAfter = getRetryAfter(headers);
+			if (retryAfter != null) return retryAfter;
+		}
+
+		Optional<String> remaining = headers.firstValue("X-RateLimit-Remaining");
+		if (remaining.isEmpty() || !remaining.get().trim().equals("0")) return null;
+
+		return headers.firstValue("X-RateLimit-Reset")
+				.map(RateLimiter::parseReset)
+				.orElse(null);
+	}
+
+	private static Duration parseReset(String value) {
+		try {
+			double reset = Double.parseDouble(value.trim());
+			long millis;
+
+			if (reset > EPOCH_MILLIS_THRESHOLD) millis = (long) reset - System.currentTimeMillis();
+			else if (reset > EPOCH_SECONDS_THRESHOLD) millis = (long) (reset * 1000) - System.currentTimeMillis();
+			else millis = (long) (reset * 1000);
+
+			// A reset in the past means the budget is already back.
+			return Duration.ofMillis(Math.max(0L, millis));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the <code>Retry-After</code> header, which is either a count of seconds or a HTTP date.
+	 *
+	 * @param headers the headers of the response.
+	 * @return how long to wait (0 if the date is in the past) or null if the header is missing or invalid.
+	 */
+	public static Duration getRetryAfter(HttpHeaders headers) {
+		Optional<String> value = headers.firstValue("Retry-After");
+		if (value.isEmpty()) return null;
+
+		String retryAfter = value.get().trim();
+
+		try {
+			return Duration.ofSeconds(Math.max(0L, Long.parseLong(retryAfter)));
+		} catch (NumberFormatException ignored) {
+		}
+
+		try {
+			ZonedDateTime date = ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME);
+			Duration wait = Duration.between(ZonedDateTime.now(date.getZone()), date);
+			return wait.isNegative() ? Duration.ZERO : wait;
+		} catch (DateTimeParseException e) {
+			return null;
+		}
+	}
+
+	private static String normalize(String host) {
+		return host.toLowerCase(Locale.ROOT);
+	}
+
+}
@@ -0,0 +1,116 @@
+package de.quantumrange.webUtils.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket.
+ * The bucket allows <code>permitsPerSecond</code> requests per second and up to <code>burst</code> requests at once
+ * if the bucket was not used for a while.
+ * <p>
+ * Internally the bucket only stores the time at which the next request would be allowed without a burst
+ * (the "theoretical arrival time"), so taking a token is a single compare-and-set.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public class TokenBucket {
+
+	/**
+	 * Nanoseconds between two tokens, 0 means unlimited.
+	 */
+	private final long interval;
+	/**
+	 * How far the theoretical arrival time may be ahead of now without waiting (in nanoseconds).
+	 */
+	private final long tolerance;
+	private final AtomicLong arrival;
+
+	/**
+	 * @param permitsPerSecond how many requests are allowed per second, values of 0 or below mean unlimited.
+	 * @param burst how many requests are allowed at once, at least 1.
+	 */
+	public TokenBucket(double permitsPerSecond, int burst) {
+		if (burst < 1) throw new IllegalArgumentException("burst must be at least 1.");
+
+		this.interval = permitsPerSecond <= 0 ? 0L : (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+		this.tolerance = interval * (burst - 1);
+		this.arrival = new AtomicLong(System.nanoTime());
+	}
+
+	/**
+	 * Creates a bucket without a limit, which can still be paused with {@link #pauseUntil(long)}.
+	 *
+	 * @return the unlimited bucket.
+	 */
+	public static TokenBucket unlimited() {
+		return new TokenBucket(0, 1);
+	}
+
+	/**
+	 * Takes a token and returns how long the caller has to wait until it may use it.
+	 * The token is taken in any case, so the caller has to wait the returned time.
+	 *
+	 * @return the time to wait in nanoseconds, 0 if the token can be used directly.
+	 */
+	public long reserve() {
+		long now = System.nanoTime();
+
+		while (true) {
+			long current = arrival.get();
+			long base = current - now > 0 ? current : now;
+
+			if (arrival.compareAndSet(current, base + interval)) return Math.max(0L, base - now - tolerance);
+		}
+	}
+
+	/**
+	 * Takes a token if it can be used directly.
+	 *
+	 * @return true if a token was taken.
+	 */
+	public boolean tryAcquire() {
+		long now = System.nanoTime();
+
+		while (true) {
+			long current = arrival.get();
+			long base = current - now > 0 ? current : now;
+
+			if (base - now - tolerance > 0) return false;
+			if (arrival.compareAndSet(current, base + interval)) return true;
+		}
+	}
+
+	/**
+	 * Lets no request through before the given time, for example because the server answered with
+	 * <code>Retry-After</code>.
+	 *
+	 * @param nanoTime the time (as {@link System#nanoTime()}) until which no token is handed out.
+	 */
+	public void pauseUntil(long nanoTime) {
+		long target = nanoTime + tolerance;
+
+		while (true) {
+			long current = arrival.get();
+
+			if (current - target >= 0 || arrival.compareAndSet(current, target)) return;
+		}
+	}
+
+	/**
+	 * Returns the time between two tokens.
+	 * @return the time between two tokens in nanoseconds, 0 if the bucket is unlimited.
+	 */
+	public long getInterval() {
+		return interval;
+	}
+
+	/**
+	 * Returns how many requests are allowed at once.
+	 * @return the burst size.
+	 */
+	public int getBurst() {
+		return interval == 0 ? 1 : (int) (tolerance / interval) + 1;
+	}
+
+}
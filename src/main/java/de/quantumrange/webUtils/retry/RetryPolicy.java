@@ -0,0 +1,283 @@
+package de.quantumrange.webUtils.retry;
+
+import de.quantumrange.webUtils.connections.HTTPRequestType;
+import de.quantumrange.webUtils.connections.WebConnection;
+import de.quantumrange.webUtils.ratelimit.RateLimiter;
+
+import javax.annotation.Nullable;
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Decides if a failed request is sent again and how long to wait before (see {@link WebConnection#retry(RetryPolicy)}).
+ * <p>
+ * By default a request is retried up to 2 times (3 attempts) if
+ * <ul>
+ *     <li>no connection could be established ({@link ConnectException}, {@link HttpConnectTimeoutException}), or</li>
+ *     <li>the server answered with 429, 500, 502, 503 or 504,</li>
+ * </ul>
+ * but only if its {@link HTTPRequestType#isIdempotent() type is idempotent}, because a POST that reached the server
+ * could otherwise be executed twice.
+ * <p>
+ * The wait grows exponentially with every attempt (<code>initialBackoff * 2^(attempt - 1)</code>, at most
+ * <code>maxBackoff</code>) and is randomized by the jitter, so many clients that failed at the same time don't all
+ * retry at the same time. If the server sends <code>Retry-After</code>, at least that long is waited. If the server
+ * asks for a longer wait than <code>maxRetryAfter</code>, the request is not retried. A blocking request waits at most
+ * {@link WebConnection#MAX_BLOCKING_RETRY_WAIT}.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public final class RetryPolicy {
+
+	/**
+	 * Never retries.
+	 */
+	public static final RetryPolicy NONE = builder().maxAttempts(1).build();
+
+	private final int maxAttempts;
+	private final Duration initialBackoff;
+	private final Duration maxBackoff;
+	private final double jitter;
+	private final Duration maxRetryAfter;
+	private final boolean retryNonIdempotent;
+	private final IntPredicate retryOnStatus;
+	private final Predicate<Throwable> retryOnException;
+
+	private RetryPolicy(Builder builder) {
+		this.maxAttempts = builder.maxAttempts;
+		this.initialBackoff = builder.initialBackoff;
+		this.maxBackoff = builder.maxBackoff;
+		this.jitter = builder.jitter;
+		this.maxRetryAfter = builder.maxRetryAfter;
+		this.retryNonIdempotent = builder.retryNonIdempotent;
+		this.retryOnStatus = builder.retryOnStatus;
+		this.retryOnException = builder.retryOnException;
+	}
+
+	/**
+	 * Creates a policy with the default values.
+	 * @return the policy.
+	 */
+	public static RetryPolicy defaults() {
+		return builder().build();
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Decides if the attempt is retried.
+	 *
+	 * @param type the type of the request.
+	 * @param attempt the attempt that failed, starting with 1.
+	 * @param response the response of the attempt or null if it failed with an exception.
+	 * @param error the exception of the attempt or null if there is a response.
+	 * @return true if the request should be sent again.
+	 */
+	public boolean isRetryable(HTTPRequestType type, int attempt, @Nullable HttpResponse<?> response,
+							   @Nullable Throwable error) {
+		if (attempt >= maxAttempts) return false;
+		if (!retryNonIdempotent && !type.isIdempotent()) return false;
+
+		if (response == null) return error != null && retryOnException.test(error);
+		return isRetryable(response.statusCode(), response.headers());
+	}
+
+	/**
+	 * Decides if the attempt is retried as soon as the status and headers of the response arrived, before its body
+	 * is read (see {@link #isRetryable(HTTPRequestType, int, HttpResponse, Throwable)}).
+	 *
+	 * @param type the type of the request.
+	 * @param attempt the attempt that failed, starting with 1.
+	 * @param info the status and headers of the response.
+	 * @return true if the request should be sent again.
+	 */
+	public boolean isRetryable(HTTPRequestType type, int attempt, HttpResponse.ResponseInfo info) {
+		if (attempt >= maxAttempts) return false;
+		if (!retryNonIdempotent && !type.isIdempotent()) return false;
+
+		return isRetryable(info.statusCode(), info.headers());
+	}
+
+	private boolean isRetryable(int statusCode, HttpHeaders headers) {
+		if (!retryOnStatus.test(statusCode)) return false;
+
+		Duration retryAfter = RateLimiter.getRetryAfter(headers);
+		return retryAfter == null || retryAfter.compareTo(maxRetryAfter) <= 0;
+	}
+
+	/**
+	 * Returns how long to wait before the next attempt.
+	 *
+	 * @param attempt the attempt that failed, starting with 1.
+	 * @param response the response of the attempt or null if it failed with an exception.
+	 * @return the wait.
+	 */
+	public Duration getDelay(int attempt, @Nullable HttpResponse<?> response) {
+		long backoff = initialBackoff.toNanos();
+		long max = maxBackoff.toNanos();
+
+		for (int i = 1; i < attempt && backoff < max; i++) backoff <<= 1;
+		backoff = Math.min(backoff, max);
+		backoff -= (long) (backoff * jitter * ThreadLocalRandom.current().nextDouble());
+
+		if (response != null) {
+			Duration retryAfter = RateLimiter.getRetryAfter(response.headers());
+			if (retryAfter != null) backoff = Math.max(backoff, retryAfter.toNanos());
+		}
+
+		return Duration.ofNanos(backoff);
+	}
+
+	/**
+	 * Checks the exception and its causes for a {@link ConnectException} or {@link HttpConnectTimeoutException}.
+	 */
+	private static boolean isConnectError(Throwable error) {
+		for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+			if (cause instanceof ConnectException || cause instanceof HttpConnectTimeoutException) return true;
+		}
+		return false;
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	public Duration getInitialBackoff() {
+		return initialBackoff;
+	}
+
+	public Duration getMaxBackoff() {
+		return maxBackoff;
+	}
+
+	public double getJitter() {
+		return jitter;
+	}
+
+	public Duration getMaxRetryAfter() {
+		return maxRetryAfter;
+	}
+
+	public boolean isRetryNonIdempotent() {
+		return retryNonIdempotent;
+	}
+
+	public static class Builder {
+
+		private int maxAttempts = 3;
+		private Duration initialBackoff = Duration.ofMillis(100);
+		private Duration maxBackoff = Duration.ofSeconds(10);
+		private double jitter = 1d;
+		private Duration maxRetryAfter = Duration.ofSeconds(60);
+		private boolean retryNonIdempotent;
+		private IntPredicate retryOnStatus = status -> status == 429 || status == 500 || status == 502
+				|| status == 503 || status == 504;
+		private Predicate<Throwable> retryOnException = RetryPolicy::isConnectError;
+
+		private Builder() {
+		}
+
+		/**
+		 * Sets how often a request is sent at most, including the first attempt (default 3).
+		 *
+		 * @param maxAttempts the count of attempts, 1 means no retries.
+		 * @return itself
+		 */
+		public Builder maxAttempts(int maxAttempts) {
+			if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts has to be at least 1.");
+			this.maxAttempts = maxAttempts;
+			return this;
+		}
+
+		/**
+		 * Sets the wait after the first attempt and the largest wait (default 100 ms and 10 s).
+		 *
+		 * @param initialBackoff the wait after the first attempt, it doubles with every attempt.
+		 * @param maxBackoff the largest wait.
+		 * @return itself
+		 */
+		public Builder backoff(Duration initialBackoff, Duration maxBackoff) {
+			if (initialBackoff.isNegative() || maxBackoff.compareTo(initialBackoff) < 0) {
+				throw new IllegalArgumentException("The backoff has to be positive and maxBackoff >= initialBackoff.");
+			}
+			this.initialBackoff = initialBackoff;
+			this.maxBackoff = maxBackoff;
+			return this;
+		}
+
+		/**
+		 * Sets how much of the wait is random (default 1).
+		 * With 1 the wait is anywhere between 0 and the backoff ("full jitter"), with 0.5 between the half and the
+		 * backoff, and with 0 it is always the backoff.
+		 *
+		 * @param jitter the random part between 0 and 1.
+		 * @return itself
+		 */
+		public Builder jitter(double jitter) {
+			if (jitter < 0 || jitter > 1) throw new IllegalArgumentException("jitter has to be between 0 and 1.");
+			this.jitter = jitter;
+			return this;
+		}
+
+		/**
+		 * Sets the longest <code>Retry-After</code> that is waited for (default 60 s). If the server asks for a
+		 * longer wait, the response is returned instead.
+		 *
+		 * @param maxRetryAfter the longest wait.
+		 * @return itself
+		 */
+		public Builder maxRetryAfter(Duration maxRetryAfter) {
+			this.maxRetryAfter = maxRetryAfter;
+			return this;
+		}
+
+		/**
+		 * Sets whether requests that are not idempotent (POST, PATCH) are retried too (default false).
+		 *
+		 * @param retryNonIdempotent true to retry every request.
+		 * @return itself
+		 */
+		public Builder retryNonIdempotent(boolean retryNonIdempotent) {
+			this.retryNonIdempotent = retryNonIdempotent;
+			return this;
+		}
+
+		/**
+		 * Sets which response codes are retried (default 429, 500, 502, 503 and 504).
+		 *
+		 * @param retryOnStatus true for the codes that are retried.
+		 * @return itself
+		 */
+		public Builder retryOnStatus(IntPredicate retryOnStatus) {
+			this.retryOnStatus = retryOnStatus;
+			return this;
+		}
+
+		/**
+		 * Sets which exceptions are retried (default {@link ConnectException} and
+		 * {@link HttpConnectTimeoutException}, so only requests that never reached the server).
+		 *
+		 * @param retryOnException true for the exceptions that are retried.
+		 * @return itself
+		 */
+		public Builder retryOnException(Predicate<Throwable> retryOnException) {
+			this.retryOnException = retryOnException;
+			return this;
+		}
+
+		public RetryPolicy build() {
+			return new RetryPolicy(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,456 @@
+package de.quantumrange.webUtils.stream;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A long-lived request whose body is read line by line while it arrives and published as events
+ * (<code>text/event-stream</code>) or lines (for example NDJSON).
+ * <p>
+ * The request is sent when the stream is subscribed. One virtual thread reads the body and puts the items into a
+ * buffer of {@link #bufferSize(int)} items from where they are delivered as the subscriber requests them. If the
+ * buffer is full, the body is not read any further until the subscriber catches up, so a slow subscriber slows down
+ * the server instead of filling the memory.
+ * <p>
+ * When the connection ends or fails, the stream connects again after {@link #reconnectDelay(Duration)} (or the
+ * <code>retry</code> time the server sent) and sends the ID of the last event as <code>Last-Event-ID</code>. A
+ * response with 204 ends the stream, other response codes than 2xx, 429 and 5xx fail it. The stream completes when
+ * {@link #close()} is called or when {@link #maxReconnects(int)} reconnects in a row received nothing.
+ * <p>
+ * Example:
+ * <pre>EventStream&lt;Tick&gt; ticks = Web.url(url).rateID(1).requestEvents(Map.of(), Tick.class);
+ *
+ * ticks.consume(tick -&gt; ...);
+ * ...
+ * ticks.close();</pre>
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ * @param <E> the type of the items.
+ */
+public final class EventStream<E> implements Flow.Publisher<E>, AutoCloseable {
+
+	/**
+	 * The time that is waited before reconnecting if the server sent no <code>retry</code> time.
+	 */
+	public static final Duration DEFAULT_RECONNECT_DELAY = Duration.ofSeconds(3);
+
+	/**
+	 * Runs the delivery to the subscriber, a consumer that waits doesn't block a platform thread.
+	 */
+	private static final Executor DELIVERY = command -> Thread.ofVirtual().name("web-utils-stream-delivery")
+			.start(command);
+
+	private final Connector connector;
+	/**
+	 * Maps the events, null if the body is read as lines.
+	 */
+	private final Function<? super ServerSentEvent, ? extends E> events;
+	/**
+	 * Maps the lines, null if the body is read as events.
+	 */
+	private final Function<? super String, ? extends E> lines;
+
+	private volatile Duration reconnectDelay = DEFAULT_RECONNECT_DELAY;
+	private volatile int maxReconnects;
+	private volatile int bufferSize = Flow.defaultBufferSize();
+	private volatile String lastEventId;
+
+	private final AtomicBoolean subscribed = new AtomicBoolean();
+	private SubmissionPublisher<E> publisher;
+	private volatile boolean closed;
+	private volatile Thread reader;
+	private volatile InputStream body;
+
+	private EventStream(Connector connector, Function<? super ServerSentEvent, ? extends E> events,
+						Function<? super String, ? extends E> lines, int maxReconnects) {
+		this.connector = connector;
+		this.events = events;
+		this.lines = lines;
+		this.maxReconnects = maxReconnects;
+	}
+
+	/**
+	 * Creates a stream that reads the body as <code>text/event-stream</code>. It reconnects without limit.
+	 *
+	 * @param connector sends the request.
+	 * @param map maps the events to the items, an item that is null is skipped.
+	 * @param <E> the type of the items.
+	 * @return the stream, it is not connected yet.
+	 */
+	public static <E> EventStream<E> ofEvents(Connector connector, Function<? super ServerSentEvent, ? extends E> map) {
+		return new EventStream<>(connector, map, null, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a stream that publishes every line of the body that is not blank, for example the values of NDJSON.
+	 * It does not reconnect unless {@link #maxReconnects(int)} is set.
+	 *
+	 * @param connector sends the request.
+	 * @param map maps the lines to the items, an item that is null is skipped.
+	 * @param <E> the type of the items.
+	 * @return the stream, it is not connected yet.
+	 */
+	public static <E> EventStream<E> ofLines(Connector connector, Function<? super String, ? extends E> map) {
+		return new EventStream<>(connector, null, map, 0);
+	}
+
+	/**
+	 * Sets the time that is waited before reconnecting (default {@link #DEFAULT_RECONNECT_DELAY}).
+	 * A <code>retry</code> time of the server overrides it.
+	 *
+	 * @param reconnectDelay the time.
+	 * @return itself
+	 */
+	public EventStream<E> reconnectDelay(Duration reconnectDelay) {
+		checkNotSubscribed();
+		if (reconnectDelay.isNegative()) throw new IllegalArgumentException("The delay can't be negative.");
+		this.reconnectDelay = reconnectDelay;
+		return this;
+	}
+
+	/**
+	 * Sets how often in a row the stream reconnects without receiving an item before it ends. A connection that
+	 * received an item starts the count again.
+	 *
+	 * @param maxReconnects the count, 0 to never reconnect.
+	 * @return itself
+	 */
+	public EventStream<E> maxReconnects(int maxReconnects) {
+		checkNotSubscribed();
+		if (maxReconnects < 0) throw new IllegalArgumentException("The count can't be negative.");
+		this.maxReconnects = maxReconnects;
+		return this;
+	}
+
+	/**
+	 * Sets how many items are buffered for the subscriber before the body is not read any further (default
+	 * {@link Flow#defaultBufferSize()}). It is rounded up to a power of two.
+	 *
+	 * @param bufferSize the count of items.
+	 * @return itself
+	 */
+	public EventStream<E> bufferSize(int bufferSize) {
+		checkNotSubscribed();
+		if (bufferSize < 1) throw new IllegalArgumentException("The buffer needs at least one item.");
+		this.bufferSize = bufferSize;
+		return this;
+	}
+
+	/**
+	 * Sets the ID that is sent as <code>Last-Event-ID</code> with the first request, to continue a stream that was
+	 * read before.
+	 *
+	 * @param lastEventId the ID or null.
+	 * @return itself
+	 */
+	public EventStream<E> lastEventId(@Nullable String lastEventId) {
+		checkNotSubscribed();
+		this.lastEventId = lastEventId;
+		return this;
+	}
+
+	/**
+	 * Connects and publishes the items to the subscriber. A stream can only be subscribed once, cancelling the
+	 * subscription closes the stream.
+	 *
+	 * @param subscriber the subscriber.
+	 */
+	@Override
+	public void subscribe(Flow.Subscriber<? super E> subscriber) {
+		if (subscribed.compareAndSet(false, true)) {
+			SubmissionPublisher<E> created = new SubmissionPublisher<>(DELIVERY, bufferSize);
+			created.subscribe(new ClosingSubscriber<>(subscriber, this));
+			publisher = created;
+
+			if (closed) {
+				created.close();
+			} else {
+				reader = Thread.ofVirtual().name("web-utils-stream").start(this::run);
+			}
+			return;
+		}
+
+		subscriber.onSubscribe(new Flow.Subscription() {
+			@Override
+			public void request(long n) {
+			}
+
+			@Override
+			public void cancel() {
+			}
+		});
+		subscriber.onError(new IllegalStateException("An event stream can only be subscribed once."));
+	}
+
+	/**
+	 * Connects and passes every item to the consumer, one after another on a virtual thread.
+	 * If the consumer throws an exception, the stream is closed.
+	 *
+	 * @param consumer the consumer.
+	 * @return the future that completes when the stream ended, or exceptionally if it failed. Cancelling it closes
+	 * the stream.
+	 */
+	public CompletableFuture<Void> consume(Consumer<? super E> consumer) {
+		CompletableFuture<Void> done = new CompletableFuture<>();
+
+		subscribe(new Flow.Subscriber<E>() {
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				subscription.request(Long.MAX_VALUE);
+			}
+
+			@Override
+			public void onNext(E item) {
+				consumer.accept(item);
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				done.completeExceptionally(throwable);
+			}
+
+			@Override
+			public void onComplete() {
+				done.complete(null);
+			}
+		});
+
+		done.whenComplete((ignored, throwable) -> close());
+		return done;
+	}
+
+	/**
+	 * Closes the connection, the subscriber gets the items that are still buffered and then completes. It can be
+	 * called from any thread and more than once.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+
+		Thread thread = reader;
+		if (thread != null && thread != Thread.currentThread()) thread.interrupt();
+
+		InputStream in = body;
+		if (in != null) {
+			try {
+				in.close();
+			} catch (IOException ignored) {
+			}
+		}
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Returns the ID of the last event that was received (or the one set with {@link #lastEventId(String)}).
+	 * An <code>id</code> without <code>data</code> sets it too, like the reconnects do.
+	 * @return the ID or null if there is none.
+	 */
+	public String getLastEventId() {
+		return lastEventId;
+	}
+
+	private void run() {
+		ServerSentEventParser parser = events == null ? null : new ServerSentEventParser(lastEventId);
+		int reconnects = 0;
+
+		try {
+			while (!closed) {
+				IOException failure = null;
+				long retryAfter = 0L;
+				boolean received = false;
+
+				try {
+					HttpResponse<InputStream> response = connector.connect(emptyToNull(lastEventId));
+					int status = response.statusCode();
+
+					if (status == 204) {
+						response.body().close();
+						break;
+					} else if (status / 100 != 2) {
+						response.body().close();
+						failure = new IOException("The server answered with the response code " + status + ".");
+						if (status != 429 && status < 500) {
+							publisher.closeExceptionally(failure);
+							return;
+						}
+						retryAfter = retryAfter(response);
+					} else {
+						received = read(response.body(), parser);
+					}
+				} catch (IOException e) {
+					if (closed) break;
+					failure = e;
+				}
+				if (closed) break;
+
+				reconnects = received ? 1 : reconnects + 1;
+				if (reconnects > maxReconnects) {
+					if (failure == null) {
+						publisher.close();
+					} else {
+						publisher.closeExceptionally(failure);
+					}
+					return;
+				}
+
+				long delay = parser != null && parser.getRetry() >= 0 ? parser.getRetry() : reconnectDelay.toMillis();
+				Thread.sleep(Math.max(delay, retryAfter));
+			}
+
+			publisher.close();
+		} catch (InterruptedException e) {
+			publisher.close();
+		} catch (RuntimeException e) {
+			publisher.closeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Reads the body until it ends and publishes the items.
+	 *
+	 * @return true if at least one item was published.
+	 */
+	private boolean read(InputStream in, ServerSentEventParser parser) throws IOException, InterruptedException {
+		boolean received = false;
+		body = in;
+
+		try (BufferedReader lineReader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			if (closed) return false;
+			if (parser != null) parser.reset();
+
+			String line;
+			while (!closed && (line = lineReader.readLine()) != null) {
+				E item;
+
+				if (parser == null) {
+					if (line.isBlank()) continue;
+					item = lines.apply(line);
+				} else {
+					ServerSentEvent event = parser.line(line);
+					lastEventId = parser.getLastEventId();
+					if (event == null) continue;
+
+					item = events.apply(event);
+				}
+
+				if (item != null) {
+					publish(item);
+					received = true;
+				}
+			}
+		} finally {
+			body = null;
+		}
+
+		return received;
+	}
+
+	/**
+	 * Waits until the buffer has room for the item, this is what slows down the reading of the body.
+	 */
+	private void publish(E item) throws InterruptedException {
+		while (!closed) {
+			if (publisher.offer(item, 100, TimeUnit.MILLISECONDS, (subscriber, dropped) -> false) >= 0) return;
+			if (Thread.interrupted()) throw new InterruptedException();
+		}
+	}
+
+	private static long retryAfter(HttpResponse<?> response) {
+		try {
+			return response.headers().firstValue("Retry-After").map(Long::parseLong).orElse(0L) * 1000L;
+		} catch (NumberFormatException e) {
+			return 0L;
+		}
+	}
+
+	private static String emptyToNull(String value) {
+		return value == null || value.isEmpty() ? null : value;
+	}
+
+	private void checkNotSubscribed() {
+		if (subscribed.get()) throw new IllegalStateException("The stream is already subscribed.");
+	}
+
+	/**
+	 * Sends the request of an {@link EventStream}, every reconnect calls it again.
+	 */
+	@FunctionalInterface
+	public interface Connector {
+
+		/**
+		 * Sends the request and returns as soon as the headers arrived.
+		 *
+		 * @param lastEventId the ID of the last event that should be sent as <code>Last-Event-ID</code>, null if
+		 *                    there is none.
+		 * @return the response with the body that is still arriving.
+		 * @throws IOException if the request failed, the stream connects again.
+		 * @throws InterruptedException if the thread was interrupted.
+		 */
+		HttpResponse<InputStream> connect(@Nullable String lastEventId) throws IOException, InterruptedException;
+
+	}
+
+	/**
+	 * Closes the stream when the subscriber cancels, so the connection doesn't stay open without anyone reading it.
+	 */
+	private record ClosingSubscriber<E>(Flow.Subscriber<? super E> subscriber, EventStream<?> stream)
+			implements Flow.Subscriber<E> {
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(long n) {
+					subscription.request(n);
+				}
+
+				@Override
+				public void cancel() {
+					subscription.cancel();
+					stream.close();
+				}
+			});
+		}
+
+		@Override
+		public void onNext(E item) {
+			try {
+				subscriber.onNext(item);
+			} catch (RuntimeException e) {
+				// The publisher cancels a subscriber that throws, the stream ends with it.
+				stream.close();
+				throw e;
+			}
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			subscriber.onError(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			subscriber.onComplete();
+		}
+
+	}
+
+}
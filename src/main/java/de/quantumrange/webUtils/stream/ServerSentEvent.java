@@ -0,0 +1,36 @@
+package de.quantumrange.webUtils.stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import javax.annotation.Nullable;
+
+/**
+ * An event of a <code>text/event-stream</code> (Server-Sent Events).
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ * @param id the last event ID when the event was received, null if the server never sent one.
+ * @param event the type of the event, <code>message</code> if the server sent none.
+ * @param data the data, the lines of several <code>data</code> fields are joined with <code>\n</code>.
+ */
+public record ServerSentEvent(@Nullable String id, String event, String data) {
+
+	/**
+	 * The type of events without <code>event</code> field.
+	 */
+	public static final String MESSAGE = "message";
+
+	/**
+	 * Parses the data as JSON.
+	 *
+	 * @param reader the reader with the type of the result.
+	 * @param <O> the type of the result.
+	 * @return the parsed data.
+	 * @throws JsonProcessingException if the data is not valid JSON.
+	 */
+	public <O> O json(ObjectReader reader) throws JsonProcessingException {
+		return reader.readValue(data);
+	}
+
+}
@@ -0,0 +1,103 @@
+package de.quantumrange.webUtils.stream;
+
+/**
+ * Reads the lines of a <code>text/event-stream</code> as described in the HTML standard and builds the events.
+ * One parser is used for all connections of an {@link EventStream}, so the last event ID survives a reconnect.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+final class ServerSentEventParser {
+
+	private final StringBuilder data = new StringBuilder();
+	private String event;
+	private String lastEventId;
+	private long retry = -1;
+	private boolean firstLine = true;
+
+	ServerSentEventParser(String lastEventId) {
+		this.lastEventId = lastEventId;
+	}
+
+	/**
+	 * Reads a line without its line break.
+	 *
+	 * @param line the line.
+	 * @return the event if the line ended one, otherwise null.
+	 */
+	ServerSentEvent line(String line) {
+		if (firstLine) {
+			firstLine = false;
+			if (line.startsWith("\uFEFF")) line = line.substring(1);
+		}
+
+		if (line.isEmpty()) return dispatch();
+		if (line.charAt(0) == ':') return null;
+
+		int colon = line.indexOf(':');
+		String field = colon < 0 ? line : line.substring(0, colon);
+		String value = "";
+		if (colon >= 0) {
+			int start = colon + 1 < line.length() && line.charAt(colon + 1) == ' ' ? colon + 2 : colon + 1;
+			value = line.substring(start);
+		}
+
+		switch (field) {
+			case "event" -> event = value;
+			case "data" -> data.append(value).append('\n');
+			case "id" -> {
+				if (value.indexOf('\0') < 0) lastEventId = value;
+			}
+			case "retry" -> {
+				if (!value.isEmpty() && value.length() < 19 && value.chars().allMatch(c -> c >= '0' && c <= '9')) {
+					retry = Long.parseLong(value);
+				}
+			}
+			default -> {
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Forgets the event that was not finished, it is called when the connection ended.
+	 */
+	void reset() {
+		data.setLength(0);
+		event = null;
+		firstLine = true;
+	}
+
+	private ServerSentEvent dispatch() {
+		if (data.isEmpty()) {
+			event = null;
+			return null;
+		}
+
+		data.setLength(data.length() - 1);
+		ServerSentEvent result = new ServerSentEvent(lastEventId, event == null || event.isEmpty() ?
+				ServerSentEvent.MESSAGE : event, data.toString());
+
+		data.setLength(0);
+		event = null;
+		return result;
+	}
+
+	/**
+	 * Returns the ID of the last event, it is sent as <code>Last-Event-ID</code> when reconnecting.
+	 * @return the ID or null if there is none.
+	 */
+	String getLastEventId() {
+		return lastEventId;
+	}
+
+	/**
+	 * Returns the reconnection time the server sent with <code>retry</code>.
+	 * @return the time in milliseconds or -1 if the server sent none.
+	 */
+	long getRetry() {
+		return retry;
+	}
+
+}
@@ -0,0 +1,347 @@
+package de.quantumrange.webUtils.websocket;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectReader;
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.circuit.HostGuard;
+import de.quantumrange.webUtils.circuit.RejectedRequestException;
+import de.quantumrange.webUtils.connections.WebEngine;
+import de.quantumrange.webUtils.json.JsonCodecs;
+import de.quantumrange.webUtils.ratelimit.RateLimiter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.WebSocket;
+import java.nio.CharBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * Opens WebSocket connections (built on {@link WebSocket} of the {@link WebEngine}) with the settings of the
+ * library: the RateID and the {@link RateLimiter} throttle the handshake and every outgoing message, the
+ * {@link HostGuard} can reject the handshake and the {@link JsonCodecs} map the messages.
+ * <p>
+ * Outgoing messages are put into a queue and sent one after another (see {@link WebSocketSession}). With
+ * {@link #batch(int, Duration, Collector)} queued text messages are joined into one message, so a burst of small
+ * messages takes one token of the limiter instead of one per message.
+ * <p>
+ * Example:
+ * <pre>WebSocketSession session = Web.websocket(uri).rateID(1)
+ *         .connect(Tick.class, (s, tick) -&gt; ...)
+ *         .join();
+ *
+ * session.sendJson(new Subscribe("ticks"));</pre>
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public class WebSocketConnection {
+
+	private final URI uri;
+	private final HashMap<String, String> headerProperties;
+	private final List<String> subprotocols;
+	private int rateID;
+	/**
+	 * The engine whose client opens the connection, if null {@link Web#ENGINE} is used.
+	 */
+	private WebEngine engine;
+	/**
+	 * The JSON codecs of this connection, if null {@link Web#CODECS} is used.
+	 */
+	private JsonCodecs codecs;
+	/**
+	 * The rate limiter of this connection, if null {@link Web#LIMITER} is used.
+	 */
+	private RateLimiter limiter;
+	/**
+	 * The circuit breakers and bulkheads of this connection, if null {@link Web#GUARD} is used.
+	 */
+	private HostGuard guard;
+	private int batchSize = 1;
+	private Duration batchLinger = Duration.ZERO;
+	private Collector<CharSequence, ?, String> batchJoiner = Collectors.joining("\n");
+
+	/**
+	 * @param uri the URI with the scheme <code>ws</code> or <code>wss</code>.
+	 * @param rateID is the RateID of the handshake and the outgoing messages.
+	 */
+	public WebSocketConnection(URI uri, int rateID) {
+		String scheme = uri.getScheme();
+		if (!"ws".equalsIgnoreCase(scheme) && !"wss".equalsIgnoreCase(scheme)) {
+			throw new IllegalArgumentException("The URI needs the scheme ws or wss: " + uri);
+		}
+
+		this.uri = uri;
+		this.rateID = rateID;
+		this.headerProperties = new HashMap<>();
+		this.subprotocols = new ArrayList<>();
+	}
+
+	/**
+	 * Opens the connection and passes the text messages to the listener as they are, without creating a
+	 * {@link String} if the message arrived in one piece.
+	 *
+	 * @param listener the listener.
+	 * @return the future that completes with the session when the connection is open.
+	 */
+	public CompletableFuture<WebSocketSession> connect(WebSocketListener<CharSequence> listener) {
+		return open(listener, text -> text);
+	}
+
+	/**
+	 * Opens the connection and maps the text messages via JSON with the reader.
+	 *
+	 * @param reader the Jackson JSON ObjectReader with the type of the messages.
+	 * @param listener the listener.
+	 * @param <M> the type of the messages.
+	 * @return the future that completes with the session when the connection is open.
+	 */
+	public <M> CompletableFuture<WebSocketSession> connect(ObjectReader reader, WebSocketListener<M> listener) {
+		return open(listener, new JsonDecoder<>(reader));
+	}
+
+	/**
+	 * Opens the connection and maps the text messages via JSON with the cached reader of the codecs.
+	 *
+	 * @param type the class of the messages.
+	 * @param listener the listener.
+	 * @param <M> the type of the messages.
+	 * @return the future that completes with the session when the connection is open.
+	 */
+	public <M> CompletableFuture<WebSocketSession> connect(Class<M> type, WebSocketListener<M> listener) {
+		return connect(getCodecs().reader(type), listener);
+	}
+
+	private <M> CompletableFuture<WebSocketSession> open(WebSocketListener<M> listener, TextDecoder<M> decoder) {
+		String host = uri.getHost();
+		WebSocketSession session = new WebSocketSession(this, listener, decoder);
+		WebSocket.Builder builder = getEngine().getClient().newWebSocketBuilder();
+
+		// Restricted headers throw here, before a permit is taken.
+		headerProperties.forEach(builder::header);
+		if (!subprotocols.isEmpty()) {
+			builder.subprotocols(subprotocols.get(0), subprotocols.subList(1, subprotocols.size()).toArray(String[]::new));
+		}
+		if (getEngine().getRequestTimeout() != null) builder.connectTimeout(getEngine().getRequestTimeout());
+
+		HostGuard.Permit permit;
+		try {
+			permit = getGuard().acquire(host);
+		} catch (RejectedRequestException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+
+		return getLimiter().acquireAsync(host, rateID)
+				.thenCompose(ignored -> {
+					permit.started();
+					return builder.buildAsync(uri, session.listener());
+				})
+				.whenComplete((webSocket, throwable) -> {
+					if (throwable == null) {
+						permit.complete(101);
+					} else {
+						permit.failure();
+					}
+				})
+				.thenApply(webSocket -> session);
+	}
+
+	public HashMap<String, String> getHeaderProperties() {
+		return headerProperties;
+	}
+
+	/**
+	 * Adds a header to the handshake.
+	 *
+	 * @param name the name.
+	 * @param value the value.
+	 * @return itself
+	 */
+	public WebSocketConnection addHeader(String name, String value) {
+		headerProperties.put(name, value);
+		return this;
+	}
+
+	/**
+	 * Sets the subprotocols that are offered to the server, in the order of preference.
+	 *
+	 * @param subprotocols the subprotocols.
+	 * @return itself
+	 */
+	public WebSocketConnection subprotocols(String... subprotocols) {
+		this.subprotocols.clear();
+		this.subprotocols.addAll(List.of(subprotocols));
+		return this;
+	}
+
+	/**
+	 * Joins up to <code>size</code> queued text messages into one message with the joiner. A message waits up to
+	 * <code>linger</code> for others before it is sent alone. For example
+	 * <code>batch(50, Duration.ofMillis(10), Collectors.joining(",", "[", "]"))</code> sends JSON messages as a JSON
+	 * array.
+	 *
+	 * @param size the most messages that are joined, 1 to send every message alone (the default).
+	 * @param linger how long a message waits for others.
+	 * @param joiner joins the messages.
+	 * @return itself
+	 */
+	public WebSocketConnection batch(int size, Duration linger, Collector<CharSequence, ?, String> joiner) {
+		if (size < 1) throw new IllegalArgumentException("The size has to be at least 1.");
+		if (linger.isNegative()) throw new IllegalArgumentException("The linger can't be negative.");
+
+		this.batchSize = size;
+		this.batchLinger = linger;
+		this.batchJoiner = joiner;
+		return this;
+	}
+
+	public URI getUri() {
+		return uri;
+	}
+
+	public List<String> getSubprotocols() {
+		return List.copyOf(subprotocols);
+	}
+
+	/**
+	 * Sets the RateID of the handshake and of the outgoing messages.
+	 *
+	 * @param rateID the RateID.
+	 * @return itself
+	 */
+	public WebSocketConnection rateID(int rateID) {
+		this.rateID = rateID;
+		return this;
+	}
+
+	public int getRateID() {
+		return rateID;
+	}
+
+	/**
+	 * Sets the engine whose client opens the connection.
+	 *
+	 * @param engine the engine or null to use {@link Web#ENGINE}.
+	 * @return itself
+	 */
+	public WebSocketConnection engine(WebEngine engine) {
+		this.engine = engine;
+		return this;
+	}
+
+	public WebEngine getEngine() {
+		return engine != null ? engine : Web.ENGINE;
+	}
+
+	/**
+	 * Sets the JSON codecs that map the messages.
+	 *
+	 * @param codecs the codecs or null to use {@link Web#CODECS}.
+	 * @return itself
+	 */
+	public WebSocketConnection codecs(JsonCodecs codecs) {
+		this.codecs = codecs;
+		return this;
+	}
+
+	public JsonCodecs getCodecs() {
+		return codecs != null ? codecs : Web.CODECS;
+	}
+
+	/**
+	 * Sets the rate limiter that throttles the handshake and the outgoing messages.
+	 *
+	 * @param limiter the limiter or null to use {@link Web#LIMITER}.
+	 * @return itself
+	 */
+	public WebSocketConnection limiter(RateLimiter limiter) {
+		this.limiter = limiter;
+		return this;
+	}
+
+	public RateLimiter getLimiter() {
+		return limiter != null ? limiter : Web.LIMITER;
+	}
+
+	/**
+	 * Sets the guard that can reject the handshake.
+	 *
+	 * @param guard the guard or null to use {@link Web#GUARD}.
+	 * @return itself
+	 */
+	public WebSocketConnection guard(HostGuard guard) {
+		this.guard = guard;
+		return this;
+	}
+
+	public HostGuard getGuard() {
+		return guard != null ? guard : Web.GUARD;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public Duration getBatchLinger() {
+		return batchLinger;
+	}
+
+	Collector<CharSequence, ?, String> getBatchJoiner() {
+		return batchJoiner;
+	}
+
+	/**
+	 * Turns a text message into the type of the listener.
+	 */
+	interface TextDecoder<M> {
+
+		M decode(CharSequence text) throws IOException;
+
+	}
+
+	/**
+	 * Parses the JSON directly from the characters of the message, they are only copied if the message is not backed
+	 * by an array. One decoder is used by one session, so the copy buffer is reused.
+	 */
+	private static final class JsonDecoder<M> implements TextDecoder<M> {
+
+		private final ObjectReader reader;
+		private char[] chars = new char[0];
+
+		private JsonDecoder(ObjectReader reader) {
+			this.reader = reader;
+		}
+
+		@Override
+		public M decode(CharSequence text) throws IOException {
+			if (text instanceof String string) return reader.readValue(string);
+			if (text instanceof CharBuffer buffer && buffer.hasArray()) {
+				return read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			}
+
+			int length = text.length();
+			if (chars.length < length) chars = new char[Math.max(length, chars.length * 2)];
+
+			if (text instanceof StringBuilder builder) {
+				builder.getChars(0, length, chars, 0);
+			} else {
+				for (int i = 0; i < length; i++) chars[i] = text.charAt(i);
+			}
+
+			return read(chars, 0, length);
+		}
+
+		private M read(char[] content, int offset, int length) throws IOException {
+			try (JsonParser parser = reader.getFactory().createParser(content, offset, length)) {
+				return reader.readValue(parser);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,67 @@
+package de.quantumrange.webUtils.websocket;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the messages of a {@link WebSocketSession}. The methods are called one after another, never at the same
+ * time, and the next message is only read when the method returned.
+ * <p>
+ * Only {@link #onMessage(WebSocketSession, Object)} has to be implemented, so a listener can be a lambda:
+ * <pre>Web.websocket(uri).connect(Tick.class, (session, tick) -&gt; ...);</pre>
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ * @param <M> the type of the text messages.
+ */
+@FunctionalInterface
+public interface WebSocketListener<M> {
+
+	/**
+	 * Is called when the connection is open, before the first message.
+	 *
+	 * @param session the session.
+	 */
+	default void onOpen(WebSocketSession session) {
+	}
+
+	/**
+	 * Is called for every text message.
+	 * A raw message (see {@link WebSocketConnection#connect(WebSocketListener)}) is a {@link CharSequence} that is
+	 * reused for the next message, it has to be copied if it is kept.
+	 *
+	 * @param session the session.
+	 * @param message the message.
+	 */
+	void onMessage(WebSocketSession session, M message);
+
+	/**
+	 * Is called for every binary message. The buffer is reused for the next message, it has to be copied if it is
+	 * kept.
+	 *
+	 * @param session the session.
+	 * @param data the whole message.
+	 */
+	default void onBinary(WebSocketSession session, ByteBuffer data) {
+	}
+
+	/**
+	 * Is called when the server closed the connection.
+	 *
+	 * @param session the session.
+	 * @param statusCode the status code of the server.
+	 * @param reason the reason of the server, can be empty.
+	 */
+	default void onClose(WebSocketSession session, int statusCode, String reason) {
+	}
+
+	/**
+	 * Is called if the connection failed or a message could not be mapped. After a failed connection no other method
+	 * is called, after a message that could not be mapped the next message is read.
+	 *
+	 * @param session the session.
+	 * @param error the error.
+	 */
+	default void onError(WebSocketSession session, Throwable error) {
+	}
+
+}
@@ -0,0 +1,413 @@
+package de.quantumrange.webUtils.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import de.quantumrange.webUtils.ratelimit.RateLimiter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collector;
+
+/**
+ * An open WebSocket connection of a {@link WebSocketConnection}.
+ * <p>
+ * The messages are sent in the order of the calls. A {@link WebSocket} can only send one message at a time, so the
+ * messages wait in a queue and every message first waits for a token of the {@link RateLimiter} with the RateID of
+ * the connection. The returned futures complete when the message was sent. All methods can be called from any
+ * thread.
+ * <p>
+ * Text and binary messages that arrive in one frame are passed to the listener without copying them. Messages in
+ * several frames are collected in a buffer that is reused for the next message.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public final class WebSocketSession {
+
+	/**
+	 * A buffer for messages in several frames that grew larger than this is not kept for the next message.
+	 */
+	private static final int MAX_KEPT_BUFFER = 64 * 1024;
+
+	private final URI uri;
+	private final String host;
+	private final int rateID;
+	private final RateLimiter limiter;
+	private final ObjectWriter writer;
+	private final int batchSize;
+	private final long batchLingerNanos;
+	private final Collector<CharSequence, ?, String> batchJoiner;
+
+	private final Queue<Outgoing> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicBoolean sending = new AtomicBoolean();
+	private final AtomicBoolean lingering = new AtomicBoolean();
+	private final Receiver<?> receiver;
+
+	private volatile WebSocket webSocket;
+	private volatile boolean closed;
+
+	<M> WebSocketSession(WebSocketConnection connection, WebSocketListener<M> listener,
+						 WebSocketConnection.TextDecoder<M> decoder) {
+		this.uri = connection.getUri();
+		this.host = uri.getHost();
+		this.rateID = connection.getRateID();
+		this.limiter = connection.getLimiter();
+		this.writer = connection.getCodecs().writer();
+		this.batchSize = connection.getBatchSize();
+		this.batchLingerNanos = connection.getBatchLinger().toNanos();
+		this.batchJoiner = connection.getBatchJoiner();
+		this.receiver = new Receiver<>(listener, decoder);
+	}
+
+	/**
+	 * Sends a text message. The text must not be changed until the message was sent.
+	 *
+	 * @param text the message.
+	 * @return the future that completes when the message was sent.
+	 */
+	public CompletableFuture<Void> sendText(CharSequence text) {
+		return enqueue(new Outgoing(Kind.TEXT, text, null, 0));
+	}
+
+	/**
+	 * Sends the value as JSON text message with the writer of the codecs.
+	 *
+	 * @param value the value.
+	 * @return the future that completes when the message was sent.
+	 */
+	public CompletableFuture<Void> sendJson(Object value) {
+		try {
+			return sendText(writer.writeValueAsString(value));
+		} catch (JsonProcessingException e) {
+			return CompletableFuture.failedFuture(new IllegalArgumentException("The value can't be written as JSON.", e));
+		}
+	}
+
+	/**
+	 * Sends a binary message. The buffer must not be changed until the message was sent.
+	 *
+	 * @param data the message.
+	 * @return the future that completes when the message was sent.
+	 */
+	public CompletableFuture<Void> sendBinary(ByteBuffer data) {
+		return enqueue(new Outgoing(Kind.BINARY, null, data, 0));
+	}
+
+	/**
+	 * Closes the connection normally after the queued messages were sent.
+	 *
+	 * @return the future that completes when the close message was sent.
+	 */
+	public CompletableFuture<Void> close() {
+		return close(WebSocket.NORMAL_CLOSURE, "");
+	}
+
+	/**
+	 * Closes the connection after the queued messages were sent. Messages that are sent afterwards fail.
+	 *
+	 * @param statusCode the status code.
+	 * @param reason the reason, can be empty.
+	 * @return the future that completes when the close message was sent.
+	 */
+	public CompletableFuture<Void> close(int statusCode, String reason) {
+		return enqueue(new Outgoing(Kind.CLOSE, reason, null, statusCode));
+	}
+
+	/**
+	 * Closes the connection at once, the queued messages fail.
+	 */
+	public void abort() {
+		closed = true;
+		if (webSocket != null) webSocket.abort();
+		failQueued(new IOException("The WebSocket was aborted."));
+	}
+
+	public boolean isOpen() {
+		return !closed && webSocket != null && !webSocket.isOutputClosed();
+	}
+
+	/**
+	 * Returns the subprotocol the server chose.
+	 * @return the subprotocol or an empty string if there is none.
+	 */
+	public String getSubprotocol() {
+		return webSocket == null ? "" : webSocket.getSubprotocol();
+	}
+
+	/**
+	 * Returns how many messages wait in the queue or are being sent.
+	 * @return the count of messages.
+	 */
+	public int getQueued() {
+		return queued.get();
+	}
+
+	public URI getUri() {
+		return uri;
+	}
+
+	WebSocket.Listener listener() {
+		return receiver;
+	}
+
+	private CompletableFuture<Void> enqueue(Outgoing outgoing) {
+		if (closed) return CompletableFuture.failedFuture(new IllegalStateException("The WebSocket is closed."));
+		if (outgoing.kind == Kind.CLOSE) closed = true;
+
+		queued.incrementAndGet();
+		queue.add(outgoing);
+		drain();
+
+		return outgoing.sent;
+	}
+
+	/**
+	 * Sends the queued messages one after another. The loop only continues on this thread if a send completed at
+	 * once, otherwise the completion of the send continues it, so the stack doesn't grow with the queue.
+	 */
+	private void drain() {
+		while (!queue.isEmpty() && sending.compareAndSet(false, true)) {
+			List<Outgoing> batch = nextBatch();
+			if (batch == null) {
+				sending.set(false);
+				return;
+			}
+
+			CompletableFuture<?> sent = send(batch);
+			if (!sent.isDone()) {
+				sent.whenComplete((ignored, throwable) -> {
+					finish(batch, throwable);
+					sending.set(false);
+					drain();
+				});
+				return;
+			}
+
+			finish(batch, sent.isCompletedExceptionally() ? sent.exceptionNow() : null);
+			sending.set(false);
+		}
+	}
+
+	/**
+	 * Takes the next message, or the next text messages that are joined. Returns null and schedules a drain if the
+	 * batch is not full and its first message may still wait.
+	 */
+	private List<Outgoing> nextBatch() {
+		Outgoing first = queue.peek();
+		if (first == null) return null;
+
+		if (first.kind != Kind.TEXT || batchSize == 1) {
+			queue.poll();
+			return List.of(first);
+		}
+
+		int count = 0;
+		boolean followed = false;
+		for (Iterator<Outgoing> iterator = queue.iterator(); iterator.hasNext() && count < batchSize; ) {
+			if (iterator.next().kind != Kind.TEXT) {
+				followed = true;
+				break;
+			}
+			count++;
+		}
+
+		long waited = System.nanoTime() - first.queuedAt;
+		if (count < batchSize && !followed && !closed && waited < batchLingerNanos) {
+			if (lingering.compareAndSet(false, true)) {
+				CompletableFuture.delayedExecutor(batchLingerNanos - waited, TimeUnit.NANOSECONDS).execute(() -> {
+					lingering.set(false);
+					drain();
+				});
+			}
+			return null;
+		}
+
+		List<Outgoing> batch = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) batch.add(queue.poll());
+		return batch;
+	}
+
+	private CompletableFuture<?> send(List<Outgoing> batch) {
+		Outgoing first = batch.get(0);
+		WebSocket socket = webSocket;
+
+		if (first.kind == Kind.CLOSE) {
+			return CompletableFuture.completedFuture(null)
+					.thenCompose(ignored -> socket.sendClose(first.statusCode, first.text.toString()));
+		}
+
+		return limiter.acquireAsync(host, rateID).thenCompose(ignored -> switch (first.kind) {
+			case TEXT -> socket.sendText(batch.size() == 1 ? first.text :
+					batch.stream().map(Outgoing::text).collect(batchJoiner), true);
+			case BINARY -> socket.sendBinary(first.binary, true);
+			case CLOSE -> throw new IllegalStateException();
+		});
+	}
+
+	private void finish(List<Outgoing> batch, Throwable throwable) {
+		if (throwable instanceof CompletionException && throwable.getCause() != null) throwable = throwable.getCause();
+
+		for (Outgoing outgoing : batch) {
+			queued.decrementAndGet();
+
+			if (throwable == null) {
+				outgoing.sent.complete(null);
+			} else {
+				outgoing.sent.completeExceptionally(throwable);
+			}
+		}
+	}
+
+	private void failQueued(Throwable throwable) {
+		Outgoing outgoing;
+
+		while ((outgoing = queue.poll()) != null) {
+			queued.decrementAndGet();
+			outgoing.sent.completeExceptionally(throwable);
+		}
+	}
+
+	private enum Kind {
+		TEXT, BINARY, CLOSE
+	}
+
+	private record Outgoing(Kind kind, CharSequence text, ByteBuffer binary, int statusCode, long queuedAt,
+							CompletableFuture<Void> sent) {
+
+		private Outgoing(Kind kind, CharSequence text, ByteBuffer binary, int statusCode) {
+			this(kind, text, binary, statusCode, System.nanoTime(), new CompletableFuture<>());
+		}
+
+	}
+
+	/**
+	 * Receives the frames from the {@link WebSocket}, collects the messages and passes them to the listener. The
+	 * {@link WebSocket} calls it one frame at a time, the next frame is requested when the listener returned.
+	 */
+	private final class Receiver<M> implements WebSocket.Listener {
+
+		private final WebSocketListener<M> listener;
+		private final WebSocketConnection.TextDecoder<M> decoder;
+		private StringBuilder text = new StringBuilder();
+		private ByteBuffer binary = ByteBuffer.allocate(0);
+
+		private Receiver(WebSocketListener<M> listener, WebSocketConnection.TextDecoder<M> decoder) {
+			this.listener = listener;
+			this.decoder = decoder;
+		}
+
+		@Override
+		public void onOpen(WebSocket webSocket) {
+			WebSocketSession.this.webSocket = webSocket;
+
+			try {
+				listener.onOpen(WebSocketSession.this);
+			} catch (RuntimeException e) {
+				listener.onError(WebSocketSession.this, e);
+			}
+
+			webSocket.request(1);
+		}
+
+		@Override
+		public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+			if (last && text.isEmpty()) {
+				deliver(data);
+			} else {
+				text.append(data);
+
+				if (last) {
+					deliver(text);
+					if (text.capacity() > MAX_KEPT_BUFFER) {
+						text = new StringBuilder();
+					} else {
+						text.setLength(0);
+					}
+				}
+			}
+
+			webSocket.request(1);
+			return null;
+		}
+
+		@Override
+		public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+			if (last && binary.position() == 0) {
+				deliverBinary(data);
+			} else {
+				if (binary.remaining() < data.remaining()) {
+					ByteBuffer larger = ByteBuffer.allocate(Math.max(binary.capacity() * 2,
+							binary.position() + data.remaining()));
+					binary.flip();
+					binary = larger.put(binary);
+				}
+				binary.put(data);
+
+				if (last) {
+					deliverBinary(binary.flip());
+					binary = binary.capacity() > MAX_KEPT_BUFFER ? ByteBuffer.allocate(0) : binary.clear();
+				}
+			}
+
+			webSocket.request(1);
+			return null;
+		}
+
+		@Override
+		public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+			closed = true;
+			failQueued(new IOException("The WebSocket was closed by the server (" + statusCode + ")."));
+			listener.onClose(WebSocketSession.this, statusCode, reason);
+			return null;
+		}
+
+		@Override
+		public void onError(WebSocket webSocket, Throwable error) {
+			closed = true;
+			failQueued(error);
+			listener.onError(WebSocketSession.this, error);
+		}
+
+		private void deliver(CharSequence data) {
+			M message;
+
+			try {
+				message = decoder.decode(data);
+			} catch (IOException | RuntimeException e) {
+				listener.onError(WebSocketSession.this, new IllegalArgumentException(
+						"The message is not JSON or the ObjectReader/Mapper is configured incorrectly.", e));
+				return;
+			}
+
+			try {
+				if (message != null) listener.onMessage(WebSocketSession.this, message);
+			} catch (RuntimeException e) {
+				listener.onError(WebSocketSession.this, e);
+			}
+		}
+
+		private void deliverBinary(ByteBuffer data) {
+			try {
+				listener.onBinary(WebSocketSession.this, data);
+			} catch (RuntimeException e) {
+				listener.onError(WebSocketSession.this, e);
+			}
+		}
+
+	}
+
+}
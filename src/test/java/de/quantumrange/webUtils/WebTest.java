@@ -1,46 +1,157 @@
 package de.quantumrange.webUtils;
 
-import de.quantumrange.actionlib.Action;
+import de.quantumrange.webUtils.circuit.HostGuard;
 import de.quantumrange.webUtils.connections.HTTPRequestType;
-import de.quantumrange.webUtils.connections.impl.DataWebConnection;
-import de.quantumrange.webUtils.connections.impl.GetWebConnection;
 import de.quantumrange.webUtils.models.WebResult;
+import de.quantumrange.webUtils.ratelimit.RateLimiter;
+import de.quantumrange.webUtils.retry.RetryPolicy;
+import de.quantumrange.webUtils.server.TestServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class WebTest {
 
+	private static TestServer server;
+
+	@BeforeAll
+	static void start() throws IOException {
+		server = TestServer.start();
+	}
+
+	@AfterAll
+	static void stop() {
+		server.close();
+	}
+
 	@Test
-	void url() throws MalformedURLException {
+	void url() {
 		HashMap<String, String> params = new HashMap<>();
 		params.put("query", "GET request test site");
+		server.route("/search");
 
-		WebResult<String> result = Web.url(new URL("https://www.startpage.com/do/dsearch"))
+		WebResult<String> result = Web.url(server.url("/search"))
 				.request(params)
 				.completion();
 
 		assertNotNull(result.receiveResponse());
-		assertNotEquals(-1, result.responseCode());
+		assertEquals(200, result.responseCode());
+		assertEquals("query=GET%20request%20test%20site", server.route("/search").getLastRequest().uri().getRawQuery());
 	}
 
 	@Test
-	void testUrl() throws MalformedURLException {
-		WebResult<String> result = Web.url(new URL("https://www.urlencoder.org/"), HTTPRequestType.POST)
-				.request("""
-						{
-							"input": "LOL"
-						}
-						""")
+	void testUrl() {
+		String body = """
+				{
+					"input": "LOL"
+				}
+				""";
+		server.route("/echo").echo();
+
+		WebResult<String> result = Web.url(server.url("/echo"), HTTPRequestType.POST)
+				.request(body)
 				.completion();
 
 		assertNotNull(result.receiveResponse());
-		assertNotEquals(-1, result.responseCode());
+		assertEquals(200, result.responseCode());
+		assertEquals(body, result.response());
+		assertEquals("POST", server.route("/echo").getLastRequest().method());
+	}
+
+	@Test
+	void notFound() {
+		WebResult<String> result = Web.url(server.url("/missing")).request(Map.of()).completion();
+
+		assertEquals(404, result.responseCode());
+	}
+
+	@Test
+	void compression() {
+		byte[] payload = TestServer.payload(100_000, 1);
+		server.route("/compressed").body(payload).compression(true);
+
+		WebResult<String> result = Web.url(server.url("/compressed"))
+				.compression(true)
+				.request(Map.of())
+				.completion();
+
+		assertEquals(new String(payload, StandardCharsets.UTF_8), result.response());
+		assertTrue(server.route("/compressed").getLastRequest().headers().getFirst("Accept-Encoding").contains("gzip"));
+	}
+
+	@Test
+	void chunked() {
+		byte[] payload = TestServer.payload(10_000, 2);
+		server.route("/chunked").body(payload).chunked(1_000, Duration.ofMillis(1));
+
+		WebResult<byte[]> result = Web.url(server.url("/chunked")).requestBytes(Map.of()).completion();
+
+		assertEquals(200, result.responseCode());
+		assertArrayEquals(payload, result.response());
+	}
+
+	@Test
+	void retryFlakyServer() {
+		server.route("/flaky").status(503, 503, 200);
+
+		WebResult<String> result = Web.url(server.url("/flaky"))
+				.retry(RetryPolicy.builder().backoff(Duration.ofMillis(1), Duration.ofMillis(10)).build())
+				.request(Map.of())
+				.completion();
+
+		assertEquals(200, result.responseCode());
+		assertEquals(2, result.getRetries());
+		assertEquals(3, server.route("/flaky").getRequests());
+	}
+
+	@Test
+	void rateLimitedServer() {
+		server.route("/limited").rateLimit(2, Duration.ofSeconds(1));
+		RateLimiter limiter = new RateLimiter();
+
+		long start = System.nanoTime();
+		for (int i = 0; i < 3; i++) {
+			WebResult<String> result = Web.url(server.url("/limited"))
+					.limiter(limiter)
+					.request(Map.of())
+					.completion();
+
+			assertEquals(200, result.responseCode());
+		}
+
+		assertTrue(System.nanoTime() - start >= Duration.ofMillis(500).toNanos(),
+				"The limiter has to wait for the reset of the server.");
+	}
+
+	@Test
+	void requestAsyncRejected() throws Exception {
+		server.route("/guarded").latency(Duration.ofMillis(500));
+		HostGuard guard = new HostGuard();
+		guard.setBulkhead("127.0.0.1", 1);
+
+		CompletableFuture<WebResult<String>> first = Web.url(server.url("/guarded")).guard(guard)
+				.requestAsync(Map.of());
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (guard.getBulkhead("127.0.0.1").getActive() == 0 && System.nanoTime() < deadline) Thread.sleep(5);
+
+		WebResult<String> rejected = Web.url(server.url("/guarded")).guard(guard)
+				.requestAsync(Map.of())
+				.get(5, TimeUnit.SECONDS);
+
+		assertEquals(WebResult.BULKHEAD_FULL, rejected.responseCode());
+		assertNull(rejected.response());
+		assertEquals(200, first.get(5, TimeUnit.SECONDS).responseCode());
+		assertEquals(1, server.route("/guarded").getRequests());
 	}
-}
\ No newline at end of file
+
+}
@@ -0,0 +1,239 @@
+package de.quantumrange.webUtils.batch;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.connections.HTTPRequestType;
+import de.quantumrange.webUtils.metrics.RequestTag;
+import de.quantumrange.webUtils.metrics.WebInstrumentation;
+import de.quantumrange.webUtils.models.WebResult;
+import de.quantumrange.webUtils.retry.RetryPolicy;
+import de.quantumrange.webUtils.server.TestServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebBatchTest {
+
+	@Test
+	void requestAllKeepsTheOrderAndTheWindow() throws Exception {
+		try (TestServer server = TestServer.start()) {
+			server.route("/slow").latency(Duration.ofMillis(150)).body("slow");
+			server.route("/fast").body("fast");
+			InFlight inFlight = new InFlight();
+
+			List<RequestSpec> specs = IntStream.range(0, 24)
+					.mapToObj(i -> RequestSpec.get(server.url(i % 3 == 0 ? "/slow" : "/fast")))
+					.toList();
+			List<WebResult<String>> results = Web.batch().concurrency(4)
+					.configure(connection -> connection.instrument(inFlight))
+					.requestAll(specs)
+					.get(30, TimeUnit.SECONDS);
+
+			assertEquals(24, results.size());
+			for (int i = 0; i < results.size(); i++) {
+				assertEquals(200, results.get(i).responseCode());
+				assertEquals(i % 3 == 0 ? "slow" : "fast", results.get(i).response(), "Result " + i);
+			}
+
+			assertTrue(inFlight.max.get() <= 4, "In flight at once: " + inFlight.max.get());
+			assertTrue(inFlight.max.get() > 1, "The requests were sent one after another.");
+			assertEquals(8, server.route("/slow").getRequests());
+			assertEquals(16, server.route("/fast").getRequests());
+		}
+	}
+
+	@Test
+	void failedRequestsDontEndTheBatch() throws Exception {
+		URL closed;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			closed = URI.create("http://127.0.0.1:" + socket.getLocalPort() + "/").toURL();
+		}
+
+		try (TestServer server = TestServer.start()) {
+			server.route("/ok");
+			List<RequestSpec> specs = List.of(RequestSpec.get(server.url("/ok")), RequestSpec.get(closed),
+					RequestSpec.get(server.url("/missing")), RequestSpec.get(server.url("/ok")));
+
+			List<WebResult<String>> results = Web.batch().concurrency(2)
+					.configure(connection -> connection.retry(RetryPolicy.NONE))
+					.requestAll(specs)
+					.get(30, TimeUnit.SECONDS);
+
+			assertEquals(List.of(200, WebResult.FAILED, 404, 200),
+					results.stream().map(WebResult::responseCode).toList());
+			assertNull(results.get(1).response());
+			assertEquals(closed, results.get(1).url());
+		}
+	}
+
+	@Test
+	void failuresCarryTheirCause() throws Exception {
+		URL closed;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			closed = URI.create("http://127.0.0.1:" + socket.getLocalPort() + "/").toURL();
+		}
+		Map<RequestSpec, Throwable> failures = new ConcurrentHashMap<>();
+		RequestSpec refused = RequestSpec.get(closed, Map.of("page", 1));
+		RequestSpec badHeader = RequestSpec.get(closed).withHeader("Bad Header", "value");
+
+		List<WebResult<String>> results = Web.batch()
+				.configure(connection -> connection.retry(RetryPolicy.NONE))
+				.onFailure(failures::put)
+				.requestAll(List.of(refused, badHeader))
+				.get(30, TimeUnit.SECONDS);
+
+		assertEquals(List.of(WebResult.FAILED, WebResult.FAILED), results.stream().map(WebResult::responseCode).toList());
+		assertTrue(failures.get(refused) instanceof ConnectException, String.valueOf(failures.get(refused)));
+		assertTrue(failures.get(badHeader) instanceof IllegalArgumentException, String.valueOf(failures.get(badHeader)));
+	}
+
+	@Test
+	void endpointsShareATemplate() throws Exception {
+		try (TestServer server = TestServer.start()) {
+			server.route("/page");
+			server.route("/other");
+			AtomicInteger configured = new AtomicInteger();
+
+			List<RequestSpec> specs = new ArrayList<>();
+			for (int i = 0; i < 10; i++) specs.add(RequestSpec.get(server.url("/page"), Map.of("page", i)));
+			for (int i = 0; i < 5; i++) specs.add(RequestSpec.of(server.url("/other"), HTTPRequestType.POST, "" + i));
+			specs.add(RequestSpec.get(server.url("/page")).withHeader("Accept", "text/plain"));
+
+			List<WebResult<String>> results = Web.batch().concurrency(4)
+					.configure(connection -> configured.incrementAndGet())
+					.requestAll(specs)
+					.get(30, TimeUnit.SECONDS);
+
+			assertTrue(results.stream().allMatch(result -> result.responseCode() == 200));
+			assertEquals(3, configured.get(), "One connection per URL, type, RateID and headers.");
+			List<TestServer.Request> pages = server.route("/page").getReceived();
+			assertTrue(pages.stream().anyMatch(request -> request.uri().toString().equals("/page?page=9")),
+					"The query of every request is sent.");
+			assertEquals(1, pages.stream().filter(request -> "text/plain".equals(request.headers().getFirst("Accept")))
+					.count());
+			assertEquals(5, server.route("/other").getRequests());
+		}
+	}
+
+	@Test
+	void streamTakesTheRequestsLazily() throws IOException {
+		try (TestServer server = TestServer.start()) {
+			server.route("/item");
+			AtomicInteger taken = new AtomicInteger();
+
+			Stream<RequestSpec> specs = Stream.generate(() -> {
+				taken.incrementAndGet();
+				return RequestSpec.get(server.url("/item"));
+			});
+
+			try (Stream<WebResult<String>> results = Web.batch().concurrency(3).stream(specs)) {
+				assertEquals(5, results.limit(5).filter(result -> result.responseCode() == 200).count());
+			}
+			assertTrue(taken.get() <= 5 + 3, "Only the window is taken ahead: " + taken.get());
+		}
+	}
+
+	@Test
+	void publisherFollowsTheDemand() throws Exception {
+		try (TestServer server = TestServer.start()) {
+			server.route("/item");
+			Flow.Publisher<WebResult<String>> publisher = Web.batch().concurrency(8)
+					.publisher(Stream.generate(() -> RequestSpec.get(server.url("/item"))).limit(10));
+
+			List<WebResult<String>> received = new ArrayList<>();
+			AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+			publisher.subscribe(new Flow.Subscriber<>() {
+				@Override
+				public void onSubscribe(Flow.Subscription s) {
+					subscription.set(s);
+					s.request(2);
+				}
+
+				@Override
+				public void onNext(WebResult<String> item) {
+					synchronized (received) {
+						received.add(item);
+					}
+				}
+
+				@Override
+				public void onError(Throwable throwable) {
+				}
+
+				@Override
+				public void onComplete() {
+				}
+			});
+
+			Thread.sleep(500);
+			synchronized (received) {
+				assertEquals(2, received.size());
+			}
+			assertEquals(2, server.route("/item").getRequests(), "Nothing is sent without demand.");
+			subscription.get().cancel();
+
+			AtomicReference<Throwable> error = new AtomicReference<>();
+			publisher.subscribe(new Flow.Subscriber<>() {
+				@Override
+				public void onSubscribe(Flow.Subscription s) {
+				}
+
+				@Override
+				public void onNext(WebResult<String> item) {
+				}
+
+				@Override
+				public void onError(Throwable throwable) {
+					error.set(throwable);
+				}
+
+				@Override
+				public void onComplete() {
+				}
+			});
+			assertTrue(error.get() instanceof IllegalStateException, "A publisher can be subscribed once.");
+		}
+	}
+
+	/**
+	 * Counts the requests that are sent and not yet answered.
+	 */
+	private static final class InFlight implements WebInstrumentation {
+
+		private final AtomicInteger current = new AtomicInteger();
+		private final AtomicInteger max = new AtomicInteger();
+
+		@Override
+		public void onStarted(RequestTag tag, long waitNanos, long bytesSent) {
+			max.accumulateAndGet(current.incrementAndGet(), Math::max);
+		}
+
+		@Override
+		public void onCompleted(RequestTag tag, int statusCode, long nanos) {
+			current.decrementAndGet();
+		}
+
+		@Override
+		public void onFailed(RequestTag tag, Throwable error, long nanos) {
+			current.decrementAndGet();
+		}
+
+	}
+
+}
@@ -0,0 +1,284 @@
+package de.quantumrange.webUtils.cache;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.models.WebResult;
+import de.quantumrange.webUtils.server.TestServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiskCacheTest {
+
+	@Test
+	void survivesRestart() throws IOException {
+		Path directory = Files.createTempDirectory("disk-cache");
+		try {
+			CachedResponse first = response("http://127.0.0.1/a?x=1", "first", 1_000L);
+			CachedResponse second = response("http://127.0.0.1/b", "second", 2_000L);
+
+			try (DiskCache cache = DiskCache.open(directory, 1 << 20)) {
+				cache.put(first);
+				cache.put(second);
+				cache.put(response("http://127.0.0.1/b", "replaced", 3_000L));
+				cache.remove("http://127.0.0.1/a?x=1");
+				cache.put(first);
+				cache.remove("http://127.0.0.1/b");
+			}
+
+			try (DiskCache cache = DiskCache.open(directory, 1 << 20)) {
+				assertEquals(first, cache.get("http://127.0.0.1/a?x=1"));
+				assertNull(cache.get("http://127.0.0.1/b"));
+				assertEquals(1, cache.size());
+			}
+
+			// Without index the data file is read again, tombstones included.
+			Files.delete(directory.resolve("responses.idx"));
+			try (DiskCache cache = DiskCache.open(directory, 1 << 20)) {
+				assertEquals(first, cache.get("http://127.0.0.1/a?x=1"));
+				assertNull(cache.get("http://127.0.0.1/b"));
+				assertEquals(1, cache.size());
+			}
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	void recoversFromDamagedFiles() throws IOException {
+		Path directory = Files.createTempDirectory("disk-cache");
+		try {
+			try (DiskCache cache = DiskCache.open(directory, 1 << 20)) {
+				for (int i = 0; i < 3; i++) cache.put(response("http://127.0.0.1/" + i, "body " + i, 1_000L));
+			}
+
+			Path data = directory.resolve("responses.dat");
+			try (RandomAccessFile file = new RandomAccessFile(data.toFile(), "rw")) {
+				// A crash while appending the last record, and a flipped byte in the body of the first one.
+				file.setLength(file.length() - 3);
+				byte[] bytes = Files.readAllBytes(data);
+				int body = indexOf(bytes, "body 0".getBytes(StandardCharsets.UTF_8));
+				file.seek(body);
+				file.write('X');
+			}
+
+			try (DiskCache cache = DiskCache.open(directory, 1 << 20)) {
+				assertNull(cache.get("http://127.0.0.1/0"), "A damaged record is not returned.");
+				assertEquals("body 1", new String(cache.get("http://127.0.0.1/1").body(), StandardCharsets.UTF_8));
+				assertNull(cache.get("http://127.0.0.1/2"), "The incomplete record is cut off.");
+
+				cache.put(response("http://127.0.0.1/3", "body 3", 1_000L));
+			}
+
+			try (DiskCache cache = DiskCache.open(directory, 1 << 20)) {
+				assertEquals("body 3", new String(cache.get("http://127.0.0.1/3").body(), StandardCharsets.UTF_8));
+				assertEquals(2, cache.size());
+			}
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	void compactsAtTheLimit() throws IOException {
+		Path directory = Files.createTempDirectory("disk-cache");
+		try {
+			int limit = 64 * 1024;
+
+			try (DiskCache cache = DiskCache.open(directory, limit)) {
+				for (int i = 0; i < 200; i++) {
+					cache.put(response("http://127.0.0.1/" + i, "x".repeat(1_000), System.currentTimeMillis()));
+					assertTrue(Files.size(directory.resolve("responses.dat")) <= limit);
+				}
+
+				assertTrue(cache.getCompactions() > 0);
+				assertTrue(cache.getEvictions() > 0);
+				assertNotNull(cache.get("http://127.0.0.1/199"), "The newest responses are kept.");
+				assertNull(cache.get("http://127.0.0.1/0"), "The oldest responses are dropped.");
+			}
+
+			try (DiskCache cache = DiskCache.open(directory, limit)) {
+				assertNotNull(cache.get("http://127.0.0.1/199"));
+				assertEquals(cache.getBytes(), Files.size(directory.resolve("responses.dat")));
+			}
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	void failedCompactionKeepsTheFiles() throws IOException {
+		Path directory = Files.createTempDirectory("disk-cache");
+		try {
+			int limit = 64 * 1024;
+			int stored = 0;
+
+			try (DiskCache cache = DiskCache.open(directory, limit)) {
+				// The new index can't be written while a directory is in its place.
+				Path blocker = Files.createDirectories(directory.resolve("responses.idx.tmp").resolve("blocker"));
+				for (int i = 0; i < 100; i++) {
+					try {
+						cache.put(response("http://127.0.0.1/" + i, "x".repeat(1_000), System.currentTimeMillis()));
+						stored++;
+					} catch (UncheckedIOException e) {
+						assertTrue(stored > 0);
+					}
+				}
+
+				assertTrue(stored < 100, "The compaction failed.");
+				assertEquals(0, cache.getCompactions());
+				assertEquals(stored, cache.size());
+				assertNotNull(cache.get("http://127.0.0.1/0"));
+				assertNull(cache.get("http://127.0.0.1/" + stored));
+				assertFalse(Files.exists(directory.resolve("responses.dat.compact")));
+
+				Files.delete(blocker);
+				Files.delete(blocker.getParent());
+				cache.put(response("http://127.0.0.1/new", "new" + "x".repeat(1_000), System.currentTimeMillis()));
+				assertEquals(1, cache.getCompactions());
+				assertNotNull(cache.get("http://127.0.0.1/new"));
+			}
+
+			try (DiskCache cache = DiskCache.open(directory, limit)) {
+				assertEquals(1_003, cache.get("http://127.0.0.1/new").body().length);
+				assertNotNull(cache.get("http://127.0.0.1/" + (stored - 1)));
+				assertEquals(cache.getBytes(), Files.size(directory.resolve("responses.dat")));
+			}
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	void writesInTheBackgroundInOrder() throws IOException {
+		Path directory = Files.createTempDirectory("disk-cache");
+		try {
+			int limit = 64 * 1024;
+
+			try (DiskCache cache = DiskCache.open(directory, limit)) {
+				List<CompletableFuture<Void>> writes = new ArrayList<>();
+				for (int i = 0; i < 200; i++) {
+					writes.add(cache.putAsync(response("http://127.0.0.1/" + i, "x".repeat(1_000),
+							System.currentTimeMillis())));
+				}
+				cache.remove("http://127.0.0.1/198");
+
+				assertTrue(writes.stream().allMatch(CompletableFuture::isDone), "A change waits for the ones before.");
+				assertNull(cache.get("http://127.0.0.1/198"));
+				assertNotNull(cache.get("http://127.0.0.1/199"));
+				assertTrue(cache.getCompactions() > 0);
+
+				cache.removeAsync("http://127.0.0.1/199");
+				cache.putAsync(response("http://127.0.0.1/last", "last", System.currentTimeMillis()));
+			}
+
+			try (DiskCache cache = DiskCache.open(directory, limit)) {
+				assertNull(cache.get("http://127.0.0.1/199"), "Close waits for the pending changes.");
+				assertEquals("last", new String(cache.get("http://127.0.0.1/last").body(), StandardCharsets.UTF_8));
+			}
+
+			DiskCache closed = DiskCache.open(directory, limit);
+			closed.close();
+			assertTrue(closed.putAsync(response("http://127.0.0.1/late", "late", 1_000L)).isCompletedExceptionally());
+			assertThrows(IllegalStateException.class, () -> closed.remove("http://127.0.0.1/last"));
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	void timeToLive() throws IOException {
+		Path directory = Files.createTempDirectory("disk-cache");
+		try (DiskCache cache = DiskCache.open(directory, 1 << 20, Duration.ofMinutes(1))) {
+			long now = System.currentTimeMillis();
+			cache.put(response("http://127.0.0.1/old", "old", now - 120_000L));
+			cache.put(response("http://127.0.0.1/new", "new", now));
+
+			assertNull(cache.get("http://127.0.0.1/old"));
+			assertNotNull(cache.get("http://127.0.0.1/new"));
+			cache.flush();
+			assertEquals(1, cache.size(), "The expired response is removed in the background.");
+
+			cache.compact();
+			assertNotNull(cache.get("http://127.0.0.1/new"));
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	void warmRestartSkipsTheNetwork() throws IOException {
+		Path directory = Files.createTempDirectory("disk-cache");
+		try (TestServer server = TestServer.start()) {
+			server.route("/cached").body("cached body").header("Cache-Control", "max-age=600");
+
+			try (DiskCache disk = DiskCache.open(directory, 1 << 20)) {
+				WebResult<String> result = Web.url(server.url("/cached?page=1"))
+						.cache(new ResponseCache(100, 1 << 20, null, disk))
+						.request(Map.of())
+						.completion();
+				assertEquals("cached body", result.response());
+			}
+
+			try (DiskCache disk = DiskCache.open(directory, 1 << 20)) {
+				ResponseCache cache = new ResponseCache(100, 1 << 20, null, disk);
+				WebResult<String> result = Web.url(server.url("/cached?page=1"))
+						.cache(cache)
+						.request(Map.of())
+						.completion();
+
+				assertEquals("cached body", result.response());
+				assertEquals(200, result.responseCode());
+				assertEquals(1, server.route("/cached").getRequests(), "The second request was answered from disk.");
+				assertEquals(1, cache.getHits());
+				assertEquals(1, disk.getHits());
+			}
+		} finally {
+			delete(directory);
+		}
+	}
+
+	private static CachedResponse response(String uri, String body, long storedAt) {
+		Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		headers.put("Content-Type", List.of("text/plain"));
+		headers.put("Vary", List.of("Accept"));
+		Map<String, String> vary = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		vary.put("Accept", null);
+
+		return new CachedResponse(uri, 200, HttpHeaders.of(headers, (name, value) -> true),
+				body.getBytes(StandardCharsets.UTF_8), vary, storedAt, storedAt + 60_000L);
+	}
+
+	private static int indexOf(byte[] bytes, byte[] part) {
+		outer:
+		for (int i = 0; i <= bytes.length - part.length; i++) {
+			for (int j = 0; j < part.length; j++) {
+				if (bytes[i + j] != part[j]) continue outer;
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	private static void delete(Path directory) throws IOException {
+		try (Stream<Path> files = Files.walk(directory)) {
+			for (Path file : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(file);
+		}
+	}
+
+}
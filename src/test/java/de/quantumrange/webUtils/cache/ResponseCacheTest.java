@@ -0,0 +1,71 @@
+package de.quantumrange.webUtils.cache;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.connections.impl.GetWebConnection;
+import de.quantumrange.webUtils.server.TestServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheTest {
+
+	@Test
+	void sharedResponsesAreReused() throws IOException {
+		try (TestServer server = TestServer.start()) {
+			server.route("/shared").body("shared").header("Cache-Control", "max-age=60");
+			ResponseCache cache = new ResponseCache(100, 1 << 20);
+
+			for (int i = 0; i < 2; i++) assertEquals("shared", request(server, "/shared", cache, null));
+
+			assertEquals(1, server.route("/shared").getRequests());
+			assertEquals(1, cache.getHits());
+		}
+	}
+
+	@Test
+	void privateResponsesAreNotStored() throws IOException {
+		try (TestServer server = TestServer.start()) {
+			server.route("/private").body("mine").header("Cache-Control", "private, max-age=60");
+			ResponseCache cache = new ResponseCache(100, 1 << 20);
+
+			request(server, "/private", cache, null);
+			request(server, "/private", cache, null);
+
+			assertEquals(2, server.route("/private").getRequests());
+			assertEquals(0, cache.size());
+		}
+	}
+
+	@Test
+	void authorizedResponsesOnlyIfPublic() throws IOException {
+		try (TestServer server = TestServer.start()) {
+			server.route("/account").body("account").header("Cache-Control", "max-age=60");
+			server.route("/catalog").body("catalog").header("Cache-Control", "public, max-age=60");
+			server.route("/shared-age").body("shared-age").header("Cache-Control", "s-maxage=60");
+			ResponseCache cache = new ResponseCache(100, 1 << 20);
+
+			request(server, "/account", cache, "Bearer alice");
+			request(server, "/account", cache, "Bearer bob");
+			assertEquals(2, server.route("/account").getRequests(), "Bob must not get the response of Alice.");
+
+			request(server, "/catalog", cache, "Bearer alice");
+			request(server, "/catalog", cache, "Bearer bob");
+			assertEquals(1, server.route("/catalog").getRequests());
+
+			request(server, "/shared-age", cache, "Bearer alice");
+			request(server, "/shared-age", cache, "Bearer bob");
+			assertEquals(1, server.route("/shared-age").getRequests(), "s-maxage makes it fresh for shared caches.");
+		}
+	}
+
+	private static String request(TestServer server, String path, ResponseCache cache, String authorization) {
+		GetWebConnection connection = Web.url(server.url(path)).cache(cache);
+		if (authorization != null) connection.addHeader("Authorization", authorization);
+
+		return connection.request(Map.of()).completion().response();
+	}
+
+}
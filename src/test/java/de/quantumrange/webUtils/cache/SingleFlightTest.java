@@ -0,0 +1,86 @@
+package de.quantumrange.webUtils.cache;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.connections.impl.GetWebConnection;
+import de.quantumrange.webUtils.models.WebResult;
+import de.quantumrange.webUtils.server.TestServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+	@Test
+	void concurrentIdenticalRequestsShareOneRequest() throws Exception {
+		try (TestServer server = TestServer.start()) {
+			server.route("/shared").latency(Duration.ofMillis(300)).body("shared body")
+					.header("Content-Type", "text/plain; charset=UTF-8");
+			long coalesced = GetWebConnection.getFlights().getCoalesced();
+			int count = 20;
+
+			List<CompletableFuture<WebResult<String>>> results = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				results.add(Web.url(server.url("/shared?id=1")).singleFlight(true).requestAsync(Map.of()));
+			}
+			CompletableFuture<WebResult<byte[]>> bytes = Web.url(server.url("/shared?id=1")).singleFlight(true)
+					.requestAsync(Map.of(), HttpResponse.BodyHandlers.ofByteArray());
+
+			for (CompletableFuture<WebResult<String>> result : results) {
+				WebResult<String> done = result.get(10, TimeUnit.SECONDS);
+				assertEquals(200, done.responseCode());
+				assertEquals("shared body", done.response());
+			}
+			assertEquals("shared body", new String(bytes.get(10, TimeUnit.SECONDS).response(), StandardCharsets.UTF_8),
+					"Every request reads the body with its own handler.");
+
+			assertEquals(1, server.route("/shared").getRequests(), "Only one request reached the server.");
+			assertEquals(count, GetWebConnection.getFlights().getCoalesced() - coalesced);
+			assertEquals(0, GetWebConnection.getFlights().getInFlight());
+		}
+	}
+
+	@Test
+	void differentRequestsAreNotShared() throws Exception {
+		try (TestServer server = TestServer.start()) {
+			server.route("/shared").latency(Duration.ofMillis(100));
+
+			CompletableFuture<WebResult<String>> first = Web.url(server.url("/shared?id=1")).singleFlight(true)
+					.requestAsync(Map.of());
+			CompletableFuture<WebResult<String>> other = Web.url(server.url("/shared?id=2")).singleFlight(true)
+					.requestAsync(Map.of());
+			GetWebConnection accept = Web.url(server.url("/shared?id=1")).singleFlight(true);
+			accept.addHeader("Accept", "text/plain");
+			CompletableFuture<WebResult<String>> header = accept.requestAsync(Map.of());
+			CompletableFuture<WebResult<String>> off = Web.url(server.url("/shared?id=1")).requestAsync(Map.of());
+
+			for (CompletableFuture<WebResult<String>> result : List.of(first, other, header, off)) {
+				assertEquals("ok", result.get(10, TimeUnit.SECONDS).response());
+			}
+			assertEquals(4, server.route("/shared").getRequests());
+		}
+	}
+
+	@Test
+	void laterRequestsStartAgain() throws IOException {
+		try (TestServer server = TestServer.start()) {
+			server.route("/shared");
+
+			for (int i = 0; i < 3; i++) {
+				assertEquals(200, Web.url(server.url("/shared")).singleFlight(true).requestAsync(Map.of()).join()
+						.responseCode());
+			}
+			assertEquals(3, server.route("/shared").getRequests(), "Only requests in flight are shared.");
+		}
+	}
+
+}
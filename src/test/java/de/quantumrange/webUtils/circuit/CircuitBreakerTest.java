@@ -0,0 +1,144 @@
+package de.quantumrange.webUtils.circuit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static de.quantumrange.webUtils.circuit.CircuitBreaker.State.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	void opensAndRecovers() throws InterruptedException {
+		List<String> transitions = Collections.synchronizedList(new ArrayList<>());
+		CircuitBreaker breaker = new CircuitBreaker("example.com", CircuitBreakerConfig.builder()
+				.window(4, 4)
+				.failureRateThreshold(.5)
+				.openDuration(Duration.ofMillis(200))
+				.halfOpenCalls(2)
+				.build(), List.of((host, from, to) -> transitions.add(from + "->" + to)));
+
+		for (boolean failure : new boolean[] {false, false, true}) {
+			assertTrue(breaker.tryAcquire());
+			breaker.onResult(failure, FAST);
+		}
+		assertEquals(CLOSED, breaker.getState(), "Less than the minimum calls.");
+
+		assertTrue(breaker.tryAcquire());
+		breaker.onResult(true, FAST);
+		assertEquals(OPEN, breaker.getState());
+		assertEquals(.5, breaker.getFailureRate());
+
+		assertFalse(breaker.tryAcquire());
+		assertFalse(breaker.tryAcquire());
+		assertEquals(2, breaker.getRejected());
+
+		Thread.sleep(250);
+		assertTrue(breaker.tryAcquire(), "The open duration is over.");
+		assertEquals(HALF_OPEN, breaker.getState());
+		assertTrue(breaker.tryAcquire());
+		assertFalse(breaker.tryAcquire(), "Only the half-open calls are let through.");
+
+		breaker.onResult(false, FAST);
+		assertEquals(HALF_OPEN, breaker.getState());
+		breaker.onResult(false, FAST);
+		assertEquals(CLOSED, breaker.getState());
+		assertEquals(0.0, breaker.getFailureRate(), "The window starts again.");
+
+		assertEquals(List.of("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED"), transitions);
+		assertEquals(3, breaker.getTransitions());
+	}
+
+	@Test
+	void halfOpenFailureOpensAgain() throws InterruptedException {
+		CircuitBreaker breaker = breaker(CircuitBreakerConfig.builder()
+				.window(1, 1)
+				.openDuration(Duration.ofMillis(100))
+				.halfOpenCalls(1)
+				.build());
+
+		assertTrue(breaker.tryAcquire());
+		breaker.onResult(true, FAST);
+		assertEquals(OPEN, breaker.getState());
+
+		Thread.sleep(150);
+		assertTrue(breaker.tryAcquire());
+		breaker.release();
+		assertTrue(breaker.tryAcquire(), "A released test call can be used again.");
+		breaker.onResult(true, FAST);
+
+		assertEquals(OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquire(), "The open duration starts again.");
+
+		breaker.reset();
+		assertEquals(CLOSED, breaker.getState());
+		assertTrue(breaker.tryAcquire());
+	}
+
+	@Test
+	void slowCalls() {
+		CircuitBreaker breaker = breaker(CircuitBreakerConfig.builder()
+				.window(4, 2)
+				.slowCalls(Duration.ofMillis(100), .75)
+				.build());
+		long slow = TimeUnit.MILLISECONDS.toNanos(100);
+
+		breaker.tryAcquire();
+		breaker.onResult(false, slow);
+		breaker.tryAcquire();
+		breaker.onResult(false, FAST);
+		breaker.tryAcquire();
+		breaker.onResult(false, slow);
+		assertEquals(CLOSED, breaker.getState());
+		assertEquals(2.0 / 3, breaker.getSlowCallRate(), 1e-9);
+		assertEquals(0.0, breaker.getFailureRate(), "Slow calls are no failures.");
+
+		breaker.tryAcquire();
+		breaker.onResult(false, slow);
+		assertEquals(OPEN, breaker.getState());
+	}
+
+	@Test
+	void windowSlides() {
+		CircuitBreaker breaker = breaker(CircuitBreakerConfig.builder()
+				.window(4, 4)
+				.failureRateThreshold(.75)
+				.build());
+
+		for (boolean failure : new boolean[] {true, true, false, false, false, false, true, true}) {
+			breaker.tryAcquire();
+			breaker.onResult(failure, FAST);
+			assertEquals(CLOSED, breaker.getState(), "At most 2 of the last 4 requests failed.");
+		}
+		assertEquals(.5, breaker.getFailureRate());
+
+		breaker.tryAcquire();
+		breaker.onResult(true, FAST);
+		assertEquals(OPEN, breaker.getState());
+	}
+
+	@Test
+	void resultsAfterOpeningAreIgnored() {
+		CircuitBreaker breaker = breaker(CircuitBreakerConfig.builder().window(1, 1).build());
+
+		assertTrue(breaker.tryAcquire());
+		assertTrue(breaker.tryAcquire());
+		breaker.onResult(true, FAST);
+		breaker.onResult(false, FAST);
+
+		assertEquals(OPEN, breaker.getState());
+		assertEquals(1, breaker.getTransitions());
+	}
+
+	private static CircuitBreaker breaker(CircuitBreakerConfig config) {
+		return new CircuitBreaker("example.com", config, List.of());
+	}
+
+}
@@ -0,0 +1,147 @@
+package de.quantumrange.webUtils.circuit;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.models.WebResult;
+import de.quantumrange.webUtils.ratelimit.RateLimiter;
+import de.quantumrange.webUtils.retry.RetryPolicy;
+import de.quantumrange.webUtils.server.TestServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostGuardTest {
+
+	@Test
+	void bulkheadRejectsAndReleases() throws RejectedRequestException {
+		HostGuard guard = new HostGuard();
+		guard.setBulkhead("example.com", 2);
+
+		HostGuard.Permit first = guard.acquire("example.com");
+		HostGuard.Permit second = guard.acquire("example.com");
+		RejectedRequestException rejected = assertThrows(RejectedRequestException.class,
+				() -> guard.acquire("example.com"));
+		assertEquals(WebResult.BULKHEAD_FULL, rejected.getResponseCode());
+		assertEquals("example.com", rejected.getHost());
+
+		Bulkhead bulkhead = guard.getBulkhead("example.com");
+		assertEquals(2, bulkhead.getActive());
+		assertEquals(1, bulkhead.getRejected());
+
+		first.complete(200);
+		first.failure();
+		first.cancel();
+		assertEquals(1, bulkhead.getActive(), "Only the first call gives the place back.");
+
+		second.cancel();
+		assertEquals(0, bulkhead.getActive());
+
+		assertNotNull(guard.acquire("other.example.com"), "Other hosts are not limited.");
+		assertNull(guard.getBulkhead("other.example.com"));
+	}
+
+	@Test
+	void breakerRejectsWithCircuitOpen() throws RejectedRequestException {
+		HostGuard guard = new HostGuard();
+		guard.setBreaker("example.com", CircuitBreakerConfig.builder().window(4, 4).build());
+
+		guard.acquire("example.com").complete(404);
+		guard.acquire("example.com").complete(200);
+		assertEquals(CircuitBreaker.State.CLOSED, guard.getBreaker("example.com").getState(), "404 is no failure.");
+
+		guard.acquire("example.com").complete(503);
+		guard.acquire("example.com").failure();
+		assertEquals(CircuitBreaker.State.OPEN, guard.getBreaker("example.com").getState());
+
+		RejectedRequestException rejected = assertThrows(RejectedRequestException.class,
+				() -> guard.acquire("example.com"));
+		assertEquals(WebResult.CIRCUIT_OPEN, rejected.getResponseCode());
+	}
+
+	@Test
+	void fullBulkheadGivesTheTestCallBack() throws RejectedRequestException {
+		HostGuard guard = new HostGuard();
+		guard.setBreaker("example.com", CircuitBreakerConfig.builder().window(1, 1)
+				.openDuration(Duration.ZERO).halfOpenCalls(2).build());
+		guard.setBulkhead("example.com", 1);
+
+		guard.acquire("example.com").failure();
+		HostGuard.Permit blocking = guard.acquire("example.com");
+		assertEquals(CircuitBreaker.State.HALF_OPEN, guard.getBreaker("example.com").getState());
+
+		RejectedRequestException rejected = assertThrows(RejectedRequestException.class,
+				() -> guard.acquire("example.com"));
+		assertEquals(WebResult.BULKHEAD_FULL, rejected.getResponseCode(), "The breaker had a test call left.");
+
+		blocking.complete(200);
+		guard.acquire("example.com").complete(200);
+		assertEquals(CircuitBreaker.State.CLOSED, guard.getBreaker("example.com").getState(),
+				"The test call of the rejected request was given back.");
+	}
+
+	@Test
+	void waitingForTheRateLimiterHoldsNoPlace() throws IOException, InterruptedException {
+		HostGuard guard = new HostGuard();
+		guard.setBulkhead("127.0.0.1", 1);
+		RateLimiter limiter = new RateLimiter();
+		limiter.setHostLimit("127.0.0.1", 5, 1);
+
+		try (TestServer server = TestServer.start()) {
+			server.route("/ok");
+
+			List<CompletableFuture<WebResult<String>>> results = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				results.add(Web.url(server.url("/ok")).guard(guard).limiter(limiter).requestAsync(Map.of()));
+			}
+			for (CompletableFuture<WebResult<String>> result : results) assertEquals(200, result.join().responseCode());
+
+			List<Thread> threads = new ArrayList<>();
+			List<Integer> codes = Collections.synchronizedList(new ArrayList<>());
+			for (int i = 0; i < 3; i++) {
+				threads.add(Thread.ofVirtual().start(() -> codes.add(Web.url(server.url("/ok")).guard(guard)
+						.limiter(limiter).request(Map.of()).completion().responseCode())));
+			}
+			for (Thread thread : threads) thread.join();
+
+			assertEquals(List.of(200, 200, 200), codes);
+			assertEquals(0, guard.getBulkhead("127.0.0.1").getRejected(), "Only the dispatched requests count.");
+			assertEquals(6, server.route("/ok").getRequests());
+		}
+	}
+
+	@Test
+	void failedRequestsGiveThePermitBack() throws IOException {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		HostGuard guard = new HostGuard();
+		guard.setBulkhead("127.0.0.1", 1);
+
+		for (int i = 0; i < 3; i++) {
+			WebResult<String> result = Web.url(URI.create("http://127.0.0.1:" + port + "/").toURL())
+					.guard(guard).retry(RetryPolicy.NONE).request(Map.of()).completion();
+			assertNotEquals(WebResult.BULKHEAD_FULL, result.responseCode());
+		}
+		assertEquals(0, guard.getBulkhead("127.0.0.1").getActive());
+
+		try (TestServer server = TestServer.start()) {
+			server.route("/ok");
+			for (int i = 0; i < 3; i++) {
+				assertEquals(200, Web.url(server.url("/ok")).guard(guard).requestAsync(Map.of()).join().responseCode());
+			}
+			assertEquals(0, guard.getBulkhead("127.0.0.1").getActive());
+			assertEquals(0, guard.getBulkhead("127.0.0.1").getRejected());
+		}
+	}
+
+}
@@ -0,0 +1,260 @@
+package de.quantumrange.webUtils.compression;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InflatingSubscriberTest {
+
+	private static final byte[] TEXT = "The quick brown fox jumps over the lazy dog. ".repeat(2000)
+			.getBytes(StandardCharsets.UTF_8);
+
+	@Test
+	void gzipInAnySplit() throws Exception {
+		byte[] body = Compression.gzip(TEXT);
+
+		for (int split : new int[] {1, 3, 10, 11, 4096, body.length}) {
+			assertArrayEquals(TEXT, decode(body, true, split));
+		}
+	}
+
+	@Test
+	void gzipHeaderFields() throws Exception {
+		byte[] deflated = deflate(TEXT, true);
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		// FHCRC, FEXTRA, FNAME and FCOMMENT are skipped.
+		body.writeBytes(new byte[] {0x1F, (byte) 0x8B, 8, 2 | 4 | 8 | 16, 0, 0, 0, 0, 0, (byte) 0xFF});
+		body.writeBytes(new byte[] {3, 0, 'a', 'b', 'c'});
+		body.writeBytes("name.txt\0".getBytes(StandardCharsets.ISO_8859_1));
+		body.writeBytes("comment\0".getBytes(StandardCharsets.ISO_8859_1));
+		body.writeBytes(new byte[] {0x12, 0x34});
+		body.writeBytes(deflated);
+		body.writeBytes(trailer(TEXT));
+
+		assertArrayEquals(TEXT, decode(body.toByteArray(), true, 1));
+		assertArrayEquals(TEXT, decode(body.toByteArray(), true, 7));
+	}
+
+	@Test
+	void multipleMembers() throws Exception {
+		byte[] first = "first member, ".getBytes(StandardCharsets.UTF_8);
+		byte[] body = concat(Compression.gzip(first), Compression.gzip(TEXT), Compression.gzip(new byte[0]));
+
+		for (int split : new int[] {1, 13, body.length}) {
+			assertArrayEquals(concat(first, TEXT), decode(body, true, split));
+		}
+
+		byte[] garbage = concat(Compression.gzip(TEXT), "trailing garbage".getBytes(StandardCharsets.UTF_8));
+		assertArrayEquals(TEXT, decode(garbage, true, 5), "Bytes after a complete member are ignored.");
+	}
+
+	@Test
+	void wrongTrailer() {
+		byte[] body = Compression.gzip(TEXT);
+
+		byte[] crc = body.clone();
+		crc[crc.length - 8] ^= 1;
+		assertEquals("The CRC of the gzip body is wrong.", failure(crc, true).getMessage());
+
+		byte[] size = body.clone();
+		size[size.length - 1] ^= 1;
+		assertEquals("The size of the gzip body is wrong.", failure(size, true).getMessage());
+
+		byte[] second = concat(Compression.gzip(TEXT), body);
+		second[second.length - 8] ^= 1;
+		assertEquals("The CRC of the gzip body is wrong.", failure(second, true).getMessage(),
+				"Every member is checked.");
+	}
+
+	@Test
+	void zlibAndRawDeflate() throws Exception {
+		for (int split : new int[] {1, 2, 3, 100, Integer.MAX_VALUE}) {
+			assertArrayEquals(TEXT, decode(deflate(TEXT, false), false, split), "zlib");
+			assertArrayEquals(TEXT, decode(deflate(TEXT, true), false, split), "raw");
+		}
+
+		byte[] zlib = deflate(TEXT, false);
+		zlib[zlib.length - 1] ^= 1;
+		assertTrue(failure(zlib, false) instanceof ZipException, "The adler32 of zlib is checked.");
+	}
+
+	@Test
+	void truncatedBody() {
+		byte[] gzip = Compression.gzip(TEXT);
+
+		for (int length : new int[] {1, 5, 10, gzip.length / 2, gzip.length - 8, gzip.length - 1}) {
+			byte[] truncated = Arrays.copyOf(gzip, length);
+			assertEquals("The compressed body ended unexpectedly.", failure(truncated, true).getMessage(),
+					"Truncated to " + length);
+		}
+
+		byte[] deflate = deflate(TEXT, false);
+		assertEquals("The compressed body ended unexpectedly.",
+				failure(Arrays.copyOf(deflate, deflate.length / 2), false).getMessage());
+	}
+
+	@Test
+	void notCompressed() {
+		assertEquals("Not in gzip format.", failure(TEXT, true).getMessage());
+		assertTrue(failure(TEXT, false) instanceof ZipException);
+	}
+
+	@Test
+	void emptyBody() throws Exception {
+		assertArrayEquals(new byte[0], decode(new byte[0], true, 1), "A HEAD response has no body.");
+		assertArrayEquals(new byte[0], decode(new byte[0], false, 1));
+	}
+
+	@Test
+	void requestsMoreWhenNothingWasDecoded() {
+		Subscription subscription = new Subscription();
+		InflatingSubscriber<byte[]> subscriber = new InflatingSubscriber<>(HttpResponse.BodySubscribers.ofByteArray(),
+				true);
+		subscriber.onSubscribe(subscription);
+		long requested = subscription.requested.get();
+
+		subscriber.onNext(List.of(ByteBuffer.wrap(Compression.gzip(TEXT), 0, 10)));
+		assertEquals(requested + 1, subscription.requested.get(), "The header alone produced no output.");
+
+		subscriber.onNext(List.of(ByteBuffer.wrap(new byte[] {(byte) 0xFF})));
+		assertTrue(subscription.cancelled.get(), "The block type 3 is invalid.");
+	}
+
+	@Test
+	void decodingFollowsTheContentEncoding() {
+		HttpResponse.BodyHandler<byte[]> handler = Compression.decoding(HttpResponse.BodyHandlers.ofByteArray());
+
+		for (String encoding : new String[] {"gzip", "x-gzip", " GZIP ", "deflate"}) {
+			assertTrue(handler.apply(info(encoding)) instanceof InflatingSubscriber, encoding);
+		}
+		for (String encoding : new String[] {null, "identity", "br"}) {
+			assertFalse(handler.apply(info(encoding)) instanceof InflatingSubscriber, String.valueOf(encoding));
+		}
+	}
+
+	private static HttpResponse.ResponseInfo info(String encoding) {
+		HttpHeaders headers = HttpHeaders.of(encoding == null ? Map.of() : Map.of("Content-Encoding", List.of(encoding)),
+				(name, value) -> true);
+
+		return new HttpResponse.ResponseInfo() {
+			@Override
+			public int statusCode() {
+				return 200;
+			}
+
+			@Override
+			public HttpHeaders headers() {
+				return headers;
+			}
+
+			@Override
+			public HttpClient.Version version() {
+				return HttpClient.Version.HTTP_1_1;
+			}
+		};
+	}
+
+	private static byte[] decode(byte[] body, boolean gzip, int split) throws Exception {
+		InflatingSubscriber<byte[]> subscriber = subscribe(body, gzip, split);
+		return subscriber.getBody().toCompletableFuture().get();
+	}
+
+	private static Throwable failure(byte[] body, boolean gzip) {
+		InflatingSubscriber<byte[]> subscriber = subscribe(body, gzip, 7);
+		ExecutionException e = assertThrows(ExecutionException.class,
+				() -> subscriber.getBody().toCompletableFuture().get());
+		assertTrue(e.getCause() instanceof ZipException, "Failed with " + e.getCause());
+		return e.getCause();
+	}
+
+	/**
+	 * Sends the body in buffers of <code>split</code> bytes, two buffers in every list.
+	 */
+	private static InflatingSubscriber<byte[]> subscribe(byte[] body, boolean gzip, int split) {
+		Subscription subscription = new Subscription();
+		InflatingSubscriber<byte[]> subscriber = new InflatingSubscriber<>(HttpResponse.BodySubscribers.ofByteArray(),
+				gzip);
+		subscriber.onSubscribe(subscription);
+
+		List<ByteBuffer> item = new ArrayList<>();
+		for (int offset = 0; offset < body.length && !subscription.cancelled.get(); ) {
+			int length = (int) Math.min(split, (long) body.length - offset);
+			item.add(ByteBuffer.wrap(body, offset, length));
+			offset += length;
+
+			if (item.size() == 2 || offset == body.length) {
+				subscriber.onNext(item);
+				item = new ArrayList<>();
+			}
+		}
+		subscriber.onComplete();
+
+		return subscriber;
+	}
+
+	private static byte[] deflate(byte[] data, boolean raw) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		try (DeflaterOutputStream deflater = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION,
+				raw))) {
+			deflater.write(data);
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+
+		return out.toByteArray();
+	}
+
+	private static byte[] trailer(byte[] data) {
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+		trailer.putInt((int) crc.getValue()).putInt(data.length);
+		return trailer.array();
+	}
+
+	private static byte[] concat(byte[]... parts) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (byte[] part : parts) out.writeBytes(part);
+		return out.toByteArray();
+	}
+
+	private static final class Subscription implements Flow.Subscription {
+
+		private final AtomicLong requested = new AtomicLong();
+		private final AtomicBoolean cancelled = new AtomicBoolean();
+
+		@Override
+		public void request(long n) {
+			requested.addAndGet(n);
+		}
+
+		@Override
+		public void cancel() {
+			cancelled.set(true);
+		}
+
+	}
+
+}
@@ -0,0 +1,150 @@
+package de.quantumrange.webUtils.connections;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.connections.impl.DataWebConnection;
+import de.quantumrange.webUtils.models.WebResult;
+import de.quantumrange.webUtils.retry.RetryPolicy;
+import de.quantumrange.webUtils.server.TestServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataWebConnectionTest {
+
+	private static final String BODY = "{\"name\":\"web-utils\",\"values\":[1,2,3]}";
+
+	private static TestServer server;
+
+	@BeforeAll
+	static void start() throws IOException {
+		server = TestServer.start();
+		server.route("/echo").echo();
+	}
+
+	@AfterAll
+	static void stop() {
+		server.close();
+	}
+
+	@Test
+	void bytes() {
+		WebResult<String> result = post().request(BODY.getBytes(StandardCharsets.UTF_8)).completion();
+
+		assertEcho(result, String.valueOf(BODY.length()));
+	}
+
+	@Test
+	void heapAndDirectBuffers() {
+		byte[] bytes = ("--" + BODY + "--").getBytes(StandardCharsets.UTF_8);
+		ByteBuffer heap = ByteBuffer.wrap(bytes, 2, BODY.length());
+		assertEcho(post().request(heap).completion(), String.valueOf(BODY.length()));
+		assertEquals(2, heap.position(), "The position of the buffer is not changed.");
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).position(2).limit(2 + BODY.length());
+		assertEcho(post().request(direct).completion(), String.valueOf(BODY.length()));
+		assertEquals(2, direct.position());
+	}
+
+	@Test
+	void file() throws IOException {
+		Path file = Files.createTempFile("web-utils", ".json");
+		try {
+			Files.writeString(file, BODY);
+
+			assertEcho(post().request(file).completion(), String.valueOf(BODY.length()));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void stream() {
+		WebResult<String> result = post()
+				.request(() -> new ByteArrayInputStream(BODY.getBytes(StandardCharsets.UTF_8)))
+				.completion();
+
+		assertEcho(result, null);
+		assertEquals("chunked", server.route("/echo").getLastRequest().headers().getFirst("Transfer-Encoding"),
+				"The length of a stream is unknown.");
+	}
+
+	@Test
+	void publisher() {
+		WebResult<String> result = post().request(HttpRequest.BodyPublishers.ofString(BODY)).completion();
+
+		assertEcho(result, String.valueOf(BODY.length()));
+	}
+
+	@Test
+	void gzipThreshold() throws IOException {
+		assertEcho(post().gzipThreshold(BODY.length() + 1).request(BODY).completion(), String.valueOf(BODY.length()));
+		assertEcho(post().gzipThreshold(BODY.length() + 1).request(BODY.getBytes(StandardCharsets.UTF_8))
+				.completion(), String.valueOf(BODY.length()));
+
+		String large = BODY.repeat(100);
+		for (int i = 0; i < 2; i++) {
+			DataWebConnection connection = post().gzipThreshold(BODY.length());
+			WebResult<String> result = i == 0 ? connection.request(large).completion() :
+					connection.request(large.getBytes(StandardCharsets.UTF_8)).completion();
+			TestServer.Request request = server.route("/echo").getLastRequest();
+
+			assertEquals(200, result.responseCode());
+			assertEquals("gzip", request.headers().getFirst("Content-Encoding"));
+			assertEquals(String.valueOf(request.body().length), request.headers().getFirst("Content-Length"));
+			assertTrue(request.body().length < large.length(), "The body was compressed.");
+			try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(request.body()))) {
+				assertEquals(large, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+			}
+		}
+	}
+
+	@Test
+	void gzipThresholdCountsBytes() throws IOException {
+		String umlauts = "\u00e4".repeat(40);
+		server.route("/retried").echo().status(503, 200);
+
+		WebResult<String> result = Web.url(server.url("/retried"), HTTPRequestType.POST).gzipThreshold(60)
+				.retry(RetryPolicy.builder().retryNonIdempotent(true).backoff(Duration.ofMillis(10), Duration.ofMillis(10))
+						.build())
+				.request(umlauts).completion();
+		List<TestServer.Request> received = server.route("/retried").getReceived();
+
+		assertEquals(200, result.responseCode());
+		assertEquals(2, received.size());
+		assertArrayEquals(received.get(0).body(), received.get(1).body(), "A retry sends the same body.");
+		for (TestServer.Request request : received) {
+			assertEquals("gzip", request.headers().getFirst("Content-Encoding"), "80 bytes are above the threshold.");
+			try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(request.body()))) {
+				assertEquals(umlauts, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+			}
+		}
+	}
+
+	private static DataWebConnection post() {
+		return Web.url(server.url("/echo"), HTTPRequestType.POST);
+	}
+
+	private static void assertEcho(WebResult<String> result, String contentLength) {
+		TestServer.Request request = server.route("/echo").getLastRequest();
+
+		assertEquals(200, result.responseCode());
+		assertEquals(BODY, result.response());
+		assertEquals("POST", request.method());
+		assertEquals(contentLength, request.headers().getFirst("Content-Length"));
+		assertNull(request.headers().getFirst("Content-Encoding"), "Small bodies are sent as they are.");
+	}
+
+}
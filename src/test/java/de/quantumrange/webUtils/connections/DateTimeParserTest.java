@@ -0,0 +1,149 @@
+package de.quantumrange.webUtils.connections;
+
+import de.quantumrange.webUtils.Web;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DateTimeParserTest {
+
+	private static final List<String> DATES = List.of("2021-06-10", "2020-02-29", "2021-02-29", "2021-02-30",
+			"2021-04-31", "2000-02-29", "1900-02-29", "2021-12-31", "2021-01-01", "0000-01-01", "0001-01-01",
+			"9999-12-31", "2021-13-01", "2021-00-10", "2021-06-00", "2021-06-32", "2021-6-10", "21-06-10");
+	private static final List<String> TIMES = List.of("12:34", "12:34:56", "00:00:00", "23:59:59", "24:00",
+			"24:00:00", "23:60", "23:59:60", "1:02:03", "12:3", "12:34:5", "12-34-56");
+	private static final List<String> FRACTIONS = List.of("", ".", ".7", ".78", ".789", ".123456", ".123456789",
+			".1234567890", ".x");
+	private static final List<String> OFFSETS = List.of("", "Z", "z", "+02:00", "-02:00", "+00:00", "-00:00",
+			"+14:00", "-18:00", "+18:00", "+19:00", "+02:30", "+02:60", "+02", "-05", "+0230", "-0000", "+2:00",
+			"+02:00:30", "+02:00[Europe/Berlin]", "[UTC]", " ", "UTC");
+
+	@Test
+	void dateTimesMatchFormatter() {
+		int parsed = 0;
+
+		for (String date : DATES) {
+			assertSameDateTime(date);
+
+			for (String separator : List.of("T", " ", "t", "_")) {
+				for (String time : TIMES) {
+					for (String fraction : FRACTIONS) {
+						for (String offset : OFFSETS) {
+							if (assertSameDateTime(date + separator + time + fraction + offset)) parsed++;
+						}
+					}
+				}
+			}
+		}
+
+		assertTrue(parsed > 5_000, "Too few of the values were valid, only " + parsed + " were parsed.");
+	}
+
+	@Test
+	void timesMatchFormatter() {
+		for (String time : TIMES) {
+			for (String fraction : FRACTIONS) {
+				for (String offset : OFFSETS) assertSameTime(time + fraction + offset);
+			}
+		}
+	}
+
+	@Test
+	void randomValuesMatchFormatter() {
+		Random random = new Random(42);
+
+		for (int i = 0; i < 100_000; i++) {
+			String value = String.format("%04d-%02d-%02d%c%02d:%02d:%02d.%09d%s", random.nextInt(10_000),
+					1 + random.nextInt(12), 1 + random.nextInt(31), random.nextBoolean() ? 'T' : ' ',
+					random.nextInt(24), random.nextInt(60), random.nextInt(60), random.nextInt(1_000_000_000),
+					OFFSETS.get(random.nextInt(OFFSETS.size())));
+
+			assertSameDateTime(value);
+			assertSameDateTime(value.substring(0, 19 + random.nextInt(value.length() - 18)));
+			assertSameTime(value.substring(11, 11 + 5 + random.nextInt(value.length() - 15)));
+		}
+	}
+
+	@Test
+	void garbageMatchesFormatter() {
+		Random random = new Random(7);
+		char[] alphabet = "0123456789-:T .Z+".toCharArray();
+
+		for (int i = 0; i < 100_000; i++) {
+			char[] chars = new char[random.nextInt(30)];
+			for (int j = 0; j < chars.length; j++) chars[j] = alphabet[random.nextInt(alphabet.length)];
+
+			assertSameDateTime(new String(chars));
+			assertSameTime(new String(chars));
+		}
+	}
+
+	@Test
+	void charArrayWithOffset() {
+		char[] chars = "[\"2021-06-10T12:34:56.789+02:00\", \"12:34:56Z\"]".toCharArray();
+
+		assertEquals(LocalDateTime.of(2021, 6, 10, 10, 34, 56, 789_000_000),
+				DateTimeParser.parseDateTime(chars, 2, 29));
+		assertEquals(LocalTime.of(12, 34, 56), DateTimeParser.parseTime(chars, 35, 9));
+		assertThrows(DateTimeParseException.class, () -> DateTimeParser.parseDateTime(chars, 2, 30));
+	}
+
+	@Test
+	void jsonDeserializers() throws Exception {
+		assertEquals(LocalDateTime.of(2021, 6, 10, 10, 34, 56),
+				Web.CODECS.reader(LocalDateTime.class).readValue("\"2021-06-10 12:34:56+02\""));
+		assertEquals(LocalTime.of(10, 34, 56, 789_000_000),
+				Web.CODECS.reader(LocalTime.class).readValue("\"12:34:56.789+02:00\""));
+	}
+
+	private static boolean assertSameDateTime(String value) {
+		return assertSame(value, DateTimeParser::parseDateTime, DateTimeParser::parseDateTime,
+				text -> ZonedDateTime.from(DateTimeParser.DATE_TIME_FORMATTER.parse(text)).toLocalDateTime());
+	}
+
+	private static boolean assertSameTime(String value) {
+		return assertSame(value, DateTimeParser::parseTime, DateTimeParser::parseTime,
+				text -> ZonedDateTime.from(DateTimeParser.TIME_FORMATTER.parse(text)).toOffsetDateTime().toLocalTime());
+	}
+
+	/**
+	 * Checks that the parser returns the same value as the formatter or fails like it, once with the string and once
+	 * with a char array that has other characters around the value.
+	 *
+	 * @return true if the value could be parsed.
+	 */
+	private static <V> boolean assertSame(String value, Function<String, V> parser, CharParser<V> charParser,
+				Function<String, V> formatter) {
+		char[] quoted = ('"' + value + '"').toCharArray();
+
+		Object expected = result(() -> formatter.apply(value));
+		assertEquals(expected, result(() -> parser.apply(value)), value);
+		assertEquals(expected, result(() -> charParser.parse(quoted, 1, value.length())), value);
+
+		return !(expected instanceof Class<?>);
+	}
+
+	private static Object result(Supplier<?> parse) {
+		try {
+			return parse.get();
+		} catch (RuntimeException e) {
+			return e.getClass();
+		}
+	}
+
+	private interface CharParser<V> {
+
+		V parse(char[] chars, int offset, int length);
+
+	}
+
+}
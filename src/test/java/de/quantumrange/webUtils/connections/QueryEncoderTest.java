@@ -0,0 +1,121 @@
+package de.quantumrange.webUtils.connections;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryEncoderTest {
+
+	private static final List<String> SAMPLES = List.of(
+			"",
+			"GET request test site",
+			"a+b=c&d",
+			"-._~*'()!",
+			"üöä ß",
+			"€ 100",
+			"\u0000\u0001\u000F\u007F",
+			"日本語",
+			"emoji 😀 👍",
+			"/path/with?query#fragment%"
+	);
+
+	@Test
+	void encodeMatchesURLEncoder() {
+		for (String sample : SAMPLES) assertEquals(urlEncoder(sample), QueryEncoder.encode(sample), sample);
+
+		Random random = new Random(42);
+		for (int i = 0; i < 10_000; i++) {
+			String sample = randomString(random);
+			assertEquals(urlEncoder(sample), QueryEncoder.encode(sample), sample);
+		}
+	}
+
+	@Test
+	void encodeRoundTrip() {
+		Random random = new Random(7);
+		for (int i = 0; i < 10_000; i++) {
+			String sample = randomString(random);
+			assertEquals(sample, URLDecoder.decode(QueryEncoder.encode(sample), UTF_8));
+		}
+	}
+
+	@Test
+	void unpairedSurrogate() {
+		assertEquals(urlEncoder("a\uD83Db"), QueryEncoder.encode("a\uD83Db"));
+		assertEquals(urlEncoder("a\uDE00b"), QueryEncoder.encode("a\uDE00b"));
+	}
+
+	@Test
+	void pathSegment() {
+		assertEquals("a%20b%2Fc:d@e", QueryEncoder.encodePathSegment("a b/c:d@e"));
+		assertEquals("%C3%BC", QueryEncoder.encodePathSegment("ü"));
+	}
+
+	@Test
+	void query() {
+		Map<String, Object> params = new LinkedHashMap<>();
+		params.put("q", "a b");
+		params.put("tag", List.of("x", "y&z"));
+		params.put("id", new Integer[]{1, 2});
+		params.put("flag", null);
+		params.put("n", 5);
+
+		assertEquals("q=a%20b&tag=x&tag=y%26z&id=1&id=2&flag&n=5", QueryEncoder.buildQuery(params));
+	}
+
+	@Test
+	void buildUrl() {
+		Map<String, Object> params = new LinkedHashMap<>();
+		params.put("a", "1");
+		params.put("b", "2");
+
+		assertEquals("https://example.com/x?a=1&b=2", QueryEncoder.buildUrl("https://example.com/x", params));
+		assertEquals("https://example.com/x?a=1&b=2", QueryEncoder.buildUrl("https://example.com/x?", params));
+		assertEquals("https://example.com/x?c=3&a=1&b=2", QueryEncoder.buildUrl("https://example.com/x?c=3", params));
+		assertEquals("https://example.com/x?c=3&a=1&b=2", QueryEncoder.buildUrl("https://example.com/x?c=3&", params));
+		assertEquals("https://example.com/x?a=1&b=2#top", QueryEncoder.buildUrl("https://example.com/x#top", params));
+		assertEquals("https://example.com/x", QueryEncoder.buildUrl("https://example.com/x", Map.of()));
+	}
+
+	/**
+	 * {@link URLEncoder} encodes HTML forms, which differ from RFC 3986 only in ' ', '*' and '~'.
+	 */
+	private static String urlEncoder(String text) {
+		return URLEncoder.encode(text, UTF_8)
+				.replace("+", "%20")
+				.replace("*", "%2A")
+				.replace("%7E", "~");
+	}
+
+	private static String randomString(Random random) {
+		char[] chars = new char[random.nextInt(24)];
+
+		for (int i = 0; i < chars.length; i++) {
+			switch (random.nextInt(4)) {
+				case 0 -> chars[i] = (char) random.nextInt(0x80);
+				case 1 -> chars[i] = (char) (0x80 + random.nextInt(0x780));
+				case 2 -> chars[i] = (char) (0x800 + random.nextInt(0xD800 - 0x800));
+				default -> {
+					if (i + 1 < chars.length) {
+						String pair = new String(Character.toChars(0x10000 + random.nextInt(0xFFFFF)));
+						chars[i++] = pair.charAt(0);
+						chars[i] = pair.charAt(1);
+					} else {
+						chars[i] = 'x';
+					}
+				}
+			}
+		}
+
+		return new String(chars);
+	}
+
+}
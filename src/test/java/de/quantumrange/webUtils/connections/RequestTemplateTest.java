@@ -0,0 +1,91 @@
+package de.quantumrange.webUtils.connections;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.connections.impl.DataWebConnection;
+import de.quantumrange.webUtils.connections.impl.GetWebConnection;
+import de.quantumrange.webUtils.models.WebResult;
+import de.quantumrange.webUtils.server.TestServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestTemplateTest {
+
+	private static TestServer server;
+
+	@BeforeAll
+	static void start() throws IOException {
+		server = TestServer.start();
+	}
+
+	@AfterAll
+	static void stop() {
+		server.close();
+	}
+
+	@Test
+	void concurrentRequests() {
+		server.route("/search");
+		GetWebConnection connection = Web.url(server.url("/search"));
+		connection.setUserAgent("TemplateTest/1.0");
+		RequestTemplate<Map<String, ?>> template = connection.compression(true).toTemplate();
+
+		List<CompletableFuture<WebResult<String>>> futures = new ArrayList<>();
+		for (int i = 0; i < 50; i++) futures.add(template.requestAsync(Map.of("q", "value " + i)));
+
+		Set<String> queries = new HashSet<>();
+		for (CompletableFuture<WebResult<String>> future : futures) assertEquals(200, future.join().responseCode());
+		for (var request : server.route("/search").getReceived()) {
+			assertEquals("TemplateTest/1.0", request.headers().getFirst("User-Agent"));
+			assertTrue(request.headers().getFirst("Accept-Encoding").contains("gzip"));
+			queries.add(request.uri().getRawQuery());
+		}
+
+		assertEquals(50, queries.size());
+		assertTrue(queries.contains("q=value%2049"));
+	}
+
+	@Test
+	void connectionChangesDontAffectTemplate() {
+		server.route("/echo").echo();
+		DataWebConnection connection = Web.url(server.url("/echo"), HTTPRequestType.PUT);
+		connection.addHeader("X-Version", "1");
+		RequestTemplate<String> template = connection.toTemplate();
+
+		connection.addHeader("X-Version", "2");
+		connection.addHeader("X-Other", "value");
+		connection.rateID(7);
+
+		WebResult<String> result = template.request("body").completion();
+
+		assertEquals("body", result.response());
+		assertEquals("PUT", server.route("/echo").getLastRequest().method());
+		assertEquals("1", server.route("/echo").getLastRequest().headers().getFirst("X-Version"));
+		assertNull(server.route("/echo").getLastRequest().headers().getFirst("X-Other"));
+		assertEquals(0, template.getRateID());
+		assertEquals(Map.of("X-Version", "1"), template.getHeaders());
+		assertThrows(UnsupportedOperationException.class, () -> template.getHeaders().put("X-Other", "value"));
+	}
+
+	@Test
+	void invalidTemplates() throws Exception {
+		// A URL that is no valid URI can only be created with the deprecated URL constructors.
+		assertThrows(IllegalArgumentException.class, () -> URI.create("http://127.0.0.1/a b").toURL());
+
+		GetWebConnection restricted = Web.url(server.url("/"));
+		restricted.addHeader("Host", "example.com");
+		assertThrows(IllegalArgumentException.class, restricted::toTemplate);
+	}
+
+}
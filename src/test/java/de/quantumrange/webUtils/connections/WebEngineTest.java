@@ -0,0 +1,220 @@
+package de.quantumrange.webUtils.connections;
+
+import de.quantumrange.webUtils.server.TestServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebEngineTest {
+
+	@Test
+	void limitsTheRequestsPerHost() throws Exception {
+		WebEngine engine = engine(2);
+
+		try (TestServer server = TestServer.start(); TestServer other = TestServer.start()) {
+			server.route("/slow").latency(Duration.ofMillis(400));
+			other.route("/fast");
+
+			List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+			for (int i = 0; i < 6; i++) responses.add(engine.sendAsync(request(server, "/slow?i=" + i), ofString()));
+
+			Thread.sleep(200);
+			assertEquals(2, server.route("/slow").getRequests(), "The others wait for a permit.");
+			assertEquals(200, engine.send(request(other, "/fast"), ofString()).statusCode(),
+					"Other hosts have their own permits.");
+
+			for (CompletableFuture<HttpResponse<String>> response : responses) {
+				assertEquals(200, response.get(10, TimeUnit.SECONDS).statusCode());
+			}
+		}
+	}
+
+	@Test
+	void waitingRequestsKeepTheirOrder() throws Exception {
+		WebEngine engine = engine(1);
+
+		try (TestServer server = TestServer.start()) {
+			server.route("/slow").latency(Duration.ofMillis(50));
+
+			List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+			for (int i = 0; i < 6; i++) responses.add(engine.sendAsync(request(server, "/slow?i=" + i), ofString()));
+			for (CompletableFuture<HttpResponse<String>> response : responses) response.get(10, TimeUnit.SECONDS);
+
+			assertEquals(List.of("i=0", "i=1", "i=2", "i=3", "i=4", "i=5"), server.route("/slow").getReceived().stream()
+					.map(request -> request.uri().getQuery())
+					.toList());
+		}
+	}
+
+	@Test
+	void interruptedWaiterGivesUpItsPlace() throws Exception {
+		WebEngine engine = engine(1);
+
+		try (TestServer server = TestServer.start()) {
+			server.route("/slow").latency(Duration.ofMillis(400));
+
+			CompletableFuture<HttpResponse<String>> holder = engine.sendAsync(request(server, "/slow?holder"),
+					ofString());
+			Thread.sleep(100);
+
+			AtomicReference<Throwable> thrown = new AtomicReference<>();
+			Thread waiter = Thread.ofPlatform().start(() -> {
+				try {
+					engine.send(request(server, "/slow?waiter"), ofString());
+				} catch (IOException | InterruptedException | RuntimeException e) {
+					thrown.set(e);
+				}
+			});
+			Thread.sleep(100);
+			CompletableFuture<HttpResponse<String>> next = engine.sendAsync(request(server, "/slow?next"), ofString());
+
+			waiter.interrupt();
+			waiter.join(5000);
+			assertTrue(thrown.get() instanceof InterruptedException, "Thrown: " + thrown.get());
+
+			assertEquals(200, holder.get(10, TimeUnit.SECONDS).statusCode());
+			assertEquals(200, next.get(10, TimeUnit.SECONDS).statusCode(), "The permit skipped the interrupted waiter.");
+			assertEquals(List.of("holder", "next"), server.route("/slow").getReceived().stream()
+					.map(request -> request.uri().getQuery())
+					.toList());
+
+			assertPermits(engine, server, 1);
+		}
+	}
+
+	@Test
+	void interruptsDuringTheHandoverKeepThePermits() throws Exception {
+		WebEngine engine = engine(1);
+
+		try (TestServer server = TestServer.start()) {
+			server.route("/quick").latency(Duration.ofMillis(20));
+
+			for (int i = 0; i < 20; i++) {
+				CompletableFuture<HttpResponse<String>> holder = engine.sendAsync(request(server, "/quick"),
+						ofString());
+				Thread waiter = Thread.ofPlatform().start(() -> {
+					try {
+						engine.send(request(server, "/quick"), ofString());
+					} catch (IOException | InterruptedException ignored) {
+					}
+				});
+
+				// Sometimes the waiter is interrupted while it waits, sometimes right after it got the permit.
+				Thread.sleep(15 + i % 10);
+				waiter.interrupt();
+				waiter.join(5000);
+				holder.get(10, TimeUnit.SECONDS);
+			}
+
+			assertPermits(engine, server, 1);
+		}
+	}
+
+	@Test
+	void unlimitedWithoutMaxConnections() throws Exception {
+		WebEngine engine = engine(0);
+
+		try (TestServer server = TestServer.start()) {
+			server.route("/slow").latency(Duration.ofMillis(400));
+
+			List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+			for (int i = 0; i < 4; i++) responses.add(engine.sendAsync(request(server, "/slow"), ofString()));
+
+			Thread.sleep(200);
+			assertEquals(4, server.route("/slow").getRequests());
+			for (CompletableFuture<HttpResponse<String>> response : responses) response.get(10, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	void requestTimeout() throws Exception {
+		WebEngine engine = WebEngine.builder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.requestTimeout(Duration.ofMillis(500))
+				.maxConnectionsPerHost(1)
+				.build();
+
+		try (TestServer server = TestServer.start()) {
+			server.route("/slow").latency(Duration.ofSeconds(2));
+			server.route("/ok");
+
+			assertThrows(HttpTimeoutException.class,
+					() -> engine.send(request(server, "/slow"), ofString()));
+			assertEquals(200, engine.sendAsync(request(server, "/ok"), ofString()).get(5, TimeUnit.SECONDS).statusCode(),
+					"The permit of the timed out request was given back.");
+		}
+	}
+
+	@Test
+	void closeWaitsForTheRequestsAndShutsDown() throws Exception {
+		WebEngine engine = WebEngine.builder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.virtualThreads(true)
+				.build();
+
+		try (TestServer server = TestServer.start()) {
+			server.route("/slow").latency(Duration.ofMillis(200));
+
+			CompletableFuture<HttpResponse<String>> response = engine.sendAsync(request(server, "/slow"), ofString());
+			engine.close();
+			assertTrue(response.isDone(), "The request was finished before the engine closed.");
+			assertEquals(200, response.get().statusCode());
+
+			CompletableFuture<HttpResponse<String>> rejected = engine.sendAsync(request(server, "/slow"), ofString());
+			ExecutionException thrown = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+			assertTrue(thrown.getCause() instanceof RejectedExecutionException);
+			assertThrows(IOException.class, () -> engine.send(request(server, "/slow"), ofString()));
+		}
+	}
+
+	/**
+	 * Sends one request more than the expected permits and checks that exactly the permits were sent at once.
+	 */
+	private static void assertPermits(WebEngine engine, TestServer server, int permits) throws Exception {
+		server.route("/count").latency(Duration.ofMillis(400));
+
+		List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+		for (int i = 0; i <= permits; i++) responses.add(engine.sendAsync(request(server, "/count"), ofString()));
+
+		Thread.sleep(200);
+		assertEquals(permits, server.route("/count").getRequests(), "Requests sent at once.");
+		for (CompletableFuture<HttpResponse<String>> response : responses) {
+			assertEquals(200, response.get(10, TimeUnit.SECONDS).statusCode());
+		}
+	}
+
+	private static WebEngine engine(int maxConnectionsPerHost) {
+		return WebEngine.builder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.maxConnectionsPerHost(maxConnectionsPerHost)
+				.build();
+	}
+
+	private static HttpRequest.Builder request(TestServer server, String path) {
+		try {
+			return HttpRequest.newBuilder(server.url(path).toURI());
+		} catch (URISyntaxException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	private static HttpResponse.BodyHandler<String> ofString() {
+		return HttpResponse.BodyHandlers.ofString();
+	}
+
+}
@@ -0,0 +1,118 @@
+package de.quantumrange.webUtils.json;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.connections.HTTPRequestType;
+import de.quantumrange.webUtils.connections.WebConnection;
+import de.quantumrange.webUtils.models.WebResult;
+import de.quantumrange.webUtils.server.TestServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonCodecsTest {
+
+	private static final TypeReference<List<Item>> ITEMS = new TypeReference<>() {};
+
+	@Test
+	void readersAndWritersAreCached() {
+		JsonCodecs codecs = new JsonCodecs();
+
+		assertSame(codecs.reader(Item.class), codecs.reader(Item.class));
+		assertSame(codecs.reader(Item.class), codecs.reader(new TypeReference<Item>() {}),
+				"A class and a TypeReference of it are the same type.");
+		assertSame(codecs.reader(ITEMS), codecs.reader(new TypeReference<List<Item>>() {}));
+		assertSame(codecs.writer(Item.class), codecs.writer(Item.class));
+		assertSame(codecs.writer(ITEMS), codecs.writer(ITEMS));
+
+		JavaType type = codecs.getMapper().getTypeFactory().constructCollectionType(List.class, Item.class);
+		assertSame(codecs.reader(type), codecs.reader(type));
+	}
+
+	@Test
+	void registeredMapperReadsAndWritesItsType() throws IOException {
+		JsonCodecs codecs = new JsonCodecs();
+		ObjectMapper snakeCase = snakeCase();
+		codecs.register(Item.class, snakeCase);
+
+		assertSame(snakeCase, codecs.getMapper(Item.class));
+		assertSame(codecs.getMapper(), codecs.getMapper(String.class));
+		assertEquals("first", codecs.reader(Item.class).<Item>readValue("{\"item_name\":\"first\"}").itemName);
+		assertEquals("{\"item_name\":\"first\"}", codecs.writer(Item.class).writeValueAsString(new Item("first")));
+	}
+
+	@Test
+	void genericTypesUseTheMapperOfTheirRawClass() throws IOException {
+		JsonCodecs codecs = new JsonCodecs();
+		codecs.register(Item.class, snakeCase());
+
+		assertSame(codecs.getMapper(), codecs.getMapper(ITEMS.getType()));
+		List<Item> items = codecs.reader(ITEMS).readValue("[{\"itemName\":\"first\"}]");
+		assertEquals("first", items.get(0).itemName);
+
+		ObjectMapper lists = snakeCase();
+		codecs.register(List.class, lists);
+		assertSame(lists, codecs.getMapper(ITEMS.getType()));
+		items = codecs.reader(ITEMS).readValue("[{\"item_name\":\"second\"}]");
+		assertEquals("second", items.get(0).itemName);
+	}
+
+	@Test
+	void registerReplacesCachedReaders() throws IOException {
+		JsonCodecs codecs = new JsonCodecs();
+		assertEquals("first", codecs.reader(Item.class).<Item>readValue("{\"itemName\":\"first\"}").itemName);
+		String written = codecs.writer(Item.class).writeValueAsString(new Item("first"));
+		assertEquals("{\"itemName\":\"first\"}", written);
+
+		codecs.register(Item.class, snakeCase());
+		assertEquals("second", codecs.reader(Item.class).<Item>readValue("{\"item_name\":\"second\"}").itemName);
+		assertEquals("{\"item_name\":\"second\"}", codecs.writer(Item.class).writeValueAsString(new Item("second")));
+	}
+
+	@Test
+	void connectionsUseTheirCodecs() throws IOException {
+		JsonCodecs codecs = new JsonCodecs();
+		codecs.register(Item.class, snakeCase());
+
+		try (TestServer server = TestServer.start()) {
+			server.route("/echo").echo();
+
+			WebResult<String> sent = Web.url(server.url("/echo"), HTTPRequestType.POST).codecs(codecs)
+					.requestWithObject(new Item("sent")).completion();
+			assertEquals("{\"item_name\":\"sent\"}", sent.response());
+
+			server.route("/item").body("{\"item_name\":\"received\"}");
+			WebResult<Item> received = Web.url(server.url("/item")).codecs(codecs)
+					.requestJson(Map.of(), Item.class).completion();
+			assertEquals("received", received.response().itemName);
+
+			assertSame(Web.CODECS, Web.url(server.url("/item")).getCodecs());
+			assertSame(Web.CODECS, Web.url(server.url("/item")).codecs(codecs).codecs(null).getCodecs());
+		}
+	}
+
+	private static ObjectMapper snakeCase() {
+		return WebConnection.createObjectMapper().setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+	}
+
+	public static class Item {
+
+		public String itemName;
+
+		public Item() {
+		}
+
+		public Item(String itemName) {
+			this.itemName = itemName;
+		}
+
+	}
+
+}
@@ -0,0 +1,205 @@
+package de.quantumrange.webUtils.load;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.metrics.LatencyHistogram;
+import de.quantumrange.webUtils.models.WebResult;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Sends requests at a fixed rate and measures throughput and latency, for example with
+ * <code>() -> Web.url(url).requestAsync(Map.of())</code>.
+ * <p>
+ * The requests are started at their planned time, no matter how long the earlier requests take (open model). The
+ * latency is measured from the planned start, so a server or client that falls behind shows up in the percentiles
+ * instead of silently lowering the rate. If <code>maxInFlight</code> requests are running at the planned time, the
+ * request is dropped and counted.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ * @see Web#url(java.net.URL)
+ */
+public final class LoadHarness {
+
+	private final double rate;
+	private final Duration duration;
+	private final Duration warmup;
+	private final int maxInFlight;
+	private final Duration drainTimeout;
+
+	private LoadHarness(Builder builder) {
+		this.rate = builder.rate;
+		this.duration = builder.duration;
+		this.warmup = builder.warmup;
+		this.maxInFlight = builder.maxInFlight;
+		this.drainTimeout = builder.drainTimeout;
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Sends the requests for the warmup and the duration and waits until all requests are done.
+	 * Only the requests planned after the warmup are part of the report.
+	 *
+	 * @param request starts one request.
+	 * @return the report of the requests after the warmup.
+	 * @throws InterruptedException if the thread was interrupted.
+	 * @throws TimeoutException if the requests didn't finish within the drain timeout.
+	 */
+	public LoadReport run(Supplier<? extends CompletionStage<? extends WebResult<?>>> request)
+			throws InterruptedException, TimeoutException {
+		LatencyHistogram latencies = new LatencyHistogram();
+		Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+		LongAdder sent = new LongAdder();
+		LongAdder failed = new LongAdder();
+		LongAdder dropped = new LongAdder();
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicLong lastCompletion = new AtomicLong();
+		Phaser pending = new Phaser(1);
+
+		long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+		long start = System.nanoTime();
+		long measureStart = start + warmup.toNanos();
+		long end = measureStart + duration.toNanos();
+
+		for (long planned = start; planned < end; planned += interval) {
+			long wait;
+			while ((wait = planned - System.nanoTime()) > 0) LockSupport.parkNanos(wait);
+			if (Thread.interrupted()) throw new InterruptedException();
+
+			boolean measured = planned >= measureStart;
+			if (inFlight.get() >= maxInFlight) {
+				if (measured) dropped.increment();
+				continue;
+			}
+
+			long plannedAt = planned;
+			inFlight.incrementAndGet();
+			pending.register();
+			if (measured) sent.increment();
+
+			CompletionStage<? extends WebResult<?>> stage;
+			try {
+				stage = request.get();
+			} catch (RuntimeException e) {
+				stage = CompletableFuture.failedFuture(e);
+			}
+
+			stage.whenComplete((result, throwable) -> {
+				long now = System.nanoTime();
+				inFlight.decrementAndGet();
+
+				if (measured) {
+					latencies.record(now - plannedAt);
+					lastCompletion.accumulateAndGet(now, Math::max);
+
+					if (throwable != null || result.responseCode() < 0) failed.increment();
+					else statuses.computeIfAbsent(result.responseCode(), key -> new LongAdder()).increment();
+				}
+
+				pending.arriveAndDeregister();
+			});
+		}
+
+		int phase = pending.arrive();
+		pending.awaitAdvanceInterruptibly(phase, drainTimeout.toNanos(), TimeUnit.NANOSECONDS);
+
+		long elapsed = Math.max(end, lastCompletion.get()) - measureStart;
+		Map<Integer, Long> counts = new ConcurrentHashMap<>();
+		statuses.forEach((status, count) -> counts.put(status, count.sum()));
+
+		return new LoadReport(sent.sum(), latencies.getCount() - failed.sum(), failed.sum(), dropped.sum(), counts,
+				Duration.ofNanos(elapsed), latencies);
+	}
+
+	public static class Builder {
+
+		private double rate = 100;
+		private Duration duration = Duration.ofSeconds(10);
+		private Duration warmup = Duration.ZERO;
+		private int maxInFlight = 10_000;
+		private Duration drainTimeout = Duration.ofSeconds(30);
+
+		private Builder() {
+		}
+
+		/**
+		 * Sets how many requests are started per second (default 100).
+		 *
+		 * @param requestsPerSecond the rate.
+		 * @return itself
+		 */
+		public Builder rate(double requestsPerSecond) {
+			if (requestsPerSecond <= 0) throw new IllegalArgumentException("The rate has to be positive.");
+			this.rate = requestsPerSecond;
+			return this;
+		}
+
+		/**
+		 * Sets how long requests are sent after the warmup (default 10 s).
+		 *
+		 * @param duration the duration.
+		 * @return itself
+		 */
+		public Builder duration(Duration duration) {
+			this.duration = duration;
+			return this;
+		}
+
+		/**
+		 * Sets how long requests are sent before they are measured (default 0).
+		 *
+		 * @param warmup the duration.
+		 * @return itself
+		 */
+		public Builder warmup(Duration warmup) {
+			this.warmup = warmup;
+			return this;
+		}
+
+		/**
+		 * Sets how many requests can run at the same time before requests are dropped (default 10000).
+		 *
+		 * @param maxInFlight the count of requests.
+		 * @return itself
+		 */
+		public Builder maxInFlight(int maxInFlight) {
+			if (maxInFlight < 1 || maxInFlight > 65_535) {
+				throw new IllegalArgumentException("maxInFlight has to be between 1 and 65535.");
+			}
+			this.maxInFlight = maxInFlight;
+			return this;
+		}
+
+		/**
+		 * Sets how long to wait for the last requests after the duration (default 30 s).
+		 *
+		 * @param drainTimeout the duration.
+		 * @return itself
+		 */
+		public Builder drainTimeout(Duration drainTimeout) {
+			this.drainTimeout = drainTimeout;
+			return this;
+		}
+
+		public LoadHarness build() {
+			return new LoadHarness(this);
+		}
+
+	}
+
+}
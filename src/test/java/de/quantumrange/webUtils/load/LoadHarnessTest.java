@@ -0,0 +1,55 @@
+package de.quantumrange.webUtils.load;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.server.TestServer;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadHarnessTest {
+
+	@Test
+	void fixedRate() throws Exception {
+		try (TestServer server = TestServer.start()) {
+			server.route("/slow").latency(Duration.ofMillis(20)).payload(1_000);
+			URL url = server.url("/slow");
+
+			LoadReport report = LoadHarness.builder()
+					.rate(50)
+					.warmup(Duration.ofMillis(200))
+					.duration(Duration.ofSeconds(1))
+					.build()
+					.run(() -> Web.url(url).requestAsync(Map.of()));
+
+			assertEquals(50, report.sent(), 1);
+			assertEquals(report.sent(), report.completed());
+			assertEquals(0, report.failed());
+			assertEquals(report.sent(), report.statuses().get(200).longValue());
+			assertTrue(report.getThroughput() > 0 && report.getThroughput() <= 55, report.toString());
+			assertTrue(report.getLatency(50).toMillis() >= 20, report.toString());
+		}
+	}
+
+	@Test
+	void dropsAboveMaxInFlight() throws Exception {
+		try (TestServer server = TestServer.start()) {
+			server.route("/stuck").latency(Duration.ofMillis(500));
+			URL url = server.url("/stuck");
+
+			LoadReport report = LoadHarness.builder()
+					.rate(100)
+					.duration(Duration.ofMillis(200))
+					.maxInFlight(5)
+					.build()
+					.run(() -> Web.url(url).requestAsync(Map.of()));
+
+			assertEquals(5, report.sent());
+			assertEquals(15, report.dropped(), 1);
+		}
+	}
+
+}
@@ -0,0 +1,63 @@
+package de.quantumrange.webUtils.load;
+
+import de.quantumrange.webUtils.metrics.LatencyHistogram;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The result of a {@link LoadHarness} run.
+ *
+ * @param sent the requests that were started.
+ * @param completed the requests that got a response.
+ * @param failed the requests that failed without response.
+ * @param dropped the requests that were not started because too many were in flight.
+ * @param statuses the count of responses per response code.
+ * @param elapsed the time from the first measured request until the last one was done.
+ * @param latencies the latencies in nanoseconds, measured from the planned start.
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public record LoadReport(long sent,
+						 long completed,
+						 long failed,
+						 long dropped,
+						 Map<Integer, Long> statuses,
+						 Duration elapsed,
+						 LatencyHistogram latencies) {
+
+	public LoadReport {
+		statuses = Map.copyOf(statuses);
+	}
+
+	/**
+	 * Returns how many requests got a response per second.
+	 * @return the throughput.
+	 */
+	public double getThroughput() {
+		return elapsed.isZero() ? 0 : completed / (elapsed.toNanos() / 1e9);
+	}
+
+	/**
+	 * Returns the latency at a percentile.
+	 *
+	 * @param percentile the percentile between 0 and 100, e.g. 99.9.
+	 * @return the latency.
+	 */
+	public Duration getLatency(double percentile) {
+		return Duration.ofNanos(latencies.getValueAtPercentile(percentile));
+	}
+
+	@Override
+	public String toString() {
+		return "sent=%d completed=%d failed=%d dropped=%d statuses=%s throughput=%.1f/s p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms"
+				.formatted(sent, completed, failed, dropped, new TreeMap<>(statuses), getThroughput(),
+						millis(50), millis(90), millis(99), millis(99.9), latencies.getMax() / 1e6);
+	}
+
+	private double millis(double percentile) {
+		return latencies.getValueAtPercentile(percentile) / 1e6;
+	}
+
+}
@@ -0,0 +1,60 @@
+package de.quantumrange.webUtils.metrics;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.connections.HTTPRequestType;
+import de.quantumrange.webUtils.server.TestServer;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JmxExporterTest {
+
+	@Test
+	void publishesTheCounters() throws IOException, JMException, InterruptedException {
+		MBeanServer mbeans = MBeanServerFactory.newMBeanServer();
+		WebMetrics metrics = new WebMetrics();
+		metrics.onRejected(new RequestTag("example.com", HTTPRequestType.GET, 3), -3);
+
+		JmxExporter exporter = new JmxExporter(metrics, "test");
+		exporter.register(mbeans);
+		assertThrows(IllegalStateException.class, () -> exporter.register(mbeans));
+
+		ObjectName total = new ObjectName("test:type=WebMetrics,name=total");
+		ObjectName existing = new ObjectName("test:type=WebMetrics,host=\"example.com\",method=GET,rateID=3");
+		assertEquals(List.of(total, existing), exporter.getRegistered(), "Tags that were counted before are there.");
+		assertEquals(1L, mbeans.getAttribute(existing, "Rejected"));
+
+		try (TestServer server = TestServer.start()) {
+			server.route("/ok").payload(100);
+			Web.url(server.url("/ok")).instrument(metrics).request(Map.of()).completion();
+		}
+
+		ObjectName local = new ObjectName("test:type=WebMetrics,host=\"127.0.0.1\",method=GET,rateID=0");
+		for (int i = 0; i < 100 && !mbeans.isRegistered(local); i++) Thread.sleep(20);
+
+		assertTrue(mbeans.isRegistered(local), "The MBean of a new tag is registered in the background.");
+		assertEquals(1L, mbeans.getAttribute(local, "Completed"));
+		assertEquals(100L, mbeans.getAttribute(local, "BytesReceived"));
+		assertEquals(1L, mbeans.getAttribute(total, "Status2xx"));
+		assertEquals(1L, mbeans.getAttribute(total, "Rejected"));
+		assertEquals(3, exporter.getRegistered().size());
+
+		exporter.unregister();
+		assertFalse(mbeans.isRegistered(total));
+		assertFalse(mbeans.isRegistered(local));
+		assertEquals(List.of(), exporter.getRegistered());
+
+		metrics.onRejected(new RequestTag("other.example.com", HTTPRequestType.GET, 0), -3);
+		Thread.sleep(100);
+		assertEquals(List.of(), exporter.getRegistered(), "Nothing is registered after unregister.");
+	}
+
+}
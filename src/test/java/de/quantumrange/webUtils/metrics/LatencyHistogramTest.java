@@ -0,0 +1,126 @@
+package de.quantumrange.webUtils.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+	@Test
+	void empty() {
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0.0, histogram.getMean());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getValueAtPercentile(99));
+		assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(100.1));
+		assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(-1));
+	}
+
+	@Test
+	void smallValuesAreExact() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 64; i++) histogram.record(i);
+		histogram.record(-5);
+
+		assertEquals(64, histogram.getCount(), "Negative values are ignored.");
+		assertEquals(31.5, histogram.getMean());
+		assertEquals(0, histogram.getValueAtPercentile(0));
+		assertEquals(31, histogram.getValueAtPercentile(50));
+		assertEquals(62, histogram.getValueAtPercentile(97));
+		assertEquals(63, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	void percentilesWithinTheRelativeError() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		int count = 100_000;
+		for (int i = 1; i <= count; i++) histogram.record(i * 1_000L);
+
+		for (double percentile : new double[] {1, 25, 50, 90, 99, 99.9, 99.99}) {
+			long exact = (long) Math.ceil(count * percentile / 100) * 1_000L;
+			long value = histogram.getValueAtPercentile(percentile);
+
+			assertTrue(value >= exact, "p" + percentile + " " + value + " is below " + exact);
+			assertTrue(value <= exact + exact / 32, "p" + percentile + " " + value + " is too far above " + exact);
+		}
+		assertEquals(count * 1_000L, histogram.getValueAtPercentile(100), "The largest value is exact.");
+		assertEquals(count * 1_000L, histogram.getMax());
+		assertEquals((count + 1) * 500.0, histogram.getMean());
+	}
+
+	@Test
+	void skewedDistribution() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 990; i++) histogram.record(2_000_000L);
+		for (int i = 0; i < 10; i++) histogram.record(5_000_000_000L);
+
+		long p99 = histogram.getValueAtPercentile(99);
+		assertTrue(p99 >= 2_000_000L && p99 <= 2_000_000L * 33 / 32, "p99: " + p99);
+		long p999 = histogram.getValueAtPercentile(99.9);
+		assertEquals(5_000_000_000L, p999, "The bucket end is capped by the max.");
+	}
+
+	@Test
+	void bucketsCoverEveryValue() {
+		Random random = new Random(42);
+		List<Long> values = new ArrayList<>(List.of(0L, 63L, 64L, 65L, 127L, 128L, 1L << 40, (1L << 40) - 1,
+				Long.MAX_VALUE - 1, Long.MAX_VALUE));
+		for (int i = 0; i < 10_000; i++) values.add(random.nextLong() >>> (1 + random.nextInt(63)));
+
+		for (long value : values) {
+			int index = LatencyHistogram.indexOf(value);
+			long highest = LatencyHistogram.highestValueOf(index);
+
+			assertTrue(highest >= value, value + " is above the end of its bucket " + highest);
+			if (index > 0) {
+				long lowest = LatencyHistogram.highestValueOf(index - 1) + 1;
+				assertTrue(lowest <= value, value + " is below the start of its bucket " + lowest);
+				assertTrue(highest - lowest <= lowest / 32, "The bucket of " + value + " is too wide.");
+			}
+		}
+		assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(Long.MAX_VALUE)));
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(50));
+	}
+
+	@Test
+	void concurrentRecording() throws InterruptedException {
+		LatencyHistogram histogram = new LatencyHistogram();
+		List<Thread> threads = new ArrayList<>();
+
+		for (int t = 0; t < 4; t++) {
+			long offset = t;
+			threads.add(Thread.ofPlatform().start(() -> {
+				for (int i = 0; i < 10_000; i++) histogram.record(i * 4 + offset);
+			}));
+		}
+		for (Thread thread : threads) thread.join();
+
+		assertEquals(40_000, histogram.getCount());
+		assertEquals(39_999, histogram.getMax());
+		assertEquals(39_999 / 2.0, histogram.getMean());
+	}
+
+	@Test
+	void reset() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(1_000);
+		histogram.reset();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getValueAtPercentile(50));
+
+		histogram.record(10);
+		assertEquals(10, histogram.getValueAtPercentile(50));
+	}
+
+}
@@ -0,0 +1,185 @@
+package de.quantumrange.webUtils.metrics;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.connections.HTTPRequestType;
+import de.quantumrange.webUtils.retry.RetryPolicy;
+import de.quantumrange.webUtils.server.TestServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebMetricsTest {
+
+	private static final RequestTag TAG = new RequestTag("127.0.0.1", HTTPRequestType.GET, 0);
+
+	@Test
+	void countsTheSteps() {
+		WebMetrics metrics = new WebMetrics();
+		assertEquals(MetricsSnapshot.Counts.EMPTY, metrics.getCounts(TAG));
+
+		metrics.onQueued(TAG);
+		metrics.onQueued(TAG);
+		metrics.onQueued(TAG);
+		assertEquals(3, metrics.getCounts(TAG).waiting());
+
+		metrics.onCancelled(TAG);
+		metrics.onStarted(TAG, 1_000L, 10L);
+		metrics.onStarted(TAG, 3_000L, -1L);
+		assertEquals(0, metrics.getCounts(TAG).waiting());
+		assertEquals(2, metrics.getCounts(TAG).inFlight());
+
+		metrics.onCompleted(TAG, 503, 5L);
+		metrics.onFailed(TAG, new IOException("reset"), 5L);
+		metrics.onQueued(TAG);
+		metrics.onRejected(TAG, -2);
+		metrics.onBytesReceived(TAG, 100L);
+
+		MetricsSnapshot.Counts counts = metrics.getCounts(TAG);
+		assertEquals(new MetricsSnapshot.Counts(2, 1, 1, 1, 1, 0, 0, 0, 0, 0, 0, 1, 10, 100, 4_000), counts);
+		assertEquals(2_000.0, counts.getMeanWaitNanos(), "A body of unknown length is not counted.");
+
+		RequestTag post = new RequestTag("example.com", HTTPRequestType.POST, 1);
+		metrics.onStarted(post, 0L, 5L);
+		metrics.onCompleted(post, 201, 5L);
+
+		MetricsSnapshot snapshot = metrics.snapshot();
+		assertEquals(2, snapshot.tags().size());
+		assertEquals(3, snapshot.total().started());
+		assertEquals(1, snapshot.getHost("example.com").status2xx());
+		assertEquals(1, snapshot.getType(HTTPRequestType.POST).completed());
+		assertEquals(2, snapshot.getRateID(0).started());
+
+		metrics.reset();
+		assertEquals(MetricsSnapshot.Counts.EMPTY, metrics.snapshot().total());
+	}
+
+	@Test
+	void countsRequests() throws IOException {
+		try (TestServer server = TestServer.start()) {
+			server.route("/payload").payload(1_000);
+			server.route("/missing").status(404);
+			server.route("/echo").echo();
+			WebMetrics metrics = new WebMetrics();
+
+			Web.url(server.url("/payload")).instrument(metrics).request(Map.of()).completion();
+			Web.url(server.url("/missing")).instrument(metrics).request(Map.of()).completion();
+			Web.url(server.url("/echo"), HTTPRequestType.POST).instrument(metrics).request("hello").completion();
+			Web.url(server.url("/echo"), HTTPRequestType.POST).instrument(metrics)
+					.request(() -> new ByteArrayInputStream(new byte[100])).completion();
+
+			MetricsSnapshot.Counts get = metrics.getCounts(TAG);
+			assertEquals(2, get.started());
+			assertEquals(2, get.completed());
+			assertEquals(1, get.status2xx());
+			assertEquals(1, get.status4xx());
+			assertEquals(0, get.bytesSent());
+			assertEquals(1_000 + "ok".length(), get.bytesReceived(), "The payload and the body of the 404.");
+			assertEquals(0, get.inFlight());
+			assertEquals(0, get.waiting());
+
+			MetricsSnapshot.Counts post = metrics.getCounts(new RequestTag("127.0.0.1", HTTPRequestType.POST, 0));
+			assertEquals(2, post.status2xx());
+			assertEquals(5, post.bytesSent(), "The stream has no known length.");
+			assertEquals(105, post.bytesReceived());
+		}
+	}
+
+	@Test
+	void countsFailures() throws IOException {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		WebMetrics metrics = new WebMetrics();
+
+		Web.url(URI.create("http://127.0.0.1:" + port + "/").toURL()).instrument(metrics).retry(RetryPolicy.NONE)
+				.request(Map.of()).completion();
+
+		MetricsSnapshot.Counts counts = metrics.getCounts(TAG);
+		assertEquals(1, counts.started());
+		assertEquals(1, counts.failed());
+		assertEquals(0, counts.inFlight());
+	}
+
+	@Test
+	void countingBodyHandler() throws Exception {
+		AtomicLong received = new AtomicLong(-1);
+		WebInstrumentation instrumentation = new WebInstrumentation() {
+			@Override
+			public void onBytesReceived(RequestTag tag, long bytes) {
+				assertEquals(TAG, tag);
+				received.set(bytes);
+			}
+		};
+		CountingBodyHandler<String> handler = new CountingBodyHandler<>(
+				HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8), instrumentation, TAG);
+
+		HttpResponse.BodySubscriber<String> subscriber = handler.apply(info());
+		subscriber.onSubscribe(new NoSubscription());
+		subscriber.onNext(List.of(bytes("Hello "), bytes("World")));
+		subscriber.onNext(List.of(bytes("!")));
+		assertEquals(-1, received.get(), "The length is reported when the body was read.");
+
+		subscriber.onComplete();
+		assertEquals(12, received.get());
+		assertEquals("Hello World!", subscriber.getBody().toCompletableFuture().get(1, TimeUnit.SECONDS));
+
+		HttpResponse.BodySubscriber<String> failing = handler.apply(info());
+		failing.onSubscribe(new NoSubscription());
+		failing.onNext(List.of(bytes("Hel")));
+		failing.onError(new IOException("reset"));
+		assertEquals(3, received.get(), "The bytes until the error are reported.");
+		assertTrue(failing.getBody().toCompletableFuture().isCompletedExceptionally());
+	}
+
+	private static ByteBuffer bytes(String text) {
+		return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static HttpResponse.ResponseInfo info() {
+		return new HttpResponse.ResponseInfo() {
+			@Override
+			public int statusCode() {
+				return 200;
+			}
+
+			@Override
+			public HttpHeaders headers() {
+				return HttpHeaders.of(Map.of(), (name, value) -> true);
+			}
+
+			@Override
+			public HttpClient.Version version() {
+				return HttpClient.Version.HTTP_1_1;
+			}
+		};
+	}
+
+	private static final class NoSubscription implements Flow.Subscription {
+
+		@Override
+		public void request(long n) {
+		}
+
+		@Override
+		public void cancel() {
+		}
+
+	}
+
+}
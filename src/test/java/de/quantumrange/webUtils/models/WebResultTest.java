@@ -0,0 +1,165 @@
+package de.quantumrange.webUtils.models;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.connections.HTTPRequestType;
+import de.quantumrange.webUtils.server.TestServer;
+import org.junit.jupiter.api.Test;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebResultTest {
+
+	@Test
+	void decodesOnFirstAccess() throws MalformedURLException {
+		WebResult<String> result = result(LazyBody.decode("héllo".getBytes(StandardCharsets.ISO_8859_1),
+				StandardCharsets.ISO_8859_1));
+
+		assertEquals(200, result.responseCode());
+		assertFalse(result.body().isDecoded());
+
+		String response = result.response();
+		assertEquals("héllo", response);
+		assertTrue(result.body().isDecoded());
+		assertSame(response, result.response());
+	}
+
+	@Test
+	void mapIsLazyAndOnce() throws MalformedURLException {
+		AtomicInteger calls = new AtomicInteger();
+		WebResult<Integer> mapped = result(LazyBody.of("12345")).map(text -> {
+			calls.incrementAndGet();
+			return text.length();
+		});
+
+		assertEquals(0, calls.get());
+		assertEquals(5, mapped.response().intValue());
+		assertEquals(5, mapped.response().intValue());
+		assertEquals(1, calls.get());
+
+		AtomicInteger eager = new AtomicInteger();
+		result(LazyBody.of("")).mapEagerly(text -> eager.incrementAndGet());
+		assertEquals(1, eager.get());
+	}
+
+	@Test
+	void jsonIsParsedOnce() throws Exception {
+		WebResult<String> result = result(LazyBody.decode("[1, 2, 3]".getBytes(StandardCharsets.UTF_8),
+				StandardCharsets.UTF_8));
+
+		TypeReference<List<Integer>> type = new TypeReference<>() {};
+		List<Integer> list = result.responseJson(type);
+		assertEquals(List.of(1, 2, 3), list);
+		assertSame(list, result.responseJson(type));
+
+		JsonNode node = result.responseJsonNode();
+		assertSame(node, result.responseJsonNode());
+		assertFalse(result.body().isDecoded(), "UTF-8 JSON is parsed from the bytes.");
+
+		WebResult<String> nothing = result(LazyBody.of(null));
+		assertNull(nothing.responseJson(List.class));
+		assertNull(nothing.responseJsonNode());
+
+		WebResult<String> noBody = result(null);
+		assertNotNull(noBody.body());
+		assertNull(noBody.response());
+		assertNull(noBody.responseJson(List.class));
+		assertNull(result(LazyBody.of("null")).responseJson(List.class));
+
+		assertThrows(JsonProcessingException.class, () -> result(LazyBody.of("{")).responseJson(Map.class));
+	}
+
+	@Test
+	void concurrentAccessDecodesOnce() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		WebResult<String> result = result(LazyBody.lazy(() -> {
+			calls.incrementAndGet();
+			return "value";
+		}));
+
+		try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+			List<Future<String>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					return result.response();
+				}));
+			}
+			start.countDown();
+
+			for (Future<String> future : futures) assertEquals("value", future.get());
+		}
+
+		assertEquals(1, calls.get());
+	}
+
+	@Test
+	void concurrentJsonIsParsedOnce() throws Exception {
+		LazyBody<String> body = LazyBody.decode("{\"a\": [1, 2]}".getBytes(StandardCharsets.UTF_8),
+				StandardCharsets.UTF_8);
+		ObjectReader reader = Web.CODECS.reader(Map.class);
+		CountDownLatch start = new CountDownLatch(1);
+
+		try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+			List<Future<Object[]>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					return new Object[]{body.json(reader), body.tree(reader)};
+				}));
+			}
+			start.countDown();
+
+			Object[] first = futures.get(0).get();
+			for (Future<Object[]> future : futures) {
+				assertSame(first[0], future.get()[0]);
+				assertSame(first[1], future.get()[1]);
+			}
+		}
+
+		ObjectReader bigDecimals = Web.CODECS.getMapper().reader()
+				.with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+		LazyBody<String> decimal = LazyBody.of("{\"value\": 0.1}");
+		assertTrue(decimal.tree(Web.CODECS.getMapper().reader()).get("value").isDouble());
+		assertTrue(decimal.tree(bigDecimals).get("value").isBigDecimal(), "The tree is kept per reader.");
+	}
+
+	@Test
+	void requestKeepsBytesUntilRead() throws Exception {
+		try (TestServer server = TestServer.start()) {
+			server.route("/latin").body("grüße".getBytes(StandardCharsets.ISO_8859_1))
+					.header("Content-Type", "text/plain; charset=ISO-8859-1");
+
+			WebResult<String> result = Web.url(server.url("/latin")).request(Map.of()).completion();
+
+			assertEquals(200, result.responseCode());
+			assertFalse(result.body().isDecoded());
+			assertEquals("grüße", result.response());
+			assertTrue(result.timings().deserializationNanos() > 0);
+		}
+	}
+
+	private static <T> WebResult<T> result(LazyBody<T> body) throws MalformedURLException {
+		return new WebResult<>(LocalDateTime.now(), LocalDateTime.now(), URI.create("http://127.0.0.1/").toURL(),
+				HTTPRequestType.GET, 200, body, null);
+	}
+
+}
@@ -0,0 +1,164 @@
+package de.quantumrange.webUtils.models;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.cache.ResponseCache;
+import de.quantumrange.webUtils.metrics.LatencyHistogram;
+import de.quantumrange.webUtils.ratelimit.RateLimiter;
+import de.quantumrange.webUtils.retry.RetryPolicy;
+import de.quantumrange.webUtils.server.TestServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static de.quantumrange.webUtils.models.WebTimings.UNKNOWN;
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebTimingsTest {
+
+	private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	void recorderMeasuresEveryPhase() throws InterruptedException {
+		WebTimings.Recorder recorder = new WebTimings.Recorder();
+
+		recorder.queued();
+		Thread.sleep(20);
+		recorder.started();
+		recorder.dispatched();
+		Thread.sleep(30);
+		recorder.headers();
+		Thread.sleep(40);
+		recorder.completed();
+		recorder.queued();
+		recorder.headers();
+
+		WebTimings timings = recorder.toTimings();
+		assertTrue(timings.queuedNanos() >= 20 * MILLIS, "queued: " + timings.queuedNanos());
+		assertTrue(timings.timeToFirstByteNanos() >= 30 * MILLIS, "ttfb: " + timings.timeToFirstByteNanos());
+		assertTrue(timings.bodyReadNanos() >= 40 * MILLIS, "A mark that is set twice keeps the first value.");
+		assertEquals(UNKNOWN, timings.deserializationNanos());
+		assertEquals(0, timings.retries());
+		assertEquals(0, timings.retryNanos());
+		assertEquals(timings.timeToFirstByteNanos() + timings.bodyReadNanos(), timings.networkNanos());
+	}
+
+	@Test
+	void retriesMeasureFromTheFirstAttempt() throws InterruptedException {
+		WebTimings.Recorder recorder = new WebTimings.Recorder();
+
+		recorder.queued();
+		recorder.started();
+		recorder.dispatched();
+		Thread.sleep(50);
+		recorder.headers();
+		recorder.completed();
+		recorder.retry();
+		Thread.sleep(30);
+		recorder.dispatched();
+		Thread.sleep(10);
+		recorder.headers();
+		recorder.completed();
+
+		WebTimings timings = recorder.toTimings();
+		assertEquals(1, timings.retries());
+		assertTrue(timings.retryNanos() >= 80 * MILLIS, "retry: " + timings.retryNanos());
+		assertTrue(timings.timeToFirstByteNanos() >= 10 * MILLIS);
+		assertTrue(timings.timeToFirstByteNanos() < 50 * MILLIS, "Only the last attempt is on the network.");
+		assertTrue(timings.queuedNanos() < 50 * MILLIS, "The queue ends with the first attempt.");
+	}
+
+	@Test
+	void undispatchedRequestsStartWhenTheyAreProcessed() {
+		WebTimings.Recorder recorder = new WebTimings.Recorder();
+		recorder.started();
+		recorder.completed();
+
+		WebTimings timings = recorder.toTimings();
+		assertEquals(0, timings.queuedNanos(), "Nothing was queued.");
+		assertEquals(UNKNOWN, timings.timeToFirstByteNanos());
+		assertEquals(UNKNOWN, timings.bodyReadNanos());
+		assertEquals(UNKNOWN, timings.networkNanos());
+		assertEquals(0, timings.totalNanos());
+
+		WebTimings failed = new WebTimings.Recorder().toTimings();
+		assertEquals(UNKNOWN, failed.queuedNanos());
+		assertEquals(UNKNOWN, failed.networkNanos());
+	}
+
+	@Test
+	void sums() {
+		WebTimings timings = new WebTimings(1, 2, 3, UNKNOWN, 1, 4);
+
+		assertEquals(5, timings.networkNanos());
+		assertEquals(10, timings.totalNanos(), "Unknown phases count as 0.");
+		assertEquals(Duration.ofNanos(10), timings.getTotal());
+
+		WebTimings deserialized = timings.withDeserialization(5).withDeserialization(6);
+		assertEquals(11, deserialized.deserializationNanos());
+		assertEquals(21, deserialized.totalNanos());
+		assertEquals(UNKNOWN, timings.deserializationNanos(), "The timings are immutable.");
+
+		assertEquals(2, new WebTimings(1, 2, UNKNOWN, UNKNOWN, 0, 0).networkNanos(),
+				"An unknown body read doesn't count.");
+	}
+
+	@Test
+	void requestsAreTimedAndRecorded() throws IOException {
+		try (TestServer server = TestServer.start()) {
+			server.route("/slow").latency(Duration.ofMillis(100));
+			server.route("/flaky").status(503, 200);
+			LatencyHistogram host = Web.LATENCIES.getHost("127.0.0.1");
+			long before = host == null ? 0 : host.getCount();
+
+			WebResult<String> result = Web.url(server.url("/slow")).request(Map.of()).completion();
+			WebTimings timings = result.timings();
+			assertTrue(timings.timeToFirstByteNanos() >= 100 * MILLIS, "ttfb: " + timings.timeToFirstByteNanos());
+			assertTrue(timings.bodyReadNanos() >= 0);
+			assertTrue(timings.queuedNanos() >= 0);
+			assertEquals(0, timings.retries());
+
+			WebResult<String> retried = Web.url(server.url("/flaky"))
+					.retry(RetryPolicy.builder().backoff(Duration.ofMillis(50), Duration.ofMillis(50)).jitter(0)
+							.build())
+					.request(Map.of()).completion();
+			assertEquals(200, retried.responseCode());
+			assertEquals(1, retried.timings().retries());
+			assertTrue(retried.timings().retryNanos() >= 50 * MILLIS, "retry: " + retried.timings().retryNanos());
+
+			assertEquals(before + 2, Web.LATENCIES.getHost("127.0.0.1").getCount());
+			assertTrue(Web.LATENCIES.getHost("127.0.0.1").getMax() >= 100 * MILLIS);
+		}
+	}
+
+	@Test
+	void cachedAndCoalescedRequestsAreTimed() throws IOException {
+		try (TestServer server = TestServer.start()) {
+			server.route("/timed").body("x".repeat(300)).chunked(100, Duration.ofMillis(60))
+					.header("Cache-Control", "max-age=600");
+			RateLimiter limiter = new RateLimiter();
+			limiter.setHostLimit("127.0.0.1", 4, 1);
+			ResponseCache cache = new ResponseCache(100, 1 << 20, null);
+
+			WebTimings first = Web.url(server.url("/timed")).cache(cache).singleFlight(true).limiter(limiter)
+					.request(Map.of()).completion().timings();
+			assertTrue(first.bodyReadNanos() >= 100 * MILLIS, "The body is read after the headers: " + first);
+			assertTrue(first.timeToFirstByteNanos() < first.bodyReadNanos(), first.toString());
+
+			limiter.reserve("127.0.0.1", 0);
+			WebTimings limited = Web.url(server.url("/timed?page=2")).cache(cache).singleFlight(true).limiter(limiter)
+					.requestAsync(Map.of()).join().timings();
+			assertTrue(limited.queuedNanos() >= 150 * MILLIS, "The wait for the limiter is queued: " + limited);
+			assertTrue(limited.bodyReadNanos() >= 100 * MILLIS, limited.toString());
+
+			WebResult<String> cached = Web.url(server.url("/timed")).cache(cache).singleFlight(true).limiter(limiter)
+					.request(Map.of()).completion();
+			assertEquals(300, cached.response().length());
+			assertEquals(UNKNOWN, cached.timings().timeToFirstByteNanos(), "A cached response is not sent.");
+			assertEquals(2, server.route("/timed").getRequests());
+		}
+	}
+
+}
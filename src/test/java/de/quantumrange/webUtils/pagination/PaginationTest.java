@@ -0,0 +1,51 @@
+package de.quantumrange.webUtils.pagination;
+
+import com.fasterxml.jackson.databind.node.MissingNode;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaginationTest {
+
+	@Test
+	void nextLink() {
+		assertEquals("https://api.github.com/user/repos?page=3",
+				Pagination.nextLink(List.of("<https://api.github.com/user/repos?page=3>; rel=\"next\", " +
+						"<https://api.github.com/user/repos?page=50>; rel=\"last\"")));
+		assertEquals("/b", Pagination.nextLink(List.of("</a>; rel=\"prev\", </b>; rel=\"next\"")));
+		assertEquals("/b", Pagination.nextLink(List.of("</a>; rel=prev", "</b>; title=\"x\"; REL=next")));
+		assertEquals("/c", Pagination.nextLink(List.of("</c>; rel=\"next last\"")));
+		assertNull(Pagination.nextLink(List.of("</a>; rel=\"prev\"", "</z>; rel=\"nextpage\"")));
+		assertNull(Pagination.nextLink(List.of()));
+	}
+
+	@Test
+	void offsetAndPageNumber() {
+		Pagination<Map<String, ?>> offset = Pagination.offset("/data", "offset", 50);
+		assertTrue(offset.isIndexed());
+		assertEquals(100L, offset.request(Map.of("limit", 50), 2).data().get("offset"));
+		assertEquals(60L, offset.request(Map.of("offset", "10"), 1).data().get("offset"));
+		assertFalse(offset.isLast(page(50)));
+		assertTrue(offset.isLast(page(49)));
+
+		Pagination<Map<String, ?>> pages = Pagination.pageNumber("/data", "page", 1, 0);
+		assertEquals(1L, pages.request(Map.of(), 0).data().get("page"));
+		assertEquals(3L, pages.request(Map.of(), 2).data().get("page"));
+		assertFalse(pages.isLast(page(7)), "Without page size only an empty page is the last.");
+		assertTrue(pages.isLast(page(0)));
+
+		assertThrows(IllegalArgumentException.class, () -> offset.request(Map.of("offset", "x"), 0));
+		assertFalse(Pagination.cursor("/data", "/next", "cursor").isIndexed());
+	}
+
+	private static Page page(int itemCount) {
+		return new Page(0, URI.create("http://127.0.0.1/"), HttpHeaders.of(Map.of(), (name, value) -> true),
+				MissingNode.getInstance(), itemCount);
+	}
+
+}
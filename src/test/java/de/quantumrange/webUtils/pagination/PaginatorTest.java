@@ -0,0 +1,183 @@
+package de.quantumrange.webUtils.pagination;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.connections.HTTPRequestType;
+import de.quantumrange.webUtils.models.WebResult;
+import de.quantumrange.webUtils.server.TestServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaginatorTest {
+
+	@Test
+	void cursorFollowsTheCursor() {
+		Map<String, String> pages = Map.of(
+				"", "{\"data\":[1,2],\"meta\":{\"next\":\"a\"}}",
+				"a", "{\"data\":[3],\"meta\":{\"next\":\"b\"}}",
+				"b", "{\"data\":[4],\"meta\":{\"next\":null}}");
+		List<Map<String, ?>> requests = Collections.synchronizedList(new ArrayList<>());
+
+		Paginator<Integer> paginator = Paginator.of(Map.of("limit", 2),
+				Pagination.cursor("/data", "/meta/next", "cursor"), Web.CODECS.reader(Integer.class),
+				fetcher(requests, 0, data -> pages.get(cursor(data))));
+
+		assertEquals(List.of(1, 2, 3, 4), collect(paginator));
+		assertEquals(List.of("", "a", "b"), requests.stream().map(PaginatorTest::cursor).toList());
+		assertTrue(requests.stream().allMatch(data -> data.get("limit").equals(2)), "The other parameters stay.");
+
+		requests.clear();
+		assertEquals(List.of(1, 2, 3, 4), collect(paginator), "Every iteration starts at the first page.");
+		assertEquals(3, requests.size());
+	}
+
+	@Test
+	void offsetRequestsAheadInParallel() {
+		List<Map<String, ?>> requests = Collections.synchronizedList(new ArrayList<>());
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicInteger maxInFlight = new AtomicInteger();
+
+		Paginator.Fetcher<Map<String, ?>> counting = (data, uri) -> {
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			return fetcher(requests, 50, page -> {
+				long offset = (Long) page.get("offset");
+				String items = IntStream.range((int) offset, (int) Math.min(offset + 3, 10))
+						.mapToObj(String::valueOf).collect(Collectors.joining(","));
+				return "[" + items + "]";
+			}).fetch(data, uri).whenComplete((result, throwable) -> inFlight.decrementAndGet());
+		};
+
+		List<Integer> items = collect(Paginator.<Map<String, ?>, Integer>of(Map.of(),
+				Pagination.offset("", "offset", 3), Web.CODECS.reader(Integer.class), counting).prefetch(3));
+
+		assertEquals(IntStream.range(0, 10).boxed().toList(), items);
+		assertTrue(maxInFlight.get() >= 2, "The pages were requested one after another.");
+		assertTrue(requests.size() <= 4 + 3, "Too many pages after the last: " + requests.size());
+	}
+
+	@Test
+	void prefetchRunsAheadOfTheConsumer() throws InterruptedException {
+		List<Map<String, ?>> requests = Collections.synchronizedList(new ArrayList<>());
+		Pagination<Map<String, ?>> endless = Pagination.of("/data", (data, page) ->
+				Map.of("page", (Integer) data.get("page") + 1));
+
+		Paginator<Integer> paginator = Paginator.<Map<String, ?>, Integer>of(Map.of("page", 0), endless,
+				Web.CODECS.reader(Integer.class), fetcher(requests, 10, data -> "{\"data\":[" + data.get("page") + "]}")).prefetch(2);
+
+		try (Paginator.PageIterator<Integer> iterator = paginator.iterator()) {
+			assertEquals(Integer.valueOf(0), iterator.next());
+			Thread.sleep(300);
+			assertEquals(3, requests.size(), "The consumed page and 2 ahead.");
+
+			assertEquals(Integer.valueOf(1), iterator.next());
+			Thread.sleep(300);
+			assertEquals(4, requests.size());
+			assertEquals(2, iterator.getPages());
+		}
+	}
+
+	@Test
+	void maxPagesAndEmptyPages() {
+		List<Map<String, ?>> requests = Collections.synchronizedList(new ArrayList<>());
+
+		List<Integer> items = collect(Paginator.<Map<String, ?>, Integer>of(Map.of(),
+				Pagination.pageNumber("/data", "page", 1, 0), Web.CODECS.reader(Integer.class),
+				fetcher(requests, 0, data -> "{\"data\":[" + data.get("page") + "]}")).maxPages(5).prefetch(0));
+
+		assertEquals(List.of(1, 2, 3, 4, 5), items);
+		assertEquals(5, requests.size());
+
+		List<Integer> none = collect(Paginator.<Map<String, ?>, Integer>of(Map.of(),
+				Pagination.pageNumber("/data", "page", 1, 0), Web.CODECS.reader(Integer.class),
+				fetcher(requests, 0, data -> "{\"data\":[]}")));
+		assertEquals(List.of(), none);
+	}
+
+	@Test
+	void failedPageThrows() {
+		Paginator<Integer> paginator = Paginator.<Map<String, ?>, Integer>of(Map.of(),
+				Pagination.offset("", "offset", 1), Web.CODECS.reader(Integer.class),
+				(data, uri) -> CompletableFuture.completedFuture((Long) data.get("offset") == 2 ?
+						result(500, "") : result(200, "[" + data.get("offset") + "]")));
+
+		Paginator.PageIterator<Integer> iterator = paginator.iterator();
+		assertEquals(Integer.valueOf(0), iterator.next());
+		assertEquals(Integer.valueOf(1), iterator.next());
+		assertThrows(UncheckedIOException.class, iterator::hasNext);
+		assertFalse(iterator.hasNext(), "The iteration ends after the failure.");
+
+		Paginator<Integer> notJson = Paginator.<Map<String, ?>, Integer>of(Map.of(),
+				Pagination.offset("/data", "offset", 1), Web.CODECS.reader(Integer.class),
+				(data, uri) -> CompletableFuture.completedFuture(result(200, "{\"data\":{}}")));
+		assertThrows(IllegalArgumentException.class, () -> notJson.iterator().hasNext());
+	}
+
+	@Test
+	void linkHeaderThroughConnection() throws Exception {
+		try (TestServer server = TestServer.start()) {
+			server.route("/users").body("{\"items\":[{\"id\":1,\"name\":\"a\"},{\"id\":2,\"name\":\"b\"}]}")
+					.header("Link", "</users2?page=2>; rel=\"next\", </users3>; rel=\"last\"");
+			server.route("/users2").body("{\"items\":[{\"id\":3,\"name\":\"c\"}]}")
+					.header("Link", "<" + server.url("/users3") + ">; rel=\"next\"");
+			server.route("/users3").body("{\"items\":[]}");
+
+			List<User> users = collect(Web.url(server.url("/users?per_page=2"))
+					.paginate(Map.of(), Pagination.link("/items"), User.class));
+
+			assertEquals(List.of(new User(1, "a"), new User(2, "b"), new User(3, "c")), users);
+			assertEquals("page=2", server.route("/users2").getLastRequest().uri().getRawQuery());
+			assertEquals(1, server.route("/users3").getRequests());
+		}
+	}
+
+	private static String cursor(Map<String, ?> data) {
+		Object cursor = data.get("cursor");
+		return cursor == null ? "" : cursor.toString();
+	}
+
+	private static <O> List<O> collect(Paginator<O> paginator) {
+		try (Stream<O> stream = paginator.stream()) {
+			return stream.toList();
+		}
+	}
+
+	private static Paginator.Fetcher<Map<String, ?>> fetcher(List<Map<String, ?>> requests, long delayMillis,
+															  Function<Map<String, ?>, String> pages) {
+		return (data, uri) -> CompletableFuture.supplyAsync(() -> {
+			requests.add(data);
+			return result(200, pages.apply(data));
+		}, CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS));
+	}
+
+	private static WebResult<Paginator.Body> result(int code, String json) {
+		try {
+			return new WebResult<>(LocalDateTime.now(), LocalDateTime.now(), URI.create("http://127.0.0.1/").toURL(),
+					HTTPRequestType.GET, code, new Paginator.Body(HttpHeaders.of(Map.of(), (name, value) -> true),
+					json.getBytes(StandardCharsets.UTF_8)));
+		} catch (MalformedURLException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public record User(int id, String name) {
+	}
+
+}
@@ -0,0 +1,121 @@
+package de.quantumrange.webUtils.ratelimit;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.retry.RetryPolicy;
+import de.quantumrange.webUtils.server.TestServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+
+	private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	void tokenBucketBurstAndRate() {
+		TokenBucket bucket = new TokenBucket(10, 3);
+		assertEquals(100 * MILLIS, bucket.getInterval());
+		assertEquals(3, bucket.getBurst());
+
+		for (int i = 0; i < 3; i++) assertEquals(0L, bucket.reserve(), "The burst is free.");
+
+		long wait = bucket.reserve();
+		assertTrue(wait > 50 * MILLIS && wait <= 100 * MILLIS, "Wait: " + wait);
+		assertFalse(bucket.tryAcquire(), "The reserved token is taken.");
+
+		long next = bucket.reserve();
+		assertTrue(next > wait && next <= 200 * MILLIS, "Every token is one interval later: " + next);
+
+		assertThrows(IllegalArgumentException.class, () -> new TokenBucket(10, 0));
+	}
+
+	@Test
+	void tokenBucketPause() {
+		TokenBucket bucket = TokenBucket.unlimited();
+		for (int i = 0; i < 100; i++) assertEquals(0L, bucket.reserve());
+
+		bucket.pauseUntil(System.nanoTime() + 200 * MILLIS);
+		assertFalse(bucket.tryAcquire());
+		long wait = bucket.reserve();
+		assertTrue(wait > 100 * MILLIS && wait <= 200 * MILLIS, "Wait: " + wait);
+
+		bucket.pauseUntil(System.nanoTime() - 1_000 * MILLIS);
+		assertTrue(bucket.reserve() > 0, "An earlier pause doesn't shorten the current one.");
+	}
+
+	@Test
+	void hostAndRateIDLimits() {
+		RateLimiter limiter = new RateLimiter();
+		assertEquals(0L, limiter.reserve("api.example.com", 1), "Nothing is limited.");
+
+		limiter.setHostLimit("API.example.com", 1, 1);
+		limiter.setRateLimit(7, 2, 1);
+		assertNotNull(limiter.getHostBucket("api.EXAMPLE.com"), "Hosts are case-insensitive.");
+
+		assertEquals(0L, limiter.reserve("api.example.com", 7));
+		long wait = limiter.reserve("api.example.com", 7);
+		assertTrue(wait > 500 * MILLIS, "The slower bucket decides: " + wait);
+
+		assertEquals(0L, limiter.reserve("other.example.com", 8), "Other hosts and RateIDs are not limited.");
+
+		limiter.removeHostLimit("api.example.com");
+		limiter.removeRateLimit(7);
+		assertNull(limiter.getHostBucket("api.example.com"));
+		assertEquals(0L, limiter.reserve("api.example.com", 7));
+	}
+
+	@Test
+	void adaptsToResetHeaders() throws IOException {
+		try (TestServer server = TestServer.start()) {
+			long now = System.currentTimeMillis();
+			server.route("/millis").header("X-RateLimit-Remaining", "0")
+					.header("X-RateLimit-Reset", String.valueOf(now + 30_000L));
+			server.route("/seconds").header("X-RateLimit-Remaining", "0")
+					.header("X-RateLimit-Reset", String.valueOf(now / 1000L + 30L));
+			server.route("/relative").header("X-RateLimit-Remaining", "0").header("X-RateLimit-Reset", "30");
+			server.route("/past").header("X-RateLimit-Remaining", "0")
+					.header("X-RateLimit-Reset", String.valueOf(now / 1000L - 60L));
+			server.route("/remaining").header("X-RateLimit-Remaining", "5").header("X-RateLimit-Reset", "60");
+
+			long millis = pause(server, "/millis");
+			assertTrue(millis > 20_000 * MILLIS && millis <= 30_000 * MILLIS, "Epoch milliseconds: " + millis);
+
+			long seconds = pause(server, "/seconds");
+			assertTrue(seconds > 20_000 * MILLIS && seconds <= 30_000 * MILLIS, "Epoch seconds: " + seconds);
+
+			long relative = pause(server, "/relative");
+			assertTrue(relative > 20_000 * MILLIS && relative <= 30_000 * MILLIS, "Seconds from now: " + relative);
+
+			assertEquals(0L, pause(server, "/past"), "A reset in the past doesn't pause.");
+			assertEquals(0L, pause(server, "/remaining"), "Budget left doesn't pause.");
+		}
+	}
+
+	@Test
+	void adaptsToRetryAfter() throws IOException {
+		try (TestServer server = TestServer.start()) {
+			server.route("/busy").status(429).header("Retry-After", "30");
+			server.route("/past").status(503).header("Retry-After", "Mon, 01 Jan 2001 00:00:00 GMT");
+
+			long busy = pause(server, "/busy");
+			assertTrue(busy > 20_000 * MILLIS && busy <= 30_000 * MILLIS, "Retry-After: " + busy);
+
+			assertEquals(0L, pause(server, "/past"), "A date in the past doesn't pause.");
+		}
+	}
+
+	/**
+	 * Sends a request with a new limiter and returns how long the next request to the host would have to wait.
+	 */
+	private static long pause(TestServer server, String path) {
+		RateLimiter limiter = new RateLimiter();
+		Web.url(server.url(path)).limiter(limiter).retry(RetryPolicy.NONE).request(Map.of()).completion();
+
+		return limiter.reserve("127.0.0.1", 0);
+	}
+
+}
@@ -0,0 +1,297 @@
+package de.quantumrange.webUtils.retry;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.connections.HTTPRequestType;
+import de.quantumrange.webUtils.models.WebResult;
+import de.quantumrange.webUtils.ratelimit.RateLimiter;
+import de.quantumrange.webUtils.server.TestServer;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLSession;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static de.quantumrange.webUtils.connections.HTTPRequestType.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryPolicyTest {
+
+	@Test
+	void backoffDoublesUpToTheMax() {
+		RetryPolicy policy = RetryPolicy.builder()
+				.backoff(Duration.ofMillis(100), Duration.ofMillis(1000))
+				.jitter(0)
+				.build();
+
+		assertEquals(Duration.ofMillis(100), policy.getDelay(1, null));
+		assertEquals(Duration.ofMillis(200), policy.getDelay(2, null));
+		assertEquals(Duration.ofMillis(400), policy.getDelay(3, null));
+		assertEquals(Duration.ofMillis(800), policy.getDelay(4, null));
+		assertEquals(Duration.ofMillis(1000), policy.getDelay(5, null));
+		assertEquals(Duration.ofMillis(1000), policy.getDelay(1_000, null), "The doubling never overflows.");
+	}
+
+	@Test
+	void jitterRandomizesBelowTheBackoff() {
+		RetryPolicy full = RetryPolicy.builder().backoff(Duration.ofMillis(100), Duration.ofSeconds(10)).build();
+		RetryPolicy half = RetryPolicy.builder().backoff(Duration.ofMillis(100), Duration.ofSeconds(10)).jitter(.5)
+				.build();
+		Set<Duration> delays = new HashSet<>();
+
+		for (int i = 0; i < 1_000; i++) {
+			Duration delay = full.getDelay(3, null);
+			assertFalse(delay.isNegative(), "delay: " + delay);
+			assertTrue(delay.compareTo(Duration.ofMillis(400)) <= 0, "delay: " + delay);
+			delays.add(delay);
+
+			Duration halfDelay = half.getDelay(3, null);
+			assertTrue(halfDelay.compareTo(Duration.ofMillis(200)) >= 0, "delay: " + halfDelay);
+			assertTrue(halfDelay.compareTo(Duration.ofMillis(400)) <= 0, "delay: " + halfDelay);
+		}
+		assertTrue(delays.size() > 900, "The waits are spread: " + delays.size());
+		assertTrue(delays.stream().anyMatch(delay -> delay.compareTo(Duration.ofMillis(100)) < 0));
+		assertTrue(delays.stream().anyMatch(delay -> delay.compareTo(Duration.ofMillis(300)) > 0));
+	}
+
+	@Test
+	void retryAfterIsTheLeastWait() {
+		RetryPolicy policy = RetryPolicy.builder().backoff(Duration.ofMillis(100), Duration.ofSeconds(10)).jitter(0)
+				.build();
+
+		assertEquals(Duration.ofSeconds(3), policy.getDelay(1, response(503, "Retry-After", "3")));
+		assertEquals(Duration.ofMillis(400), policy.getDelay(3, response(503, "Retry-After", "0")),
+				"A shorter Retry-After doesn't shorten the backoff.");
+		assertEquals(Duration.ofMillis(100), policy.getDelay(1, response(503)));
+	}
+
+	@Test
+	void retriesOnlyIdempotentRequests() {
+		RetryPolicy policy = RetryPolicy.defaults();
+
+		for (HTTPRequestType type : List.of(GET, HEAD, PUT, DELETE, OPTIONS, TRACE)) {
+			assertTrue(policy.isRetryable(type, 1, response(503), null), type.name());
+		}
+		assertFalse(policy.isRetryable(POST, 1, response(503), null));
+		assertFalse(policy.isRetryable(PATCH, 1, response(503), null));
+
+		RetryPolicy every = RetryPolicy.builder().retryNonIdempotent(true).build();
+		assertTrue(every.isRetryable(POST, 1, response(503), null));
+		assertTrue(every.isRetryable(PATCH, 1, null, new ConnectException("refused")));
+	}
+
+	@Test
+	void retriesTheDefaultStatusesAndConnectErrors() {
+		RetryPolicy policy = RetryPolicy.defaults();
+
+		for (int status : new int[] {429, 500, 502, 503, 504}) {
+			assertTrue(policy.isRetryable(GET, 1, response(status), null), String.valueOf(status));
+		}
+		for (int status : new int[] {200, 301, 400, 404, 501}) {
+			assertFalse(policy.isRetryable(GET, 1, response(status), null), String.valueOf(status));
+		}
+
+		assertTrue(policy.isRetryable(GET, 1, null, new ConnectException("refused")));
+		assertTrue(policy.isRetryable(GET, 1, null, new CompletionException(new HttpConnectTimeoutException("slow"))),
+				"The causes are checked.");
+		assertFalse(policy.isRetryable(GET, 1, null, new HttpTimeoutException("no answer")),
+				"The request may have reached the server.");
+		assertFalse(policy.isRetryable(GET, 1, null, new IOException("reset")));
+		assertFalse(policy.isRetryable(GET, 1, null, null));
+	}
+
+	@Test
+	void stopsAfterTheMaxAttempts() {
+		RetryPolicy policy = RetryPolicy.builder().maxAttempts(3).build();
+
+		assertTrue(policy.isRetryable(GET, 1, response(503), null));
+		assertTrue(policy.isRetryable(GET, 2, response(503), null));
+		assertFalse(policy.isRetryable(GET, 3, response(503), null));
+		assertFalse(RetryPolicy.NONE.isRetryable(GET, 1, response(503), null));
+	}
+
+	@Test
+	void longRetryAfterIsNotWaitedFor() {
+		RetryPolicy policy = RetryPolicy.builder().maxRetryAfter(Duration.ofSeconds(5)).build();
+
+		assertTrue(policy.isRetryable(GET, 1, response(429, "Retry-After", "5"), null));
+		assertFalse(policy.isRetryable(GET, 1, response(429, "Retry-After", "6"), null));
+	}
+
+	@Test
+	void customPredicates() {
+		RetryPolicy policy = RetryPolicy.builder()
+				.retryOnStatus(status -> status == 409)
+				.retryOnException(error -> error instanceof HttpTimeoutException)
+				.build();
+
+		assertTrue(policy.isRetryable(GET, 1, response(409), null));
+		assertFalse(policy.isRetryable(GET, 1, response(503), null));
+		assertTrue(policy.isRetryable(GET, 1, null, new HttpTimeoutException("no answer")));
+		assertFalse(policy.isRetryable(GET, 1, null, new IOException("reset")));
+	}
+
+	@Test
+	void builderChecksTheValues() {
+		assertThrows(IllegalArgumentException.class, () -> RetryPolicy.builder().maxAttempts(0));
+		assertThrows(IllegalArgumentException.class, () -> RetryPolicy.builder().jitter(1.5));
+		assertThrows(IllegalArgumentException.class, () -> RetryPolicy.builder().jitter(-.1));
+		assertThrows(IllegalArgumentException.class,
+				() -> RetryPolicy.builder().backoff(Duration.ofSeconds(2), Duration.ofSeconds(1)));
+		assertThrows(IllegalArgumentException.class,
+				() -> RetryPolicy.builder().backoff(Duration.ofMillis(-1), Duration.ofSeconds(1)));
+
+		RetryPolicy defaults = RetryPolicy.defaults();
+		assertEquals(3, defaults.getMaxAttempts());
+		assertEquals(Duration.ofMillis(100), defaults.getInitialBackoff());
+		assertEquals(Duration.ofSeconds(10), defaults.getMaxBackoff());
+		assertEquals(1.0, defaults.getJitter());
+		assertFalse(defaults.isRetryNonIdempotent());
+	}
+
+	@Test
+	void connectionsRetry() throws IOException {
+		RetryPolicy fast = RetryPolicy.builder().backoff(Duration.ofMillis(10), Duration.ofMillis(10)).build();
+
+		try (TestServer server = TestServer.start()) {
+			server.route("/get").status(503, 503, 200);
+			server.route("/post").status(503, 200);
+			server.route("/async").status(502, 200);
+			server.route("/limited").status(429, 200).header("Retry-After", "120");
+
+			assertEquals(200, Web.url(server.url("/get")).retry(fast).request(Map.of()).completion().responseCode());
+			assertEquals(3, server.route("/get").getRequests());
+
+			WebResult<String> post = Web.url(server.url("/post"), POST).retry(fast).request("body").completion();
+			assertEquals(503, post.responseCode(), "A POST is not sent twice.");
+			assertEquals(1, server.route("/post").getRequests());
+
+			assertEquals(200, Web.url(server.url("/async")).retry(fast).requestAsync(Map.of()).join().responseCode());
+			assertEquals(2, server.route("/async").getRequests());
+
+			// An own limiter, so the Retry-After doesn't pause the host for the other tests.
+			assertEquals(429, Web.url(server.url("/limited")).retry(fast).limiter(new RateLimiter()).request(Map.of())
+					.completion().responseCode(), "Retry-After is longer than maxRetryAfter.");
+			assertEquals(1, server.route("/limited").getRequests());
+		}
+	}
+
+	@Test
+	void retriedBodiesAreDroppedBeforeTheHandler() throws IOException {
+		RetryPolicy fast = RetryPolicy.builder().backoff(Duration.ofMillis(10), Duration.ofMillis(10)).build();
+
+		try (TestServer server = TestServer.start()) {
+			server.route("/json").status(503, 200).body("{\"value\":1}");
+			server.route("/stream").status(503, 503, 200).body("streamed");
+			server.route("/async").status(503, 200).body("async");
+
+			WebResult<Map> json = Web.url(server.url("/json")).retry(fast).requestJsonStreamed(Map.of(), Map.class)
+					.completion();
+			assertEquals(200, json.responseCode());
+			assertEquals(1, json.response().get("value"));
+
+			AtomicInteger applied = new AtomicInteger();
+			HttpResponse.BodyHandler<InputStream> handler = info -> {
+				applied.incrementAndGet();
+				return HttpResponse.BodySubscribers.ofInputStream();
+			};
+
+			WebResult<InputStream> stream = Web.url(server.url("/stream")).retry(fast).request(Map.of(), handler)
+					.completion();
+			try (InputStream body = stream.response()) {
+				assertEquals("streamed", new String(body.readAllBytes(), StandardCharsets.UTF_8));
+			}
+			assertEquals(3, server.route("/stream").getRequests());
+			assertEquals(1, applied.get(), "Only the last attempt opens a stream.");
+
+			applied.set(0);
+			WebResult<InputStream> async = Web.url(server.url("/async")).retry(fast).requestAsync(Map.of(), handler)
+					.join();
+			try (InputStream body = async.response()) {
+				assertEquals("async", new String(body.readAllBytes(), StandardCharsets.UTF_8));
+			}
+			assertEquals(1, applied.get());
+		}
+	}
+
+	@Test
+	void blockingRequestsDontWaitLong() throws IOException {
+		try (TestServer server = TestServer.start()) {
+			server.route("/later").status(503, 200).header("Retry-After", "10");
+
+			long start = System.nanoTime();
+			WebResult<String> result = Web.url(server.url("/later")).retry(RetryPolicy.defaults())
+					.limiter(new RateLimiter()).request(Map.of()).completion();
+
+			assertEquals(503, result.responseCode(), "Retry-After is longer than MAX_BLOCKING_RETRY_WAIT.");
+			assertEquals(1, server.route("/later").getRequests());
+			assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(5)) < 0);
+		}
+	}
+
+	private static HttpResponse<Void> response(int status, String... headers) {
+		Map<String, List<String>> map = new HashMap<>();
+		for (int i = 0; i < headers.length; i += 2) map.put(headers[i], List.of(headers[i + 1]));
+		HttpHeaders httpHeaders = HttpHeaders.of(map, (name, value) -> true);
+
+		return new HttpResponse<>() {
+			@Override
+			public int statusCode() {
+				return status;
+			}
+
+			@Override
+			public HttpRequest request() {
+				return HttpRequest.newBuilder(URI.create("http://example.com/")).build();
+			}
+
+			@Override
+			public Optional<HttpResponse<Void>> previousResponse() {
+				return Optional.empty();
+			}
+
+			@Override
+			public HttpHeaders headers() {
+				return httpHeaders;
+			}
+
+			@Override
+			public Void body() {
+				return null;
+			}
+
+			@Override
+			public Optional<SSLSession> sslSession() {
+				return Optional.empty();
+			}
+
+			@Override
+			public URI uri() {
+				return URI.create("http://example.com/");
+			}
+
+			@Override
+			public HttpClient.Version version() {
+				return HttpClient.Version.HTTP_1_1;
+			}
+		};
+	}
+
+}
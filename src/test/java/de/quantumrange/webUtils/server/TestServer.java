@@ -0,0 +1,408 @@
+package de.quantumrange.webUtils.server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A HTTP server on the loopback interface for the tests, so they run without network and always get the same answers.
+ * Every path is a {@link Route} that is configured with latency, response codes, body, chunking, compression and rate
+ * limits. Paths without route are answered with 404.
+ * <p>
+ * Example:
+ * <pre>try (TestServer server = TestServer.start()) {
+ *     server.route("/slow").latency(Duration.ofMillis(50)).payload(10_000);
+ *     Web.url(server.url("/slow")).request(Map.of()).completion();
+ * }</pre>
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public final class TestServer implements AutoCloseable {
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final Map<String, Route> routes;
+
+	private TestServer(HttpServer server, ExecutorService executor) {
+		this.server = server;
+		this.executor = executor;
+		this.routes = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Starts a server on a free port. Every request is handled on its own virtual thread.
+	 *
+	 * @return the running server.
+	 * @throws IOException if the server could not be started.
+	 */
+	public static TestServer start() throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+		ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+		TestServer test = new TestServer(server, executor);
+
+		server.setExecutor(executor);
+		server.createContext("/", test::handle);
+		server.start();
+
+		return test;
+	}
+
+	/**
+	 * Returns the route of a path and creates it if it doesn't exist. A new route answers with 200 and
+	 * <code>ok</code>.
+	 *
+	 * @param path the path, for example <code>/json</code>.
+	 * @return the route.
+	 */
+	public Route route(String path) {
+		return routes.computeIfAbsent(path, key -> new Route());
+	}
+
+	/**
+	 * Returns the URL of a path on this server.
+	 *
+	 * @param pathAndQuery the path, for example <code>/json</code> or <code>/search?q=1</code>.
+	 * @return the URL.
+	 */
+	public URL url(String pathAndQuery) {
+		try {
+			return URI.create("http://127.0.0.1:" + getPort() + pathAndQuery).toURL();
+		} catch (MalformedURLException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.close();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			byte[] body = exchange.getRequestBody().readAllBytes();
+			Route route = routes.get(exchange.getRequestURI().getPath());
+
+			if (route == null) {
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+
+			route.handle(exchange, body);
+		}
+	}
+
+	/**
+	 * A request as the server received it.
+	 *
+	 * @param method the method.
+	 * @param uri the URI with the raw query.
+	 * @param headers the headers.
+	 * @param body the body.
+	 */
+	public record Request(String method, URI uri, Headers headers, byte[] body) {
+
+		public String bodyAsString() {
+			return new String(body, StandardCharsets.UTF_8);
+		}
+
+	}
+
+	/**
+	 * How the server answers the requests to a path. All settings can be changed while the server runs.
+	 */
+	public static final class Route {
+
+		private volatile int[] statuses = {200};
+		private volatile Duration latency = Duration.ZERO;
+		private volatile byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+		private volatile boolean echo;
+		private volatile int chunkSize;
+		private volatile Duration chunkDelay = Duration.ZERO;
+		private volatile boolean compression;
+		private volatile int rateLimit;
+		private volatile Duration rateWindow;
+		private final Map<String, String> headers = new ConcurrentHashMap<>();
+
+		private final AtomicInteger requests = new AtomicInteger();
+		private final List<Request> received = new ArrayList<>();
+		private long windowStart;
+		private int windowCount;
+
+		private Route() {
+		}
+
+		/**
+		 * Sets the response codes. With more than one code the requests get them one after another and then the
+		 * codes start again, for example <code>status(503, 503, 200)</code> for a server that fails twice.
+		 *
+		 * @param statuses the response codes.
+		 * @return itself
+		 */
+		public Route status(int... statuses) {
+			if (statuses.length == 0) throw new IllegalArgumentException("At least one status is needed.");
+			this.statuses = statuses.clone();
+			return this;
+		}
+
+		/**
+		 * Sets how long the server waits before it answers.
+		 *
+		 * @param latency the duration.
+		 * @return itself
+		 */
+		public Route latency(Duration latency) {
+			this.latency = latency;
+			return this;
+		}
+
+		public Route body(String body) {
+			return body(body.getBytes(StandardCharsets.UTF_8));
+		}
+
+		public Route body(byte[] body) {
+			this.body = body;
+			this.echo = false;
+			return this;
+		}
+
+		/**
+		 * Answers with text of the given size. The text compresses like usual API responses.
+		 *
+		 * @param size the size in bytes.
+		 * @return itself
+		 */
+		public Route payload(int size) {
+			return body(TestServer.payload(size, size));
+		}
+
+		/**
+		 * Answers with the body of the request.
+		 * @return itself
+		 */
+		public Route echo() {
+			this.echo = true;
+			return this;
+		}
+
+		/**
+		 * Sends the body in chunks without <code>Content-Length</code>.
+		 *
+		 * @param chunkSize the size of the chunks.
+		 * @param delay how long the server waits between two chunks.
+		 * @return itself
+		 */
+		public Route chunked(int chunkSize, Duration delay) {
+			this.chunkSize = chunkSize;
+			this.chunkDelay = delay;
+			return this;
+		}
+
+		/**
+		 * Compresses the body with gzip or deflate if the request accepts it.
+		 *
+		 * @param compression true to compress.
+		 * @return itself
+		 */
+		public Route compression(boolean compression) {
+			this.compression = compression;
+			return this;
+		}
+
+		/**
+		 * Answers only <code>limit</code> requests per window, the others get 429 with <code>Retry-After</code>.
+		 * Every answer has the <code>X-RateLimit-Limit</code>, <code>X-RateLimit-Remaining</code> and
+		 * <code>X-RateLimit-Reset</code> headers.
+		 *
+		 * @param limit the count of requests per window.
+		 * @param window the duration of the window.
+		 * @return itself
+		 */
+		public Route rateLimit(int limit, Duration window) {
+			this.rateLimit = limit;
+			this.rateWindow = window;
+			return this;
+		}
+
+		/**
+		 * Adds a header to every answer.
+		 *
+		 * @param name the name.
+		 * @param value the value.
+		 * @return itself
+		 */
+		public Route header(String name, String value) {
+			headers.put(name, value);
+			return this;
+		}
+
+		/**
+		 * Returns how many requests the route got.
+		 * @return the count of requests.
+		 */
+		public int getRequests() {
+			return requests.get();
+		}
+
+		/**
+		 * Returns the last request the route got.
+		 * @return the request or null if there was none.
+		 */
+		public synchronized Request getLastRequest() {
+			return received.isEmpty() ? null : received.get(received.size() - 1);
+		}
+
+		/**
+		 * Returns all requests the route got.
+		 * @return a copy of the requests.
+		 */
+		public synchronized List<Request> getReceived() {
+			return List.copyOf(received);
+		}
+
+		private void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+			int index = requests.getAndIncrement();
+			synchronized (this) {
+				received.add(new Request(exchange.getRequestMethod(), exchange.getRequestURI(),
+						exchange.getRequestHeaders(), requestBody));
+			}
+
+			sleep(latency);
+
+			Headers responseHeaders = exchange.getResponseHeaders();
+			headers.forEach(responseHeaders::add);
+
+			int[] codes = statuses;
+			int status = codes[index % codes.length];
+			if (rateLimit > 0 && !permitted(responseHeaders)) status = 429;
+
+			byte[] answer = status == 429 && rateLimit > 0 ? new byte[0] : echo ? requestBody : body;
+			String encoding = compression ? encodingOf(exchange.getRequestHeaders()) : null;
+			if (encoding != null && answer.length > 0) {
+				answer = compress(answer, encoding);
+				responseHeaders.add("Content-Encoding", encoding);
+			}
+
+			int chunk = chunkSize;
+			if (answer.length == 0) {
+				exchange.sendResponseHeaders(status, -1);
+			} else if (chunk > 0) {
+				exchange.sendResponseHeaders(status, 0);
+				try (OutputStream out = exchange.getResponseBody()) {
+					for (int offset = 0; offset < answer.length; offset += chunk) {
+						if (offset > 0) sleep(chunkDelay);
+						out.write(answer, offset, Math.min(chunk, answer.length - offset));
+						out.flush();
+					}
+				}
+			} else {
+				exchange.sendResponseHeaders(status, answer.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(answer);
+				}
+			}
+		}
+
+		private synchronized boolean permitted(Headers responseHeaders) {
+			long now = System.nanoTime();
+			long windowNanos = rateWindow.toNanos();
+
+			if (now - windowStart >= windowNanos || windowCount == 0) {
+				windowStart = now;
+				windowCount = 0;
+			}
+
+			boolean permitted = windowCount < rateLimit;
+			if (permitted) windowCount++;
+
+			long resetSeconds = Math.max(1, (windowNanos - (now - windowStart) + 999_999_999) / 1_000_000_000);
+			responseHeaders.add("X-RateLimit-Limit", String.valueOf(rateLimit));
+			responseHeaders.add("X-RateLimit-Remaining", String.valueOf(rateLimit - windowCount));
+			responseHeaders.add("X-RateLimit-Reset", String.valueOf(resetSeconds));
+			if (!permitted) responseHeaders.add("Retry-After", String.valueOf(resetSeconds));
+
+			return permitted;
+		}
+
+		private static String encodingOf(Headers requestHeaders) {
+			String accepted = requestHeaders.getFirst("Accept-Encoding");
+
+			if (accepted == null) return null;
+			if (accepted.contains("gzip")) return "gzip";
+			if (accepted.contains("deflate")) return "deflate";
+			return null;
+		}
+
+		private static byte[] compress(byte[] data, String encoding) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+			try (OutputStream out = encoding.equals("gzip") ? new GZIPOutputStream(bytes) :
+					new DeflaterOutputStream(bytes)) {
+				out.write(data);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			return bytes.toByteArray();
+		}
+
+		private static void sleep(Duration duration) {
+			if (duration.isZero()) return;
+
+			try {
+				Thread.sleep(duration);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+	}
+
+	/**
+	 * Creates text of words and numbers that compresses like usual API responses.
+	 *
+	 * @param size the size in bytes.
+	 * @param seed the seed of the text, the same seed always creates the same text.
+	 * @return the text as UTF-8.
+	 */
+	public static byte[] payload(int size, long seed) {
+		String[] words = {"request", "response", "header", "body", "limit", "host", "query", "cache", "json", "value"};
+		StringBuilder builder = new StringBuilder(size + 32);
+		Random random = new Random(seed);
+
+		while (builder.length() < size) {
+			builder.append(words[random.nextInt(words.length)]).append('=').append(random.nextInt(100_000))
+					.append(random.nextInt(8) == 0 ? '\n' : ' ');
+		}
+		builder.setLength(size);
+
+		return builder.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+}
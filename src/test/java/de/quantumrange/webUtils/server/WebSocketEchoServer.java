@@ -0,0 +1,226 @@
+package de.quantumrange.webUtils.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A WebSocket server on the loopback interface for the tests that sends every message back to the client. It
+ * understands just enough of RFC 6455 for the client of the JDK: the handshake, masked frames in any size, ping and
+ * close. The frames are sent back as they arrived, so fragmented messages stay fragmented.
+ *
+ * @author QuantumRange
+ * @since 1.2.0
+ */
+public final class WebSocketEchoServer implements AutoCloseable {
+
+	private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+	private final ServerSocket socket;
+	private final ExecutorService executor;
+	private final List<Frame> received = new ArrayList<>();
+	private volatile Map<String, String> lastHeaders = Map.of();
+	/**
+	 * The first error while a connection was handled, it is thrown by {@link #close()} so the test fails.
+	 */
+	private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+	private WebSocketEchoServer(ServerSocket socket, ExecutorService executor) {
+		this.socket = socket;
+		this.executor = executor;
+	}
+
+	/**
+	 * Starts a server on a free port. Every connection is handled on its own virtual thread.
+	 *
+	 * @return the running server.
+	 * @throws IOException if the server could not be started.
+	 */
+	public static WebSocketEchoServer start() throws IOException {
+		ServerSocket socket = new ServerSocket(0, 64, InetAddress.getLoopbackAddress());
+		WebSocketEchoServer server = new WebSocketEchoServer(socket, Executors.newVirtualThreadPerTaskExecutor());
+
+		server.executor.execute(server::accept);
+		return server;
+	}
+
+	public URI uri(String path) {
+		return URI.create("ws://127.0.0.1:" + socket.getLocalPort() + path);
+	}
+
+	/**
+	 * Returns the frames with data (text, binary and continuation) the server received.
+	 * @return a copy of the frames.
+	 */
+	public synchronized List<Frame> getReceived() {
+		return List.copyOf(received);
+	}
+
+	/**
+	 * Returns the headers of the last handshake, the names are lower case.
+	 * @return the headers.
+	 */
+	public Map<String, String> getLastHeaders() {
+		return lastHeaders;
+	}
+
+	/**
+	 * Stops the server.
+	 *
+	 * @throws IOException if the server could not be stopped or failed while it handled a connection.
+	 */
+	@Override
+	public void close() throws IOException {
+		socket.close();
+		executor.shutdownNow();
+
+		Exception failure = this.failure.get();
+		if (failure != null) throw new IOException("The server failed while handling a connection.", failure);
+	}
+
+	private void accept() {
+		while (!socket.isClosed()) {
+			try {
+				Socket client = socket.accept();
+				executor.execute(() -> handle(client));
+			} catch (IOException e) {
+				return;
+			}
+		}
+	}
+
+	private void handle(Socket client) {
+		try (client) {
+			DataInputStream in = new DataInputStream(client.getInputStream());
+			OutputStream out = client.getOutputStream();
+
+			handshake(in, out);
+
+			while (true) {
+				int first = in.readUnsignedByte();
+				int second = in.readUnsignedByte();
+				int opcode = first & 0x0F;
+				long length = second & 0x7F;
+				if (length == 126) length = in.readUnsignedShort();
+				else if (length == 127) length = in.readLong();
+
+				byte[] mask = new byte[4];
+				if ((second & 0x80) != 0) in.readFully(mask);
+				byte[] payload = new byte[(int) length];
+				in.readFully(payload);
+				for (int i = 0; i < payload.length; i++) payload[i] ^= mask[i & 3];
+
+				if (opcode == 0x9) {
+					write(out, 0x80 | 0xA, payload);
+				} else if (opcode == 0x8) {
+					write(out, 0x80 | 0x8, payload);
+					return;
+				} else if (opcode <= 0x2) {
+					synchronized (this) {
+						received.add(new Frame(opcode, (first & 0x80) != 0, payload));
+					}
+					write(out, first, payload);
+				}
+			}
+		} catch (EOFException ignored) {
+		} catch (IOException | RuntimeException e) {
+			if (!socket.isClosed()) failure.compareAndSet(null, e);
+		}
+	}
+
+	private void handshake(InputStream in, OutputStream out) throws IOException {
+		Map<String, String> headers = new HashMap<>();
+		String line;
+
+		readLine(in);
+		while (!(line = readLine(in)).isEmpty()) {
+			int colon = line.indexOf(':');
+			headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+		}
+		lastHeaders = Map.copyOf(headers);
+
+		String accept = Base64.getEncoder().encodeToString(sha1(headers.get("sec-websocket-key") + GUID));
+		String protocol = headers.get("sec-websocket-protocol");
+		String response = "HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n" +
+				"Sec-WebSocket-Accept: " + accept + "\r\n" +
+				(protocol == null ? "" : "Sec-WebSocket-Protocol: " + protocol.split(",")[0].trim() + "\r\n") + "\r\n";
+
+		out.write(response.getBytes(StandardCharsets.US_ASCII));
+		out.flush();
+	}
+
+	private static void write(OutputStream out, int first, byte[] payload) throws IOException {
+		ByteArrayOutputStream frame = new ByteArrayOutputStream(payload.length + 10);
+		frame.write(first);
+
+		if (payload.length < 126) {
+			frame.write(payload.length);
+		} else if (payload.length < 65536) {
+			frame.write(126);
+			frame.write(payload.length >>> 8);
+			frame.write(payload.length);
+		} else {
+			frame.write(127);
+			for (int shift = 56; shift >= 0; shift -= 8) frame.write((int) ((long) payload.length >>> shift));
+		}
+
+		frame.write(payload);
+		out.write(frame.toByteArray());
+		out.flush();
+	}
+
+	private static String readLine(InputStream in) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int c;
+
+		while ((c = in.read()) != '\n') {
+			if (c == -1) throw new EOFException();
+			if (c != '\r') line.append((char) c);
+		}
+
+		return line.toString();
+	}
+
+	private static byte[] sha1(String value) {
+		try {
+			return MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.US_ASCII));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * A frame as the server received it, already unmasked.
+	 *
+	 * @param opcode the opcode, 0 for continuation, 1 for text and 2 for binary.
+	 * @param last true if it is the last frame of the message.
+	 * @param payload the data.
+	 */
+	public record Frame(int opcode, boolean last, byte[] payload) {
+
+		public String text() {
+			return new String(payload, StandardCharsets.UTF_8);
+		}
+
+	}
+
+}
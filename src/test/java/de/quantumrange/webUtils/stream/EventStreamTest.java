@@ -0,0 +1,167 @@
+package de.quantumrange.webUtils.stream;
+
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.server.TestServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventStreamTest {
+
+	@Test
+	void reconnectsWithLastEventId() throws Exception {
+		try (TestServer server = TestServer.start()) {
+			TestServer.Route route = server.route("/events")
+					.body("retry: 10\nid: 1\ndata: {\"value\": 1}\n\nid: 2\nevent: tick\ndata: {\"value\": 2}\n\n")
+					.header("Content-Type", "text/event-stream")
+					.chunked(16, Duration.ofMillis(1));
+
+			List<Tick> ticks = new CopyOnWriteArrayList<>();
+			CountDownLatch four = new CountDownLatch(4);
+
+			try (EventStream<Tick> stream = Web.url(server.url("/events")).requestEvents(Map.of(), Tick.class)) {
+				stream.consume(tick -> {
+					ticks.add(tick);
+					four.countDown();
+				});
+
+				assertTrue(four.await(10, TimeUnit.SECONDS));
+				assertEquals("2", stream.getLastEventId());
+			}
+
+			assertEquals(List.of(new Tick(1), new Tick(2), new Tick(1), new Tick(2)), ticks.subList(0, 4));
+
+			List<TestServer.Request> requests = route.getReceived();
+			assertEquals("text/event-stream", requests.get(0).headers().getFirst("Accept"));
+			assertNull(requests.get(0).headers().getFirst("Last-Event-ID"));
+			assertEquals("2", requests.get(1).headers().getFirst("Last-Event-ID"));
+		}
+	}
+
+	@Test
+	void idWithoutDataAdvancesTheLastEventId() throws Exception {
+		try (TestServer server = TestServer.start()) {
+			TestServer.Route route = server.route("/events")
+					.body("retry: 10\nid: 1\ndata: {\"value\": 1}\n\nid: 2\n\n")
+					.header("Content-Type", "text/event-stream");
+
+			CountDownLatch two = new CountDownLatch(2);
+
+			try (EventStream<Tick> stream = Web.url(server.url("/events")).requestEvents(Map.of(), Tick.class)) {
+				stream.consume(tick -> two.countDown());
+
+				assertTrue(two.await(10, TimeUnit.SECONDS));
+				assertEquals("2", stream.getLastEventId());
+			}
+
+			assertEquals("2", route.getReceived().get(1).headers().getFirst("Last-Event-ID"));
+		}
+	}
+
+	@Test
+	void ndjsonLines() throws Exception {
+		try (TestServer server = TestServer.start()) {
+			StringBuilder body = new StringBuilder();
+			for (int i = 0; i < 1_000; i++) body.append("{\"value\": ").append(i).append("}\n\n");
+			server.route("/ndjson").body(body.toString()).chunked(512, Duration.ZERO);
+
+			List<Tick> ticks = new CopyOnWriteArrayList<>();
+			Web.url(server.url("/ndjson")).requestLines(Map.of(), Tick.class)
+					.consume(ticks::add)
+					.get(10, TimeUnit.SECONDS);
+
+			assertEquals(1_000, ticks.size());
+			for (int i = 0; i < ticks.size(); i++) assertEquals(i, ticks.get(i).value());
+			assertEquals(1, server.route("/ndjson").getRequests(), "Lines don't reconnect by default.");
+		}
+	}
+
+	@Test
+	void slowConsumerSlowsDownReading() throws Exception {
+		try (TestServer server = TestServer.start(); HttpClient client = HttpClient.newHttpClient()) {
+			server.route("/lines").body("line\n".repeat(1_000));
+			URI uri = server.url("/lines").toURI();
+
+			AtomicInteger read = new AtomicInteger();
+			AtomicInteger consumed = new AtomicInteger();
+			AtomicInteger maxAhead = new AtomicInteger();
+			EventStream<String> stream = EventStream.ofLines(lastEventId -> client.send(
+					HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofInputStream()), line -> {
+				read.incrementAndGet();
+				return line;
+			}).bufferSize(4);
+
+			stream.consume(line -> {
+				maxAhead.accumulateAndGet(read.get() - consumed.get(), Math::max);
+				if (consumed.incrementAndGet() < 100) sleep(1);
+			}).get(10, TimeUnit.SECONDS);
+
+			assertEquals(1_000, consumed.get());
+			assertTrue(maxAhead.get() <= 8, "The body was read " + maxAhead.get() + " lines ahead.");
+		}
+	}
+
+	@Test
+	void failsAndEnds() throws Exception {
+		try (TestServer server = TestServer.start()) {
+			server.route("/missing").status(404);
+			server.route("/gone").status(204).body("");
+			server.route("/broken").status(503);
+
+			CompletableFuture<Void> missing = Web.url(server.url("/missing")).requestEvents(Map.of()).consume(e -> {});
+			ExecutionException failure = assertThrows(ExecutionException.class, () -> missing.get(10, TimeUnit.SECONDS));
+			assertTrue(failure.getCause() instanceof IOException, failure.toString());
+
+			Web.url(server.url("/gone")).requestEvents(Map.of()).consume(e -> {}).get(10, TimeUnit.SECONDS);
+
+			EventStream<ServerSentEvent> broken = Web.url(server.url("/broken")).requestEvents(Map.of())
+					.reconnectDelay(Duration.ofMillis(5)).maxReconnects(2);
+			assertThrows(ExecutionException.class, () -> broken.consume(e -> {}).get(10, TimeUnit.SECONDS));
+			assertEquals(3, server.route("/broken").getRequests());
+			assertThrows(IllegalStateException.class, () -> broken.bufferSize(1));
+		}
+	}
+
+	@Test
+	void closeEndsTheStream() throws Exception {
+		try (TestServer server = TestServer.start()) {
+			server.route("/slow").body("data: a\n\n".repeat(100)).chunked(9, Duration.ofMillis(50));
+
+			EventStream<ServerSentEvent> stream = Web.url(server.url("/slow")).requestEvents(Map.of());
+			CountDownLatch first = new CountDownLatch(1);
+			CompletableFuture<Void> done = stream.consume(event -> first.countDown());
+
+			assertTrue(first.await(10, TimeUnit.SECONDS));
+			stream.close();
+			done.get(10, TimeUnit.SECONDS);
+			assertTrue(stream.isClosed());
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public record Tick(int value) {
+	}
+
+}
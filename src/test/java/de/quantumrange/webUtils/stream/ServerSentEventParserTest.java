@@ -0,0 +1,57 @@
+package de.quantumrange.webUtils.stream;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServerSentEventParserTest {
+
+	@Test
+	void fields() {
+		List<ServerSentEvent> events = parse(new ServerSentEventParser(null), "\uFEFF: comment", "data: first",
+				"", "event: update", "id: 7", "data:  two", "data", "data:lines", "", "event: empty", "",
+				"unknown: field", "data: last", "");
+
+		assertEquals(List.of(new ServerSentEvent(null, "message", "first"),
+				new ServerSentEvent("7", "update", " two\n\nlines"),
+				new ServerSentEvent("7", "message", "last")), events);
+	}
+
+	@Test
+	void idAndRetry() {
+		ServerSentEventParser parser = new ServerSentEventParser("3");
+		assertEquals(-1, parser.getRetry());
+
+		List<ServerSentEvent> events = parse(parser, "retry: 1500", "data: a", "", "retry: 1x", "id: 4\0", "id",
+				"data: b", "");
+
+		assertEquals(1500, parser.getRetry());
+		assertEquals(List.of(new ServerSentEvent("3", "message", "a"), new ServerSentEvent("", "message", "b")),
+				events);
+		assertEquals("", parser.getLastEventId());
+	}
+
+	@Test
+	void unfinishedEventIsDropped() {
+		ServerSentEventParser parser = new ServerSentEventParser(null);
+		assertTrue(parse(parser, "event: update", "data: cut").isEmpty());
+
+		parser.reset();
+		assertEquals(List.of(new ServerSentEvent(null, "message", "next")), parse(parser, "data: next", ""));
+	}
+
+	private static List<ServerSentEvent> parse(ServerSentEventParser parser, String... lines) {
+		List<ServerSentEvent> events = new ArrayList<>();
+
+		for (String line : lines) {
+			ServerSentEvent event = parser.line(line);
+			if (event != null) events.add(event);
+		}
+
+		return events;
+	}
+
+}
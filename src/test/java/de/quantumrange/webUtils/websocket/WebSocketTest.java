@@ -0,0 +1,181 @@
+package de.quantumrange.webUtils.websocket;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import de.quantumrange.webUtils.Web;
+import de.quantumrange.webUtils.circuit.HostGuard;
+import de.quantumrange.webUtils.ratelimit.RateLimiter;
+import de.quantumrange.webUtils.server.WebSocketEchoServer;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebSocketTest {
+
+	@Test
+	void textAndBinaryEcho() throws Exception {
+		try (WebSocketEchoServer server = WebSocketEchoServer.start()) {
+			BlockingQueue<String> texts = new LinkedBlockingQueue<>();
+			BlockingQueue<byte[]> binaries = new LinkedBlockingQueue<>();
+
+			WebSocketSession session = Web.websocket(server.uri("/echo"))
+					.addHeader("X-Test", "1")
+					.subprotocols("feed.v2", "feed.v1")
+					.connect(new WebSocketListener<>() {
+						@Override
+						public void onMessage(WebSocketSession session, CharSequence message) {
+							texts.add(message.toString());
+						}
+
+						@Override
+						public void onBinary(WebSocketSession session, ByteBuffer data) {
+							byte[] bytes = new byte[data.remaining()];
+							data.get(bytes);
+							binaries.add(bytes);
+						}
+					})
+					.get(10, TimeUnit.SECONDS);
+
+			assertTrue(session.isOpen());
+			assertEquals("feed.v2", session.getSubprotocol());
+			assertEquals("1", server.getLastHeaders().get("x-test"));
+
+			String large = "x".repeat(200_000);
+			session.sendText("hello");
+			session.sendBinary(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+			session.sendText(large).get(10, TimeUnit.SECONDS);
+
+			assertEquals("hello", texts.poll(10, TimeUnit.SECONDS));
+			assertArrayEquals(new byte[]{1, 2, 3}, binaries.poll(10, TimeUnit.SECONDS));
+			assertEquals(large, texts.poll(10, TimeUnit.SECONDS), "A message in several frames is joined.");
+
+			session.close().get(10, TimeUnit.SECONDS);
+			assertFalse(session.isOpen());
+			assertThrows(Exception.class, () -> session.sendText("late").get(10, TimeUnit.SECONDS));
+		}
+	}
+
+	@Test
+	void jsonMessages() throws Exception {
+		try (WebSocketEchoServer server = WebSocketEchoServer.start()) {
+			BlockingQueue<Tick> ticks = new LinkedBlockingQueue<>();
+			BlockingQueue<Throwable> errors = new LinkedBlockingQueue<>();
+
+			WebSocketSession session = Web.websocket(server.uri("/json")).connect(Tick.class,
+					new WebSocketListener<>() {
+						@Override
+						public void onMessage(WebSocketSession session, Tick message) {
+							ticks.add(message);
+						}
+
+						@Override
+						public void onError(WebSocketSession session, Throwable error) {
+							errors.add(error);
+						}
+					}).get(10, TimeUnit.SECONDS);
+
+			session.sendJson(new Tick(1, "a"));
+			session.sendText("not json");
+			session.sendJson(new Tick(2, "b"));
+
+			assertEquals(new Tick(1, "a"), ticks.poll(10, TimeUnit.SECONDS));
+			assertTrue(errors.poll(10, TimeUnit.SECONDS) instanceof IllegalArgumentException);
+			assertEquals(new Tick(2, "b"), ticks.poll(10, TimeUnit.SECONDS), "The session goes on after a bad message.");
+
+			session.close();
+		}
+	}
+
+	@Test
+	void batchesJoinQueuedMessages() throws Exception {
+		try (WebSocketEchoServer server = WebSocketEchoServer.start()) {
+			BlockingQueue<List<Tick>> batches = new LinkedBlockingQueue<>();
+
+			WebSocketSession session = Web.websocket(server.uri("/batch"))
+					.batch(10, Duration.ofMillis(200), Collectors.joining(",", "[", "]"))
+					.connect(Web.CODECS.reader(new TypeReference<List<Tick>>() {}),
+							(WebSocketListener<List<Tick>>) (s, message) -> batches.add(message))
+					.get(10, TimeUnit.SECONDS);
+
+			List<CompletableFuture<Void>> sent = new ArrayList<>();
+			for (int i = 0; i < 12; i++) sent.add(session.sendJson(new Tick(i, "t")));
+			for (CompletableFuture<Void> future : sent) future.get(10, TimeUnit.SECONDS);
+
+			List<Tick> first = batches.poll(10, TimeUnit.SECONDS);
+			List<Tick> second = batches.poll(10, TimeUnit.SECONDS);
+			assertEquals(10, first.size());
+			assertEquals(2, second.size(), "The rest is sent after the linger.");
+			assertEquals(new Tick(11, "t"), second.get(1));
+			assertEquals(2, server.getReceived().size());
+			assertEquals(0, session.getQueued());
+
+			session.close();
+		}
+	}
+
+	@Test
+	void rateIDThrottlesMessages() throws Exception {
+		try (WebSocketEchoServer server = WebSocketEchoServer.start()) {
+			RateLimiter limiter = new RateLimiter();
+			limiter.setRateLimit(7, 20, 1);
+
+			WebSocketSession session = Web.websocket(server.uri("/limited")).rateID(7).limiter(limiter)
+					.connect((s, message) -> {})
+					.get(10, TimeUnit.SECONDS);
+
+			long start = System.nanoTime();
+			CompletableFuture<Void> last = null;
+			for (int i = 0; i < 6; i++) last = session.sendText("m" + i);
+			last.get(10, TimeUnit.SECONDS);
+			long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+			assertTrue(millis >= 200, "6 messages at 20 per second took only " + millis + " ms.");
+			session.close();
+		}
+	}
+
+	@Test
+	void invalidHeadersKeepNoPermit() throws Exception {
+		try (WebSocketEchoServer server = WebSocketEchoServer.start()) {
+			HostGuard guard = new HostGuard();
+			guard.setBulkhead("127.0.0.1", 1);
+
+			for (String header : List.of("Bad Name", "Connection", "Sec-WebSocket-Key")) {
+				try {
+					Web.websocket(server.uri("/headers")).guard(guard).addHeader(header, "value")
+							.connect((s, message) -> {})
+							.get(10, TimeUnit.SECONDS);
+					fail("The header " + header + " was sent.");
+				} catch (IllegalArgumentException | ExecutionException e) {
+					// The client checks the headers when it is built or while connecting.
+				}
+				assertEquals(0, guard.getBulkhead("127.0.0.1").getActive(), header);
+			}
+
+			WebSocketSession session = Web.websocket(server.uri("/headers")).guard(guard)
+					.connect((s, message) -> {})
+					.get(10, TimeUnit.SECONDS);
+			session.close();
+		}
+	}
+
+	@Test
+	void rejectsOtherSchemes() {
+		assertThrows(IllegalArgumentException.class, () -> Web.websocket(URI.create("http://127.0.0.1/")));
+	}
+
+	public record Tick(int id, String name) {
+	}
+
+}